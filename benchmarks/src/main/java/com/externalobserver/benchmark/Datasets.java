@@ -0,0 +1,154 @@
+package com.externalobserver.benchmark;
+
+import com.externalobserver.model.Habit;
+import com.externalobserver.model.HabitCheck;
+import com.externalobserver.model.Note;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Синтетические данные для бенчмарков. Генератор детерминирован: при одинаковых
+ * параметрах замеры до и после изменения идут на одном и том же наборе.
+ */
+public final class Datasets {
+    public static final String USERNAME = "bench";
+
+    private static final long SEED = 42;
+    private static final String[] WORDS = {
+        "привычка", "заметка", "утро", "сон", "бег", "книга", "цель", "неделя", "план", "идея",
+        "habit", "note", "morning", "running", "reading", "focus", "journal", "review", "graph", "link"
+    };
+    private static final String[] TAGS = {
+        "work", "home", "health", "reading", "ideas", "journal", "finance", "archive", "urgent", "someday"
+    };
+    private static final String[] FOLDERS = {"", "inbox", "projects/observer", "journal/2024", "areas/health"};
+
+    private Datasets() {}
+
+    public static List<Note> notes(int count, int contentSize) {
+        SplittableRandom random = new SplittableRandom(SEED);
+        LocalDateTime base = LocalDateTime.of(2024, 1, 1, 9, 0);
+        List<Note> notes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Note note = new Note();
+            note.setId(String.format("%024x", i));
+            note.setUsername(USERNAME);
+            note.setTitle(sentence(random, 3) + " " + i);
+            note.setContent(text(random, contentSize));
+            note.setType("note");
+            note.setPath(FOLDERS[random.nextInt(FOLDERS.length)]);
+            note.setStatus("active");
+            note.setTags(tags(random));
+            note.setLinks(i > 0 ? List.of(String.format("%024x", random.nextInt(i))) : List.of());
+            note.setMetadata(Map.of("source", "benchmark", "words", contentSize / 6));
+            note.setCreated(base.plusMinutes(i));
+            note.setUpdated(base.plusMinutes(i).plusHours(random.nextInt(48)));
+            note.setVersion(1);
+            notes.add(note);
+        }
+        return notes;
+    }
+
+    // Файлы в формате Obsidian: YAML front matter и Markdown-тело
+    public static MockMultipartFile[] markdownFiles(int count, int contentSize) {
+        SplittableRandom random = new SplittableRandom(SEED);
+        MockMultipartFile[] files = new MockMultipartFile[count];
+        for (int i = 0; i < count; i++) {
+            String folder = FOLDERS[random.nextInt(FOLDERS.length)];
+            String fileName = (folder.isEmpty() ? "" : folder + "/") + "note-" + i + ".md";
+            String markdown = "---\n"
+                + "title: " + sentence(random, 3) + "\n"
+                + "type: note\n"
+                + "tags: [" + String.join(", ", tags(random)) + "]\n"
+                + "created: 2024-01-01T09:00:00\n"
+                + "---\n"
+                + "# " + sentence(random, 4) + "\n\n"
+                + text(random, contentSize) + "\n";
+            files[i] = new MockMultipartFile(
+                "files", fileName, "text/markdown", markdown.getBytes(StandardCharsets.UTF_8));
+        }
+        return files;
+    }
+
+    public static List<Habit> habits(int count) {
+        SplittableRandom random = new SplittableRandom(SEED);
+        List<Habit> habits = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Habit habit = new Habit();
+            habit.setId("habit-" + i);
+            habit.setUsername(USERNAME);
+            habit.setName(sentence(random, 2) + " " + i);
+            habit.setOrder(i + 1);
+            habits.add(habit);
+        }
+        return habits;
+    }
+
+    // Около двух третей дней отмечены, к каждой десятой отметке добавлен комментарий
+    public static List<HabitCheck> habitChecks(List<Habit> habits, LocalDate start, int days) {
+        SplittableRandom random = new SplittableRandom(SEED);
+        List<HabitCheck> checks = new ArrayList<>();
+        for (Habit habit : habits) {
+            for (int day = 0; day < days; day++) {
+                if (random.nextInt(3) == 0) {
+                    continue;
+                }
+                HabitCheck check = new HabitCheck();
+                check.setHabitId(habit.getId());
+                check.setUsername(USERNAME);
+                check.setDate(start.plusDays(day));
+                check.setCompleted(true);
+                if (random.nextInt(10) == 0) {
+                    check.setComment(sentence(random, 6));
+                }
+                checks.add(check);
+            }
+        }
+        return checks;
+    }
+
+    private static List<String> tags(SplittableRandom random) {
+        int count = 1 + random.nextInt(3);
+        List<String> tags = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String tag = TAGS[random.nextInt(TAGS.length)];
+            if (!tags.contains(tag)) {
+                tags.add(tag);
+            }
+        }
+        return tags;
+    }
+
+    private static String sentence(SplittableRandom random, int words) {
+        StringBuilder sentence = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                sentence.append(' ');
+            }
+            sentence.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return sentence.toString();
+    }
+
+    // Абзацы по ~40 слов, пока не наберётся size символов
+    private static String text(SplittableRandom random, int size) {
+        StringBuilder text = new StringBuilder(size + 64);
+        int words = 0;
+        while (text.length() < size) {
+            text.append(WORDS[random.nextInt(WORDS.length)]);
+            if (++words % 40 == 0) {
+                text.append(".\n\n");
+            } else {
+                text.append(' ');
+            }
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,63 @@
+package com.externalobserver.benchmark;
+
+import com.externalobserver.model.Habit;
+import com.externalobserver.service.ExcelExportService;
+import com.externalobserver.service.HabitService;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Генерация Excel-отчёта по отметкам привычек за период.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ExcelExportBenchmark {
+    private static final LocalDate START = LocalDate.of(2024, 1, 1);
+
+    @Param({"10", "50"})
+    public int habitCount;
+
+    @Param({"31", "365"})
+    public int days;
+
+    private ExcelExportService excelExportService;
+
+    @Setup
+    public void setUp() {
+        List<Habit> habits = Datasets.habits(habitCount);
+        HabitService habitService = Stubs.stub(HabitService.class);
+        Mockito.when(habitService.getHabits(Datasets.USERNAME)).thenReturn(habits);
+        Mockito.when(habitService.getHabitChecksForPeriod(Datasets.USERNAME, START, end()))
+            .thenReturn(Datasets.habitChecks(habits, START, days));
+        excelExportService = new ExcelExportService(habitService, Stubs.transferMetrics());
+    }
+
+    @Benchmark
+    public void exportExcel() throws Exception {
+        excelExportService.exportHabitChecksToExcel(
+            Datasets.USERNAME, START, end(), OutputStream.nullOutputStream());
+    }
+
+    private LocalDate end() {
+        return START.plusDays(days - 1);
+    }
+}
@@ -0,0 +1,78 @@
+package com.externalobserver.benchmark;
+
+import com.externalobserver.config.JwtAuthenticationFilter;
+import com.externalobserver.config.JwtTokenProvider;
+import com.externalobserver.service.AuthService;
+import io.jsonwebtoken.Claims;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.crypto.password.NoOpPasswordEncoder;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Выпуск JWT при входе, разбор подписи и проход запроса через фильтр аутентификации.
+ * Пароль не хешируется, чтобы BCrypt не заслонял стоимость самого токена.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtBenchmark {
+    private static final String SECRET = "5367566B59703373367639792F423F4528482B4D6251655468576D5A71347437";
+
+    private JwtTokenProvider tokenProvider;
+    private AuthService authService;
+    private JwtAuthenticationFilter filter;
+    private String token;
+
+    @Setup
+    @SuppressWarnings("deprecation")
+    public void setUp() {
+        UserDetailsService users = new InMemoryUserDetailsManager(
+            User.withUsername(Datasets.USERNAME).password("secret").roles("USER").build());
+        tokenProvider = new JwtTokenProvider(SECRET, 86_400_000);
+        authService = new AuthService(users, NoOpPasswordEncoder.getInstance(), tokenProvider);
+        filter = new JwtAuthenticationFilter(users, tokenProvider, 10_000, Duration.ofMinutes(5));
+        token = tokenProvider.generateToken(Datasets.USERNAME);
+    }
+
+    @Benchmark
+    public String issueToken() {
+        return authService.login(Datasets.USERNAME, "secret");
+    }
+
+    @Benchmark
+    public Claims verifyToken() {
+        return tokenProvider.parse(token);
+    }
+
+    // Повторный запрос с тем же токеном: проверка берётся из кэша фильтра
+    @Benchmark
+    public Object filterRequest() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/notes");
+        request.addHeader("Authorization", "Bearer " + token);
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        Object principal = SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+        SecurityContextHolder.clearContext();
+        return principal;
+    }
+}
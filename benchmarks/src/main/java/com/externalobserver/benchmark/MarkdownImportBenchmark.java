@@ -0,0 +1,70 @@
+package com.externalobserver.benchmark;
+
+import com.externalobserver.dto.ImportResult;
+import com.externalobserver.markdown.FrontMatterParser;
+import com.externalobserver.repository.NoteRepository;
+import com.externalobserver.service.FileService;
+import com.externalobserver.service.NoteService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Импорт Markdown-файлов: декодирование, разбор front matter и сборка заметок.
+ * Вставка в MongoDB заменена заглушкой, которая сообщает об успехе всех заметок.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class MarkdownImportBenchmark {
+
+    @Param({"1000", "10000"})
+    public int fileCount;
+
+    @Param({"2000"})
+    public int contentSize;
+
+    private FileService fileService;
+    private MockMultipartFile[] files;
+    private String singleFile;
+
+    @Setup
+    public void setUp() throws IOException {
+        files = Datasets.markdownFiles(fileCount, contentSize);
+        singleFile = new String(files[0].getBytes(), StandardCharsets.UTF_8);
+        // Незастабленный createNotes возвращает пустую карту ошибок
+        fileService = new FileService(
+            Jackson2ObjectMapperBuilder.json().build(),
+            Stubs.stub(NoteService.class),
+            Stubs.stub(NoteRepository.class),
+            Stubs.transferMetrics());
+    }
+
+    @Benchmark
+    public ImportResult importFiles() {
+        return fileService.importMarkdownFiles(files, Datasets.USERNAME);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public FrontMatterParser.Document parseFrontMatter() {
+        return FrontMatterParser.parse(singleFile);
+    }
+}
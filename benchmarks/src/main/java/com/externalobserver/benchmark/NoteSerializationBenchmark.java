@@ -0,0 +1,61 @@
+package com.externalobserver.benchmark;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.externalobserver.model.Note;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson-сериализация списка заметок, как в ответе GET /api/notes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NoteSerializationBenchmark {
+    private static final TypeReference<List<Note>> NOTE_LIST = new TypeReference<>() {};
+
+    @Param({"1000", "10000"})
+    public int noteCount;
+
+    @Param({"2000"})
+    public int contentSize;
+
+    private ObjectMapper objectMapper;
+    private List<Note> notes;
+    private byte[] json;
+
+    @Setup
+    public void setUp() throws Exception {
+        // Те же модули, что Spring Boot регистрирует в ObjectMapper приложения
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        notes = Datasets.notes(noteCount, contentSize);
+        json = objectMapper.writeValueAsBytes(notes);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws Exception {
+        return objectMapper.writeValueAsBytes(notes);
+    }
+
+    @Benchmark
+    public List<Note> deserialize() throws Exception {
+        return objectMapper.readValue(json, NOTE_LIST);
+    }
+}
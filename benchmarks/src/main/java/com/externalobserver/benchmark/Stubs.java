@@ -0,0 +1,22 @@
+package com.externalobserver.benchmark;
+
+import com.externalobserver.metrics.TransferMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.mockito.Mockito;
+
+/**
+ * Заглушки зависимостей сервисов. Mockito в режиме stubOnly не запоминает вызовы,
+ * иначе за миллионы итераций бенчмарка память заканчивается.
+ */
+final class Stubs {
+
+    private Stubs() {}
+
+    static <T> T stub(Class<T> type) {
+        return Mockito.mock(type, Mockito.withSettings().stubOnly());
+    }
+
+    static TransferMetrics transferMetrics() {
+        return new TransferMetrics(new SimpleMeterRegistry());
+    }
+}
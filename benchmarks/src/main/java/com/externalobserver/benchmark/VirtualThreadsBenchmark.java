@@ -0,0 +1,128 @@
+package com.externalobserver.benchmark;
+
+import com.externalobserver.ExternalObserverApplication;
+import com.externalobserver.config.JwtTokenProvider;
+import com.externalobserver.model.Note;
+import com.externalobserver.repository.NoteRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Обработка запросов приложением целиком на пуле платформенных потоков Tomcat
+ * и в режиме spring.threads.virtual.enabled.
+ *
+ * Приложение запускается в процессе бенчмарка на случайном порту, потоки JMH — клиенты,
+ * которые ждут ответа по HTTP: в замер входят очередь Tomcat, фильтр JWT, сервис, хранилище
+ * и сериализация. Запрос — страница кратких описаний заметок, которая не кэшируется и каждый
+ * раз читается из хранилища. По умолчанию это встроенное хранилище (без сетевых задержек);
+ * с {@code -p mongoUri=mongodb://...} — MongoDB с пулом соединений из MongoConfig.
+ * Клиенты и сервер делят процессор, поэтому сравнивать стоит режимы между собой, а не с продом.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Threads(1000)
+@Fork(1)
+public class VirtualThreadsBenchmark {
+    // Единственный пользователь UserDetailsService из SecurityConfig
+    private static final String USERNAME = "admin";
+
+    @Param({"platform", "virtual"})
+    public String mode;
+
+    // Пусто — встроенное хранилище (storage.backend=local)
+    @Param({""})
+    public String mongoUri;
+
+    @Param({"1000"})
+    public int noteCount;
+
+    @Param({"2000"})
+    public int contentSize;
+
+    @Param({"50"})
+    public int pageSize;
+
+    private Path directory;
+    private ConfigurableApplicationContext context;
+    private List<Note> notes;
+    private HttpClient client;
+    private HttpRequest request;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("observer-bench");
+        List<String> args = new ArrayList<>(List.of(
+            "--server.port=0",
+            "--management.server.port=-1",
+            "--spring.threads.virtual.enabled=" + "virtual".equals(mode),
+            "--logging.level.root=WARN",
+            "--logging.level.com.externalobserver=WARN"));
+        if (mongoUri.isBlank()) {
+            args.add("--spring.profiles.active=local");
+            args.add("--storage.local.path=" + directory);
+        } else {
+            args.add("--spring.data.mongodb.uri=" + mongoUri);
+        }
+        context = new SpringApplication(ExternalObserverApplication.class).run(args.toArray(String[]::new));
+
+        // В MongoDB у пользователя могут быть свои заметки: удаляются только добавленные здесь
+        notes = Datasets.notes(noteCount, contentSize);
+        notes.forEach(note -> note.setUsername(USERNAME));
+        context.getBean(NoteRepository.class).saveAll(notes);
+
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        String token = context.getBean(JwtTokenProvider.class).generateToken(USERNAME);
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        request = HttpRequest.newBuilder(URI.create(
+                "http://localhost:" + port + "/api/notes/summaries?limit=" + pageSize))
+            .header("Authorization", "Bearer " + token)
+            .GET()
+            .build();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        client.close();
+        context.getBean(NoteRepository.class).deleteAll(notes);
+        context.close();
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public byte[] request() throws Exception {
+        HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Ответ " + response.statusCode());
+        }
+        return response.body();
+    }
+}
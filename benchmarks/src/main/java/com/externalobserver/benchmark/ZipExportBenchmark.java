@@ -0,0 +1,63 @@
+package com.externalobserver.benchmark;
+
+import com.externalobserver.model.Note;
+import com.externalobserver.repository.NoteRepository;
+import com.externalobserver.service.FileService;
+import com.externalobserver.service.NoteService;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ZIP-экспорт заметок. Курсор хранилища заменён потоком по готовому списку,
+ * архив пишется в пустоту — замеряются форматирование, сжатие и метаданные.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ZipExportBenchmark {
+
+    @Param({"1000", "10000"})
+    public int noteCount;
+
+    @Param({"2000"})
+    public int contentSize;
+
+    private FileService fileService;
+
+    @Setup
+    public void setUp() {
+        List<Note> notes = Datasets.notes(noteCount, contentSize);
+        NoteRepository noteRepository = Stubs.stub(NoteRepository.class);
+        Mockito.when(noteRepository.streamByUsername(ArgumentMatchers.anyString()))
+            .thenAnswer(invocation -> notes.stream());
+        fileService = new FileService(
+            Jackson2ObjectMapperBuilder.json().build(),
+            Stubs.stub(NoteService.class),
+            noteRepository,
+            Stubs.transferMetrics());
+    }
+
+    @Benchmark
+    public void exportZip() throws Exception {
+        fileService.exportNotesAsZip(Datasets.USERNAME, OutputStream.nullOutputStream());
+    }
+}
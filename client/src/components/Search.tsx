@@ -7,8 +7,8 @@ import api from '../services/api';
 interface SearchResult {
   id: string;
   title: string;
-  preview: string;
   path?: string;
+  updated?: string;
 }
 
 export default function Search() {
@@ -39,8 +39,8 @@ export default function Search() {
 
       setIsLoading(true);
       try {
-        const response = await api.get<SearchResult[]>('/search', {
-          params: { q: query }
+        const response = await api.get<SearchResult[]>('/notes/search/suggest', {
+          params: { q: query, limit: 10 }
         });
         setResults(response.data);
       } catch (error) {
@@ -51,7 +51,7 @@ export default function Search() {
       }
     };
 
-    const debounceTimer = setTimeout(searchZettels, 300);
+    const debounceTimer = setTimeout(searchZettels, 100);
     return () => clearTimeout(debounceTimer);
   }, [query]);
 
@@ -99,7 +99,6 @@ export default function Search() {
                   {result.path && (
                     <div className="text-sm text-gray-500">{result.path}</div>
                   )}
-                  <div className="text-sm text-gray-600 mt-1">{result.preview}</div>
                 </li>
               ))}
             </ul>
@@ -1,4 +1,5 @@
 import React, { useEffect, useState } from 'react'
+import axios from 'axios'
 import { useParams, useNavigate } from 'react-router-dom'
 import { ArrowLeftIcon } from '@heroicons/react/24/outline'
 import ZettelForm from '../components/ZettelForm'
@@ -11,6 +12,7 @@ export default function NoteEdit() {
   const [zettel, setZettel] = useState<Zettel | null>(null)
   const [loading, setLoading] = useState(true)
   const [error, setError] = useState<string | null>(null)
+  const [conflict, setConflict] = useState<string | null>(null)
   const [isSubmitting, setIsSubmitting] = useState(false)
 
   useEffect(() => {
@@ -37,12 +39,21 @@ export default function NoteEdit() {
     try {
       setIsSubmitting(true)
       if (id) {
-        await api.put(`/notes/${id}`, data)
+        // Версия, с которой начато редактирование: сервер отклонит запись поверх чужих изменений
+        await api.put(`/notes/${id}`, { ...data, version: zettel?.version ?? 0 })
       } else {
         await api.post('/notes', data)
       }
       navigate(`/notes/${id}`)
     } catch (err) {
+      if (axios.isAxiosError(err) && err.response?.status === 409) {
+        // Правки в форме сохраняются; повторное сохранение перезапишет текущую версию
+        const current = err.response.data as Zettel
+        setZettel(current)
+        setConflict(`Заметка изменена в другом месте (версия ${current.version}). ` +
+          'Сохраните ещё раз, чтобы заменить её своей версией, или отмените редактирование.')
+        return
+      }
       setError('Не удалось сохранить заметку')
       console.error('Error saving zettel:', err)
     } finally {
@@ -90,6 +101,9 @@ export default function NoteEdit() {
           <h1 className="text-2xl font-bold text-gray-900 mb-6">
             {id ? 'Редактирование заметки' : 'Новая заметка'}
           </h1>
+          {conflict && (
+            <div className="mb-6 rounded-md bg-yellow-50 p-4 text-sm text-yellow-800">{conflict}</div>
+          )}
           <ZettelForm
             zettel={zettel || undefined}
             onSubmit={handleSubmit}
@@ -0,0 +1,150 @@
+package com.externalobserver.cache;
+
+import com.externalobserver.metrics.CountingOutputStream;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Кэш чтений сервисов заметок и привычек. Ключ — пользователь, область (какой запрос)
+ * и аргумент запроса. Caffeine вытесняет записи по W-TinyLFU с ограничением по
+ * размеру JSON-представления значений; статистика публикуется как метрики cache.* с cache=observer.read.
+ *
+ * Пишущие методы сервисов сбрасывают только затронутые записи и перебирают при этом только
+ * ключи своего пользователя. Загрузка, начатая до записи,
+ * не попадает в кэш после неё: у каждого пользователя есть счётчик записей, и значение
+ * кладётся, только если счётчик не изменился за время загрузки.
+ *
+ * Закэшированные объекты общие для всех читателей и не должны изменяться.
+ */
+@Component
+public class ReadCache {
+    public enum Region {
+        NOTE_LIST, NOTE, HABIT_LIST, HABIT_CHECKS_DAY, HABIT_CHECKS_PERIOD
+    }
+
+    private record Key(String username, Region region, Object argument) {}
+
+    private static final int OBJECT_OVERHEAD = 64;
+    private static final ObjectMapper MAPPER = JsonMapper.builder().findAndAddModules().build();
+
+    private final Cache<Key, Object> cache;
+    private final Map<String, Long> writeCounts = new ConcurrentHashMap<>();
+    // Ключи записей каждого пользователя со значением, под которым они положены: слушатель удаления
+    // убирает ключ, только если удалено то же значение, а не уже положенное заново
+    private final Map<String, Map<Key, Object>> keysByUser = new ConcurrentHashMap<>();
+
+    public ReadCache(
+            MeterRegistry meterRegistry,
+            @Value("${cache.read.max-bytes:67108864}") long maxBytes,
+            @Value("${cache.read.expire-after-write:10m}") Duration expireAfterWrite) {
+        this.cache = Caffeine.newBuilder()
+            .maximumWeight(maxBytes)
+            .weigher((Key key, Object value) -> (int) Math.min(Integer.MAX_VALUE, weigh(value)))
+            .expireAfterWrite(expireAfterWrite)
+            // Слушатель удаления дёшев и выполняется сразу в вызывающем потоке
+            .executor(Runnable::run)
+            .removalListener((Key key, Object value, RemovalCause cause) -> untrack(key, value))
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "observer.read");
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T get(String username, Region region, Object argument, Supplier<T> loader) {
+        Key key = new Key(username, region, argument);
+        Object cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return (T) cached;
+        }
+
+        long writes = writeCounts.getOrDefault(username, 0L);
+        T value = loader.get();
+        if (value != null) {
+            // Проверка и вставка под блокировкой записи пользователя: invalidate не вклинится между ними
+            writeCounts.compute(username, (user, current) -> {
+                if ((current != null ? current : 0L) == writes) {
+                    // Ключ учитывается до вставки, чтобы вытеснение сразу после неё не оставило его в индексе
+                    keysByUser.computeIfAbsent(username, u -> new ConcurrentHashMap<>()).put(key, value);
+                    cache.put(key, value);
+                }
+                return current;
+            });
+        }
+        return value;
+    }
+
+    public void invalidate(String username, Region region) {
+        invalidateIf(username, region, argument -> true);
+    }
+
+    public void invalidate(String username, Region region, Object argument) {
+        writeCounts.merge(username, 1L, Long::sum);
+        cache.invalidate(new Key(username, region, argument));
+    }
+
+    public void invalidateIf(String username, Region region, Predicate<Object> argument) {
+        writeCounts.merge(username, 1L, Long::sum);
+        Map<Key, Object> keys = keysByUser.get(username);
+        if (keys == null) {
+            return;
+        }
+        List<Key> matching = keys.keySet().stream()
+            .filter(key -> key.region() == region && argument.test(key.argument()))
+            .toList();
+        cache.invalidateAll(matching);
+    }
+
+    private void untrack(Key key, Object value) {
+        if (key == null) {
+            return;
+        }
+        keysByUser.computeIfPresent(key.username(), (user, keys) -> {
+            keys.computeIfPresent(key, (k, current) -> current == value ? null : current);
+            return keys.isEmpty() ? null : keys;
+        });
+    }
+
+    // Размер JSON-представления в байтах: учитывает все поля модели, включая добавленные позже,
+    // без обхода полей вручную. Строки в куче занимают примерно столько же, сколько в UTF-8
+    static long weigh(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        CountingOutputStream counter = new CountingOutputStream(OutputStream.nullOutputStream());
+        try {
+            MAPPER.writeValue(counter, value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return OBJECT_OVERHEAD + counter.getCount();
+    }
+
+    // Для тестов и диагностики
+    long estimatedSize() {
+        cache.cleanUp();
+        return cache.estimatedSize();
+    }
+
+    int trackedKeys(String username) {
+        cache.cleanUp();
+        Map<Key, Object> keys = keysByUser.get(username);
+        return keys != null ? keys.size() : 0;
+    }
+}
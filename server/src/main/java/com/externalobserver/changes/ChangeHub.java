@@ -0,0 +1,167 @@
+package com.externalobserver.changes;
+
+import com.externalobserver.dto.ChangeEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Раздаёт изменения подписчикам пользователя. У каждого подписчика своя очередь,
+ * которую разбирает отдельная задача, поэтому медленный клиент не задерживает поток
+ * изменений и других подписчиков. Подписчик, накопивший MAX_PENDING событий, отключается —
+ * клиент переподключится и перечитает данные.
+ */
+@Slf4j
+@Component
+public class ChangeHub {
+    static final int MAX_PENDING = 1000;
+
+    /**
+     * Получатель событий. Методы вызываются последовательно, не из потока изменений.
+     */
+    public interface Listener {
+        void onChange(ChangeEvent event) throws Exception;
+
+        default void onHeartbeat() throws Exception {
+        }
+
+        // Подписка закрыта сервером: переполнение, ошибка отправки или остановка приложения
+        default void onClose() {
+        }
+    }
+
+    private final Map<String, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public Runnable subscribe(String username, Listener listener) {
+        return subscribe(username, listener, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Подписка, если у пользователя меньше maxPerUser открытых подписок; иначе null.
+     * Возвращает отписку.
+     */
+    public Runnable subscribe(String username, Listener listener, int maxPerUser) {
+        Subscriber subscriber = new Subscriber(username, listener);
+        AtomicBoolean added = new AtomicBoolean();
+        subscribers.compute(username, (user, userSubscribers) -> {
+            Set<Subscriber> result = userSubscribers != null ? userSubscribers : ConcurrentHashMap.newKeySet();
+            if (result.size() < maxPerUser) {
+                added.set(result.add(subscriber));
+            }
+            return result.isEmpty() ? null : result;
+        });
+        if (!added.get()) {
+            return null;
+        }
+        return () -> {
+            subscriber.closed.set(true);
+            remove(subscriber);
+        };
+    }
+
+    public void publish(String username, ChangeEvent event) {
+        Set<Subscriber> userSubscribers = subscribers.get(username);
+        if (userSubscribers != null) {
+            userSubscribers.forEach(subscriber -> subscriber.enqueue(event));
+        }
+    }
+
+    // Пустое событие раз в несколько секунд выявляет закрытые соединения
+    public void heartbeat() {
+        subscribers.values().forEach(userSubscribers -> userSubscribers.forEach(subscriber -> subscriber.enqueue(null)));
+    }
+
+    public boolean hasSubscribers() {
+        return !subscribers.isEmpty();
+    }
+
+    public int subscriberCount() {
+        return subscribers.values().stream().mapToInt(Set::size).sum();
+    }
+
+    @PreDestroy
+    public void closeAll() {
+        subscribers.values().forEach(userSubscribers -> userSubscribers.forEach(this::close));
+        executor.shutdown();
+    }
+
+    private void remove(Subscriber subscriber) {
+        subscribers.computeIfPresent(subscriber.username, (user, userSubscribers) -> {
+            userSubscribers.remove(subscriber);
+            return userSubscribers.isEmpty() ? null : userSubscribers;
+        });
+    }
+
+    private void close(Subscriber subscriber) {
+        if (subscriber.closed.compareAndSet(false, true)) {
+            remove(subscriber);
+            subscriber.listener.onClose();
+        }
+    }
+
+    private class Subscriber {
+        private static final Object HEARTBEAT = new Object();
+
+        private final String username;
+        private final Listener listener;
+        private final Queue<Object> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger pending = new AtomicInteger();
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        Subscriber(String username, Listener listener) {
+            this.username = username;
+            this.listener = listener;
+        }
+
+        void enqueue(ChangeEvent event) {
+            if (closed.get()) {
+                return;
+            }
+            if (pending.incrementAndGet() > MAX_PENDING) {
+                log.warn("Подписчик {} не успевает получать изменения и отключён", username);
+                close(this);
+                return;
+            }
+            queue.add(event != null ? event : HEARTBEAT);
+            if (draining.compareAndSet(false, true)) {
+                executor.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                Object item;
+                while (!closed.get() && (item = queue.poll()) != null) {
+                    pending.decrementAndGet();
+                    if (item == HEARTBEAT) {
+                        listener.onHeartbeat();
+                    } else {
+                        listener.onChange((ChangeEvent) item);
+                    }
+                }
+            } catch (Exception e) {
+                log.debug("Подписчик {} отключился: {}", username, e.getMessage());
+                close(this);
+                return;
+            } finally {
+                draining.set(false);
+            }
+            // Событие могло прийти между последним poll и сбросом флага
+            if (!queue.isEmpty() && !closed.get() && draining.compareAndSet(false, true)) {
+                executor.execute(this::drain);
+            }
+        }
+    }
+}
@@ -0,0 +1,455 @@
+package com.externalobserver.changes;
+
+import com.externalobserver.dto.ChangeEvent;
+import com.externalobserver.model.Habit;
+import com.externalobserver.model.HabitCheck;
+import com.externalobserver.model.HabitCheckYear;
+import com.externalobserver.model.Note;
+import com.externalobserver.repository.NoteCompression;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoException;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import com.mongodb.client.model.changestream.UpdateDescription;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.DocumentCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Один общий поток изменений MongoDB на коллекции notes, habits, habit_checks и habit_check_years.
+ * Изменения раздаются подписчикам владельца через {@link ChangeHub}.
+ *
+ * Потоки изменений есть только у replica set, поэтому наблюдение включается свойством
+ * {@code changes.stream.enabled}. После сбоя поток открывается заново с последнего
+ * resume token. С локальным хранилищем (storage.backend=local) наблюдателя нет.
+ *
+ * Событие update строится из updateDescription, без чтения документа: владелец берётся
+ * из кэша, заполняемого событиями insert и replace, а при промахе — одним запросом по _id
+ * с проекцией на username. Удаления приходят вставками в tombstones, где владелец уже записан,
+ * поэтому pre-images не нужны: MongoDB сохранял бы их на каждое изменение коллекции.
+ *
+ * Годы битовых карт (habits.checks.storage=bitmap) раздаются как изменения habit_checks по дням.
+ * Обновление приносит только новое слово bits.N, поэтому изменённые биты находятся сравнением
+ * с прежним словом из кэша, а при промахе передаётся состояние всех дней слова.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "storage.backend", havingValue = "mongo", matchIfMissing = true)
+public class ChangeStreamWatcher implements SmartLifecycle {
+    private static final Map<String, Class<?>> COLLECTIONS = Map.of(
+        "notes", Note.class,
+        "habits", Habit.class,
+        "habit_checks", HabitCheck.class);
+    private static final String HABIT_CHECK_YEARS = "habit_check_years";
+    private static final String HABIT_CHECKS = "habit_checks";
+    private static final String TOMBSTONES = "tombstones";
+    private static final int WORDS_PER_YEAR = 6;
+    private static final List<String> OPERATIONS = List.of("insert", "update", "replace");
+    private static final int OWNER_CACHE_SIZE = 100_000;
+    private static final DocumentCodec CODEC = new DocumentCodec();
+    private static final long MAX_BACKOFF_MILLIS = 60_000;
+    // Код ChangeStreamHistoryLost: resume token вытеснен из oplog
+    private static final int HISTORY_LOST = 286;
+    private static final int NAMESPACE_NOT_FOUND = 26;
+
+    private final MongoTemplate mongoTemplate;
+    private final ChangeHub changeHub;
+    private final NoteCompression noteCompression;
+    private final boolean enabled;
+    private final Duration heartbeat;
+    // "коллекция:id" → username; владелец документа не меняется
+    private final Cache<String, String> owners = Caffeine.newBuilder().maximumSize(OWNER_CACHE_SIZE).build();
+    // id года → известные слова битовой карты; отсутствующее слово неизвестно. Меняется только потоком наблюдателя
+    private final Cache<String, Map<String, Long>> words = Caffeine.newBuilder().maximumSize(OWNER_CACHE_SIZE).build();
+
+    private volatile boolean running;
+    private volatile boolean watching;
+    private Thread thread;
+
+    public ChangeStreamWatcher(
+            MongoTemplate mongoTemplate,
+            ChangeHub changeHub,
+            NoteCompression noteCompression,
+            @Value("${changes.stream.enabled:false}") boolean enabled,
+            @Value("${changes.stream.heartbeat:15s}") Duration heartbeat) {
+        this.mongoTemplate = mongoTemplate;
+        this.changeHub = changeHub;
+        this.noteCompression = noteCompression;
+        this.enabled = enabled;
+        this.heartbeat = heartbeat;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void start() {
+        if (!enabled || running) {
+            return;
+        }
+        running = true;
+        thread = Thread.ofPlatform().name("change-stream").daemon().start(this::run);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Поток открыт и получает изменения
+    boolean isWatching() {
+        return watching;
+    }
+
+    private void run() {
+        disablePreImages();
+        BsonDocument resumeToken = null;
+        long backoff = 1000;
+        while (running) {
+            try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = open(resumeToken)) {
+                watching = true;
+                backoff = 1000;
+                long nextHeartbeat = System.nanoTime() + heartbeat.toNanos();
+                while (running) {
+                    ChangeStreamDocument<Document> change = cursor.tryNext();
+                    if (change != null) {
+                        dispatch(change);
+                    }
+                    resumeToken = cursor.getResumeToken();
+                    if (System.nanoTime() >= nextHeartbeat) {
+                        changeHub.heartbeat();
+                        nextHeartbeat = System.nanoTime() + heartbeat.toNanos();
+                    }
+                }
+            } catch (RuntimeException e) {
+                watching = false;
+                if (!running) {
+                    break;
+                }
+                if (e instanceof MongoCommandException command && command.getErrorCode() == HISTORY_LOST) {
+                    log.warn("История потока изменений потеряна, наблюдение продолжается с текущего момента");
+                    resumeToken = null;
+                    // Пропущенные обновления могли изменить слова битовых карт
+                    words.invalidateAll();
+                } else {
+                    log.warn("Поток изменений прерван, повтор через {} мс: {}", backoff, e.getMessage());
+                }
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException interrupted) {
+                    break;
+                }
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+            }
+        }
+        watching = false;
+    }
+
+    private MongoChangeStreamCursor<ChangeStreamDocument<Document>> open(BsonDocument resumeToken) {
+        ChangeStreamIterable<Document> stream = mongoTemplate.getDb()
+            .watch(List.of(Aggregates.match(Filters.or(
+                Filters.and(Filters.in("ns.coll", watched()), Filters.in("operationType", OPERATIONS)),
+                Filters.and(Filters.eq("ns.coll", TOMBSTONES), Filters.eq("operationType", "insert"))))))
+            .maxAwaitTime(1, TimeUnit.SECONDS);
+        if (resumeToken != null) {
+            stream = stream.resumeAfter(resumeToken);
+        }
+        return stream.cursor();
+    }
+
+    // Ошибка разбора одного события не должна останавливать поток и повторять событие бесконечно
+    private void dispatch(ChangeStreamDocument<Document> change) {
+        try {
+            publish(change);
+        } catch (RuntimeException e) {
+            log.error("Не удалось обработать изменение {}", change.getDocumentKey(), e);
+        }
+    }
+
+    private void publish(ChangeStreamDocument<Document> change) {
+        String collection = change.getNamespace().getCollectionName();
+        if (TOMBSTONES.equals(collection)) {
+            publishDeletion(change.getFullDocument());
+            return;
+        }
+        if (HABIT_CHECK_YEARS.equals(collection)) {
+            publishYear(change);
+            return;
+        }
+
+        // У insert и replace документ есть в событии, у update — только изменённые поля
+        String id = idOf(change.getDocumentKey());
+        Document after = change.getFullDocument();
+        if (after != null && after.getString("username") != null) {
+            owners.put(collection + ":" + id, after.getString("username"));
+        }
+        if (!changeHub.hasSubscribers()) {
+            return;
+        }
+        String username = after != null ? after.getString("username") : owner(collection, change.getDocumentKey());
+        if (username == null) {
+            log.debug("Изменение в {} без владельца пропущено", collection);
+            return;
+        }
+
+        OperationType operation = change.getOperationType();
+        Document document = after != null ? after : updatedValues(change.getUpdateDescription());
+        changeHub.publish(username, new ChangeEvent(
+            collection, operation.getValue(), id, changedFields(change), toEntity(collection, document)));
+    }
+
+    private void publishDeletion(Document tombstone) {
+        String collection = tombstone.getString("collection");
+        String id = tombstone.getString("documentId");
+        owners.invalidate(collection + ":" + id);
+        changeHub.publish(tombstone.getString("username"), new ChangeEvent(collection, "delete", id, null, null));
+    }
+
+    // Вставка года — отметки всех его дней, обновление — отметки дней с изменёнными битами или комментариями
+    private void publishYear(ChangeStreamDocument<Document> change) {
+        String id = idOf(change.getDocumentKey());
+        Document after = change.getFullDocument();
+        if (after != null) {
+            HabitCheckYear year = mongoTemplate.getConverter().read(HabitCheckYear.class, after);
+            Map<String, Long> known = new HashMap<>();
+            for (int word = 0; word < WORDS_PER_YEAR; word++) {
+                Long bits = year.getBits() != null ? year.getBits().get(String.valueOf(word)) : null;
+                known.put(String.valueOf(word), bits != null ? bits : 0L);
+            }
+            words.put(id, known);
+            if (changeHub.hasSubscribers()) {
+                LocalDate first = LocalDate.ofYearDay(year.getYear(), 1);
+                for (HabitCheck check : year.toChecks(first, first.plusYears(1).minusDays(1))) {
+                    changeHub.publish(year.getUsername(), new ChangeEvent(
+                        HABIT_CHECKS, change.getOperationType().getValue(), check.getId(), null, check));
+                }
+            }
+            return;
+        }
+
+        UpdateDescription description = change.getUpdateDescription();
+        if (description == null) {
+            return;
+        }
+        // _id года — HabitCheckYear.id(username, habitId, year); id привычки и год не содержат ':'
+        int yearAt = id.lastIndexOf(':');
+        int habitAt = id.lastIndexOf(':', yearAt - 1);
+        String username = id.substring(0, habitAt);
+        String habitId = id.substring(habitAt + 1, yearAt);
+        int year = Integer.parseInt(id.substring(yearAt + 1));
+
+        Map<Integer, Boolean> completed = completedChanges(id, year, description);
+        Map<Integer, String> comments = commentChanges(description);
+        if (!changeHub.hasSubscribers()) {
+            return;
+        }
+        HabitCheckYear values = mongoTemplate.getConverter().read(HabitCheckYear.class, updatedValues(description));
+        Set<Integer> days = new TreeSet<>(completed.keySet());
+        days.addAll(comments.keySet());
+        for (int day : days) {
+            HabitCheck check = new HabitCheck();
+            LocalDate date = LocalDate.ofYearDay(year, day);
+            check.setId(habitId + ":" + date);
+            check.setHabitId(habitId);
+            check.setUsername(username);
+            check.setDate(date);
+            check.setUpdatedAt(values.getUpdatedAt());
+            List<String> fields = new ArrayList<>();
+            if (completed.containsKey(day)) {
+                check.setCompleted(completed.get(day));
+                fields.add("completed");
+            }
+            if (comments.containsKey(day)) {
+                check.setComment(comments.get(day));
+                fields.add("comment");
+            }
+            if (values.getUpdatedAt() != null) {
+                fields.add("updatedAt");
+            }
+            changeHub.publish(username, new ChangeEvent(HABIT_CHECKS, "update", check.getId(), fields, check));
+        }
+    }
+
+    // День года → выполнена ли отметка, для дней, чьи биты изменились. Без прежнего слова изменённый бит
+    // неизвестен, и передаётся состояние всех дней слова; дальше слово известно
+    private Map<Integer, Boolean> completedChanges(String id, int year, UpdateDescription description) {
+        Map<String, Long> updated = new TreeMap<>();
+        if (description.getUpdatedFields() != null) {
+            description.getUpdatedFields().forEach((field, value) -> {
+                if (field.equals("bits")) {
+                    value.asDocument().forEach((word, bits) -> updated.put(word, bits.asNumber().longValue()));
+                } else if (field.startsWith("bits.")) {
+                    updated.put(field.substring("bits.".length()), value.asNumber().longValue());
+                }
+            });
+        }
+
+        Map<String, Long> known = words.get(id, key -> new HashMap<>());
+        Map<Integer, Boolean> completed = new TreeMap<>();
+        int length = Year.of(year).length();
+        updated.forEach((word, bits) -> {
+            Long before = known.put(word, bits);
+            long changed = before != null ? bits ^ before : -1L;
+            int firstDay = Integer.parseInt(word) * 64 + 1;
+            for (int bit = 0; bit < 64 && firstDay + bit <= length; bit++) {
+                if ((changed >>> bit & 1) != 0) {
+                    completed.put(firstDay + bit, (bits >>> bit & 1) != 0);
+                }
+            }
+        });
+        return completed;
+    }
+
+    // День года → новый комментарий; удалённый комментарий — null
+    private static Map<Integer, String> commentChanges(UpdateDescription description) {
+        Map<Integer, String> comments = new TreeMap<>();
+        if (description.getUpdatedFields() != null) {
+            description.getUpdatedFields().forEach((field, value) -> {
+                if (field.equals("comments")) {
+                    value.asDocument().forEach((day, comment) -> comments.put(Integer.parseInt(day), comment.asString().getValue()));
+                } else if (field.startsWith("comments.")) {
+                    comments.put(Integer.parseInt(field.substring("comments.".length())), value.asString().getValue());
+                }
+            });
+        }
+        if (description.getRemovedFields() != null) {
+            for (String field : description.getRemovedFields()) {
+                if (field.startsWith("comments.")) {
+                    comments.put(Integer.parseInt(field.substring("comments.".length())), null);
+                }
+            }
+        }
+        return comments;
+    }
+
+    private String owner(String collection, BsonDocument documentKey) {
+        BsonValue id = documentKey.get("_id");
+        return owners.get(collection + ":" + idOf(documentKey), key -> {
+            Document found = mongoTemplate.getDb().getCollection(collection)
+                .find(Filters.eq("_id", id))
+                .projection(Projections.include("username"))
+                .first();
+            return found != null ? found.getString("username") : null;
+        });
+    }
+
+    // Новые значения полей верхнего уровня; вложенные правки (tags.0) видны только в changedFields
+    private static Document updatedValues(UpdateDescription description) {
+        BsonDocument values = new BsonDocument();
+        if (description != null && description.getUpdatedFields() != null) {
+            description.getUpdatedFields().forEach((field, value) -> {
+                if (field.indexOf('.') < 0) {
+                    values.put(field, value);
+                }
+            });
+        }
+        return CODEC.decode(new BsonDocumentReader(values), DecoderContext.builder().build());
+    }
+
+    private Object toEntity(String collection, Document document) {
+        if (Note.class == COLLECTIONS.get(collection)) {
+            noteCompression.decompress(document);
+            document.remove(NoteCompression.PREVIEW);
+        }
+        return mongoTemplate.getConverter().read(COLLECTIONS.get(collection), document);
+    }
+
+    // Поля верхнего уровня: правка bits.3 или tags.0 меняет поле bits или tags
+    private static List<String> changedFields(ChangeStreamDocument<Document> change) {
+        if (change.getUpdateDescription() == null) {
+            return null;
+        }
+        Set<String> fields = new LinkedHashSet<>();
+        if (change.getUpdateDescription().getUpdatedFields() != null) {
+            change.getUpdateDescription().getUpdatedFields().keySet().forEach(field -> fields.add(topLevel(field)));
+        }
+        if (change.getUpdateDescription().getRemovedFields() != null) {
+            change.getUpdateDescription().getRemovedFields().forEach(field -> fields.add(topLevel(field)));
+        }
+        fields.remove(NoteCompression.PREVIEW);
+        return new ArrayList<>(fields);
+    }
+
+    private static String topLevel(String field) {
+        int dot = field.indexOf('.');
+        return dot < 0 ? field : field.substring(0, dot);
+    }
+
+    private static String idOf(BsonDocument documentKey) {
+        BsonValue id = documentKey != null ? documentKey.get("_id") : null;
+        if (id == null) {
+            return null;
+        }
+        if (id.isObjectId()) {
+            return id.asObjectId().getValue().toHexString();
+        }
+        return id.isString() ? id.asString().getValue() : id.toString();
+    }
+
+    private static Set<String> watched() {
+        Set<String> collections = new LinkedHashSet<>(COLLECTIONS.keySet());
+        collections.add(HABIT_CHECK_YEARS);
+        return collections;
+    }
+
+    // Прежние версии включали pre-images; без отключения MongoDB продолжал бы сохранять их на каждое изменение
+    private void disablePreImages() {
+        MongoDatabase database = mongoTemplate.getDb();
+        for (String collection : watched()) {
+            try {
+                database.runCommand(new Document("collMod", collection)
+                    .append("changeStreamPreAndPostImages", new Document("enabled", false)));
+            } catch (MongoCommandException e) {
+                if (e.getErrorCode() != NAMESPACE_NOT_FOUND) {
+                    log.warn("Не удалось выключить pre-images для {}: {}", collection, e.getErrorMessage());
+                }
+            } catch (MongoException e) {
+                log.warn("Не удалось выключить pre-images для {}: {}", collection, e.getMessage());
+            }
+        }
+    }
+}
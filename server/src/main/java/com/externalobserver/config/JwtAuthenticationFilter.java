@@ -1,35 +1,90 @@
 package com.externalobserver.config;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
 import io.jsonwebtoken.Claims;
-import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.JwtException;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
-import javax.crypto.SecretKey;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Base64;
 
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
-    @Value("${jwt.secret}")
-    private String jwtSecret;
-
     private final UserDetailsService userDetailsService;
+    private final JwtTokenProvider jwtTokenProvider;
+    private final WebAuthenticationDetailsSource detailsSource = new WebAuthenticationDetailsSource();
+
+    // Уже проверенные токены: ключ — SHA-256 токена, запись живёт до истечения самого токена,
+    // но не дольше jwt.cache.ttl — за это время отключение или удаление пользователя
+    // доходит до уже выданных токенов
+    private final Cache<String, VerifiedToken> verifiedTokens;
+    private final Clock clock;
+
+    private record VerifiedToken(UserDetails userDetails, long expiresAtMillis) {}
+
+    @Autowired
+    public JwtAuthenticationFilter(
+            UserDetailsService userDetailsService,
+            JwtTokenProvider jwtTokenProvider,
+            @Value("${jwt.cache.max-size:10000}") long cacheMaxSize,
+            @Value("${jwt.cache.ttl:5m}") Duration cacheTtl) {
+        this(userDetailsService, jwtTokenProvider, cacheMaxSize, cacheTtl, Clock.systemUTC(), Ticker.systemTicker());
+    }
 
-    public JwtAuthenticationFilter(UserDetailsService userDetailsService) {
+    JwtAuthenticationFilter(
+            UserDetailsService userDetailsService,
+            JwtTokenProvider jwtTokenProvider,
+            long cacheMaxSize,
+            Duration cacheTtl,
+            Clock clock,
+            Ticker ticker) {
         this.userDetailsService = userDetailsService;
+        this.jwtTokenProvider = jwtTokenProvider;
+        this.clock = clock;
+        long ttlNanos = cacheTtl.toNanos();
+        this.verifiedTokens = Caffeine.newBuilder()
+            .maximumSize(cacheMaxSize)
+            .ticker(ticker)
+            .expireAfter(new Expiry<String, VerifiedToken>() {
+                @Override
+                public long expireAfterCreate(String key, VerifiedToken token, long currentTime) {
+                    long millisLeft = token.expiresAtMillis() - clock.millis();
+                    return Math.min(ttlNanos, Math.max(0, millisLeft) * 1_000_000);
+                }
+
+                @Override
+                public long expireAfterUpdate(String key, VerifiedToken token, long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+
+                @Override
+                public long expireAfterRead(String key, VerifiedToken token, long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+            })
+            .build();
     }
 
     @Override
@@ -38,15 +93,16 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         try {
             String jwt = getJwtFromRequest(request);
 
-            if (jwt != null && validateToken(jwt)) {
-                String username = getUsernameFromJWT(jwt);
-                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-                
-                UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
-                    userDetails, null, userDetails.getAuthorities());
-                authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+            if (jwt != null) {
+                VerifiedToken token = verify(jwt);
+                if (token != null) {
+                    UserDetails userDetails = token.userDetails();
+                    UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
+                        userDetails, null, userDetails.getAuthorities());
+                    authentication.setDetails(detailsSource.buildDetails(request));
 
-                SecurityContextHolder.getContext().setAuthentication(authentication);
+                    SecurityContextHolder.getContext().setAuthentication(authentication);
+                }
             }
         } catch (Exception ex) {
             logger.error("Could not set user authentication in security context", ex);
@@ -63,28 +119,44 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         return null;
     }
 
-    private boolean validateToken(String jwt) {
+    private VerifiedToken verify(String jwt) {
+        String key = hash(jwt);
+        VerifiedToken cached = verifiedTokens.getIfPresent(key);
+        if (cached != null && cached.expiresAtMillis() > clock.millis()) {
+            return cached;
+        }
+
+        Claims claims;
         try {
-            SecretKey key = Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
-            Jwts.parserBuilder()
-                .setSigningKey(key)
-                .build()
-                .parseClaimsJws(jwt);
-            return true;
-        } catch (Exception ex) {
-            logger.error("JWT validation failed", ex);
-            return false;
+            claims = jwtTokenProvider.parse(jwt);
+        } catch (JwtException | IllegalArgumentException ex) {
+            logger.warn("JWT validation failed: " + ex.getMessage());
+            return null;
         }
-    }
 
-    private String getUsernameFromJWT(String token) {
-        SecretKey key = Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
-        Claims claims = Jwts.parserBuilder()
-                .setSigningKey(key)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        UserDetails userDetails;
+        try {
+            userDetails = userDetailsService.loadUserByUsername(claims.getSubject());
+        } catch (UsernameNotFoundException ex) {
+            logger.warn("JWT user not found: " + claims.getSubject());
+            return null;
+        }
+        if (!userDetails.isEnabled() || !userDetails.isAccountNonLocked()) {
+            logger.warn("JWT user is disabled or locked: " + claims.getSubject());
+            return null;
+        }
+        long expiresAt = claims.getExpiration() != null ? claims.getExpiration().getTime() : Long.MAX_VALUE;
+        VerifiedToken token = new VerifiedToken(userDetails, expiresAt);
+        verifiedTokens.put(key, token);
+        return token;
+    }
 
-        return claims.getSubject();
+    private static String hash(String jwt) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(jwt.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,64 @@
+package com.externalobserver.config;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.util.Date;
+
+/**
+ * Выпуск и проверка JWT. Ключ HMAC и парсер создаются один раз при старте,
+ * а не на каждый запрос.
+ */
+@Component
+public class JwtTokenProvider {
+    private final SecretKey key;
+    private final JwtParser parser;
+    private final long expiration;
+    private final Clock clock;
+
+    @Autowired
+    public JwtTokenProvider(
+            @Value("${jwt.secret}") String secret,
+            @Value("${jwt.expiration}") long expiration) {
+        this(secret, expiration, Clock.systemUTC());
+    }
+
+    // Часы подменяются в тестах, чтобы проверять истечение токена без ожидания
+    JwtTokenProvider(String secret, long expiration, Clock clock) {
+        this.key = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+        this.parser = Jwts.parserBuilder()
+            .setSigningKey(key)
+            .setClock(() -> new Date(clock.millis()))
+            .build();
+        this.expiration = expiration;
+        this.clock = clock;
+    }
+
+    public String generateToken(String username) {
+        Date now = new Date(clock.millis());
+        Date expiryDate = new Date(now.getTime() + expiration);
+
+        return Jwts.builder()
+                .setSubject(username)
+                .setIssuedAt(now)
+                .setExpiration(expiryDate)
+                .signWith(key)
+                .compact();
+    }
+
+    /**
+     * Проверяет подпись и срок действия и возвращает claims за один разбор.
+     * Бросает {@link io.jsonwebtoken.JwtException}, если токен недействителен.
+     */
+    public Claims parse(String token) {
+        return parser.parseClaimsJws(token).getBody();
+    }
+}
@@ -0,0 +1,58 @@
+package com.externalobserver.config;
+
+import com.externalobserver.storage.LocalStorage;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collections;
+
+/**
+ * Локальный режим без MongoDB (профиль local): репозитории из пакета storage работают
+ * со встроенным журналом. Конвертер тот же, что у MongoTemplate, поэтому документы
+ * сохраняются в том же BSON-представлении.
+ */
+@Configuration
+@ConditionalOnProperty(name = "storage.backend", havingValue = "local")
+public class LocalStorageConfig {
+
+    @Bean(destroyMethod = "close")
+    public LocalStorage localStorage(
+            MeterRegistry meterRegistry,
+            @Value("${storage.local.path}") Path path,
+            @Value("${storage.local.segment-size:16MB}") DataSize segmentSize,
+            @Value("${storage.local.fsync:false}") boolean fsync,
+            @Value("${storage.local.compaction.interval:1m}") Duration compactionInterval,
+            @Value("${storage.local.compaction.garbage-ratio:0.5}") double garbageRatio) {
+        return new LocalStorage(path, Math.toIntExact(segmentSize.toBytes()), fsync, compactionInterval, garbageRatio,
+            meterRegistry);
+    }
+
+    @Bean
+    public MongoCustomConversions mongoCustomConversions() {
+        return new MongoCustomConversions(Collections.emptyList());
+    }
+
+    @Bean
+    public MongoMappingContext mongoMappingContext(MongoCustomConversions conversions) {
+        MongoMappingContext context = new MongoMappingContext();
+        context.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        return context;
+    }
+
+    @Bean
+    public MappingMongoConverter mappingMongoConverter(MongoMappingContext context, MongoCustomConversions conversions) {
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, context);
+        converter.setCustomConversions(conversions);
+        return converter;
+    }
+}
@@ -5,36 +5,66 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
 import org.springframework.data.mongodb.repository.config.EnableMongoRepositories;
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoClients;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
 import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
 import org.springframework.data.mongodb.core.convert.DefaultDbRefResolver;
 import org.springframework.data.mongodb.MongoDatabaseFactory;
 import org.springframework.data.mongodb.core.SimpleMongoClientDatabaseFactory;
+import java.time.Duration;
 import java.util.Collections;
+import java.util.concurrent.TimeUnit;
 
+// С storage.backend=local репозитории и MongoTemplate не создаются (см. LocalStorageConfig)
 @Configuration
+@ConditionalOnProperty(name = "storage.backend", havingValue = "mongo", matchIfMissing = true)
 @EnableMongoRepositories(basePackages = "com.externalobserver.repository")
 public class MongoConfig {
 
     @Value("${spring.data.mongodb.uri}")
     private String mongoUri;
 
+    // Кастомайзеры Spring Boot подключают метрики команд и пула соединений драйвера
     @Bean
-    public MongoClient mongoClient() {
-        return MongoClients.create(mongoUri);
+    public MongoClient mongoClient(ObjectProvider<MongoClientSettingsBuilderCustomizer> customizers) {
+        MongoClientSettings.Builder settings = MongoClientSettings.builder()
+                .applyConnectionString(new ConnectionString(mongoUri));
+        customizers.orderedStream().forEach(customizer -> customizer.customize(settings));
+        return MongoClients.create(settings.build());
     }
 
+    // На платформенных потоках одновременно к MongoDB обращаются не больше потоков Tomcat и пула
+    // асинхронных задач, и пул такого размера не заставляет их ждать соединения. С виртуальными
+    // потоками пул — единственный предел параллельных запросов к базе, поэтому его размер задаётся
+    // явно, а ожидание соединения ограничено по времени
     @Bean
-    public MongoDatabaseFactory mongoDatabaseFactory() {
-        return new SimpleMongoClientDatabaseFactory(mongoClient(), "external-observer");
+    public MongoClientSettingsBuilderCustomizer connectionPoolCustomizer(
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+            @Value("${server.tomcat.threads.max:200}") int requestThreads,
+            @Value("${spring.task.execution.pool.core-size:8}") int taskThreads,
+            @Value("${mongo.pool.virtual-max-size:256}") int virtualMaxSize,
+            @Value("${mongo.pool.max-wait:5s}") Duration maxWait) {
+        int maxSize = virtualThreads ? virtualMaxSize : requestThreads + taskThreads;
+        return settings -> settings.applyToConnectionPoolSettings(pool -> pool
+                .maxSize(maxSize)
+                .maxWaitTime(maxWait.toMillis(), TimeUnit.MILLISECONDS));
     }
 
     @Bean
-    public MongoTemplate mongoTemplate() {
-        return new MongoTemplate(mongoDatabaseFactory());
+    public MongoDatabaseFactory mongoDatabaseFactory(MongoClient mongoClient) {
+        return new SimpleMongoClientDatabaseFactory(mongoClient, "external-observer");
+    }
+
+    @Bean
+    public MongoTemplate mongoTemplate(MongoDatabaseFactory mongoDatabaseFactory, MappingMongoConverter mappingMongoConverter) {
+        return new MongoTemplate(mongoDatabaseFactory, mappingMongoConverter);
     }
 
     @Bean
@@ -44,10 +74,11 @@ public class MongoConfig {
 
     @Bean
     public MappingMongoConverter mappingMongoConverter(
+            MongoDatabaseFactory mongoDatabaseFactory,
             MongoMappingContext context,
             MongoCustomConversions conversions) {
         MappingMongoConverter converter = new MappingMongoConverter(
-                new DefaultDbRefResolver(mongoDatabaseFactory()),
+                new DefaultDbRefResolver(mongoDatabaseFactory),
                 context);
         converter.setCustomConversions(conversions);
         return converter;
@@ -0,0 +1,80 @@
+package com.externalobserver.controller;
+
+import com.externalobserver.changes.ChangeHub;
+import com.externalobserver.changes.ChangeStreamWatcher;
+import com.externalobserver.dto.ChangeEvent;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+
+@RestController
+@RequestMapping("/api/changes")
+@RequiredArgsConstructor
+@Tag(name = "Changes", description = "API потока изменений заметок и привычек")
+public class ChangeController {
+    private final ChangeHub changeHub;
+    private final ObjectProvider<ChangeStreamWatcher> changeStreamWatcher;
+
+    @Value("${changes.sse.timeout:30m}")
+    private Duration timeout;
+
+    @Value("${changes.sse.max-per-user:5}")
+    private int maxPerUser;
+
+    @Operation(summary = "Подписаться на изменения",
+            description = "Server-Sent Events: событие на каждое создание, изменение и удаление заметки, "
+                    + "привычки или отметки пользователя, в том числе сделанное с другого устройства")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Поток событий открыт"),
+        @ApiResponse(responseCode = "401", description = "Не авторизован"),
+        @ApiResponse(responseCode = "429", description = "У пользователя уже открыто максимальное число потоков"),
+        @ApiResponse(responseCode = "503", description = "Поток изменений выключен")
+    })
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> subscribe(@AuthenticationPrincipal UserDetails userDetails) {
+        ChangeStreamWatcher watcher = changeStreamWatcher.getIfAvailable();
+        if (watcher == null || !watcher.isEnabled()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        Runnable unsubscribe = changeHub.subscribe(userDetails.getUsername(), new ChangeHub.Listener() {
+            @Override
+            public void onChange(ChangeEvent event) throws Exception {
+                emitter.send(SseEmitter.event().name(event.getCollection()).data(event, MediaType.APPLICATION_JSON));
+            }
+
+            @Override
+            public void onHeartbeat() throws Exception {
+                emitter.send(SseEmitter.event().comment("heartbeat"));
+            }
+
+            @Override
+            public void onClose() {
+                emitter.complete();
+            }
+        }, maxPerUser);
+        if (unsubscribe == null) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).build();
+        }
+        emitter.onCompletion(unsubscribe);
+        emitter.onTimeout(unsubscribe);
+        emitter.onError(error -> unsubscribe.run());
+        return ResponseEntity.ok(emitter);
+    }
+}
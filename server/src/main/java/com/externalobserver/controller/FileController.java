@@ -1,15 +1,15 @@
 package com.externalobserver.controller;
 
-import com.externalobserver.model.Note;
+import com.externalobserver.dto.ImportResult;
 import com.externalobserver.service.FileService;
-import org.springframework.core.io.ByteArrayResource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
-
-import java.util.List;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RestController
 @RequestMapping("/api/files")
@@ -21,28 +21,24 @@ public class FileController {
     }
 
     @PostMapping("/import")
-    public ResponseEntity<List<Note>> importMarkdownFiles(@RequestParam("files") MultipartFile[] files) {
-        try {
-            List<Note> importedNotes = fileService.importMarkdownFiles(files);
-            return ResponseEntity.ok(importedNotes);
-        } catch (Exception e) {
-            return ResponseEntity.badRequest().build();
-        }
+    public ResponseEntity<ImportResult> importMarkdownFiles(
+        @RequestParam("files") MultipartFile[] files,
+        @AuthenticationPrincipal UserDetails userDetails
+    ) {
+        return ResponseEntity.ok(fileService.importMarkdownFiles(files, userDetails.getUsername()));
     }
 
     @GetMapping("/export")
-    public ResponseEntity<ByteArrayResource> exportNotesAsZip() {
-        try {
-            byte[] zipBytes = fileService.exportNotesAsZip();
-            ByteArrayResource resource = new ByteArrayResource(zipBytes);
+    public ResponseEntity<StreamingResponseBody> exportNotesAsZip(
+        @AuthenticationPrincipal UserDetails userDetails
+    ) {
+        // Имя пользователя берётся здесь: тело ответа пишется в другом потоке
+        String username = userDetails.getUsername();
+        StreamingResponseBody body = outputStream -> fileService.exportNotesAsZip(username, outputStream);
 
-            return ResponseEntity.ok()
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=notes.zip")
-                .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                .contentLength(zipBytes.length)
-                .body(resource);
-        } catch (Exception e) {
-            return ResponseEntity.badRequest().build();
-        }
+        return ResponseEntity.ok()
+            .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=notes.zip")
+            .contentType(MediaType.APPLICATION_OCTET_STREAM)
+            .body(body);
     }
-} 
\ No newline at end of file
+}
@@ -1,5 +1,7 @@
 package com.externalobserver.controller;
 
+import com.externalobserver.dto.HabitCheckBatchResult;
+import com.externalobserver.dto.HabitCheckUpdate;
 import com.externalobserver.model.Habit;
 import com.externalobserver.model.HabitCheck;
 import com.externalobserver.service.HabitService;
@@ -12,6 +14,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
@@ -63,8 +66,12 @@ public class HabitController {
         @RequestBody List<Map<String, Object>> habits,
         @AuthenticationPrincipal UserDetails userDetails
     ) {
-        habitService.updateHabitsOrder(habits, userDetails.getUsername());
-        return ResponseEntity.ok().build();
+        try {
+            habitService.updateHabitsOrder(habits, userDetails.getUsername());
+            return ResponseEntity.ok().build();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
     }
 
     @GetMapping("/checks")
@@ -97,26 +104,43 @@ public class HabitController {
             habitId, date, completed, comment, userDetails.getUsername()));
     }
 
+    @PostMapping("/checks/batch")
+    public ResponseEntity<HabitCheckBatchResult> saveHabitChecks(
+        @RequestBody List<HabitCheckUpdate> checks,
+        @AuthenticationPrincipal UserDetails userDetails
+    ) {
+        try {
+            return ResponseEntity.ok(new HabitCheckBatchResult(
+                habitService.saveHabitChecks(checks, userDetails.getUsername())));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     @GetMapping("/export")
-    public ResponseEntity<byte[]> exportToExcel(
+    public ResponseEntity<StreamingResponseBody> exportToExcel(
         @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
         @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
         @AuthenticationPrincipal UserDetails userDetails
     ) {
         try {
-            byte[] excelFile = excelExportService.exportHabitChecksToExcel(
-                userDetails.getUsername(), startDate, endDate);
+            ExcelExportService.validatePeriod(startDate, endDate);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
 
-            String filename = String.format("habits_%s_%s.xlsx",
-                startDate.format(DATE_FORMATTER),
-                endDate.format(DATE_FORMATTER));
+        String username = userDetails.getUsername();
+        String filename = String.format("habits_%s_%s.xlsx",
+            startDate.format(DATE_FORMATTER),
+            endDate.format(DATE_FORMATTER));
 
-            return ResponseEntity.ok()
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
-                .contentType(MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"))
-                .body(excelFile);
-        } catch (Exception e) {
-            return ResponseEntity.internalServerError().build();
-        }
+        // Книга пишется прямо в ответ, без промежуточного byte[]
+        StreamingResponseBody body = outputStream ->
+            excelExportService.exportHabitChecksToExcel(username, startDate, endDate, outputStream);
+
+        return ResponseEntity.ok()
+            .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+            .contentType(MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"))
+            .body(body);
     }
-} 
\ No newline at end of file
+}
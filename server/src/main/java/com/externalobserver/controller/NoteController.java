@@ -1,15 +1,27 @@
 package com.externalobserver.controller;
 
 import com.externalobserver.model.Note;
+import com.externalobserver.index.LinkGraphIndex;
 import com.externalobserver.service.NoteService;
+import com.externalobserver.service.NoteVersionConflictException;
+import com.externalobserver.dto.NotePatchRequest;
+import com.externalobserver.dto.NotePatchResult;
+import com.externalobserver.dto.NoteRevisionContent;
+import com.externalobserver.dto.NoteRevisionSummary;
+import com.externalobserver.dto.NoteSearchHit;
+import com.externalobserver.dto.NoteSuggestion;
+import com.externalobserver.dto.NoteSortOrder;
+import com.externalobserver.dto.NoteSummaryPage;
 import com.externalobserver.dto.ZettelRequest;
 import com.externalobserver.dto.ZettelSearchRequest;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 import jakarta.validation.Valid;
 import java.util.List;
+import java.util.Map;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -34,6 +46,28 @@ public class NoteController {
         return ResponseEntity.ok(noteService.getAllNotes());
     }
 
+    @Operation(summary = "Получить страницу кратких описаний заметок")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Страница успешно получена"),
+        @ApiResponse(responseCode = "400", description = "Некорректный курсор"),
+        @ApiResponse(responseCode = "401", description = "Не авторизован"),
+        @ApiResponse(responseCode = "500", description = "Внутренняя ошибка сервера")
+    })
+    @GetMapping("/summaries")
+    public ResponseEntity<NoteSummaryPage> getNoteSummaries(
+            @Parameter(description = "Порядок сортировки по дате изменения")
+            @RequestParam(defaultValue = "UPDATED_DESC") NoteSortOrder sort,
+            @Parameter(description = "Курсор из nextCursor предыдущей страницы")
+            @RequestParam(required = false) String cursor,
+            @Parameter(description = "Размер страницы (не больше 200)")
+            @RequestParam(defaultValue = "50") int limit) {
+        try {
+            return ResponseEntity.ok(noteService.getNoteSummaries(sort, cursor, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     @Operation(summary = "Создать новую заметку")
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Заметка успешно создана"),
@@ -46,17 +80,89 @@ public class NoteController {
         return ResponseEntity.ok(noteService.createNote(note));
     }
 
-    @Operation(summary = "Обновить существующую заметку")
+    @Operation(summary = "Обновить существующую заметку",
+            description = "version — версия, с которой начато редактирование (0 для заметок без версии)")
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Заметка успешно обновлена"),
-        @ApiResponse(responseCode = "400", description = "Неверный формат запроса"),
+        @ApiResponse(responseCode = "400", description = "Неверный формат запроса или не указана версия"),
         @ApiResponse(responseCode = "401", description = "Не авторизован"),
         @ApiResponse(responseCode = "404", description = "Заметка не найдена"),
+        @ApiResponse(responseCode = "409", description = "Заметка уже изменена, в ответе текущая версия"),
         @ApiResponse(responseCode = "500", description = "Внутренняя ошибка сервера")
     })
     @PutMapping("/{id}")
     public ResponseEntity<Note> updateNote(@PathVariable String id, @RequestBody Note note) {
-        return noteService.updateNote(id, note)
+        try {
+            return noteService.updateNote(id, note)
+                    .map(ResponseEntity::ok)
+                    .orElse(ResponseEntity.notFound().build());
+        } catch (NoteVersionConflictException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getCurrent());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @Operation(summary = "Применить правки к заметке",
+            description = "Принимает правки содержимого (offset/delete/insert) и изменённые поля относительно baseVersion")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Правки применены, в ответе новая версия"),
+        @ApiResponse(responseCode = "400", description = "Не указана версия или правка выходит за границы текста"),
+        @ApiResponse(responseCode = "401", description = "Не авторизован"),
+        @ApiResponse(responseCode = "404", description = "Заметка не найдена"),
+        @ApiResponse(responseCode = "409", description = "Заметка уже изменена, в ответе текущая версия"),
+        @ApiResponse(responseCode = "500", description = "Внутренняя ошибка сервера")
+    })
+    @PatchMapping("/{id}")
+    public ResponseEntity<NotePatchResult> patchNote(@PathVariable String id, @RequestBody NotePatchRequest patch) {
+        try {
+            return noteService.patchNote(id, patch)
+                    .map(note -> ResponseEntity.ok(new NotePatchResult(note.getId(), note.getVersion(), note.getUpdated())))
+                    .orElse(ResponseEntity.notFound().build());
+        } catch (NoteVersionConflictException e) {
+            Note current = e.getCurrent();
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(new NotePatchResult(current.getId(), current.getVersion(), current.getUpdated()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @Operation(summary = "Получить страницу истории версий заметки",
+            description = "Версии от новых к старым; на первой странице первой идёт текущая версия")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "История успешно получена"),
+        @ApiResponse(responseCode = "400", description = "Некорректный номер версии"),
+        @ApiResponse(responseCode = "401", description = "Не авторизован"),
+        @ApiResponse(responseCode = "404", description = "Заметка не найдена"),
+        @ApiResponse(responseCode = "500", description = "Внутренняя ошибка сервера")
+    })
+    @GetMapping("/{id}/revisions")
+    public ResponseEntity<List<NoteRevisionSummary>> getRevisions(
+            @PathVariable String id,
+            @Parameter(description = "Версия последнего элемента предыдущей страницы")
+            @RequestParam(required = false) Integer before,
+            @Parameter(description = "Размер страницы (не больше 200)")
+            @RequestParam(defaultValue = "50") int limit) {
+        try {
+            return noteService.getRevisions(id, before, limit)
+                    .map(ResponseEntity::ok)
+                    .orElse(ResponseEntity.notFound().build());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @Operation(summary = "Получить содержимое заметки в указанной версии")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Версия восстановлена"),
+        @ApiResponse(responseCode = "401", description = "Не авторизован"),
+        @ApiResponse(responseCode = "404", description = "Заметка или версия не найдена"),
+        @ApiResponse(responseCode = "500", description = "Внутренняя ошибка сервера")
+    })
+    @GetMapping("/{id}/revisions/{version}")
+    public ResponseEntity<NoteRevisionContent> getRevision(@PathVariable String id, @PathVariable int version) {
+        return noteService.getRevision(id, version)
                 .map(ResponseEntity::ok)
                 .orElse(ResponseEntity.notFound().build());
     }
@@ -101,7 +207,58 @@ public class NoteController {
             @RequestParam List<String> tags,
             @Parameter(description = "Если true, заметка должна содержать все указанные теги") 
             @RequestParam(defaultValue = "false") boolean matchAll) {
-        return ResponseEntity.ok(noteService.findByTags(tags, matchAll));
+        try {
+            return ResponseEntity.ok(noteService.findByTags(tags, matchAll));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @Operation(summary = "Поиск заметок по логическому выражению над тегами")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Поиск выполнен успешно"),
+        @ApiResponse(responseCode = "400", description = "Некорректное выражение"),
+        @ApiResponse(responseCode = "401", description = "Не авторизован"),
+        @ApiResponse(responseCode = "500", description = "Внутренняя ошибка сервера")
+    })
+    @GetMapping("/search/tags/expression")
+    public ResponseEntity<List<Note>> searchByTagExpression(
+            @Parameter(description = "Выражение, например: work AND (urgent OR \"next week\") AND NOT archive")
+            @RequestParam String q) {
+        try {
+            return ResponseEntity.ok(noteService.findByTagExpression(q));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @Operation(summary = "Количество заметок, подходящих под выражение над тегами")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Количество получено"),
+        @ApiResponse(responseCode = "400", description = "Некорректное выражение"),
+        @ApiResponse(responseCode = "401", description = "Не авторизован"),
+        @ApiResponse(responseCode = "500", description = "Внутренняя ошибка сервера")
+    })
+    @GetMapping("/search/tags/count")
+    public ResponseEntity<Integer> countByTagExpression(
+            @Parameter(description = "Выражение над тегами")
+            @RequestParam String q) {
+        try {
+            return ResponseEntity.ok(noteService.countByTagExpression(q));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @Operation(summary = "Получить все теги пользователя с количеством заметок")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Теги получены"),
+        @ApiResponse(responseCode = "401", description = "Не авторизован"),
+        @ApiResponse(responseCode = "500", description = "Внутренняя ошибка сервера")
+    })
+    @GetMapping("/tags")
+    public ResponseEntity<Map<String, Integer>> getTagCounts() {
+        return ResponseEntity.ok(noteService.getTagCounts());
     }
 
     @Operation(summary = "Поиск заметок по ключевому слову в контенте")
@@ -117,4 +274,77 @@ public class NoteController {
             @RequestParam String keyword) {
         return ResponseEntity.ok(noteService.findByKeyword(keyword));
     }
-} 
\ No newline at end of file
+
+    @Operation(summary = "Полнотекстовый поиск заметок с ранжированием и фрагментами текста")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Поиск выполнен успешно"),
+        @ApiResponse(responseCode = "400", description = "Неверный формат запроса"),
+        @ApiResponse(responseCode = "401", description = "Не авторизован"),
+        @ApiResponse(responseCode = "500", description = "Внутренняя ошибка сервера")
+    })
+    @GetMapping("/search/fulltext")
+    public ResponseEntity<List<NoteSearchHit>> fullTextSearch(
+            @Parameter(description = "Поисковый запрос на русском или английском")
+            @RequestParam String query,
+            @Parameter(description = "Максимальное количество результатов")
+            @RequestParam(defaultValue = "20") int limit) {
+        return ResponseEntity.ok(noteService.fullTextSearch(query, limit));
+    }
+
+    @Operation(summary = "Подсказки по названию и пути заметки при вводе в поиске")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Подсказки получены"),
+        @ApiResponse(responseCode = "401", description = "Не авторизован"),
+        @ApiResponse(responseCode = "500", description = "Внутренняя ошибка сервера")
+    })
+    @GetMapping("/search/suggest")
+    public ResponseEntity<List<NoteSuggestion>> suggestNotes(
+            @Parameter(description = "Начало или часть названия либо пути заметки")
+            @RequestParam String q,
+            @Parameter(description = "Максимальное количество подсказок")
+            @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(noteService.suggestNotes(q, limit));
+    }
+
+    @Operation(summary = "Получить заметки, ссылающиеся на данную")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Обратные ссылки получены"),
+        @ApiResponse(responseCode = "401", description = "Не авторизован"),
+        @ApiResponse(responseCode = "500", description = "Внутренняя ошибка сервера")
+    })
+    @GetMapping("/{id}/backlinks")
+    public ResponseEntity<List<LinkGraphIndex.Node>> getBacklinks(@PathVariable String id) {
+        return ResponseEntity.ok(noteService.getBacklinks(id));
+    }
+
+    @Operation(summary = "Получить граф связей вокруг заметки")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Граф получен"),
+        @ApiResponse(responseCode = "401", description = "Не авторизован"),
+        @ApiResponse(responseCode = "500", description = "Внутренняя ошибка сервера")
+    })
+    @GetMapping("/{id}/graph")
+    public ResponseEntity<LinkGraphIndex.Subgraph> getNoteGraph(
+            @PathVariable String id,
+            @Parameter(description = "Количество шагов от заметки (не больше 5)")
+            @RequestParam(defaultValue = "2") int depth,
+            @Parameter(description = "Максимальное количество узлов в ответе")
+            @RequestParam(defaultValue = "300") int maxNodes) {
+        return ResponseEntity.ok(noteService.getNoteGraph(id, depth, maxNodes));
+    }
+
+    @Operation(summary = "Найти кратчайший путь по ссылкам между двумя заметками")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Путь найден"),
+        @ApiResponse(responseCode = "401", description = "Не авторизован"),
+        @ApiResponse(responseCode = "404", description = "Путь не найден"),
+        @ApiResponse(responseCode = "500", description = "Внутренняя ошибка сервера")
+    })
+    @GetMapping("/graph/path")
+    public ResponseEntity<List<LinkGraphIndex.Node>> getShortestPath(
+            @RequestParam String from,
+            @RequestParam String to) {
+        List<LinkGraphIndex.Node> path = noteService.getShortestPath(from, to);
+        return path.isEmpty() ? ResponseEntity.notFound().build() : ResponseEntity.ok(path);
+    }
+}
@@ -0,0 +1,45 @@
+package com.externalobserver.controller;
+
+import com.externalobserver.dto.SyncChanges;
+import com.externalobserver.service.SyncService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/sync")
+@RequiredArgsConstructor
+@Tag(name = "Sync", description = "API инкрементальной синхронизации заметок и привычек")
+public class SyncController {
+    private final SyncService syncService;
+
+    @Operation(summary = "Получить изменения после токена",
+            description = "Созданные и изменённые заметки, привычки и отметки и удаления после токена прошлого ответа. "
+                    + "Без токена возвращает все данные. Пока more = true, следующую страницу можно запросить сразу")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Изменения и токен для следующего запроса"),
+        @ApiResponse(responseCode = "400", description = "Некорректный токен"),
+        @ApiResponse(responseCode = "401", description = "Не авторизован")
+    })
+    @GetMapping
+    public ResponseEntity<SyncChanges> getChanges(
+            @Parameter(description = "Токен из прошлого ответа") @RequestParam(required = false) String token,
+            @Parameter(description = "Размер страницы (не больше 1000)") @RequestParam(defaultValue = "500") int limit,
+            @AuthenticationPrincipal UserDetails userDetails) {
+        try {
+            return ResponseEntity.ok(syncService.getChanges(userDetails.getUsername(), token, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+}
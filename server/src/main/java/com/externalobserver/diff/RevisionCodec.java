@@ -0,0 +1,113 @@
+package com.externalobserver.diff;
+
+import com.externalobserver.dto.TextEdit;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Сжатое двоичное представление ревизий: полный снимок текста или одна правка
+ * (offset, delete, insert), превращающая следующую версию в предыдущую.
+ * Текст пишется UTF-16 без преобразований, чтобы правка на границе суррогатной пары
+ * восстанавливалась без потерь; повторяющиеся байты убирает Deflate.
+ */
+public final class RevisionCodec {
+    private static final byte SNAPSHOT = 1;
+    private static final byte DELTA = 2;
+
+    private RevisionCodec() {}
+
+    /**
+     * Минимальная правка по общему префиксу и суффиксу, превращающая from в to.
+     */
+    public static TextEdit diff(String from, String to) {
+        from = from != null ? from : "";
+        to = to != null ? to : "";
+        int limit = Math.min(from.length(), to.length());
+        int prefix = 0;
+        while (prefix < limit && from.charAt(prefix) == to.charAt(prefix)) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < limit - prefix
+                && from.charAt(from.length() - 1 - suffix) == to.charAt(to.length() - 1 - suffix)) {
+            suffix++;
+        }
+        return new TextEdit(prefix, from.length() - prefix - suffix, to.substring(prefix, to.length() - suffix));
+    }
+
+    public static byte[] encodeSnapshot(String content) {
+        return write(SNAPSHOT, out -> writeString(out, content != null ? content : ""));
+    }
+
+    public static byte[] encodeDelta(TextEdit edit) {
+        return write(DELTA, out -> {
+            out.writeInt(edit.getOffset());
+            out.writeInt(edit.getDelete());
+            writeString(out, edit.getInsert() != null ? edit.getInsert() : "");
+        });
+    }
+
+    /**
+     * Восстанавливает текст ревизии: снимок возвращается как есть,
+     * дельта применяется к тексту следующей версии.
+     */
+    public static String decode(byte[] data, String nextContent) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new InflaterInputStream(new ByteArrayInputStream(data))))) {
+            byte kind = in.readByte();
+            if (kind == SNAPSHOT) {
+                return readString(in);
+            }
+            if (kind != DELTA) {
+                throw new IllegalStateException("Неизвестный формат ревизии: " + kind);
+            }
+            TextEdit edit = new TextEdit(in.readInt(), in.readInt(), readString(in));
+            return TextPatch.apply(nextContent, List.of(edit));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Повреждённая ревизия", e);
+        }
+    }
+
+    private static byte[] write(byte kind, Writer writer) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new DeflaterOutputStream(bytes, deflater)))) {
+            out.writeByte(kind);
+            writer.write(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            deflater.end();
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeInt(value.length());
+        out.writeChars(value);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        char[] chars = new char[in.readInt()];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = in.readChar();
+        }
+        return new String(chars);
+    }
+
+    private interface Writer {
+        void write(DataOutputStream out) throws IOException;
+    }
+}
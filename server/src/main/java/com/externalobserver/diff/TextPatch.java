@@ -0,0 +1,34 @@
+package com.externalobserver.diff;
+
+import com.externalobserver.dto.TextEdit;
+import java.util.List;
+
+/**
+ * Применение правок вида (offset, delete, insert) к тексту.
+ */
+public final class TextPatch {
+
+    private TextPatch() {}
+
+    /**
+     * Применяет правки по порядку: позиция каждой правки отсчитывается в тексте после предыдущих.
+     * Бросает {@link IllegalArgumentException}, если правка выходит за границы текста.
+     */
+    public static String apply(String text, List<TextEdit> edits) {
+        StringBuilder result = new StringBuilder(text != null ? text : "");
+        for (TextEdit edit : edits) {
+            if (edit == null) {
+                throw new IllegalArgumentException("Пустая правка");
+            }
+            int offset = edit.getOffset();
+            int delete = edit.getDelete();
+            // Без сложения offset + delete: при больших значениях сумма переполняется и проходит проверку
+            if (offset < 0 || delete < 0 || offset > result.length() || delete > result.length() - offset) {
+                throw new IllegalArgumentException("Правка с позиции " + offset + " длиной " + delete
+                    + " выходит за границы текста длиной " + result.length());
+            }
+            result.replace(offset, offset + delete, edit.getInsert() != null ? edit.getInsert() : "");
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,15 @@
+package com.externalobserver.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class ChangeEvent {
+    private String collection; // notes, habits или habit_checks
+    private String operation; // insert, update, replace или delete
+    private String id;
+    private List<String> changedFields; // для update — изменённые поля верхнего уровня
+    private Object document; // после изменения; для update — только новые значения полей верхнего уровня, для delete — null
+}
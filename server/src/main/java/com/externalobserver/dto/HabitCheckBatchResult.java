@@ -0,0 +1,10 @@
+package com.externalobserver.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class HabitCheckBatchResult {
+    private int applied;
+}
@@ -0,0 +1,12 @@
+package com.externalobserver.dto;
+
+import lombok.Data;
+import java.time.LocalDate;
+
+@Data
+public class HabitCheckUpdate {
+    private String habitId;
+    private LocalDate date;
+    private boolean completed;
+    private String comment;
+}
@@ -0,0 +1,13 @@
+package com.externalobserver.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class ImportFileResult {
+    private String fileName;
+    private String noteId;
+    private String title;
+    private String error; // null, если файл импортирован
+}
@@ -0,0 +1,13 @@
+package com.externalobserver.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class ImportResult {
+    private int imported;
+    private int failed;
+    private List<ImportFileResult> files;
+}
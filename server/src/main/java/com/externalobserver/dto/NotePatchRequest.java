@@ -0,0 +1,20 @@
+package com.externalobserver.dto;
+
+import lombok.Data;
+import java.util.List;
+
+/**
+ * Частичное обновление заметки. Правки содержимого применяются по порядку, каждая
+ * к результату предыдущей. Остальные поля меняются, только если переданы.
+ */
+@Data
+public class NotePatchRequest {
+    private Integer baseVersion;
+    private List<TextEdit> edits;
+    private String title;
+    private String type;
+    private String path;
+    private String status;
+    private List<String> tags;
+    private List<String> links;
+}
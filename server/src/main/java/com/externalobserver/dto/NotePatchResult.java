@@ -0,0 +1,13 @@
+package com.externalobserver.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+public class NotePatchResult {
+    private String id;
+    private Integer version;
+    private LocalDateTime updated;
+}
@@ -0,0 +1,14 @@
+package com.externalobserver.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+public class NoteRevisionContent {
+    private int version;
+    private String title;
+    private LocalDateTime updated;
+    private String content;
+}
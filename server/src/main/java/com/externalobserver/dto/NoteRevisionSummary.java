@@ -0,0 +1,15 @@
+package com.externalobserver.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+public class NoteRevisionSummary {
+    private int version;
+    private String title;
+    private LocalDateTime updated;
+    private int contentLength;
+    private boolean current;
+}
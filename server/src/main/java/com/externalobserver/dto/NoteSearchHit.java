@@ -0,0 +1,19 @@
+package com.externalobserver.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class NoteSearchHit {
+    private String id;
+    private String title;
+    private String type;
+    private String path;
+    private List<String> tags;
+    private LocalDateTime updated;
+    private double score;
+    private String snippet; // фрагмент содержимого, совпадения выделены **жирным**
+}
@@ -0,0 +1,6 @@
+package com.externalobserver.dto;
+
+public enum NoteSortOrder {
+    UPDATED_DESC,
+    UPDATED_ASC
+}
@@ -0,0 +1,15 @@
+package com.externalobserver.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+public class NoteSuggestion {
+    private String id;
+    private String title;
+    private String path;
+    private LocalDateTime updated;
+    private double score;
+}
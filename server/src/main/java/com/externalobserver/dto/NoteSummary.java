@@ -0,0 +1,15 @@
+package com.externalobserver.dto;
+
+import lombok.Data;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+public class NoteSummary {
+    private String id;
+    private String title;
+    private String type;
+    private List<String> tags;
+    private LocalDateTime updated;
+    private String preview; // начало содержимого заметки
+}
@@ -0,0 +1,12 @@
+package com.externalobserver.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class NoteSummaryPage {
+    private List<NoteSummary> items;
+    private String nextCursor; // null, если это последняя страница
+}
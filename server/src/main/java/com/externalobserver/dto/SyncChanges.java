@@ -0,0 +1,22 @@
+package com.externalobserver.dto;
+
+import com.externalobserver.model.Habit;
+import com.externalobserver.model.HabitCheck;
+import com.externalobserver.model.HabitCheckYear;
+import com.externalobserver.model.Note;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class SyncChanges {
+    private List<Note> notes; // созданные и изменённые
+    private List<Habit> habits;
+    private List<HabitCheck> checks;
+    private List<HabitCheckYear> checkYears; // при habits.checks.storage=bitmap: год отметок привычки целиком, заменяет отметки за этот год
+    private List<SyncDeletion> deleted;
+    private String token; // передаётся в следующий запрос
+    private boolean more; // изменения не поместились в страницу: следующую можно запросить сразу
+    private boolean reset; // токен старше срока хранения удалений: ответ начат с полного набора, локальные данные заменяются
+}
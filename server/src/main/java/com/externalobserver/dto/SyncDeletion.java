@@ -0,0 +1,13 @@
+package com.externalobserver.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+public class SyncDeletion {
+    private String collection; // notes, habits или habit_checks; с привычкой удаляются и её отметки
+    private String id;
+    private LocalDateTime deleted;
+}
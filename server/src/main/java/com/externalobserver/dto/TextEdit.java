@@ -0,0 +1,18 @@
+package com.externalobserver.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Правка текста: удалить {@code delete} символов с позиции {@code offset} и вставить {@code insert}.
+ * Позиции считаются в UTF-16 единицах, как индексы строк в JavaScript.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TextEdit {
+    private int offset;
+    private int delete;
+    private String insert;
+}
@@ -0,0 +1,54 @@
+package com.externalobserver.index;
+
+import com.externalobserver.model.Note;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Полнотекстовый индекс по заголовку и содержимому заметок, отдельный для каждого пользователя.
+ * Заменяет поиск через $regex, который сканировал всю коллекцию notes.
+ */
+@Component
+public class FullTextIndex implements NoteIndex {
+    private final Map<String, UserTextIndex> indexes = new ConcurrentHashMap<>();
+
+    public record Hit(String noteId, double score) {}
+
+    @Override
+    public void index(Note note) {
+        if (note.getUsername() == null || note.getId() == null) {
+            return;
+        }
+        indexes.computeIfAbsent(note.getUsername(), username -> new UserTextIndex())
+            .put(note.getId(), note.getTitle(), note.getContent());
+    }
+
+    @Override
+    public void remove(String username, String noteId) {
+        UserTextIndex index = indexes.get(username);
+        if (index != null) {
+            index.remove(noteId);
+        }
+    }
+
+    @Override
+    public void clear() {
+        indexes.clear();
+    }
+
+    public List<Hit> search(String username, String query, int limit) {
+        UserTextIndex index = indexes.get(username);
+        if (index == null) {
+            return List.of();
+        }
+        return index.search(TextAnalyzer.terms(query), limit);
+    }
+
+    public int size(String username) {
+        UserTextIndex index = indexes.get(username);
+        return index != null ? index.size() : 0;
+    }
+}
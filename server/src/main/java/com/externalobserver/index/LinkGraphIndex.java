@@ -0,0 +1,60 @@
+package com.externalobserver.index;
+
+import com.externalobserver.model.Note;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Граф ссылок заметок в памяти, отдельный для каждого пользователя.
+ * Позволяет находить обратные ссылки и окрестности заметки без чтения всех заметок.
+ */
+@Component
+public class LinkGraphIndex implements NoteIndex {
+    private final Map<String, UserLinkGraph> graphs = new ConcurrentHashMap<>();
+
+    public record Node(String noteId, String title, int distance) {}
+
+    public record Edge(String from, String to) {}
+
+    public record Subgraph(List<Node> nodes, List<Edge> edges) {}
+
+    @Override
+    public void index(Note note) {
+        if (note.getUsername() == null || note.getId() == null) {
+            return;
+        }
+        graphs.computeIfAbsent(note.getUsername(), username -> new UserLinkGraph())
+            .put(note.getId(), note.getTitle(), note.getLinks());
+    }
+
+    @Override
+    public void remove(String username, String noteId) {
+        UserLinkGraph graph = graphs.get(username);
+        if (graph != null) {
+            graph.remove(noteId);
+        }
+    }
+
+    @Override
+    public void clear() {
+        graphs.clear();
+    }
+
+    public List<Node> backlinks(String username, String noteId) {
+        UserLinkGraph graph = graphs.get(username);
+        return graph != null ? graph.backlinks(noteId) : List.of();
+    }
+
+    public Subgraph neighborhood(String username, String noteId, int depth, int maxNodes) {
+        UserLinkGraph graph = graphs.get(username);
+        return graph != null ? graph.neighborhood(noteId, depth, maxNodes) : new Subgraph(List.of(), List.of());
+    }
+
+    public List<Node> shortestPath(String username, String fromId, String toId) {
+        UserLinkGraph graph = graphs.get(username);
+        return graph != null ? graph.shortestPath(fromId, toId) : List.of();
+    }
+}
@@ -0,0 +1,16 @@
+package com.externalobserver.index;
+
+import com.externalobserver.model.Note;
+
+/**
+ * Индекс заметок в памяти. NoteService сообщает о каждой записи и удалении,
+ * а {@link NoteIndexInitializer} заполняет индекс из MongoDB при старте.
+ */
+public interface NoteIndex {
+
+    void index(Note note);
+
+    void remove(String username, String noteId);
+
+    void clear();
+}
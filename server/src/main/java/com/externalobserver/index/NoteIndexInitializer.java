@@ -0,0 +1,46 @@
+package com.externalobserver.index;
+
+import com.externalobserver.model.Note;
+import com.externalobserver.repository.NoteRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Заполняет индексы заметок из хранилища при старте приложения.
+ * Заметки читаются курсором, чтобы не держать всю коллекцию в памяти.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class NoteIndexInitializer implements ApplicationRunner {
+    private final NoteRepository noteRepository;
+    private final List<NoteIndex> noteIndexes;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        rebuild();
+    }
+
+    public void rebuild() {
+        long started = System.currentTimeMillis();
+        noteIndexes.forEach(NoteIndex::clear);
+
+        long count = 0;
+        try (Stream<Note> notes = noteRepository.streamAllBy()) {
+            for (Note note : (Iterable<Note>) notes::iterator) {
+                for (NoteIndex index : noteIndexes) {
+                    index.index(note);
+                }
+                count++;
+            }
+        }
+
+        log.info("Индексы заметок построены: {} заметок за {} мс", count, System.currentTimeMillis() - started);
+    }
+}
@@ -0,0 +1,50 @@
+package com.externalobserver.index;
+
+import com.externalobserver.model.Note;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Подсказки по названию и пути заметки при вводе в поиске, отдельные для каждого пользователя.
+ * Отвечает из памяти, не обращаясь к хранилищу: поле поиска спрашивает на каждое нажатие.
+ */
+@Component
+public class NoteSuggestIndex implements NoteIndex {
+    private final Map<String, UserSuggestIndex> indexes = new ConcurrentHashMap<>();
+
+    public record Suggestion(String noteId, String title, String path, LocalDateTime updated, double score) {}
+
+    @Override
+    public void index(Note note) {
+        if (note.getUsername() == null || note.getId() == null) {
+            return;
+        }
+        indexes.computeIfAbsent(note.getUsername(), username -> new UserSuggestIndex())
+            .put(note.getId(), note.getTitle(), note.getPath(), note.getUpdated());
+    }
+
+    @Override
+    public void remove(String username, String noteId) {
+        UserSuggestIndex index = indexes.get(username);
+        if (index != null) {
+            index.remove(noteId);
+        }
+    }
+
+    @Override
+    public void clear() {
+        indexes.clear();
+    }
+
+    public List<Suggestion> suggest(String username, String query, int limit) {
+        UserSuggestIndex index = indexes.get(username);
+        if (index == null || query == null) {
+            return List.of();
+        }
+        return index.suggest(query, limit, LocalDateTime.now());
+    }
+}
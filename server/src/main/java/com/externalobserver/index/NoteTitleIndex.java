@@ -0,0 +1,58 @@
+package com.externalobserver.index;
+
+import com.externalobserver.model.Note;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Поиск заметки по названию или пути в памяти, отдельный для каждого пользователя.
+ * Через него NoteService разрешает ссылки {@code [[...]]} в id при записи заметки
+ * и находит заметки с неразрешёнными ссылками, когда появляется их цель.
+ */
+@Component
+public class NoteTitleIndex implements NoteIndex {
+    private final Map<String, UserTitleIndex> indexes = new ConcurrentHashMap<>();
+
+    @Override
+    public void index(Note note) {
+        if (note.getUsername() == null || note.getId() == null) {
+            return;
+        }
+        indexes.computeIfAbsent(note.getUsername(), username -> new UserTitleIndex())
+            .put(note.getId(), note.getTitle(), note.getPath(), note.getDanglingLinks());
+    }
+
+    @Override
+    public void remove(String username, String noteId) {
+        UserTitleIndex index = indexes.get(username);
+        if (index != null) {
+            index.remove(noteId);
+        }
+    }
+
+    @Override
+    public void clear() {
+        indexes.clear();
+    }
+
+    /**
+     * Id заметок для целей ссылок; цели, которым не нашлась заметка, в ответ не попадают.
+     */
+    public Map<String, String> resolve(String username, Collection<String> targets) {
+        UserTitleIndex index = indexes.get(username);
+        return index != null && !targets.isEmpty() ? index.resolve(targets) : Map.of();
+    }
+
+    /**
+     * Заметки, у которых есть неразрешённая ссылка на название или путь noteId.
+     * После записи noteId их ссылки могут разрешиться.
+     */
+    public Set<String> danglingReferrers(String username, String noteId) {
+        UserTitleIndex index = indexes.get(username);
+        return index != null ? index.danglingReferrers(noteId) : Set.of();
+    }
+}
@@ -0,0 +1,70 @@
+package com.externalobserver.index;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Вырезает из текста фрагмент вокруг первого совпадения с запросом
+ * и выделяет найденные слова жирным в Markdown.
+ */
+public final class SnippetBuilder {
+    private static final int CONTEXT_BEFORE = 60;
+    private static final int SNIPPET_LENGTH = 200;
+    private static final String ELLIPSIS = "…";
+
+    private SnippetBuilder() {
+    }
+
+    public static String build(String text, String query) {
+        if (text == null || text.isEmpty()) {
+            return "";
+        }
+
+        Set<String> queryTerms = new HashSet<>(TextAnalyzer.terms(query));
+        List<TextAnalyzer.Token> tokens = TextAnalyzer.tokens(text);
+
+        int anchor = 0;
+        for (TextAnalyzer.Token token : tokens) {
+            if (queryTerms.contains(token.term())) {
+                anchor = token.start();
+                break;
+            }
+        }
+
+        int start = wordBoundary(text, Math.max(0, anchor - CONTEXT_BEFORE));
+        int end = Math.min(text.length(), start + SNIPPET_LENGTH);
+
+        StringBuilder snippet = new StringBuilder(end - start + 16);
+        if (start > 0) {
+            snippet.append(ELLIPSIS);
+        }
+        int position = start;
+        for (TextAnalyzer.Token token : tokens) {
+            if (token.start() < start || !queryTerms.contains(token.term())) {
+                continue;
+            }
+            if (token.end() > end) {
+                break;
+            }
+            snippet.append(text, position, token.start())
+                .append("**").append(text, token.start(), token.end()).append("**");
+            position = token.end();
+        }
+        snippet.append(text, position, end);
+        if (end < text.length()) {
+            snippet.append(ELLIPSIS);
+        }
+        return snippet.toString().replace('\n', ' ');
+    }
+
+    private static int wordBoundary(String text, int index) {
+        if (index == 0) {
+            return 0;
+        }
+        while (index < text.length() && !Character.isWhitespace(text.charAt(index - 1))) {
+            index++;
+        }
+        return index;
+    }
+}
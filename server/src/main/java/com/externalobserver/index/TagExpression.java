@@ -0,0 +1,80 @@
+package com.externalobserver.index;
+
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.List;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+
+/**
+ * Логическое выражение над тегами, например {@code work AND (urgent OR "next week") AND NOT archive}.
+ * Слова AND/OR/NOT регистронезависимы; теги, записанные подряд без оператора, объединяются через AND.
+ */
+public sealed interface TagExpression {
+
+    /**
+     * Вычисляет множество заметок. Результат может совпадать с битовой картой индекса,
+     * поэтому изменять его нельзя.
+     */
+    RoaringBitmap evaluate(Function<String, RoaringBitmap> tags, RoaringBitmap all);
+
+    record Tag(String name) implements TagExpression {
+        @Override
+        public RoaringBitmap evaluate(Function<String, RoaringBitmap> tags, RoaringBitmap all) {
+            RoaringBitmap bitmap = tags.apply(name);
+            return bitmap != null ? bitmap : new RoaringBitmap();
+        }
+    }
+
+    record And(TagExpression left, TagExpression right) implements TagExpression {
+        @Override
+        public RoaringBitmap evaluate(Function<String, RoaringBitmap> tags, RoaringBitmap all) {
+            // NOT справа вычисляется как разность без построения дополнения
+            if (right instanceof Not not) {
+                return RoaringBitmap.andNot(left.evaluate(tags, all), not.operand().evaluate(tags, all));
+            }
+            return RoaringBitmap.and(left.evaluate(tags, all), right.evaluate(tags, all));
+        }
+    }
+
+    record Or(TagExpression left, TagExpression right) implements TagExpression {
+        @Override
+        public RoaringBitmap evaluate(Function<String, RoaringBitmap> tags, RoaringBitmap all) {
+            return RoaringBitmap.or(left.evaluate(tags, all), right.evaluate(tags, all));
+        }
+    }
+
+    record Not(TagExpression operand) implements TagExpression {
+        @Override
+        public RoaringBitmap evaluate(Function<String, RoaringBitmap> tags, RoaringBitmap all) {
+            return RoaringBitmap.andNot(all, operand.evaluate(tags, all));
+        }
+    }
+
+    static TagExpression allOf(List<String> tags) {
+        return combine(tags, And::new);
+    }
+
+    static TagExpression anyOf(List<String> tags) {
+        return combine(tags, Or::new);
+    }
+
+    static TagExpression parse(String expression) {
+        return new TagExpressionParser(expression).parse();
+    }
+
+    private static TagExpression combine(List<String> tags, BinaryOperator<TagExpression> operator) {
+        if (tags == null || tags.isEmpty()) {
+            throw new IllegalArgumentException("Не указаны теги");
+        }
+        // Цепочка And/Or вычисляется рекурсивно, её длина ограничена как и у разобранного выражения
+        if (tags.size() > TagExpressionParser.MAX_TAGS) {
+            throw new IllegalArgumentException("Больше " + TagExpressionParser.MAX_TAGS + " тегов в запросе");
+        }
+        TagExpression result = new Tag(tags.get(0));
+        for (int i = 1; i < tags.size(); i++) {
+            result = operator.apply(result, new Tag(tags.get(i)));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,154 @@
+package com.externalobserver.index;
+
+import com.externalobserver.index.TagExpression.And;
+import com.externalobserver.index.TagExpression.Not;
+import com.externalobserver.index.TagExpression.Or;
+import com.externalobserver.index.TagExpression.Tag;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Рекурсивный спуск по грамматике:
+ * <pre>
+ * or      := and ("OR" and)*
+ * and     := not (["AND"] not)*
+ * not     := "NOT" not | primary
+ * primary := "(" or ")" | tag | "\"" tag "\""
+ * </pre>
+ * Длина выражения, число тегов и вложенность скобок и NOT ограничены, чтобы запрос не мог
+ * исчерпать стек ни при разборе, ни при вычислении дерева.
+ */
+final class TagExpressionParser {
+    static final int MAX_LENGTH = 1000;
+    static final int MAX_DEPTH = 32;
+    static final int MAX_TAGS = 100;
+
+    private final String expression;
+    private final List<String> tokens;
+    private int position;
+    private int depth;
+    private int tagCount;
+
+    TagExpressionParser(String expression) {
+        if (expression != null && expression.length() > MAX_LENGTH) {
+            throw new IllegalArgumentException("Выражение тегов длиннее " + MAX_LENGTH + " символов");
+        }
+        this.expression = expression;
+        this.tokens = tokenize(expression);
+    }
+
+    TagExpression parse() {
+        TagExpression result = parseOr();
+        if (position != tokens.size()) {
+            throw new IllegalArgumentException("Некорректное выражение тегов: " + expression);
+        }
+        return result;
+    }
+
+    private TagExpression parseOr() {
+        TagExpression left = parseAnd();
+        while (accept("OR")) {
+            left = new Or(left, parseAnd());
+        }
+        return left;
+    }
+
+    private TagExpression parseAnd() {
+        TagExpression left = parseNot();
+        while (position < tokens.size() && !isKeyword("OR") && !tokens.get(position).equals(")")) {
+            accept("AND");
+            left = new And(left, parseNot());
+        }
+        return left;
+    }
+
+    private TagExpression parseNot() {
+        if (accept("NOT")) {
+            enter();
+            TagExpression operand = parseNot();
+            depth--;
+            return new Not(operand);
+        }
+        return parsePrimary();
+    }
+
+    private TagExpression parsePrimary() {
+        if (position >= tokens.size()) {
+            throw new IllegalArgumentException("Неожиданный конец выражения тегов: " + expression);
+        }
+        String token = tokens.get(position++);
+        if (token.equals("(")) {
+            enter();
+            TagExpression inner = parseOr();
+            if (position >= tokens.size() || !tokens.get(position++).equals(")")) {
+                throw new IllegalArgumentException("Незакрытая скобка в выражении тегов: " + expression);
+            }
+            depth--;
+            return inner;
+        }
+        if (token.equals(")") || isOperator(token)) {
+            throw new IllegalArgumentException("Неожиданный токен в выражении тегов: " + token);
+        }
+        if (++tagCount > MAX_TAGS) {
+            throw new IllegalArgumentException("Больше " + MAX_TAGS + " тегов в выражении");
+        }
+        return new Tag(token.startsWith("\"") ? token.substring(1) : token);
+    }
+
+    private void enter() {
+        if (++depth > MAX_DEPTH) {
+            throw new IllegalArgumentException("Вложенность выражения тегов больше " + MAX_DEPTH);
+        }
+    }
+
+    private boolean accept(String keyword) {
+        if (isKeyword(keyword)) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    private boolean isKeyword(String keyword) {
+        return position < tokens.size() && tokens.get(position).equalsIgnoreCase(keyword);
+    }
+
+    private static boolean isOperator(String token) {
+        return token.equalsIgnoreCase("AND") || token.equalsIgnoreCase("OR") || token.equalsIgnoreCase("NOT");
+    }
+
+    private static List<String> tokenize(String expression) {
+        List<String> tokens = new ArrayList<>();
+        if (expression == null) {
+            return tokens;
+        }
+        int i = 0;
+        while (i < expression.length()) {
+            char c = expression.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '(' || c == ')') {
+                tokens.add(String.valueOf(c));
+                i++;
+            } else if (c == '"') {
+                int end = expression.indexOf('"', i + 1);
+                if (end < 0) {
+                    throw new IllegalArgumentException("Незакрытая кавычка в выражении тегов: " + expression);
+                }
+                // Кавычка в начале токена отличает тег от оператора
+                tokens.add("\"" + expression.substring(i + 1, end));
+                i = end + 1;
+            } else {
+                int start = i;
+                while (i < expression.length()
+                        && !Character.isWhitespace(expression.charAt(i))
+                        && "()\"".indexOf(expression.charAt(i)) < 0) {
+                    i++;
+                }
+                tokens.add(expression.substring(start, i));
+            }
+        }
+        return tokens;
+    }
+}
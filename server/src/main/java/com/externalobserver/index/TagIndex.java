@@ -0,0 +1,54 @@
+package com.externalobserver.index;
+
+import com.externalobserver.model.Note;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Индекс тегов заметок в памяти, отдельный для каждого пользователя.
+ * Отвечает на выражения AND/OR/NOT и считает количество заметок без обращения к MongoDB.
+ */
+@Component
+public class TagIndex implements NoteIndex {
+    private final Map<String, UserTagIndex> indexes = new ConcurrentHashMap<>();
+
+    @Override
+    public void index(Note note) {
+        if (note.getUsername() == null || note.getId() == null) {
+            return;
+        }
+        indexes.computeIfAbsent(note.getUsername(), username -> new UserTagIndex())
+            .put(note.getId(), note.getTags());
+    }
+
+    @Override
+    public void remove(String username, String noteId) {
+        UserTagIndex index = indexes.get(username);
+        if (index != null) {
+            index.remove(noteId);
+        }
+    }
+
+    @Override
+    public void clear() {
+        indexes.clear();
+    }
+
+    public List<String> find(String username, TagExpression expression) {
+        UserTagIndex index = indexes.get(username);
+        return index != null ? index.find(expression) : List.of();
+    }
+
+    public int count(String username, TagExpression expression) {
+        UserTagIndex index = indexes.get(username);
+        return index != null ? index.count(expression) : 0;
+    }
+
+    public Map<String, Integer> tagCounts(String username) {
+        UserTagIndex index = indexes.get(username);
+        return index != null ? index.tagCounts() : Map.of();
+    }
+}
@@ -0,0 +1,109 @@
+package com.externalobserver.index;
+
+import org.tartarus.snowball.SnowballStemmer;
+import org.tartarus.snowball.ext.EnglishStemmer;
+import org.tartarus.snowball.ext.RussianStemmer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Разбивает текст на токены и приводит их к основе. Кириллица стеммится
+ * русским Snowball-стеммером, латиница — английским.
+ */
+public final class TextAnalyzer {
+    private static final int MAX_TOKEN_LENGTH = 64;
+
+    // Стеммеры Snowball не потокобезопасны. Вместо ThreadLocal — общий пул: на виртуальных потоках
+    // каждый запрос идёт в новом потоке, и ThreadLocal создавал бы стеммеры заново на каждый вызов
+    private static final Queue<Stemmers> STEMMERS = new ConcurrentLinkedQueue<>();
+
+    private record Stemmers(SnowballStemmer russian, SnowballStemmer english) {}
+
+    public record Token(String term, int start, int end) {}
+
+    private TextAnalyzer() {
+    }
+
+    public static List<String> terms(String text) {
+        List<String> terms = new ArrayList<>();
+        for (Token token : tokens(text)) {
+            terms.add(token.term());
+        }
+        return terms;
+    }
+
+    public static List<Token> tokens(String text) {
+        List<Token> tokens = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return tokens;
+        }
+
+        Stemmers stemmers = STEMMERS.poll();
+        if (stemmers == null) {
+            stemmers = new Stemmers(new RussianStemmer(), new EnglishStemmer());
+        }
+        try {
+            int length = text.length();
+            int i = 0;
+            while (i < length) {
+                while (i < length && !Character.isLetterOrDigit(text.charAt(i))) {
+                    i++;
+                }
+                int start = i;
+                while (i < length && Character.isLetterOrDigit(text.charAt(i))) {
+                    i++;
+                }
+                if (i > start && i - start <= MAX_TOKEN_LENGTH) {
+                    tokens.add(new Token(stem(normalize(text, start, i), stemmers), start, i));
+                }
+            }
+            return tokens;
+        } finally {
+            STEMMERS.offer(stemmers);
+        }
+    }
+
+    private static String normalize(String text, int start, int end) {
+        StringBuilder word = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            word.append(c == 'ё' ? 'е' : c);
+        }
+        return word.toString();
+    }
+
+    private static String stem(String word, Stemmers stemmers) {
+        if (word.length() < 3) {
+            return word;
+        }
+        SnowballStemmer stemmer = isCyrillic(word) ? stemmers.russian() : isLatin(word) ? stemmers.english() : null;
+        if (stemmer == null) {
+            return word;
+        }
+        stemmer.setCurrent(word);
+        stemmer.stem();
+        return stemmer.getCurrent();
+    }
+
+    private static boolean isCyrillic(String word) {
+        for (int i = 0; i < word.length(); i++) {
+            if (Character.UnicodeBlock.of(word.charAt(i)) != Character.UnicodeBlock.CYRILLIC) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isLatin(String word) {
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            if (c < 'a' || c > 'z') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
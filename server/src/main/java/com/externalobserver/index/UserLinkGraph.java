@@ -0,0 +1,291 @@
+package com.externalobserver.index;
+
+import com.externalobserver.index.LinkGraphIndex.Edge;
+import com.externalobserver.index.LinkGraphIndex.Node;
+import com.externalobserver.index.LinkGraphIndex.Subgraph;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Граф ссылок между заметками одного пользователя. Узлы нумеруются int-ординалами,
+ * для каждого узла хранятся исходящие и входящие рёбра. Узел появляется и для цели
+ * ссылки, которой ещё нет (висячая ссылка), но {@code present} отмечает только
+ * существующие заметки. Ординал освобождается, когда у узла не остаётся ни заметки,
+ * ни входящих ссылок, и выдаётся следующему новому узлу.
+ */
+final class UserLinkGraph {
+    private static final int[] EMPTY = new int[0];
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Integer> ordinals = new HashMap<>();
+    private final List<String> noteIds = new ArrayList<>();
+    private final List<String> titles = new ArrayList<>();
+    private final BitSet present = new BitSet();
+    private int[][] out = new int[16][];
+    private int[][] in = new int[16][];
+    private int[] inSizes = new int[16];
+    private final ArrayDeque<Integer> freeOrdinals = new ArrayDeque<>();
+
+    void put(String noteId, String title, Collection<String> links) {
+        lock.writeLock().lock();
+        try {
+            int node = ordinal(noteId);
+            titles.set(node, title);
+            present.set(node);
+
+            Set<Integer> targets = new LinkedHashSet<>();
+            if (links != null) {
+                for (String link : links) {
+                    if (link != null && !link.isBlank() && !link.equals(noteId)) {
+                        targets.add(ordinal(link));
+                    }
+                }
+            }
+
+            int[] previous = out[node] != null ? out[node] : EMPTY;
+            int[] next = targets.stream().mapToInt(Integer::intValue).sorted().toArray();
+            for (int target : previous) {
+                if (Arrays.binarySearch(next, target) < 0) {
+                    removeIncoming(target, node);
+                    releaseIfUnused(target);
+                }
+            }
+            for (int target : next) {
+                if (Arrays.binarySearch(previous, target) < 0) {
+                    addIncoming(target, node);
+                }
+            }
+            out[node] = next;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(String noteId) {
+        lock.writeLock().lock();
+        try {
+            Integer node = ordinals.get(noteId);
+            if (node == null) {
+                return;
+            }
+            // Входящие рёбра остаются: другие заметки по-прежнему ссылаются на удалённую
+            for (int target : out[node] != null ? out[node] : EMPTY) {
+                removeIncoming(target, node);
+                releaseIfUnused(target);
+            }
+            out[node] = EMPTY;
+            titles.set(node, null);
+            present.clear(node);
+            releaseIfUnused(node);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    List<Node> backlinks(String noteId) {
+        lock.readLock().lock();
+        try {
+            Integer node = ordinals.get(noteId);
+            if (node == null) {
+                return List.of();
+            }
+            List<Node> result = new ArrayList<>(inSizes[node]);
+            for (int i = 0; i < inSizes[node]; i++) {
+                int source = in[node][i];
+                if (present.get(source)) {
+                    result.add(node(source, 1));
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Обход в ширину по рёбрам в обе стороны: все заметки не дальше depth шагов от центра
+    Subgraph neighborhood(String noteId, int depth, int maxNodes) {
+        lock.readLock().lock();
+        try {
+            Integer start = ordinals.get(noteId);
+            if (start == null || !present.get(start)) {
+                return new Subgraph(List.of(), List.of());
+            }
+
+            int[] distances = new int[noteIds.size()];
+            Arrays.fill(distances, -1);
+            distances[start] = 0;
+            List<Integer> visited = new ArrayList<>();
+            visited.add(start);
+            ArrayDeque<Integer> queue = new ArrayDeque<>();
+            queue.add(start);
+
+            while (!queue.isEmpty() && visited.size() < maxNodes) {
+                int node = queue.poll();
+                if (distances[node] == depth) {
+                    continue;
+                }
+                for (int neighbour : neighbours(node)) {
+                    if (distances[neighbour] >= 0 || !present.get(neighbour)) {
+                        continue;
+                    }
+                    distances[neighbour] = distances[node] + 1;
+                    visited.add(neighbour);
+                    queue.add(neighbour);
+                    if (visited.size() == maxNodes) {
+                        break;
+                    }
+                }
+            }
+
+            List<Node> nodes = new ArrayList<>(visited.size());
+            List<Edge> edges = new ArrayList<>();
+            for (int node : visited) {
+                nodes.add(node(node, distances[node]));
+                for (int target : out[node] != null ? out[node] : EMPTY) {
+                    if (distances[target] >= 0) {
+                        edges.add(new Edge(noteIds.get(node), noteIds.get(target)));
+                    }
+                }
+            }
+            return new Subgraph(nodes, edges);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Кратчайший путь без учёта направления ссылок; пустой список, если пути нет
+    List<Node> shortestPath(String fromId, String toId) {
+        lock.readLock().lock();
+        try {
+            Integer from = ordinals.get(fromId);
+            Integer to = ordinals.get(toId);
+            if (from == null || to == null || !present.get(from) || !present.get(to)) {
+                return List.of();
+            }
+
+            int[] parents = new int[noteIds.size()];
+            Arrays.fill(parents, -1);
+            parents[from] = from;
+            ArrayDeque<Integer> queue = new ArrayDeque<>();
+            queue.add(from);
+
+            while (!queue.isEmpty() && parents[to] < 0) {
+                int node = queue.poll();
+                for (int neighbour : neighbours(node)) {
+                    if (parents[neighbour] < 0 && present.get(neighbour)) {
+                        parents[neighbour] = node;
+                        queue.add(neighbour);
+                    }
+                }
+            }
+            if (parents[to] < 0) {
+                return List.of();
+            }
+
+            ArrayDeque<Node> path = new ArrayDeque<>();
+            for (int node = to; node != from; node = parents[node]) {
+                path.addFirst(node(node, 0));
+            }
+            path.addFirst(node(from, 0));
+
+            List<Node> result = new ArrayList<>(path.size());
+            for (Node node : path) {
+                result.add(new Node(node.noteId(), node.title(), result.size()));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int[] neighbours(int node) {
+        int[] outgoing = out[node] != null ? out[node] : EMPTY;
+        int[] result = Arrays.copyOf(outgoing, outgoing.length + inSizes[node]);
+        System.arraycopy(in[node] != null ? in[node] : EMPTY, 0, result, outgoing.length, inSizes[node]);
+        return result;
+    }
+
+    private Node node(int node, int distance) {
+        return new Node(noteIds.get(node), titles.get(node), distance);
+    }
+
+    // Число выданных ординалов вместе со свободными, для тестов
+    int ordinalCount() {
+        lock.readLock().lock();
+        try {
+            return noteIds.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int ordinal(String noteId) {
+        Integer existing = ordinals.get(noteId);
+        if (existing != null) {
+            return existing;
+        }
+        Integer free = freeOrdinals.poll();
+        if (free != null) {
+            noteIds.set(free, noteId);
+            ordinals.put(noteId, free);
+            return free;
+        }
+        int node = noteIds.size();
+        noteIds.add(noteId);
+        titles.add(null);
+        ordinals.put(noteId, node);
+        if (node == out.length) {
+            out = Arrays.copyOf(out, node * 2);
+            in = Arrays.copyOf(in, node * 2);
+            inSizes = Arrays.copyOf(inSizes, node * 2);
+        }
+        return node;
+    }
+
+    // Узел без заметки и без входящих ссылок больше ни на что не влияет
+    private void releaseIfUnused(int node) {
+        if (present.get(node) || inSizes[node] > 0) {
+            return;
+        }
+        ordinals.remove(noteIds.get(node));
+        noteIds.set(node, null);
+        titles.set(node, null);
+        out[node] = null;
+        in[node] = null;
+        freeOrdinals.push(node);
+    }
+
+    private void addIncoming(int target, int source) {
+        int[] sources = in[target];
+        if (sources == null) {
+            sources = new int[2];
+        } else if (inSizes[target] == sources.length) {
+            sources = Arrays.copyOf(sources, sources.length * 2);
+        }
+        sources[inSizes[target]++] = source;
+        in[target] = sources;
+    }
+
+    private void removeIncoming(int target, int source) {
+        int[] sources = in[target];
+        int size = inSizes[target];
+        for (int i = 0; i < size; i++) {
+            if (sources[i] == source) {
+                sources[i] = sources[size - 1];
+                inSizes[target] = size - 1;
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.externalobserver.index;
+
+import com.externalobserver.index.NoteSuggestIndex.Suggestion;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Названия и пути заметок одного пользователя для подсказок при вводе.
+ * Запросы короче трёх символов ищутся по префиксам слов, длинные — по триграммам:
+ * кандидат должен содержать хотя бы половину триграмм запроса, так что опечатка
+ * в середине слова не теряет заметку. Кандидаты ранжируются по качеству совпадения,
+ * при равном качестве выше недавно изменённые.
+ */
+final class UserSuggestIndex {
+    private static final double MIN_SIMILARITY = 0.5;
+    // Меньше шага между уровнями качества: свежесть не поднимает заметку выше лучшего совпадения
+    private static final double RECENCY_WEIGHT = 0.04;
+    private static final double RECENCY_HALF_LIFE_DAYS = 30;
+    private static final Comparator<Suggestion> ORDER = Comparator
+        .comparingDouble(Suggestion::score).reversed()
+        .thenComparing(suggestion -> suggestion.title() != null ? suggestion.title().length() : Integer.MAX_VALUE)
+        .thenComparing(Suggestion::noteId);
+
+    private record Entry(String title, String path, LocalDateTime updated,
+                         String titleKey, String pathKey, String nameKey) {}
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final Map<String, Set<String>> notesByTrigram = new HashMap<>();
+    private final TreeMap<String, Set<String>> notesByWord = new TreeMap<>();
+
+    void put(String noteId, String title, String path, LocalDateTime updated) {
+        String pathKey = UserTitleIndex.key(path);
+        Entry entry = new Entry(title, path, updated, UserTitleIndex.key(title), pathKey,
+            pathKey.substring(pathKey.lastIndexOf('/') + 1));
+
+        lock.writeLock().lock();
+        try {
+            unlink(noteId);
+            entries.put(noteId, entry);
+            trigrams(entry).forEach(trigram -> notesByTrigram.computeIfAbsent(trigram, t -> new HashSet<>()).add(noteId));
+            words(entry).forEach(word -> notesByWord.computeIfAbsent(word, w -> new HashSet<>()).add(noteId));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(String noteId) {
+        lock.writeLock().lock();
+        try {
+            unlink(noteId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    List<Suggestion> suggest(String query, int limit, LocalDateTime now) {
+        String key = UserTitleIndex.key(query);
+        if (key.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        PriorityQueue<Suggestion> top = new PriorityQueue<>(limit + 1, ORDER.reversed());
+        lock.readLock().lock();
+        try {
+            candidates(key).forEach((noteId, similarity) -> {
+                Entry entry = entries.get(noteId);
+                double quality = quality(entry, key, similarity);
+                top.add(new Suggestion(noteId, entry.title(), entry.path(), entry.updated(),
+                    quality + RECENCY_WEIGHT * recency(entry.updated(), now)));
+                if (top.size() > limit) {
+                    top.poll();
+                }
+            });
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<Suggestion> result = new ArrayList<>(top);
+        result.sort(ORDER);
+        return result;
+    }
+
+    // id заметки → доля совпавших триграмм запроса (1 для совпадения по префиксу слова)
+    private Map<String, Double> candidates(String key) {
+        Map<String, Double> candidates = new HashMap<>();
+        Set<String> queryTrigrams = key.length() < 3 ? Set.of() : trigrams(key, false);
+        if (queryTrigrams.isEmpty()) {
+            for (Set<String> notes : notesByWord.subMap(key, key + Character.MAX_VALUE).values()) {
+                notes.forEach(noteId -> candidates.put(noteId, 1.0));
+            }
+            return candidates;
+        }
+
+        Map<String, Integer> counts = new HashMap<>();
+        for (String trigram : queryTrigrams) {
+            Set<String> notes = notesByTrigram.get(trigram);
+            if (notes != null) {
+                notes.forEach(noteId -> counts.merge(noteId, 1, Integer::sum));
+            }
+        }
+        int required = (int) Math.ceil(queryTrigrams.size() * MIN_SIMILARITY);
+        counts.forEach((noteId, count) -> {
+            if (count >= required) {
+                candidates.put(noteId, (double) count / queryTrigrams.size());
+            }
+        });
+        return candidates;
+    }
+
+    // Уровни: название целиком, начало названия, начало слова, подстрока; затем то же для пути
+    private static double quality(Entry entry, String key, double similarity) {
+        if (entry.titleKey().equals(key)) {
+            return 1.0;
+        }
+        if (entry.titleKey().startsWith(key)) {
+            return 0.9;
+        }
+        if (startsWord(entry.titleKey(), key)) {
+            return 0.8;
+        }
+        if (entry.titleKey().contains(key)) {
+            return 0.7;
+        }
+        if (entry.nameKey().startsWith(key) || entry.pathKey().startsWith(key)) {
+            return 0.6;
+        }
+        if (startsWord(entry.pathKey(), key)) {
+            return 0.55;
+        }
+        if (entry.pathKey().contains(key)) {
+            return 0.5;
+        }
+        return 0.4 * similarity;
+    }
+
+    private static boolean startsWord(String text, String key) {
+        for (int i = text.indexOf(key); i >= 0; i = text.indexOf(key, i + 1)) {
+            if (i == 0 || !Character.isLetterOrDigit(text.charAt(i - 1))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // 1 для только что изменённой заметки, 1/2 через RECENCY_HALF_LIFE_DAYS дней и так далее
+    private static double recency(LocalDateTime updated, LocalDateTime now) {
+        if (updated == null) {
+            return 0;
+        }
+        double days = Math.max(0, Duration.between(updated, now).toHours() / 24.0);
+        return 1 / (1 + days / RECENCY_HALF_LIFE_DAYS);
+    }
+
+    private void unlink(String noteId) {
+        Entry previous = entries.remove(noteId);
+        if (previous == null) {
+            return;
+        }
+        for (String trigram : trigrams(previous)) {
+            Set<String> notes = notesByTrigram.get(trigram);
+            notes.remove(noteId);
+            if (notes.isEmpty()) {
+                notesByTrigram.remove(trigram);
+            }
+        }
+        for (String word : words(previous)) {
+            Set<String> notes = notesByWord.get(word);
+            notes.remove(noteId);
+            if (notes.isEmpty()) {
+                notesByWord.remove(word);
+            }
+        }
+    }
+
+    private static Set<String> trigrams(Entry entry) {
+        Set<String> trigrams = new HashSet<>();
+        trigrams.addAll(trigrams(entry.titleKey(), true));
+        trigrams.addAll(trigrams(entry.pathKey(), true));
+        trigrams.addAll(trigrams(entry.nameKey(), true));
+        return trigrams;
+    }
+
+    // Пробел в начале отмечает начало строки; в конце — только у индексируемого текста,
+    // запрос при вводе обрывается на полуслове
+    private static Set<String> trigrams(String text, boolean closed) {
+        Set<String> trigrams = new LinkedHashSet<>();
+        if (text.isEmpty()) {
+            return trigrams;
+        }
+        String padded = " " + text + (closed ? " " : "");
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            trigrams.add(padded.substring(i, i + 3));
+        }
+        return trigrams;
+    }
+
+    private static Set<String> words(Entry entry) {
+        Set<String> words = new HashSet<>();
+        for (String text : List.of(entry.titleKey(), entry.pathKey())) {
+            for (String word : text.split("[^\\p{L}\\p{N}]+")) {
+                if (!word.isEmpty()) {
+                    words.add(word);
+                }
+            }
+        }
+        return words;
+    }
+}
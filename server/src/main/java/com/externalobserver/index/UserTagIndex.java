@@ -0,0 +1,111 @@
+package com.externalobserver.index;
+
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Индекс тегов одного пользователя: для каждого тега хранится сжатая битовая карта
+ * ординалов заметок, выражения над тегами вычисляются пересечением карт.
+ */
+final class UserTagIndex {
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Integer> ordinals = new HashMap<>();
+    private final List<String> noteIds = new ArrayList<>();
+    private final List<String[]> noteTags = new ArrayList<>();
+    private final Map<String, RoaringBitmap> tags = new HashMap<>();
+    private final RoaringBitmap all = new RoaringBitmap();
+
+    void put(String noteId, List<String> tagList) {
+        String[] next = tagList == null ? new String[0] : new LinkedHashSet<>(tagList).stream()
+            .filter(tag -> tag != null && !tag.isBlank())
+            .toArray(String[]::new);
+
+        lock.writeLock().lock();
+        try {
+            Integer existing = ordinals.get(noteId);
+            int ordinal;
+            if (existing != null) {
+                ordinal = existing;
+                untag(ordinal);
+                noteTags.set(ordinal, next);
+            } else {
+                ordinal = noteIds.size();
+                ordinals.put(noteId, ordinal);
+                noteIds.add(noteId);
+                noteTags.add(next);
+            }
+            for (String tag : next) {
+                tags.computeIfAbsent(tag, key -> new RoaringBitmap()).add(ordinal);
+            }
+            all.add(ordinal);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(String noteId) {
+        lock.writeLock().lock();
+        try {
+            Integer ordinal = ordinals.remove(noteId);
+            if (ordinal == null) {
+                return;
+            }
+            untag(ordinal);
+            noteIds.set(ordinal, null);
+            noteTags.set(ordinal, null);
+            all.remove(ordinal);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    List<String> find(TagExpression expression) {
+        lock.readLock().lock();
+        try {
+            RoaringBitmap result = expression.evaluate(tags::get, all);
+            List<String> ids = new ArrayList<>(result.getCardinality());
+            result.forEach((int ordinal) -> ids.add(noteIds.get(ordinal)));
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    int count(TagExpression expression) {
+        lock.readLock().lock();
+        try {
+            return expression.evaluate(tags::get, all).getCardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    Map<String, Integer> tagCounts() {
+        lock.readLock().lock();
+        try {
+            Map<String, Integer> counts = new TreeMap<>();
+            tags.forEach((tag, bitmap) -> counts.put(tag, bitmap.getCardinality()));
+            return counts;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void untag(int ordinal) {
+        for (String tag : noteTags.get(ordinal)) {
+            RoaringBitmap bitmap = tags.get(tag);
+            bitmap.remove(ordinal);
+            if (bitmap.isEmpty()) {
+                tags.remove(tag);
+            }
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.externalobserver.index;
+
+import com.externalobserver.index.FullTextIndex.Hit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Инвертированный индекс заметок одного пользователя с ранжированием BM25.
+ * Документы нумеруются по порядку добавления; удалённые помечаются в {@code live}
+ * и вычищаются из списков вхождений при компактификации.
+ */
+final class UserTextIndex {
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final int TITLE_BOOST = 2;
+    private static final int MIN_DEAD_FOR_COMPACTION = 1024;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Integer> ordinals = new HashMap<>();
+    private final Map<String, Postings> postings = new HashMap<>();
+    private List<String> noteIds = new ArrayList<>();
+    private int[] docLengths = new int[16];
+    private BitSet live = new BitSet();
+    private long totalLength;
+    private int liveCount;
+    private int deadCount;
+
+    void put(String noteId, String title, String content) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String term : TextAnalyzer.terms(title)) {
+            frequencies.merge(term, TITLE_BOOST, Integer::sum);
+        }
+        for (String term : TextAnalyzer.terms(content)) {
+            frequencies.merge(term, 1, Integer::sum);
+        }
+
+        lock.writeLock().lock();
+        try {
+            // Правка заметки тоже оставляет мёртвый документ, поэтому компактификация проверяется и здесь
+            removeInternal(noteId);
+            compactIfNeeded();
+
+            int ordinal = noteIds.size();
+            noteIds.add(noteId);
+            ordinals.put(noteId, ordinal);
+            if (ordinal == docLengths.length) {
+                docLengths = Arrays.copyOf(docLengths, ordinal * 2);
+            }
+
+            int length = 0;
+            for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+                postings.computeIfAbsent(entry.getKey(), term -> new Postings()).add(ordinal, entry.getValue());
+                length += entry.getValue();
+            }
+            docLengths[ordinal] = length;
+            totalLength += length;
+            live.set(ordinal);
+            liveCount++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(String noteId) {
+        lock.writeLock().lock();
+        try {
+            removeInternal(noteId);
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return liveCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Число выданных ординалов вместе с мёртвыми и число вхождений во всех списках, для тестов
+    int ordinalCount() {
+        lock.readLock().lock();
+        try {
+            return noteIds.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    long postingCount() {
+        lock.readLock().lock();
+        try {
+            return postings.values().stream().mapToLong(list -> list.size).sum();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    List<Hit> search(List<String> queryTerms, int limit) {
+        Set<String> terms = new LinkedHashSet<>(queryTerms);
+
+        lock.readLock().lock();
+        try {
+            if (liveCount == 0 || terms.isEmpty() || limit <= 0) {
+                return List.of();
+            }
+
+            double avgLength = (double) totalLength / liveCount;
+            double[] scores = new double[noteIds.size()];
+            int[] touched = new int[16];
+            int touchedCount = 0;
+
+            for (String term : terms) {
+                Postings list = postings.get(term);
+                if (list == null) {
+                    continue;
+                }
+
+                int df = 0;
+                for (int i = 0; i < list.size; i++) {
+                    if (live.get(list.docs[i])) {
+                        df++;
+                    }
+                }
+                if (df == 0) {
+                    continue;
+                }
+
+                double idf = Math.log(1 + (liveCount - df + 0.5) / (df + 0.5));
+                for (int i = 0; i < list.size; i++) {
+                    int doc = list.docs[i];
+                    if (!live.get(doc)) {
+                        continue;
+                    }
+                    int tf = list.freqs[i];
+                    double norm = K1 * (1 - B + B * docLengths[doc] / avgLength);
+                    if (scores[doc] == 0) {
+                        if (touchedCount == touched.length) {
+                            touched = Arrays.copyOf(touched, touchedCount * 2);
+                        }
+                        touched[touchedCount++] = doc;
+                    }
+                    scores[doc] += idf * tf * (K1 + 1) / (tf + norm);
+                }
+            }
+
+            PriorityQueue<Hit> top = new PriorityQueue<>((a, b) -> Double.compare(a.score(), b.score()));
+            for (int i = 0; i < touchedCount; i++) {
+                int doc = touched[i];
+                if (top.size() < limit) {
+                    top.add(new Hit(noteIds.get(doc), scores[doc]));
+                } else if (scores[doc] > top.peek().score()) {
+                    top.poll();
+                    top.add(new Hit(noteIds.get(doc), scores[doc]));
+                }
+            }
+
+            List<Hit> hits = new ArrayList<>(top);
+            hits.sort((a, b) -> Double.compare(b.score(), a.score()));
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void removeInternal(String noteId) {
+        Integer ordinal = ordinals.remove(noteId);
+        if (ordinal == null) {
+            return;
+        }
+        live.clear(ordinal);
+        noteIds.set(ordinal, null);
+        totalLength -= docLengths[ordinal];
+        liveCount--;
+        deadCount++;
+    }
+
+    private void compactIfNeeded() {
+        if (deadCount >= MIN_DEAD_FOR_COMPACTION && deadCount > liveCount) {
+            compact();
+        }
+    }
+
+    // Перенумеровывает живые документы подряд и выбрасывает удалённые из списков вхождений
+    private void compact() {
+        int[] remap = new int[noteIds.size()];
+        List<String> compactedIds = new ArrayList<>(liveCount);
+        int[] compactedLengths = new int[Math.max(16, liveCount)];
+        BitSet compactedLive = new BitSet(liveCount);
+
+        for (int doc = 0; doc < noteIds.size(); doc++) {
+            if (live.get(doc)) {
+                int ordinal = compactedIds.size();
+                remap[doc] = ordinal;
+                compactedIds.add(noteIds.get(doc));
+                compactedLengths[ordinal] = docLengths[doc];
+                compactedLive.set(ordinal);
+                ordinals.put(noteIds.get(doc), ordinal);
+            } else {
+                remap[doc] = -1;
+            }
+        }
+
+        postings.values().removeIf(list -> list.retain(remap) == 0);
+        noteIds = compactedIds;
+        docLengths = compactedLengths;
+        live = compactedLive;
+        deadCount = 0;
+    }
+
+    private static final class Postings {
+        int[] docs = new int[4];
+        int[] freqs = new int[4];
+        int size;
+
+        void add(int doc, int freq) {
+            if (size == docs.length) {
+                int capacity = size + (size >> 1) + 1;
+                docs = Arrays.copyOf(docs, capacity);
+                freqs = Arrays.copyOf(freqs, capacity);
+            }
+            docs[size] = doc;
+            freqs[size] = freq;
+            size++;
+        }
+
+        int retain(int[] remap) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                int doc = remap[docs[i]];
+                if (doc >= 0) {
+                    docs[kept] = doc;
+                    freqs[kept] = freqs[i];
+                    kept++;
+                }
+            }
+            size = kept;
+            return kept;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.externalobserver.index;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Названия и пути заметок одного пользователя для разрешения ссылок {@code [[...]]}.
+ * Ключ — нормализованные название, путь и имя файла без {@code .md}. Если ключ есть
+ * у нескольких заметок, выбирается меньший id — самая ранняя из них.
+ * Неразрешённые цели ссылок хранятся по тем же ключам: по ним находятся заметки,
+ * чьи ссылки начинают разрешаться, когда появляется заметка с таким названием.
+ */
+final class UserTitleIndex {
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, TreeSet<String>> notesByKey = new HashMap<>();
+    private final Map<String, Set<String>> keysByNote = new HashMap<>();
+    private final Map<String, Set<String>> referrersByDanglingKey = new HashMap<>();
+    private final Map<String, Set<String>> danglingKeysByNote = new HashMap<>();
+
+    void put(String noteId, String title, String path, Collection<String> danglingLinks) {
+        Set<String> keys = new LinkedHashSet<>();
+        addKey(keys, title);
+        if (path != null) {
+            addKey(keys, path);
+            addKey(keys, path.substring(path.lastIndexOf('/') + 1));
+        }
+
+        Set<String> danglingKeys = new LinkedHashSet<>();
+        if (danglingLinks != null) {
+            danglingLinks.forEach(target -> addKey(danglingKeys, target));
+        }
+
+        lock.writeLock().lock();
+        try {
+            unlink(noteId);
+            keysByNote.put(noteId, keys);
+            keys.forEach(key -> notesByKey.computeIfAbsent(key, k -> new TreeSet<>()).add(noteId));
+            if (!danglingKeys.isEmpty()) {
+                danglingKeysByNote.put(noteId, danglingKeys);
+                danglingKeys.forEach(key -> referrersByDanglingKey.computeIfAbsent(key, k -> new HashSet<>()).add(noteId));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(String noteId) {
+        lock.writeLock().lock();
+        try {
+            unlink(noteId);
+            keysByNote.remove(noteId);
+            danglingKeysByNote.remove(noteId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Цель ссылки → id заметки; неразрешённых целей в ответе нет
+    Map<String, String> resolve(Collection<String> targets) {
+        Map<String, String> resolved = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            for (String target : targets) {
+                TreeSet<String> notes = notesByKey.get(key(target));
+                if (notes != null) {
+                    resolved.put(target, notes.first());
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return resolved;
+    }
+
+    // Заметки с неразрешённой ссылкой на одно из названий или путей noteId
+    Set<String> danglingReferrers(String noteId) {
+        Set<String> referrers = new HashSet<>();
+        lock.readLock().lock();
+        try {
+            for (String key : keysByNote.getOrDefault(noteId, Set.of())) {
+                referrers.addAll(referrersByDanglingKey.getOrDefault(key, Set.of()));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        referrers.remove(noteId);
+        return referrers;
+    }
+
+    private void unlink(String noteId) {
+        unlink(noteId, keysByNote.get(noteId), notesByKey);
+        unlink(noteId, danglingKeysByNote.get(noteId), referrersByDanglingKey);
+    }
+
+    private static void unlink(String noteId, Set<String> keys, Map<String, ? extends Set<String>> notesByKey) {
+        if (keys == null) {
+            return;
+        }
+        for (String key : keys) {
+            Set<String> notes = notesByKey.get(key);
+            notes.remove(noteId);
+            if (notes.isEmpty()) {
+                notesByKey.remove(key);
+            }
+        }
+    }
+
+    private static void addKey(Set<String> keys, String value) {
+        String key = key(value);
+        if (!key.isEmpty()) {
+            keys.add(key);
+        }
+    }
+
+    // Без учёта регистра, лишних пробелов, ведущих ./ и / и расширения .md
+    static String key(String value) {
+        if (value == null) {
+            return "";
+        }
+        String key = value.strip().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+        while (key.startsWith("./") || key.startsWith("/")) {
+            key = key.substring(key.startsWith("/") ? 1 : 2);
+        }
+        return key.endsWith(".md") ? key.substring(0, key.length() - 3).strip() : key;
+    }
+}
@@ -0,0 +1,73 @@
+package com.externalobserver.markdown;
+
+import org.yaml.snakeyaml.LoaderOptions;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.SafeConstructor;
+import org.yaml.snakeyaml.error.YAMLException;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Отделяет YAML front matter ({@code ---} в начале файла) от тела Markdown-документа.
+ */
+public final class FrontMatterParser {
+    private static final String DELIMITER = "---";
+
+    public record Document(Map<String, Object> frontMatter, String body) {}
+
+    private FrontMatterParser() {
+    }
+
+    // Некорректный YAML между разделителями — IllegalArgumentException
+    public static Document parse(String text) {
+        text = text.startsWith("\uFEFF") ? text.substring(1) : text;
+        if (!text.startsWith(DELIMITER)) {
+            return new Document(Map.of(), text);
+        }
+        int firstLineEnd = text.indexOf('\n');
+        if (firstLineEnd < 0 || !text.substring(0, firstLineEnd).trim().equals(DELIMITER)) {
+            return new Document(Map.of(), text);
+        }
+
+        int closing = findClosingDelimiter(text, firstLineEnd + 1);
+        if (closing < 0) {
+            return new Document(Map.of(), text);
+        }
+
+        String yaml = text.substring(firstLineEnd + 1, closing);
+        int bodyStart = text.indexOf('\n', closing);
+        String body = bodyStart < 0 ? "" : text.substring(bodyStart + 1);
+
+        // Yaml не потокобезопасен, поэтому создаётся на каждый разбор
+        Object loaded;
+        try {
+            loaded = new Yaml(new SafeConstructor(new LoaderOptions())).load(yaml);
+        } catch (YAMLException e) {
+            throw new IllegalArgumentException("Некорректный YAML в front matter", e);
+        }
+        if (!(loaded instanceof Map<?, ?> map)) {
+            return new Document(Map.of(), body);
+        }
+
+        Map<String, Object> frontMatter = new LinkedHashMap<>();
+        map.forEach((key, value) -> frontMatter.put(String.valueOf(key), value));
+        return new Document(frontMatter, body);
+    }
+
+    private static int findClosingDelimiter(String text, int from) {
+        int lineStart = from;
+        while (lineStart < text.length()) {
+            int lineEnd = text.indexOf('\n', lineStart);
+            int end = lineEnd < 0 ? text.length() : lineEnd;
+            if (text.substring(lineStart, end).trim().equals(DELIMITER)) {
+                return lineStart;
+            }
+            if (lineEnd < 0) {
+                break;
+            }
+            lineStart = lineEnd + 1;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,93 @@
+package com.externalobserver.markdown;
+
+import com.externalobserver.model.NoteHeading;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Один проход по Markdown-содержимому заметки: цели ссылок {@code [[...]]}, ATX-заголовки
+ * и число слов. Блоки кода и inline-код пропускаются; встраивания {@code ![[...]]} ссылками не считаются.
+ */
+public final class NoteContentParser {
+    private static final Pattern WIKI_LINK = Pattern.compile("(!?)\\[\\[([^\\[\\]\\n]+?)]]");
+    private static final Pattern HEADING = Pattern.compile("^ {0,3}(#{1,6})(?:[ \\t]+(.*?))?(?:[ \\t]+#+)?[ \\t]*$");
+    private static final Pattern INLINE_CODE = Pattern.compile("(`+).*?\\1");
+
+    /**
+     * @param wikiLinks цели ссылок без псевдонима ({@code |}) и якоря ({@code #}, {@code ^}), без повторов
+     */
+    public record Content(List<String> wikiLinks, List<NoteHeading> headings, int wordCount) {}
+
+    private NoteContentParser() {
+    }
+
+    public static Content parse(String content) {
+        if (content == null || content.isEmpty()) {
+            return new Content(List.of(), List.of(), 0);
+        }
+
+        Set<String> links = new LinkedHashSet<>();
+        List<NoteHeading> headings = new ArrayList<>();
+        int words = 0;
+        String fence = null;
+        for (String line : content.split("\n", -1)) {
+            String trimmed = line.strip();
+            if (fence != null) {
+                if (trimmed.startsWith(fence)) {
+                    fence = null;
+                }
+                continue;
+            }
+            if (trimmed.startsWith("```") || trimmed.startsWith("~~~")) {
+                fence = trimmed.substring(0, 3);
+                continue;
+            }
+
+            String text = INLINE_CODE.matcher(line).replaceAll(" ");
+            Matcher heading = HEADING.matcher(text);
+            if (heading.matches() && heading.group(2) != null && !heading.group(2).isBlank()) {
+                headings.add(new NoteHeading(heading.group(1).length(), heading.group(2).strip()));
+            }
+            Matcher link = WIKI_LINK.matcher(text);
+            while (link.find()) {
+                String target = target(link.group(2));
+                if (link.group(1).isEmpty() && !target.isEmpty()) {
+                    links.add(target);
+                }
+            }
+            words += countWords(text);
+        }
+        return new Content(List.copyOf(links), headings, words);
+    }
+
+    // [[Заметка#Раздел|подпись]] → Заметка
+    private static String target(String link) {
+        int end = link.length();
+        for (char separator : new char[] {'|', '#', '^'}) {
+            int index = link.indexOf(separator);
+            if (index >= 0 && index < end) {
+                end = index;
+            }
+        }
+        return link.substring(0, end).strip();
+    }
+
+    // Слово — непрерывная последовательность букв и цифр, как токен в TextAnalyzer
+    private static int countWords(String text) {
+        int words = 0;
+        boolean inWord = false;
+        for (int i = 0; i < text.length(); i++) {
+            boolean letter = Character.isLetterOrDigit(text.charAt(i));
+            if (letter && !inWord) {
+                words++;
+            }
+            inWord = letter;
+        }
+        return words;
+    }
+}
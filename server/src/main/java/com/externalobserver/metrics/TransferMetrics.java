@@ -0,0 +1,58 @@
+package com.externalobserver.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Размеры и длительность импорта и экспорта.
+ */
+@Component
+@RequiredArgsConstructor
+public class TransferMetrics {
+    private final MeterRegistry registry;
+
+    public void recordImport(int imported, int failed, long bytes, Duration duration) {
+        Counter.builder("observer.import.files")
+            .tag("result", "imported")
+            .register(registry)
+            .increment(imported);
+        Counter.builder("observer.import.files")
+            .tag("result", "failed")
+            .register(registry)
+            .increment(failed);
+        DistributionSummary.builder("observer.import.size")
+            .baseUnit("bytes")
+            .publishPercentileHistogram()
+            .register(registry)
+            .record(bytes);
+        Timer.builder("observer.import.duration")
+            .publishPercentileHistogram()
+            .register(registry)
+            .record(duration);
+    }
+
+    public void recordExport(String format, long items, long bytes, Duration duration) {
+        DistributionSummary.builder("observer.export.items")
+            .tag("format", format)
+            .publishPercentileHistogram()
+            .register(registry)
+            .record(items);
+        DistributionSummary.builder("observer.export.size")
+            .tag("format", format)
+            .baseUnit("bytes")
+            .publishPercentileHistogram()
+            .register(registry)
+            .record(bytes);
+        Timer.builder("observer.export.duration")
+            .tag("format", format)
+            .publishPercentileHistogram()
+            .register(registry)
+            .record(duration);
+    }
+}
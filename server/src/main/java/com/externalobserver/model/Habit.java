@@ -2,11 +2,18 @@ package com.externalobserver.model;
 
 import lombok.Data;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 import java.time.LocalDateTime;
 
 @Data
 @Document(collection = "habits")
+@CompoundIndexes({
+    @CompoundIndex(name = "username_order", def = "{'username': 1, 'order': 1}"),
+    // Синхронизация изменений (SyncService)
+    @CompoundIndex(name = "username_updatedAt_id", def = "{'username': 1, 'updatedAt': 1, '_id': 1}")
+})
 public class Habit {
     @Id
     private String id;
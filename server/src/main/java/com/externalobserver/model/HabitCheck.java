@@ -2,12 +2,22 @@ package com.externalobserver.model;
 
 import lombok.Data;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 
+// Уникальный индекс (username, habitId, date) — ключ upsert-ов, поиск по привычке и удаление
+// вместе с ней — создаёт HabitCheckIndexMigration после удаления дублей
 @Data
 @Document(collection = "habit_checks")
+@CompoundIndexes({
+    // Отметки пользователя за день и за период
+    @CompoundIndex(name = "username_date", def = "{'username': 1, 'date': 1}"),
+    // Синхронизация изменений (SyncService)
+    @CompoundIndex(name = "username_updatedAt_id", def = "{'username': 1, 'updatedAt': 1, '_id': 1}")
+})
 public class HabitCheck {
     @Id
     private String id;
@@ -0,0 +1,112 @@
+package com.externalobserver.model;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.mapping.Document;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Отметки одной привычки за календарный год: бит (день года - 1) означает выполнение.
+ * Биты лежат в словах по 64 штуки ("0".."5"), чтобы каждое слово можно было обновить
+ * атомарным $bit; комментарии хранятся только для дней, где они есть.
+ */
+@Data
+@Document(collection = "habit_check_years")
+@CompoundIndexes({
+    @CompoundIndex(name = "username_year", def = "{'username': 1, 'year': 1}"),
+    // Синхронизация изменений (SyncService)
+    @CompoundIndex(name = "username_updatedAt_id", def = "{'username': 1, 'updatedAt': 1, '_id': 1}")
+})
+public class HabitCheckYear {
+    @Id
+    private String id;
+    private String username;
+    private String habitId;
+    private int year;
+    private Map<String, Long> bits;
+    private Map<String, String> comments;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+
+    public static String id(String username, String habitId, int year) {
+        return username + ":" + habitId + ":" + year;
+    }
+
+    // Поле слова, в котором лежит бит дня: "bits.0" для января, "bits.5" для конца декабря
+    public static String wordField(LocalDate date) {
+        return "bits." + ((date.getDayOfYear() - 1) >>> 6);
+    }
+
+    public static long mask(LocalDate date) {
+        return 1L << ((date.getDayOfYear() - 1) & 63);
+    }
+
+    public static String commentField(LocalDate date) {
+        return "comments." + date.getDayOfYear();
+    }
+
+    public boolean isCompleted(LocalDate date) {
+        Long word = bits != null ? bits.get(String.valueOf((date.getDayOfYear() - 1) >>> 6)) : null;
+        return word != null && (word & mask(date)) != 0;
+    }
+
+    /**
+     * Отметки в пределах [startDate, endDate]: дни с установленным битом или комментарием.
+     */
+    public List<HabitCheck> toChecks(LocalDate startDate, LocalDate endDate) {
+        LocalDate first = LocalDate.ofYearDay(year, 1);
+        LocalDate from = startDate.isAfter(first) ? startDate : first;
+        LocalDate last = first.plusYears(1).minusDays(1);
+        LocalDate to = endDate.isBefore(last) ? endDate : last;
+
+        List<HabitCheck> checks = new ArrayList<>();
+        for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+            boolean completed = isCompleted(date);
+            String comment = comments != null ? comments.get(String.valueOf(date.getDayOfYear())) : null;
+            if (completed || comment != null) {
+                checks.add(toCheck(date, completed, comment));
+            }
+        }
+        return checks;
+    }
+
+    /**
+     * Число отметок в году: дни с установленным битом или комментарием. При синхронизации
+     * год передаётся этим документом целиком, и клиент заменяет им отметки привычки за год.
+     */
+    public int checkCount() {
+        int count = 0;
+        if (bits != null) {
+            for (Long word : bits.values()) {
+                count += word != null ? Long.bitCount(word) : 0;
+            }
+        }
+        if (comments != null) {
+            for (String day : comments.keySet()) {
+                if (!isCompleted(LocalDate.ofYearDay(year, Integer.parseInt(day)))) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private HabitCheck toCheck(LocalDate date, boolean completed, String comment) {
+        HabitCheck check = new HabitCheck();
+        check.setId(habitId + ":" + date);
+        check.setHabitId(habitId);
+        check.setUsername(username);
+        check.setDate(date);
+        check.setCompleted(completed);
+        check.setComment(comment);
+        check.setCreatedAt(createdAt);
+        check.setUpdatedAt(updatedAt);
+        return check;
+    }
+}
@@ -2,6 +2,8 @@ package com.externalobserver.model;
 
 import lombok.Data;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 import java.time.LocalDateTime;
 import java.util.List;
@@ -9,6 +11,12 @@ import java.util.Map;
 
 @Data
 @Document(collection = "notes")
+@CompoundIndexes({
+    // findByUsername, постраничные сводки (findSummaries) в обоих направлениях сортировки и синхронизация
+    @CompoundIndex(name = "username_updated_id", def = "{'username': 1, 'updated': -1, '_id': -1}"),
+    // findByTagsInAndUsername
+    @CompoundIndex(name = "username_tags", def = "{'username': 1, 'tags': 1}")
+})
 public class Note {
     @Id
     private String id;
@@ -21,7 +29,10 @@ public class Note {
     private LocalDateTime created;
     private LocalDateTime updated;
     private List<String> tags;
-    private List<String> links;
+    private List<String> links; // id заметок: ссылки [[...]] из content и переданные клиентом
+    private List<String> danglingLinks; // цели [[...]], для которых нет заметки
+    private List<NoteHeading> headings;
+    private Integer wordCount;
     private Map<String, Object> metadata;
     private String status;
     private Integer version;
@@ -0,0 +1,13 @@
+package com.externalobserver.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class NoteHeading {
+    private int level; // 1-6, число # в заголовке
+    private String text;
+}
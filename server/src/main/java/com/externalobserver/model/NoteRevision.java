@@ -0,0 +1,30 @@
+package com.externalobserver.model;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+import java.time.LocalDateTime;
+
+/**
+ * Предыдущая версия заметки. {@code data} — сжатый полный снимок содержимого
+ * или обратная дельта относительно версии {@code version + 1} (см. RevisionCodec).
+ * Ревизия сохраняется до обновления заметки, поэтому дельта проигравшей параллельной записи
+ * может остаться неисправленной; nextChecksum позволяет это обнаружить при восстановлении.
+ */
+@Data
+@Document(collection = "note_revisions")
+@CompoundIndex(name = "username_noteId_version", def = "{'username': 1, 'noteId': 1, 'version': -1}", unique = true)
+public class NoteRevision {
+    @Id
+    private String id;
+    private String noteId;
+    private String username;
+    private int version;
+    private String title;
+    private LocalDateTime updated;
+    private boolean snapshot;
+    private int contentLength;
+    private Long nextChecksum; // CRC32 содержимого версии version + 1, к которому применяется дельта
+    private byte[] data;
+}
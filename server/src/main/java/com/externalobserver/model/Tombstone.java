@@ -0,0 +1,37 @@
+package com.externalobserver.model;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * След удалённого документа для синхронизации изменений. Хранится RETENTION и удаляется
+ * TTL-индексом; клиент с более старым токеном получает все данные заново.
+ */
+@Data
+@Document(collection = "tombstones")
+@CompoundIndex(name = "username_deleted_id", def = "{'username': 1, 'deleted': 1, '_id': 1}")
+public class Tombstone {
+    public static final Duration RETENTION = Duration.ofDays(90);
+
+    @Id
+    private String id;
+    private String username;
+    private String collection; // notes, habits или habit_checks (дубли отметок); отметки удаляются вместе с привычкой
+    private String documentId;
+    @Indexed(name = "deleted_ttl", expireAfter = "90d") // RETENTION
+    private LocalDateTime deleted;
+
+    public static Tombstone of(String username, String collection, String documentId) {
+        Tombstone tombstone = new Tombstone();
+        tombstone.setUsername(username);
+        tombstone.setCollection(collection);
+        tombstone.setDocumentId(documentId);
+        tombstone.setDeleted(LocalDateTime.now());
+        return tombstone;
+    }
+}
@@ -0,0 +1,140 @@
+package com.externalobserver.repository;
+
+import com.externalobserver.dto.HabitCheckUpdate;
+import com.externalobserver.model.HabitCheck;
+import com.mongodb.bulk.BulkWriteResult;
+import com.externalobserver.model.HabitCheckYear;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Отметки в виде годовых битовых карт: один документ на привычку и год.
+ * Переключение отметки — один upsert с атомарным $bit, чтение периода —
+ * по документу на привычку за каждый затронутый год.
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "habits.checks.storage", havingValue = "bitmap")
+public class BitmapHabitCheckStore implements HabitCheckStore {
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public List<HabitCheck> findByDate(String username, LocalDate date) {
+        return findForPeriod(username, date, date);
+    }
+
+    @Override
+    public List<HabitCheck> findForPeriod(String username, LocalDate startDate, LocalDate endDate) {
+        Query query = new Query(Criteria.where("username").is(username)
+            .and("year").gte(startDate.getYear()).lte(endDate.getYear()));
+        return mongoTemplate.find(query, HabitCheckYear.class).stream()
+            .flatMap(year -> year.toChecks(startDate, endDate).stream())
+            .sorted(Comparator.comparing(HabitCheck::getDate).thenComparing(HabitCheck::getHabitId))
+            .toList();
+    }
+
+    @Override
+    public HabitCheck save(String username, String habitId, LocalDate date, boolean completed, String comment) {
+        LocalDateTime now = LocalDateTime.now();
+        mongoTemplate.upsert(yearOf(username, habitId, date), toggle(username, habitId, date, completed, comment, now),
+            HabitCheckYear.class);
+
+        HabitCheck check = new HabitCheck();
+        check.setId(habitId + ":" + date);
+        check.setHabitId(habitId);
+        check.setUsername(username);
+        check.setDate(date);
+        check.setCompleted(completed);
+        check.setComment(comment);
+        check.setUpdatedAt(now);
+        return check;
+    }
+
+    // Отметки разных дней одного года меняют разные биты, поэтому порядок upsert-ов не важен
+    @Override
+    public int saveAll(String username, List<HabitCheckUpdate> updates) {
+        if (updates.isEmpty()) {
+            return 0;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        BulkOperations operations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, HabitCheckYear.class);
+        for (HabitCheckUpdate update : updates) {
+            operations.upsert(
+                yearOf(username, update.getHabitId(), update.getDate()),
+                toggle(username, update.getHabitId(), update.getDate(), update.isCompleted(), update.getComment(), now));
+        }
+        BulkWriteResult result = operations.execute();
+        return result.getMatchedCount() + result.getUpserts().size();
+    }
+
+    @Override
+    public void deleteByHabit(String username, String habitId) {
+        Query query = new Query(Criteria.where("username").is(username).and("habitId").is(habitId));
+        mongoTemplate.remove(query, HabitCheckYear.class);
+    }
+
+    // Год передаётся одним документом (слова битовой карты и комментарии), а не отметкой на каждый день.
+    // Годы читаются по порядку изменений, пока их отметки помещаются в limit
+    @Override
+    public HabitCheckChanges findChangedSince(
+            String username, ChangePosition after, LocalDateTime until, int limit) {
+        ChangeBatch<HabitCheckYear> years = ChangeBatch.of(
+            mongoTemplate.find(ChangeQueries.since("updatedAt", username, after, limit + 1), HabitCheckYear.class),
+            limit, BitmapHabitCheckStore::position, until);
+
+        List<HabitCheckYear> page = new ArrayList<>();
+        int checks = 0;
+        for (HabitCheckYear year : years.items()) {
+            int count = Math.max(1, year.checkCount());
+            if (!page.isEmpty() && checks + count > limit) {
+                break;
+            }
+            page.add(year);
+            checks += count;
+        }
+        if (page.size() == years.items().size()) {
+            return new HabitCheckChanges(List.of(), page, years.last(), years.more());
+        }
+        return new HabitCheckChanges(List.of(), page, position(page.get(page.size() - 1)), true);
+    }
+
+    private static ChangePosition position(HabitCheckYear year) {
+        return new ChangePosition(year.getUpdatedAt(), year.getId());
+    }
+
+    private static Query yearOf(String username, String habitId, LocalDate date) {
+        return new Query(Criteria.where("_id").is(HabitCheckYear.id(username, habitId, date.getYear())));
+    }
+
+    private static Update toggle(
+            String username, String habitId, LocalDate date, boolean completed, String comment, LocalDateTime now) {
+        Update update = new Update()
+            .setOnInsert("username", username)
+            .setOnInsert("habitId", habitId)
+            .setOnInsert("year", date.getYear())
+            .setOnInsert("createdAt", now)
+            .currentDate("updatedAt");
+        if (completed) {
+            update.bitwise(HabitCheckYear.wordField(date)).or(HabitCheckYear.mask(date));
+        } else {
+            update.bitwise(HabitCheckYear.wordField(date)).and(~HabitCheckYear.mask(date));
+        }
+        if (comment != null && !comment.isEmpty()) {
+            update.set(HabitCheckYear.commentField(date), comment);
+        } else {
+            update.unset(HabitCheckYear.commentField(date));
+        }
+        return update;
+    }
+}
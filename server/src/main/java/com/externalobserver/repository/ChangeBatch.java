@@ -0,0 +1,31 @@
+package com.externalobserver.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Изменения одной коллекции для синхронизации.
+ * {@code last} — позиция последнего выданного документа ({@code null}, если изменений нет),
+ * {@code more} — после неё есть ещё изменения.
+ */
+public record ChangeBatch<T>(List<T> items, ChangePosition last, boolean more) {
+
+    /**
+     * Собирает часть из документов, прочитанных с лимитом {@code limit + 1} в порядке позиций.
+     * Документы новее {@code until} откладываются до следующего запроса: запись, получившая
+     * время раньше, могла ещё не сохраниться, и курсор не должен её обогнать.
+     */
+    public static <T> ChangeBatch<T> of(
+            List<T> fetched, int limit, Function<T, ChangePosition> position, LocalDateTime until) {
+        List<T> settled = fetched.stream()
+            .takeWhile(item -> {
+                LocalDateTime time = position.apply(item).time();
+                return time == null || !time.isAfter(until);
+            })
+            .toList();
+        boolean more = settled.size() > limit;
+        List<T> items = more ? settled.subList(0, limit) : settled;
+        return new ChangeBatch<>(items, items.isEmpty() ? null : position.apply(items.get(items.size() - 1)), more);
+    }
+}
@@ -0,0 +1,14 @@
+package com.externalobserver.repository;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+
+/**
+ * Позиция в порядке изменений коллекции: время изменения и id последнего выданного документа.
+ * {@code time == null} — документ без времени изменения (старые заметки), такие идут первыми.
+ */
+public record ChangePosition(LocalDateTime time, String id) {
+    public static final Comparator<ChangePosition> ORDER = Comparator
+        .comparing(ChangePosition::time, Comparator.nullsFirst(Comparator.naturalOrder()))
+        .thenComparing(ChangePosition::id);
+}
@@ -0,0 +1,35 @@
+package com.externalobserver.repository;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+/**
+ * Запросы изменений пользователя для синхронизации: keyset по (поле времени, _id)
+ * строго после позиции, по индексу (username, поле времени, _id) без skip.
+ */
+final class ChangeQueries {
+
+    private ChangeQueries() {
+    }
+
+    static Query since(String timeField, String username, ChangePosition after, int limit) {
+        Criteria criteria = Criteria.where("username").is(username);
+        if (after != null) {
+            criteria = new Criteria().andOperator(criteria, after(timeField, after));
+        }
+        return new Query(criteria)
+            .with(Sort.by(Sort.Direction.ASC, timeField, "_id"))
+            .limit(limit);
+    }
+
+    // Документы без времени сортируются как null — в начале
+    private static Criteria after(String timeField, ChangePosition after) {
+        Criteria sameTime = new Criteria().andOperator(
+            Criteria.where(timeField).is(after.time()),
+            Criteria.where("_id").gt(after.id()));
+        return after.time() == null
+            ? new Criteria().orOperator(sameTime, Criteria.where(timeField).ne(null))
+            : new Criteria().orOperator(Criteria.where(timeField).gt(after.time()), sameTime);
+    }
+}
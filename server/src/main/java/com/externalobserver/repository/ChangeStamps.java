@@ -0,0 +1,87 @@
+package com.externalobserver.repository;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.springframework.data.mapping.PersistentPropertyAccessor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+
+import java.util.List;
+
+/**
+ * Запись документа целиком, в которой время изменения для синхронизации ставит MongoDB ($$NOW),
+ * как $currentDate в обновлениях. Граница синхронизации берётся по тем же часам
+ * (см. MongoStorageClock), поэтому её не сдвигают ни часы приложения, ни время записи.
+ */
+final class ChangeStamps {
+    // Поля нет ни в одном документе: фильтр вставки не совпадает с существующим документом,
+    // upsert создаёт новый, а повтор _id падает с duplicate key, как insert
+    private static final String NEVER_PRESENT = "_insertOnly";
+
+    private ChangeStamps() {
+    }
+
+    static UpdateOneModel<Document> insert(Document document, String timeField) {
+        Bson filter = Filters.and(Filters.eq("_id", document.get("_id")), Filters.exists(NEVER_PRESENT));
+        return new UpdateOneModel<>(filter, stamped(document, timeField), new UpdateOptions().upsert(true));
+    }
+
+    // Вставка или замена документа с тем же _id
+    static UpdateOneModel<Document> replace(Document document, String timeField) {
+        return new UpdateOneModel<>(Filters.eq("_id", document.get("_id")), stamped(document, timeField),
+            new UpdateOptions().upsert(true));
+    }
+
+    static void write(MongoTemplate mongoTemplate, Class<?> type, List<UpdateOneModel<Document>> models) {
+        if (!models.isEmpty()) {
+            mongoTemplate.execute(type, collection -> collection.bulkWrite(models, new BulkWriteOptions().ordered(false)));
+        }
+    }
+
+    // Ошибки отдельных записей неупорядоченной пачки по позиции; остальные записи применены
+    static List<BulkWriteError> writeUnordered(
+            MongoTemplate mongoTemplate, Class<?> type, List<UpdateOneModel<Document>> models) {
+        if (models.isEmpty()) {
+            return List.of();
+        }
+        return mongoTemplate.execute(type, collection -> {
+            try {
+                collection.bulkWrite(models, new BulkWriteOptions().ordered(false));
+                return List.of();
+            } catch (MongoBulkWriteException e) {
+                if (e.getWriteConcernError() != null) {
+                    throw e;
+                }
+                return e.getWriteErrors();
+            }
+        });
+    }
+
+    // Документ передаётся литералом, чтобы строки с $ не читались как пути полей
+    private static List<Document> stamped(Document document, String timeField) {
+        return List.of(new Document("$replaceWith", new Document("$mergeObjects",
+            List.of(new Document("$literal", document), new Document(timeField, "$$NOW")))));
+    }
+
+    // Id назначается заранее, как это делает MongoTemplate при вставке
+    static Document toDocument(MongoConverter converter, Object entity) {
+        MongoPersistentEntity<?> persistent = converter.getMappingContext().getRequiredPersistentEntity(entity.getClass());
+        MongoPersistentProperty idProperty = persistent.getRequiredIdProperty();
+        PersistentPropertyAccessor<?> accessor = persistent.getPropertyAccessor(entity);
+        if (accessor.getProperty(idProperty) == null) {
+            accessor.setProperty(idProperty, new ObjectId().toHexString());
+        }
+        Document document = new Document();
+        converter.write(entity, document);
+        return document;
+    }
+}
@@ -0,0 +1,58 @@
+package com.externalobserver.repository;
+
+import com.externalobserver.dto.HabitCheckUpdate;
+import com.externalobserver.model.HabitCheck;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Отметка на каждый день — отдельный документ в коллекции habit_checks.
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "habits.checks.storage", havingValue = "documents", matchIfMissing = true)
+public class DocumentHabitCheckStore implements HabitCheckStore {
+    private final HabitCheckRepository habitCheckRepository;
+
+    @Override
+    public List<HabitCheck> findByDate(String username, LocalDate date) {
+        return habitCheckRepository.findByUsernameAndDateBetweenOrderByDateAsc(username, date, date);
+    }
+
+    @Override
+    public List<HabitCheck> findForPeriod(String username, LocalDate startDate, LocalDate endDate) {
+        return habitCheckRepository.findChecksForPeriod(username, startDate, endDate);
+    }
+
+    // Тот же upsert по ключу (username, habitId, date), что и у saveAll, без чтения перед записью
+    @Override
+    public HabitCheck save(String username, String habitId, LocalDate date, boolean completed, String comment) {
+        HabitCheckUpdate update = new HabitCheckUpdate();
+        update.setHabitId(habitId);
+        update.setDate(date);
+        update.setCompleted(completed);
+        update.setComment(comment);
+        return habitCheckRepository.upsert(username, update);
+    }
+
+    @Override
+    public int saveAll(String username, List<HabitCheckUpdate> updates) {
+        return habitCheckRepository.upsertAll(username, updates);
+    }
+
+    @Override
+    public void deleteByHabit(String username, String habitId) {
+        habitCheckRepository.deleteByUsernameAndHabitId(username, habitId);
+    }
+
+    @Override
+    public HabitCheckChanges findChangedSince(
+            String username, ChangePosition after, LocalDateTime until, int limit) {
+        return HabitCheckChanges.of(ChangeBatch.of(habitCheckRepository.findChangedSince(username, after, limit + 1),
+            limit, check -> new ChangePosition(check.getUpdatedAt(), check.getId()), until));
+    }
+}
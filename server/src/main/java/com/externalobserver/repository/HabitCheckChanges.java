@@ -0,0 +1,23 @@
+package com.externalobserver.repository;
+
+import com.externalobserver.model.HabitCheck;
+import com.externalobserver.model.HabitCheckYear;
+
+import java.util.List;
+
+/**
+ * Изменённые отметки для синхронизации. В формате documents это отдельные отметки,
+ * в формате bitmap — годовые документы целиком: компактная запись, которой клиент
+ * заменяет отметки привычки за год. {@code last} и {@code more} — как в {@link ChangeBatch}.
+ */
+public record HabitCheckChanges(List<HabitCheck> checks, List<HabitCheckYear> years, ChangePosition last, boolean more) {
+
+    public static HabitCheckChanges of(ChangeBatch<HabitCheck> checks) {
+        return new HabitCheckChanges(checks.items(), List.of(), checks.last(), checks.more());
+    }
+
+    // Размер в отметках: лимит страницы синхронизации считается в них, а не в документах
+    public int size() {
+        return checks.size() + years.stream().mapToInt(year -> Math.max(1, year.checkCount())).sum();
+    }
+}
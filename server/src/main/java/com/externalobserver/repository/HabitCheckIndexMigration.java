@@ -0,0 +1,85 @@
+package com.externalobserver.repository;
+
+import com.externalobserver.model.HabitCheck;
+import com.externalobserver.model.Tombstone;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.index.CompoundIndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Создаёт уникальный индекс (username, habitId, date) отметок привычек. До него отметка
+ * могла быть записана дважды, и с дублями индекс не создаётся, поэтому сначала от каждой
+ * пары (привычка, дата) остаётся последняя изменённая отметка — как при upsert-е пачкой.
+ * Удалённые дубли оставляют следы, чтобы синхронизация убрала их и у клиентов.
+ *
+ * Выполняется при создании бина, до приёма запросов; если индекс уже есть, коллекция не читается.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "storage.backend", havingValue = "mongo", matchIfMissing = true)
+public class HabitCheckIndexMigration implements InitializingBean {
+    public static final String INDEX_NAME = "username_habitId_date";
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public void afterPropertiesSet() {
+        IndexOperations indexes = mongoTemplate.indexOps(HabitCheck.class);
+        boolean created = indexes.getIndexInfo().stream()
+            .anyMatch(index -> index.getName().equals(INDEX_NAME) && index.isUnique());
+        if (created) {
+            return;
+        }
+
+        int removed = removeDuplicates();
+        if (indexes.getIndexInfo().stream().anyMatch(index -> index.getName().equals(INDEX_NAME))) {
+            // Неуникальный индекс с тем же именем не даст создать уникальный
+            indexes.dropIndex(INDEX_NAME);
+        }
+        indexes.ensureIndex(new CompoundIndexDefinition(new Document("username", 1).append("habitId", 1).append("date", 1))
+            .named(INDEX_NAME)
+            .unique());
+        log.info("Создан индекс {} отметок привычек, удалено дублей: {}", INDEX_NAME, removed);
+    }
+
+    int removeDuplicates() {
+        Aggregation aggregation = Aggregation.newAggregation(
+            Aggregation.sort(Sort.by(Sort.Direction.DESC, "updatedAt", "_id")),
+            Aggregation.group("username", "habitId", "date")
+                .first("username").as("owner")
+                .push("_id").as("ids")
+                .count().as("count"),
+            Aggregation.match(Criteria.where("count").gt(1))
+        ).withOptions(AggregationOptions.builder().allowDiskUse(true).build());
+
+        int removed = 0;
+        for (Document group : mongoTemplate.aggregate(aggregation, HabitCheck.class, Document.class)) {
+            String username = group.getString("owner");
+            List<Object> ids = group.getList("ids", Object.class);
+            // Первой идёт последняя изменённая отметка, она остаётся
+            List<Object> duplicates = new ArrayList<>(ids.subList(1, ids.size()));
+            mongoTemplate.remove(new Query(Criteria.where("_id").in(duplicates)), HabitCheck.class);
+            ChangeStamps.write(mongoTemplate, Tombstone.class, duplicates.stream()
+                .map(id -> ChangeStamps.insert(ChangeStamps.toDocument(mongoTemplate.getConverter(),
+                    Tombstone.of(username, "habit_checks", id.toString())), "deleted"))
+                .toList());
+            removed += duplicates.size();
+        }
+        return removed;
+    }
+}
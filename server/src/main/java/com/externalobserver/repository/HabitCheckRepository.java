@@ -6,7 +6,7 @@ import org.springframework.data.mongodb.repository.Query;
 import java.time.LocalDate;
 import java.util.List;
 
-public interface HabitCheckRepository extends MongoRepository<HabitCheck, String> {
+public interface HabitCheckRepository extends MongoRepository<HabitCheck, String>, HabitCheckRepositoryCustom {
     List<HabitCheck> findByUsernameAndDateBetweenOrderByDateAsc(
         String username, 
         LocalDate startDate, 
@@ -27,6 +27,8 @@ public interface HabitCheckRepository extends MongoRepository<HabitCheck, String
     );
     
     void deleteByUsername(String username);
+
+    long deleteByUsernameAndHabitId(String username, String habitId);
     
     @Query(value = "{'username': ?0, 'date': {$gte: ?1, $lte: ?2}}", 
            fields = "{'habitId': 1, 'date': 1, 'completed': 1, 'comment': 1}")
@@ -0,0 +1,24 @@
+package com.externalobserver.repository;
+
+import com.externalobserver.dto.HabitCheckUpdate;
+import com.externalobserver.model.HabitCheck;
+import java.util.List;
+
+public interface HabitCheckRepositoryCustom {
+
+    /**
+     * Upsert-ит отметки пользователя по ключу (username, habitId, date) одной неупорядоченной
+     * пачкой. Возвращает число применённых отметок.
+     */
+    int upsertAll(String username, List<HabitCheckUpdate> updates);
+
+    /**
+     * Upsert одной отметки по тому же ключу, что у upsertAll. Возвращает отметку после записи.
+     */
+    HabitCheck upsert(String username, HabitCheckUpdate update);
+
+    /**
+     * Отметки пользователя, изменённые после позиции, в порядке (updatedAt, id), не больше limit.
+     */
+    List<HabitCheck> findChangedSince(String username, ChangePosition after, int limit);
+}
@@ -0,0 +1,62 @@
+package com.externalobserver.repository;
+
+import com.externalobserver.dto.HabitCheckUpdate;
+import com.externalobserver.model.HabitCheck;
+import com.mongodb.bulk.BulkWriteResult;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@RequiredArgsConstructor
+public class HabitCheckRepositoryCustomImpl implements HabitCheckRepositoryCustom {
+    private final MongoTemplate mongoTemplate;
+
+    // Upsert по уникальному индексу (username, habitId, date)
+    @Override
+    public int upsertAll(String username, List<HabitCheckUpdate> updates) {
+        if (updates.isEmpty()) {
+            return 0;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        BulkOperations operations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, HabitCheck.class);
+        for (HabitCheckUpdate update : updates) {
+            operations.upsert(dayOf(username, update), toggle(update, now));
+        }
+        BulkWriteResult result = operations.execute();
+        return result.getMatchedCount() + result.getUpserts().size();
+    }
+
+    // Одновременные upsert-ы одного дня не падают на уникальном индексе: запрос совпадает
+    // с его ключом, и MongoDB повторяет проигравший upsert как обновление
+    @Override
+    public HabitCheck upsert(String username, HabitCheckUpdate update) {
+        return mongoTemplate.findAndModify(dayOf(username, update), toggle(update, LocalDateTime.now()),
+            FindAndModifyOptions.options().upsert(true).returnNew(true), HabitCheck.class);
+    }
+
+    @Override
+    public List<HabitCheck> findChangedSince(String username, ChangePosition after, int limit) {
+        return mongoTemplate.find(ChangeQueries.since("updatedAt", username, after, limit), HabitCheck.class);
+    }
+
+    private static Query dayOf(String username, HabitCheckUpdate update) {
+        return new Query(Criteria.where("username").is(username)
+            .and("habitId").is(update.getHabitId())
+            .and("date").is(update.getDate()));
+    }
+
+    private static Update toggle(HabitCheckUpdate update, LocalDateTime now) {
+        return new Update()
+            .set("completed", update.isCompleted())
+            .set("comment", update.getComment())
+            .currentDate("updatedAt")
+            .setOnInsert("createdAt", now);
+    }
+}
@@ -0,0 +1,34 @@
+package com.externalobserver.repository;
+
+import com.externalobserver.dto.HabitCheckUpdate;
+import com.externalobserver.model.HabitCheck;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Хранилище отметок привычек. Формат выбирается свойством {@code habits.checks.storage}:
+ * {@code documents} — документ на каждую отметку, {@code bitmap} — документ на привычку и год.
+ */
+public interface HabitCheckStore {
+
+    List<HabitCheck> findByDate(String username, LocalDate date);
+
+    List<HabitCheck> findForPeriod(String username, LocalDate startDate, LocalDate endDate);
+
+    HabitCheck save(String username, String habitId, LocalDate date, boolean completed, String comment);
+
+    /**
+     * Применяет отметки одной неупорядоченной пачкой upsert-ов и возвращает число применённых.
+     */
+    int saveAll(String username, List<HabitCheckUpdate> updates);
+
+    void deleteByHabit(String username, String habitId);
+
+    /**
+     * Отметки, изменённые после позиции: не больше limit отметок, без изменений новее until
+     * (см. ChangeBatch). Годовой документ не делится, поэтому первый год отдаётся, даже если
+     * в нём больше отметок, чем limit.
+     */
+    HabitCheckChanges findChangedSince(String username, ChangePosition after, LocalDateTime until, int limit);
+}
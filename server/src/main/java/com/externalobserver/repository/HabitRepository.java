@@ -3,13 +3,20 @@ package com.externalobserver.repository;
 import com.externalobserver.model.Habit;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
-public interface HabitRepository extends MongoRepository<Habit, String> {
+public interface HabitRepository extends MongoRepository<Habit, String>, HabitRepositoryCustom {
     List<Habit> findByUsernameOrderByOrderAsc(String username);
     
     @Query(value = "{'username': ?0}", sort = "{'order': 1}")
     List<Habit> findAllByUsernameOrderByOrder(String username);
     
+    // Последняя привычка по индексу (username, order), без чтения всего списка
+    Optional<Habit> findFirstByUsernameOrderByOrderDesc(String username);
+
+    long countByIdInAndUsername(Collection<String> ids, String username);
+
     void deleteByUsername(String username);
 } 
\ No newline at end of file
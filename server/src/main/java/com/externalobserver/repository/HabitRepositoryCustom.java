@@ -0,0 +1,24 @@
+package com.externalobserver.repository;
+
+import com.externalobserver.model.Habit;
+import java.util.List;
+
+public interface HabitRepositoryCustom {
+
+    /**
+     * Проставляет привычкам порядок по позиции в списке (1, 2, ...) одной неупорядоченной
+     * пачкой updateOne. Чужие привычки фильтр по username не затрагивает.
+     * Возвращает число найденных привычек.
+     */
+    int updateOrder(String username, List<String> habitIds);
+
+    /**
+     * Вставляет привычку или заменяет её целиком по id. Время изменения updatedAt ставит хранилище.
+     */
+    Habit upsert(Habit habit);
+
+    /**
+     * Привычки пользователя, изменённые после позиции, в порядке (updatedAt, id), не больше limit.
+     */
+    List<Habit> findChangedSince(String username, ChangePosition after, int limit);
+}
@@ -0,0 +1,42 @@
+package com.externalobserver.repository;
+
+import com.externalobserver.model.Habit;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.List;
+
+@RequiredArgsConstructor
+public class HabitRepositoryCustomImpl implements HabitRepositoryCustom {
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public int updateOrder(String username, List<String> habitIds) {
+        if (habitIds.isEmpty()) {
+            return 0;
+        }
+        BulkOperations operations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Habit.class);
+        for (int i = 0; i < habitIds.size(); i++) {
+            Query query = new Query(Criteria.where("_id").is(habitIds.get(i)).and("username").is(username));
+            operations.updateOne(query, new Update().set("order", i + 1).currentDate("updatedAt"));
+        }
+        return operations.execute().getMatchedCount();
+    }
+
+    @Override
+    public Habit upsert(Habit habit) {
+        Document document = ChangeStamps.toDocument(mongoTemplate.getConverter(), habit);
+        ChangeStamps.write(mongoTemplate, Habit.class, List.of(ChangeStamps.replace(document, "updatedAt")));
+        return habit;
+    }
+
+    @Override
+    public List<Habit> findChangedSince(String username, ChangePosition after, int limit) {
+        return mongoTemplate.find(ChangeQueries.since("updatedAt", username, after, limit), Habit.class);
+    }
+}
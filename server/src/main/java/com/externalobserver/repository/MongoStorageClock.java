@@ -0,0 +1,28 @@
+package com.externalobserver.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+
+/**
+ * Время primary-сервера из ответа hello: по этим же часам $currentDate и $$NOW ставят время изменений.
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "storage.backend", havingValue = "mongo", matchIfMissing = true)
+public class MongoStorageClock implements StorageClock {
+    private final MongoTemplate mongoTemplate;
+
+    // LocalDateTime читается из даты MongoDB в зоне по умолчанию, как и поля документов
+    @Override
+    public LocalDateTime now() {
+        Date localTime = mongoTemplate.executeCommand(new Document("hello", 1)).getDate("localTime");
+        return LocalDateTime.ofInstant(localTime.toInstant(), ZoneId.systemDefault());
+    }
+}
@@ -0,0 +1,209 @@
+package com.externalobserver.repository;
+
+import com.externalobserver.model.Note;
+import org.bson.BsonBinaryReader;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.DocumentCodec;
+import org.bson.types.Binary;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterLoadEvent;
+import org.springframework.data.mongodb.core.mapping.event.BeforeSaveEvent;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Сжатие больших content и metadata заметок на границе с MongoDB.
+ *
+ * Сжатое значение хранится как Binary с пользовательским подтипом 0x80, первый байт — формат
+ * (текст UTF-8 или BSON-документ под Deflate). Строки и документы без маркера читаются как есть,
+ * поэтому старые заметки продолжают работать. Рядом со сжатым content хранится preview —
+ * сводки списка берут его, не читая и не распаковывая тело.
+ */
+@Component
+public class NoteCompression extends AbstractMongoEventListener<Note> {
+    static final String CONTENT = "content";
+    static final String METADATA = "metadata";
+    public static final String PREVIEW = "preview";
+    public static final int PREVIEW_LENGTH = 160;
+
+    private static final byte SUBTYPE = (byte) 0x80;
+    private static final byte TEXT = 1;
+    private static final byte BSON = 2;
+
+    private final int contentThreshold;
+    private final int metadataThreshold;
+
+    public NoteCompression(
+            @Value("${notes.compression.content-threshold:4096}") int contentThreshold,
+            @Value("${notes.compression.metadata-threshold:4096}") int metadataThreshold) {
+        this.contentThreshold = contentThreshold;
+        this.metadataThreshold = metadataThreshold;
+    }
+
+    @Override
+    public void onBeforeSave(BeforeSaveEvent<Note> event) {
+        if (event.getDocument() != null) {
+            compress(event.getDocument());
+        }
+    }
+
+    /**
+     * Сжимает документ заметки, записываемый в обход MongoTemplate.
+     */
+    public void compress(Document document) {
+        Object content = document.get(CONTENT);
+        if (content instanceof String text) {
+            Object stored = writeContent(text);
+            if (stored instanceof Binary) {
+                document.put(CONTENT, stored);
+                document.put(PREVIEW, preview(text));
+            }
+        }
+        if (document.get(METADATA) instanceof Document metadata) {
+            document.put(METADATA, writeMetadata(metadata));
+        }
+    }
+
+    // Распаковка до маппинга: сущность получает обычные строку и Map
+    @Override
+    public void onAfterLoad(AfterLoadEvent<Note> event) {
+        decompress(event.getDocument());
+    }
+
+    /**
+     * Распаковывает документ заметки, прочитанный в обход MongoTemplate (например, из потока изменений).
+     */
+    public void decompress(Document document) {
+        if (document.get(CONTENT) instanceof Binary binary && isCompressed(binary, TEXT)) {
+            document.put(CONTENT, new String(inflate(binary.getData()), StandardCharsets.UTF_8));
+        }
+        if (document.get(METADATA) instanceof Binary binary && isCompressed(binary, BSON)) {
+            byte[] bytes = inflate(binary.getData());
+            document.put(METADATA, new DocumentCodec().decode(
+                new BsonBinaryReader(ByteBuffer.wrap(bytes)), DecoderContext.builder().build()));
+        }
+    }
+
+    /**
+     * Записывает content в обновление вместе с preview, если текст сжат; {@code null} — $unset.
+     */
+    public void setContent(Update update, String content) {
+        Object stored = content != null ? writeContent(content) : null;
+        if (stored == null) {
+            update.unset(CONTENT);
+            update.unset(PREVIEW);
+        } else if (stored instanceof Binary) {
+            update.set(CONTENT, stored);
+            update.set(PREVIEW, preview(content));
+        } else {
+            update.set(CONTENT, stored);
+            update.unset(PREVIEW);
+        }
+    }
+
+    /**
+     * То же для metadata; значение уже преобразовано конвертером в Document.
+     */
+    public void setMetadata(Update update, Document metadata) {
+        if (metadata == null) {
+            update.unset(METADATA);
+        } else {
+            update.set(METADATA, writeMetadata(metadata));
+        }
+    }
+
+    Object writeContent(String content) {
+        if (content.length() < contentThreshold) {
+            return content;
+        }
+        Binary compressed = compress(content.getBytes(StandardCharsets.UTF_8), TEXT);
+        return compressed != null ? compressed : content;
+    }
+
+    Object writeMetadata(Document metadata) {
+        byte[] bytes = encode(metadata);
+        if (bytes.length < metadataThreshold) {
+            return metadata;
+        }
+        Binary compressed = compress(bytes, BSON);
+        return compressed != null ? compressed : metadata;
+    }
+
+    static String preview(String content) {
+        int length = content.codePointCount(0, content.length());
+        return content.substring(0, content.offsetByCodePoints(0, Math.min(length, PREVIEW_LENGTH)));
+    }
+
+    // null — данные не сжимаются и остаются в исходном виде
+    private static Binary compress(byte[] bytes, byte format) {
+        byte[] compressed = deflate(bytes);
+        if (compressed.length + 1 >= bytes.length) {
+            return null;
+        }
+        byte[] data = new byte[compressed.length + 1];
+        data[0] = format;
+        System.arraycopy(compressed, 0, data, 1, compressed.length);
+        return new Binary(SUBTYPE, data);
+    }
+
+    private static boolean isCompressed(Binary binary, byte format) {
+        return binary.getType() == SUBTYPE && binary.length() > 0 && binary.getData()[0] == format;
+    }
+
+    private static byte[] encode(Document document) {
+        RawBsonDocument raw = new RawBsonDocument(document, new DocumentCodec());
+        ByteBuffer buffer = raw.getByteBuffer().asNIO();
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private static byte[] deflate(byte[] bytes) {
+        Deflater deflater = new Deflater();
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 2 + 16);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] data) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data, 1, data.length - 1);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 3);
+            byte[] buffer = new byte[8192];
+            while (!inflater.finished()) {
+                int read = inflater.inflate(buffer);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new UncheckedIOException(new IOException("Обрезанные сжатые данные заметки"));
+                }
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new UncheckedIOException(new IOException("Повреждённые сжатые данные заметки", e));
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.externalobserver.repository;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Курсор постраничных сводок: updated и id последней выданной заметки.
+ * {@code updated == null} — заметка без даты изменения.
+ */
+public record NoteCursor(LocalDateTime updated, String id) {
+    private static final String NULL_UPDATED = "-";
+
+    public String encode() {
+        String value = (updated != null ? updated.toString() : NULL_UPDATED) + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static NoteCursor decode(String cursor) {
+        String value;
+        try {
+            value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Некорректный курсор", e);
+        }
+        String[] parts = value.split("\\|", 2);
+        if (parts.length != 2 || parts[1].isEmpty()) {
+            throw new IllegalArgumentException("Некорректный курсор");
+        }
+        if (NULL_UPDATED.equals(parts[0])) {
+            return new NoteCursor(null, parts[1]);
+        }
+        try {
+            return new NoteCursor(LocalDateTime.parse(parts[0]), parts[1]);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Некорректный курсор", e);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.externalobserver.repository;
+
+import com.externalobserver.dto.NoteSortOrder;
+import com.externalobserver.dto.NoteSummaryPage;
+import com.externalobserver.model.Note;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+public interface NoteRepositoryCustom {
+    NoteSummaryPage findSummaries(String username, NoteSortOrder order, String cursor, int limit);
+
+    /**
+     * Вставляет заметки одной неупорядоченной пачкой. Время изменения updated ставит хранилище.
+     * Возвращает ошибки по позиции в списке; остальные заметки вставлены.
+     */
+    Map<Integer, String> insertUnordered(List<Note> notes);
+
+    /**
+     * Заменяет изменяемые поля заметки одним findAndModify, если совпадают id, username
+     * и ожидаемая версия (0 — заметка без поля version, созданная до появления версий), и увеличивает версию.
+     * Время изменения updated ставит хранилище.
+     * Возвращает заметку до изменения (из неё пишется ревизия) или пустой Optional, если условие не выполнено.
+     */
+    Optional<Note> replaceIfVersion(String id, String username, int expectedVersion, Note changes);
+
+    /**
+     * Меняет только переданные поля ({@code null} — $unset), если версия совпадает, и увеличивает версию.
+     * Как и replaceIfVersion, возвращает заметку до изменения.
+     */
+    Optional<Note> updateFieldsIfVersion(String id, String username, int expectedVersion, Map<String, Object> fields);
+
+    /**
+     * Заменяет links и danglingLinks, если версия совпадает. Содержимое не меняется, поэтому
+     * версия остаётся прежней; updated сдвигается, чтобы изменение дошло до синхронизации.
+     * Возвращает false, если заметку успели изменить или удалить.
+     */
+    boolean relinkIfVersion(String id, String username, int expectedVersion,
+                            List<String> links, List<String> danglingLinks);
+
+    /**
+     * Только содержимое, ссылки, версия, название и время изменения заметки — всё, что нужно
+     * для применения правок и записи ревизии до обновления.
+     */
+    Optional<Note> findContentAndVersion(String id, String username);
+
+    /**
+     * Заметки пользователя, изменённые после позиции, в порядке (updated, id), не больше limit.
+     */
+    List<Note> findChangedSince(String username, ChangePosition after, int limit);
+}
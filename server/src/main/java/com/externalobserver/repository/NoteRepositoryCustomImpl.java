@@ -0,0 +1,194 @@
+package com.externalobserver.repository;
+
+import com.externalobserver.dto.NoteSortOrder;
+import com.externalobserver.dto.NoteSummary;
+import com.externalobserver.dto.NoteSummaryPage;
+import com.externalobserver.model.Note;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.model.UpdateOneModel;
+import org.bson.Document;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationExpression;
+import org.springframework.data.mongodb.core.aggregation.ComparisonOperators;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.aggregation.DataTypeOperators;
+import org.springframework.data.mongodb.core.aggregation.StringOperators;
+import org.springframework.data.mongodb.core.aggregation.TypedAggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+@RequiredArgsConstructor
+public class NoteRepositoryCustomImpl implements NoteRepositoryCustom {
+    private final MongoTemplate mongoTemplate;
+    private final NoteCompression compression;
+
+    // Keyset-пагинация по (updated, _id): следующая страница начинается строго после курсора,
+    // поэтому запрос идёт по индексу (username, updated, _id) без skip
+    @Override
+    public NoteSummaryPage findSummaries(String username, NoteSortOrder order, String cursor, int limit) {
+        boolean descending = order == NoteSortOrder.UPDATED_DESC;
+        Sort.Direction direction = descending ? Sort.Direction.DESC : Sort.Direction.ASC;
+
+        Criteria criteria = Criteria.where("username").is(username);
+        if (cursor != null && !cursor.isBlank()) {
+            criteria = new Criteria().andOperator(criteria, afterCursor(cursor, descending));
+        }
+
+        TypedAggregation<Note> aggregation = Aggregation.newAggregation(Note.class,
+            Aggregation.match(criteria),
+            Aggregation.sort(Sort.by(direction, "updated").and(Sort.by(direction, "_id"))),
+            Aggregation.limit(limit + 1),
+            Aggregation.project("title", "type", "tags", "updated")
+                .and(previewExpression()).as("preview"));
+
+        List<NoteSummary> items = new ArrayList<>(
+            mongoTemplate.aggregate(aggregation, NoteSummary.class).getMappedResults());
+
+        String nextCursor = null;
+        if (items.size() > limit) {
+            items.remove(limit);
+            NoteSummary last = items.get(limit - 1);
+            nextCursor = new NoteCursor(last.getUpdated(), last.getId()).encode();
+        }
+        return new NoteSummaryPage(items, nextCursor);
+    }
+
+    @Override
+    public Map<Integer, String> insertUnordered(List<Note> notes) {
+        Map<Integer, String> errors = new HashMap<>();
+        List<UpdateOneModel<Document>> inserts = new ArrayList<>();
+        for (Note note : notes) {
+            Document document = ChangeStamps.toDocument(mongoTemplate.getConverter(), note);
+            compression.compress(document);
+            inserts.add(ChangeStamps.insert(document, "updated"));
+        }
+        for (BulkWriteError error : ChangeStamps.writeUnordered(mongoTemplate, Note.class, inserts)) {
+            errors.put(error.getIndex(), error.getMessage());
+        }
+        return errors;
+    }
+
+    // Заметки без updated сортируются как null: в начале по возрастанию и в конце по убыванию
+    private Criteria afterCursor(String cursor, boolean descending) {
+        NoteCursor after = NoteCursor.decode(cursor);
+        String id = after.id();
+        LocalDateTime updated = after.updated();
+
+        Criteria sameUpdated = new Criteria().andOperator(
+            Criteria.where("updated").is(updated),
+            descending ? Criteria.where("_id").lt(id) : Criteria.where("_id").gt(id));
+        if (updated == null) {
+            return descending
+                ? sameUpdated
+                : new Criteria().orOperator(sameUpdated, Criteria.where("updated").ne(null));
+        }
+        return descending
+            ? new Criteria().orOperator(Criteria.where("updated").lt(updated), sameUpdated, Criteria.where("updated").is(null))
+            : new Criteria().orOperator(Criteria.where("updated").gt(updated), sameUpdated);
+    }
+
+    @Override
+    public Optional<Note> replaceIfVersion(String id, String username, int expectedVersion, Note changes) {
+        Query query = versionQuery(id, username, expectedVersion);
+
+        // Как и save, пустые поля не хранятся: null превращается в $unset
+        Update update = new Update()
+            .currentDate("updated")
+            .inc("version", 1);
+        setOrUnset(update, "title", changes.getTitle());
+        compression.setContent(update, changes.getContent());
+        setOrUnset(update, "createdAt", changes.getCreatedAt());
+        setOrUnset(update, "updatedAt", changes.getUpdatedAt());
+        setOrUnset(update, "type", changes.getType());
+        setOrUnset(update, "path", changes.getPath());
+        setOrUnset(update, "tags", changes.getTags());
+        setOrUnset(update, "links", changes.getLinks());
+        setOrUnset(update, "danglingLinks", changes.getDanglingLinks());
+        setOrUnset(update, "headings", changes.getHeadings());
+        setOrUnset(update, "wordCount", changes.getWordCount());
+        compression.setMetadata(update, changes.getMetadata() != null
+            ? (Document) mongoTemplate.getConverter().convertToMongoType(changes.getMetadata())
+            : null);
+        setOrUnset(update, "status", changes.getStatus());
+
+        return Optional.ofNullable(mongoTemplate.findAndModify(
+            query, update, FindAndModifyOptions.options().returnNew(false), Note.class));
+    }
+
+    @Override
+    public Optional<Note> updateFieldsIfVersion(
+            String id, String username, int expectedVersion, Map<String, Object> fields) {
+        Query query = versionQuery(id, username, expectedVersion);
+        Update update = new Update()
+            .currentDate("updated")
+            .inc("version", 1);
+        fields.forEach((field, value) -> {
+            if (NoteCompression.CONTENT.equals(field)) {
+                compression.setContent(update, (String) value);
+            } else {
+                setOrUnset(update, field, value);
+            }
+        });
+
+        return Optional.ofNullable(mongoTemplate.findAndModify(
+            query, update, FindAndModifyOptions.options().returnNew(false), Note.class));
+    }
+
+    @Override
+    public boolean relinkIfVersion(String id, String username, int expectedVersion,
+                                   List<String> links, List<String> danglingLinks) {
+        Query query = versionQuery(id, username, expectedVersion);
+        Update update = new Update().currentDate("updated");
+        setOrUnset(update, "links", links);
+        setOrUnset(update, "danglingLinks", danglingLinks);
+        return mongoTemplate.updateFirst(query, update, Note.class).getMatchedCount() > 0;
+    }
+
+    @Override
+    public Optional<Note> findContentAndVersion(String id, String username) {
+        Query query = new Query(Criteria.where("_id").is(id).and("username").is(username));
+        query.fields().include("content", "links", "version", "title", "updated", "username");
+        return Optional.ofNullable(mongoTemplate.findOne(query, Note.class));
+    }
+
+    @Override
+    public List<Note> findChangedSince(String username, ChangePosition after, int limit) {
+        return mongoTemplate.find(ChangeQueries.since("updated", username, after, limit), Note.class);
+    }
+
+    // Сжатое тело не читается: его preview сохранён рядом при записи
+    private static AggregationExpression previewExpression() {
+        return ConditionalOperators
+            .when(ComparisonOperators.valueOf(DataTypeOperators.Type.typeOf(NoteCompression.CONTENT)).equalToValue("binData"))
+            .thenValueOf(NoteCompression.PREVIEW)
+            .otherwiseValueOf(StringOperators.valueOf(NoteCompression.CONTENT).substringCP(0, NoteCompression.PREVIEW_LENGTH));
+    }
+
+    // Версия 0 — заметка без поля version: $inc добавит его со значением 1
+    private static Query versionQuery(String id, String username, int expectedVersion) {
+        Criteria criteria = Criteria.where("_id").is(id).and("username").is(username);
+        return new Query(expectedVersion == 0
+            ? criteria.and("version").exists(false)
+            : criteria.and("version").is(expectedVersion));
+    }
+
+    private static void setOrUnset(Update update, String field, Object value) {
+        if (value != null) {
+            update.set(field, value);
+        } else {
+            update.unset(field);
+        }
+    }
+}
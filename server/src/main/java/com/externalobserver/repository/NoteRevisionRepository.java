@@ -0,0 +1,20 @@
+package com.externalobserver.repository;
+
+import com.externalobserver.model.NoteRevision;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
+import java.util.List;
+
+public interface NoteRevisionRepository extends MongoRepository<NoteRevision, String>, NoteRevisionRepositoryCustom {
+
+    // Страница списка ревизий без сжатых данных: версии меньше before, от новых к старым
+    @Query(value = "{'username': ?0, 'noteId': ?1, 'version': {$lt: ?2}}", fields = "{'data': 0}", sort = "{'version': -1}")
+    List<NoteRevision> findSummaries(String username, String noteId, int before, Limit limit);
+
+    // Ревизии от from до to включительно, от новых к старым — в порядке применения дельт
+    @Query(value = "{'username': ?0, 'noteId': ?1, 'version': {$gte: ?2, $lte: ?3}}", sort = "{'version': -1}")
+    List<NoteRevision> findChain(String username, String noteId, int from, int to);
+
+    long deleteByUsernameAndNoteId(String username, String noteId);
+}
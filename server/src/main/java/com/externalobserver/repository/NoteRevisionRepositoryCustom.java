@@ -0,0 +1,11 @@
+package com.externalobserver.repository;
+
+import com.externalobserver.model.NoteRevision;
+
+public interface NoteRevisionRepositoryCustom {
+
+    /**
+     * Заменяет ревизию с тем же (username, noteId, version) или вставляет её, если такой нет.
+     */
+    void replace(NoteRevision revision);
+}
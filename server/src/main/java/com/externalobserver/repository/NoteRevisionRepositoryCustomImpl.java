@@ -0,0 +1,23 @@
+package com.externalobserver.repository;
+
+import com.externalobserver.model.NoteRevision;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+@RequiredArgsConstructor
+public class NoteRevisionRepositoryCustomImpl implements NoteRevisionRepositoryCustom {
+    private final MongoTemplate mongoTemplate;
+
+    // Upsert по уникальному индексу (username, noteId, version); _id заменяемого документа сохраняется
+    @Override
+    public void replace(NoteRevision revision) {
+        revision.setId(null);
+        Query query = new Query(Criteria.where("username").is(revision.getUsername())
+            .and("noteId").is(revision.getNoteId())
+            .and("version").is(revision.getVersion()));
+        mongoTemplate.findAndReplace(query, revision, FindAndReplaceOptions.options().upsert());
+    }
+}
@@ -0,0 +1,12 @@
+package com.externalobserver.repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * Часы хранилища, которыми помечаются изменения. Граница синхронизации берётся по ним же,
+ * а не по часам приложения.
+ */
+public interface StorageClock {
+
+    LocalDateTime now();
+}
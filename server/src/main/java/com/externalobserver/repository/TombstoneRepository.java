@@ -0,0 +1,7 @@
+package com.externalobserver.repository;
+
+import com.externalobserver.model.Tombstone;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+public interface TombstoneRepository extends MongoRepository<Tombstone, String>, TombstoneRepositoryCustom {
+}
@@ -0,0 +1,17 @@
+package com.externalobserver.repository;
+
+import com.externalobserver.model.Tombstone;
+import java.util.List;
+
+public interface TombstoneRepositoryCustom {
+
+    /**
+     * Вставляет следы удалений одной пачкой. Время удаления deleted ставит хранилище.
+     */
+    void insertAll(List<Tombstone> tombstones);
+
+    /**
+     * Удаления пользователя после позиции в порядке (deleted, id), не больше limit.
+     */
+    List<Tombstone> findChangedSince(String username, ChangePosition after, int limit);
+}
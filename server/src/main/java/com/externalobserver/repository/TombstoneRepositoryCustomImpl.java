@@ -0,0 +1,24 @@
+package com.externalobserver.repository;
+
+import com.externalobserver.model.Tombstone;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.List;
+
+@RequiredArgsConstructor
+public class TombstoneRepositoryCustomImpl implements TombstoneRepositoryCustom {
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public void insertAll(List<Tombstone> tombstones) {
+        ChangeStamps.write(mongoTemplate, Tombstone.class, tombstones.stream()
+            .map(tombstone -> ChangeStamps.insert(ChangeStamps.toDocument(mongoTemplate.getConverter(), tombstone), "deleted"))
+            .toList());
+    }
+
+    @Override
+    public List<Tombstone> findChangedSince(String username, ChangePosition after, int limit) {
+        return mongoTemplate.find(ChangeQueries.since("deleted", username, after, limit), Tombstone.class);
+    }
+}
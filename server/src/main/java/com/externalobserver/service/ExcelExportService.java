@@ -2,60 +2,98 @@ package com.externalobserver.service;
 
 import com.externalobserver.model.Habit;
 import com.externalobserver.model.HabitCheck;
+import com.externalobserver.metrics.CountingOutputStream;
+import com.externalobserver.metrics.TransferMetrics;
 import lombok.RequiredArgsConstructor;
+import org.apache.poi.ss.SpreadsheetVersion;
 import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.springframework.stereotype.Service;
-import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class ExcelExportService {
     private final HabitService habitService;
+    private final TransferMetrics transferMetrics;
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd.MM.yyyy");
 
-    public byte[] exportHabitChecksToExcel(
+    // Сколько строк SXSSF держит в памяти, остальные сбрасываются во временный файл
+    private static final int ROW_ACCESS_WINDOW = 100;
+    // Ширина столбцов в 1/256 символа: считаем сами вместо autoSizeColumn, который измеряет каждую ячейку
+    private static final int DATE_COLUMN_WIDTH = 12 * 256;
+    private static final int MIN_NAME_COLUMN_WIDTH = 20 * 256;
+    private static final int MAX_NAME_COLUMN_WIDTH = 60 * 256;
+    // Первый столбец занят названиями привычек, в остальных — дни периода
+    public static final int MAX_DAYS = SpreadsheetVersion.EXCEL2007.getMaxColumns() - 1;
+
+    /**
+     * Проверяет период до начала записи ответа: ошибка посреди потока оставила бы клиенту
+     * обрезанный файл со статусом 200.
+     */
+    public static void validatePeriod(LocalDate startDate, LocalDate endDate) {
+        if (endDate.isBefore(startDate)) {
+            throw new IllegalArgumentException("Дата окончания раньше даты начала");
+        }
+        if (ChronoUnit.DAYS.between(startDate, endDate) + 1 > MAX_DAYS) {
+            throw new IllegalArgumentException("Период длиннее " + MAX_DAYS + " дней не помещается на лист");
+        }
+    }
+
+    public void exportHabitChecksToExcel(
         String username,
         LocalDate startDate,
-        LocalDate endDate
-    ) throws Exception {
+        LocalDate endDate,
+        OutputStream outputStream
+    ) throws IOException {
+        validatePeriod(startDate, endDate);
+        long started = System.nanoTime();
         List<Habit> habits = habitService.getHabits(username);
         List<HabitCheck> checks = habitService.getHabitChecksForPeriod(username, startDate, endDate);
+        int days = (int) ChronoUnit.DAYS.between(startDate, endDate) + 1;
+
+        // Отметки каждой привычки по номеру дня от начала периода
+        Map<String, HabitCheck[]> checksByHabit = new HashMap<>();
+        for (HabitCheck check : checks) {
+            int day = (int) ChronoUnit.DAYS.between(startDate, check.getDate());
+            if (day >= 0 && day < days) {
+                checksByHabit.computeIfAbsent(check.getHabitId(), id -> new HabitCheck[days])[day] = check;
+            }
+        }
 
-        // Группируем отметки по датам
-        Map<LocalDate, Map<String, HabitCheck>> checksByDate = checks.stream()
-            .collect(Collectors.groupingBy(
-                HabitCheck::getDate,
-                Collectors.toMap(HabitCheck::getHabitId, check -> check)
-            ));
-
-        try (Workbook workbook = new XSSFWorkbook()) {
-            Sheet sheet = workbook.createSheet("Привычки");
+        SXSSFWorkbook workbook = new SXSSFWorkbook(ROW_ACCESS_WINDOW);
+        workbook.setCompressTempFiles(true);
+        try {
+            SXSSFSheet sheet = workbook.createSheet("Привычки");
+            Styles styles = new Styles(workbook);
 
-            // Создаем стили
-            CellStyle headerStyle = createHeaderStyle(workbook);
-            CellStyle dateStyle = createDateStyle(workbook);
-            CellStyle checkStyle = createCheckStyle(workbook);
-            CellStyle commentStyle = createCommentStyle(workbook);
+            sheet.setColumnWidth(0, nameColumnWidth(habits));
+            for (int i = 1; i <= days; i++) {
+                sheet.setColumnWidth(i, DATE_COLUMN_WIDTH);
+            }
 
             // Создаем заголовок
             Row headerRow = sheet.createRow(0);
             Cell headerCell = headerRow.createCell(0);
             headerCell.setCellValue("Привычка");
-            headerCell.setCellStyle(headerStyle);
+            headerCell.setCellStyle(styles.header());
 
             // Добавляем даты в заголовок
-            int colNum = 1;
             LocalDate currentDate = startDate;
-            while (!currentDate.isAfter(endDate)) {
-                Cell dateCell = headerRow.createCell(colNum++);
+            for (int day = 0; day < days; day++) {
+                Cell dateCell = headerRow.createCell(day + 1);
                 dateCell.setCellValue(currentDate.format(DATE_FORMATTER));
-                dateCell.setCellStyle(headerStyle);
+                dateCell.setCellStyle(styles.header());
                 currentDate = currentDate.plusDays(1);
             }
 
@@ -63,56 +101,69 @@ public class ExcelExportService {
             int rowNum = 1;
             for (Habit habit : habits) {
                 Row row = sheet.createRow(rowNum++);
-                
+
                 // Название привычки
                 Cell nameCell = row.createCell(0);
                 nameCell.setCellValue(habit.getName());
-                nameCell.setCellStyle(headerStyle);
-
-                // Отметки по дням
-                colNum = 1;
-                currentDate = startDate;
-                while (!currentDate.isAfter(endDate)) {
-                    Map<String, HabitCheck> dateChecks = checksByDate.get(currentDate);
-                    HabitCheck check = dateChecks != null ? dateChecks.get(habit.getId()) : null;
-
-                    Cell checkCell = row.createCell(colNum++);
-                    if (check != null) {
-                        checkCell.setCellValue(check.isCompleted() ? "✓" : "✗");
-                        checkCell.setCellStyle(checkStyle);
-
-                        // Добавляем комментарий в следующую строку, если он есть
-                        if (check.getComment() != null && !check.getComment().isEmpty()) {
-                            Row commentRow = sheet.createRow(rowNum++);
-                            Cell commentCell = commentRow.createCell(0);
-                            commentCell.setCellValue("Комментарий: " + check.getComment());
-                            commentCell.setCellStyle(commentStyle);
-                        }
+                nameCell.setCellStyle(styles.header());
+
+                // Отметки по дням; комментарии пишутся строками после строки привычки,
+                // чтобы строки создавались строго по порядку, как требует SXSSF
+                HabitCheck[] habitChecks = checksByHabit.get(habit.getId());
+                List<String> comments = new ArrayList<>();
+                for (int day = 0; habitChecks != null && day < days; day++) {
+                    HabitCheck check = habitChecks[day];
+                    if (check == null) {
+                        continue;
+                    }
+                    Cell checkCell = row.createCell(day + 1);
+                    checkCell.setCellValue(check.isCompleted() ? "✓" : "✗");
+                    checkCell.setCellStyle(styles.check());
+
+                    if (check.getComment() != null && !check.getComment().isEmpty()) {
+                        comments.add(check.getComment());
                     }
-                    currentDate = currentDate.plusDays(1);
                 }
-            }
 
-            // Автоматически подгоняем ширину столбцов
-            for (int i = 0; i < colNum; i++) {
-                sheet.autoSizeColumn(i);
+                for (String comment : comments) {
+                    Row commentRow = sheet.createRow(rowNum++);
+                    Cell commentCell = commentRow.createCell(0);
+                    commentCell.setCellValue("Комментарий: " + comment);
+                    commentCell.setCellStyle(styles.comment());
+                }
             }
 
-            // Записываем в байтовый массив
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            workbook.write(outputStream);
-            return outputStream.toByteArray();
+            CountingOutputStream counter = new CountingOutputStream(outputStream);
+            workbook.write(counter);
+            transferMetrics.recordExport("xlsx", checks.size(), counter.getCount(),
+                Duration.ofNanos(System.nanoTime() - started));
+        } finally {
+            workbook.dispose();
+            workbook.close();
         }
     }
 
-    private CellStyle createHeaderStyle(Workbook workbook) {
-        CellStyle style = workbook.createCellStyle();
+    private int nameColumnWidth(List<Habit> habits) {
+        int maxLength = habits.stream()
+            .map(Habit::getName)
+            .filter(name -> name != null)
+            .mapToInt(String::length)
+            .max()
+            .orElse(0);
+        return Math.max(MIN_NAME_COLUMN_WIDTH, Math.min(MAX_NAME_COLUMN_WIDTH, (maxLength + 2) * 256));
+    }
+
+    // Стили создаются один раз на книгу и переиспользуются всеми ячейками
+    private record Styles(CellStyle header, CellStyle check, CellStyle comment) {
+        Styles(Workbook workbook) {
+            this(createHeaderStyle(workbook), createCheckStyle(workbook), createCommentStyle(workbook));
+        }
+    }
+
+    private static CellStyle createHeaderStyle(Workbook workbook) {
+        CellStyle style = createBorderedStyle(workbook);
         style.setFillForegroundColor(IndexedColors.GREY_25_PERCENT.getIndex());
         style.setFillPattern(FillPatternType.SOLID_FOREGROUND);
-        style.setBorderBottom(BorderStyle.THIN);
-        style.setBorderTop(BorderStyle.THIN);
-        style.setBorderLeft(BorderStyle.THIN);
-        style.setBorderRight(BorderStyle.THIN);
         style.setAlignment(HorizontalAlignment.CENTER);
         style.setVerticalAlignment(VerticalAlignment.CENTER);
         
@@ -123,34 +174,25 @@ public class ExcelExportService {
         return style;
     }
 
-    private CellStyle createDateStyle(Workbook workbook) {
-        CellStyle style = workbook.createCellStyle();
-        style.setBorderBottom(BorderStyle.THIN);
-        style.setBorderTop(BorderStyle.THIN);
-        style.setBorderLeft(BorderStyle.THIN);
-        style.setBorderRight(BorderStyle.THIN);
+    private static CellStyle createCheckStyle(Workbook workbook) {
+        CellStyle style = createBorderedStyle(workbook);
         style.setAlignment(HorizontalAlignment.CENTER);
         return style;
     }
 
-    private CellStyle createCheckStyle(Workbook workbook) {
-        CellStyle style = workbook.createCellStyle();
-        style.setBorderBottom(BorderStyle.THIN);
-        style.setBorderTop(BorderStyle.THIN);
-        style.setBorderLeft(BorderStyle.THIN);
-        style.setBorderRight(BorderStyle.THIN);
-        style.setAlignment(HorizontalAlignment.CENTER);
+    private static CellStyle createCommentStyle(Workbook workbook) {
+        CellStyle style = createBorderedStyle(workbook);
+        style.setAlignment(HorizontalAlignment.LEFT);
+        style.setWrapText(true);
         return style;
     }
 
-    private CellStyle createCommentStyle(Workbook workbook) {
+    private static CellStyle createBorderedStyle(Workbook workbook) {
         CellStyle style = workbook.createCellStyle();
         style.setBorderBottom(BorderStyle.THIN);
         style.setBorderTop(BorderStyle.THIN);
         style.setBorderLeft(BorderStyle.THIN);
         style.setBorderRight(BorderStyle.THIN);
-        style.setAlignment(HorizontalAlignment.LEFT);
-        style.setWrapText(true);
         return style;
     }
-} 
\ No newline at end of file
+}
@@ -1,70 +1,249 @@
 package com.externalobserver.service;
 
+import com.externalobserver.dto.ImportFileResult;
+import com.externalobserver.dto.ImportResult;
+import com.externalobserver.markdown.FrontMatterParser;
+import com.externalobserver.metrics.CountingOutputStream;
+import com.externalobserver.metrics.TransferMetrics;
 import com.externalobserver.model.Note;
+import com.externalobserver.repository.NoteRepository;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Stream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
 @Service
 public class FileService {
+    private static final String METADATA_ENTRY = "metadata.ndjson";
+    private static final int IMPORT_BATCH_SIZE = 500;
+
     private final ObjectMapper objectMapper;
     private final NoteService noteService;
+    private final NoteRepository noteRepository;
+    private final TransferMetrics transferMetrics;
 
-    public FileService(ObjectMapper objectMapper, NoteService noteService) {
+    public FileService(
+            ObjectMapper objectMapper,
+            NoteService noteService,
+            NoteRepository noteRepository,
+            TransferMetrics transferMetrics) {
         this.objectMapper = objectMapper;
         this.noteService = noteService;
+        this.noteRepository = noteRepository;
+        this.transferMetrics = transferMetrics;
     }
 
-    public List<Note> importMarkdownFiles(MultipartFile[] files) throws IOException {
-        List<Note> importedNotes = new ArrayList<>();
-        
-        for (MultipartFile file : files) {
-            if (file.getOriginalFilename().endsWith(".md")) {
-                String content = new String(file.getBytes());
-                String title = file.getOriginalFilename().replace(".md", "");
-                
-                Note note = new Note();
-                note.setTitle(title);
-                note.setContent(content);
-                
-                Note savedNote = noteService.createNote(note);
-                importedNotes.add(savedNote);
+    // Файлы разбираются параллельно, заметки вставляются пачками через неупорядоченный insertMany.
+    // Ошибка в одном файле попадает в отчёт и не прерывает импорт остальных.
+    public ImportResult importMarkdownFiles(MultipartFile[] files, String username) {
+        long started = System.nanoTime();
+        List<ParsedFile> parsed = Arrays.stream(files)
+            .parallel()
+            .map(this::parseFile)
+            .toList();
+
+        List<ImportFileResult> results = new ArrayList<>(parsed.size());
+        List<ParsedFile> batch = new ArrayList<>(IMPORT_BATCH_SIZE);
+        for (ParsedFile file : parsed) {
+            if (file.note() == null) {
+                results.add(new ImportFileResult(file.fileName(), null, null, file.error()));
+                continue;
+            }
+            batch.add(file);
+            if (batch.size() == IMPORT_BATCH_SIZE) {
+                results.addAll(insertBatch(batch, username));
+                batch.clear();
             }
         }
-        
-        return importedNotes;
+        results.addAll(insertBatch(batch, username));
+
+        int imported = (int) results.stream().filter(result -> result.getError() == null).count();
+        long bytes = Arrays.stream(files).mapToLong(MultipartFile::getSize).sum();
+        transferMetrics.recordImport(imported, results.size() - imported, bytes,
+            Duration.ofNanos(System.nanoTime() - started));
+        return new ImportResult(imported, results.size() - imported, results);
+    }
+
+    private List<ImportFileResult> insertBatch(List<ParsedFile> batch, String username) {
+        List<Note> notes = batch.stream().map(ParsedFile::note).toList();
+        Map<Integer, String> errors = noteService.createNotes(notes, username);
+
+        List<ImportFileResult> results = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            Note note = notes.get(i);
+            String error = errors.get(i);
+            results.add(new ImportFileResult(
+                batch.get(i).fileName(), error == null ? note.getId() : null, note.getTitle(), error));
+        }
+        return results;
+    }
+
+    private ParsedFile parseFile(MultipartFile file) {
+        String fileName = file.getOriginalFilename() != null ? file.getOriginalFilename().replace('\\', '/') : "";
+        if (!fileName.toLowerCase(Locale.ROOT).endsWith(".md")) {
+            return new ParsedFile(fileName, null, "Поддерживаются только файлы .md");
+        }
+        try {
+            FrontMatterParser.Document document = FrontMatterParser.parse(decode(file.getBytes()));
+            return new ParsedFile(fileName, toNote(fileName, document), null);
+        } catch (Exception e) {
+            return new ParsedFile(fileName, null, "Не удалось разобрать файл: " + e.getMessage());
+        }
+    }
+
+    // Известные поля front matter переносятся в поля заметки, остальные — в metadata
+    private Note toNote(String fileName, FrontMatterParser.Document document) {
+        Map<String, Object> metadata = new LinkedHashMap<>(document.frontMatter());
+        int slash = fileName.lastIndexOf('/');
+
+        Note note = new Note();
+        note.setContent(document.body());
+        note.setTitle(asString(metadata.remove("title"), fileName.substring(slash + 1, fileName.length() - 3)));
+        note.setPath(asString(metadata.remove("path"), slash > 0 ? fileName.substring(0, slash) : null));
+        note.setType(asString(metadata.remove("type"), null));
+        note.setStatus(asString(metadata.remove("status"), null));
+        note.setTags(asList(metadata.remove("tags")).stream()
+            .map(tag -> tag.startsWith("#") ? tag.substring(1) : tag)
+            .filter(tag -> !tag.isEmpty())
+            .toList());
+        note.setLinks(asList(metadata.remove("links")));
+        note.setMetadata(metadata.isEmpty() ? null : metadata);
+        return note;
+    }
+
+    private static String asString(Object value, String defaultValue) {
+        return value != null && !String.valueOf(value).isBlank() ? String.valueOf(value).trim() : defaultValue;
+    }
+
+    // Список в YAML или строка через запятую/пробел: "tags: [a, b]" и "tags: a, b"
+    private static List<String> asList(Object value) {
+        if (value == null) {
+            return List.of();
+        }
+        Stream<String> items = value instanceof Collection<?> collection
+            ? collection.stream().filter(Objects::nonNull).map(String::valueOf)
+            : Arrays.stream(String.valueOf(value).split("[,\\s]+"));
+        return items.map(String::trim).filter(item -> !item.isEmpty()).distinct().toList();
     }
 
-    public byte[] exportNotesAsZip() throws IOException {
-        List<Note> notes = noteService.getAllNotes();
-        
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        try (ZipOutputStream zos = new ZipOutputStream(baos)) {
-            // Создаем структуру директорий
-            for (Note note : notes) {
-                String path = note.getTitle() + ".md";
-                ZipEntry entry = new ZipEntry(path);
-                zos.putNextEntry(entry);
-                
-                // Записываем содержимое заметки
-                zos.write(note.getContent().getBytes());
+    // UTF-8 (с BOM или без), а при ошибке декодирования — Windows-1251
+    private static String decode(byte[] bytes) {
+        String text;
+        try {
+            text = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT)
+                .decode(ByteBuffer.wrap(bytes))
+                .toString();
+        } catch (CharacterCodingException e) {
+            text = new String(bytes, Charset.forName("windows-1251"));
+        }
+        text = text.startsWith("\uFEFF") ? text.substring(1) : text;
+        return text.replace("\r\n", "\n");
+    }
+
+    private record ParsedFile(String fileName, Note note, String error) {}
+
+    // Заметки читаются курсором и сразу пишутся в архив, поэтому расход памяти
+    // не зависит от количества заметок. Метаданные копятся во временном NDJSON-файле
+    // и добавляются последней записью архива.
+    public void exportNotesAsZip(String username, OutputStream outputStream) throws IOException {
+        Path metadataFile = Files.createTempFile("notes-metadata", ".ndjson");
+        long started = System.nanoTime();
+        long exported = 0;
+        CountingOutputStream counter = new CountingOutputStream(outputStream);
+
+        try (ZipOutputStream zos = new ZipOutputStream(new BufferedOutputStream(counter));
+             BufferedWriter metadata = Files.newBufferedWriter(metadataFile, StandardCharsets.UTF_8);
+             Stream<Note> notes = noteRepository.streamByUsername(username)) {
+
+            Set<String> usedNames = new HashSet<>();
+            for (Note note : (Iterable<Note>) notes::iterator) {
+                String entryName = uniqueEntryName(note, usedNames);
+                zos.putNextEntry(new ZipEntry(entryName));
+                if (note.getContent() != null) {
+                    zos.write(note.getContent().getBytes(StandardCharsets.UTF_8));
+                }
                 zos.closeEntry();
+
+                // Содержимое уже лежит в .md файле, в метаданных достаточно ссылки на него
+                ObjectNode line = objectMapper.valueToTree(note);
+                line.remove("content");
+                line.put("file", entryName);
+                metadata.write(objectMapper.writeValueAsString(line));
+                metadata.newLine();
+                exported++;
             }
-            
-            // Добавляем JSON файл с метаданными
-            ZipEntry jsonEntry = new ZipEntry("metadata.json");
-            zos.putNextEntry(jsonEntry);
-            zos.write(objectMapper.writeValueAsBytes(notes));
+
+            metadata.flush();
+            zos.putNextEntry(new ZipEntry(METADATA_ENTRY));
+            Files.copy(metadataFile, zos);
             zos.closeEntry();
+            zos.finish();
+            zos.flush();
+            transferMetrics.recordExport("zip", exported, counter.getCount(),
+                Duration.ofNanos(System.nanoTime() - started));
+        } finally {
+            Files.deleteIfExists(metadataFile);
+        }
+    }
+
+    // Путь внутри архива: папки из Note.path и заголовок в качестве имени файла.
+    // При совпадении имён добавляется номер: "Заметка (2).md"
+    private String uniqueEntryName(Note note, Set<String> usedNames) {
+        String folder = note.getPath() != null ? note.getPath().replace('\\', '/') : "";
+        String fileName = note.getTitle() != null && !note.getTitle().isBlank() ? note.getTitle() : note.getId();
+        if (folder.toLowerCase(Locale.ROOT).endsWith(".md")) {
+            int slash = folder.lastIndexOf('/');
+            fileName = folder.substring(slash + 1, folder.length() - 3);
+            folder = slash >= 0 ? folder.substring(0, slash) : "";
+        }
+
+        StringBuilder directory = new StringBuilder();
+        for (String segment : folder.split("/")) {
+            String safe = sanitize(segment);
+            if (!safe.isEmpty() && !safe.equals(".") && !safe.equals("..")) {
+                directory.append(safe).append('/');
+            }
+        }
+
+        // Имя из одних пробелов (например, путь "папка/.md") заменяется на id
+        String safeName = sanitize(fileName);
+        String base = directory + (safeName.isEmpty() ? note.getId() : safeName);
+        String name = base + ".md";
+        for (int i = 2; !usedNames.add(name.toLowerCase(Locale.ROOT)); i++) {
+            name = base + " (" + i + ").md";
+        }
+        return name;
+    }
+
+    private String sanitize(String segment) {
+        StringBuilder safe = new StringBuilder(segment.length());
+        for (char c : segment.trim().toCharArray()) {
+            safe.append(c < 0x20 || "<>:\"/\\|?*".indexOf(c) >= 0 ? '_' : c);
         }
-        
-        return baos.toByteArray();
+        return safe.toString();
     }
-} 
\ No newline at end of file
+}
@@ -1,26 +1,46 @@
 package com.externalobserver.service;
 
+import com.externalobserver.cache.ReadCache;
+import com.externalobserver.cache.ReadCache.Region;
+import com.externalobserver.dto.HabitCheckUpdate;
 import com.externalobserver.model.Habit;
 import com.externalobserver.model.HabitCheck;
+import com.externalobserver.model.Tombstone;
 import com.externalobserver.repository.HabitRepository;
-import com.externalobserver.repository.HabitCheckRepository;
+import com.externalobserver.repository.HabitCheckStore;
+import com.externalobserver.repository.TombstoneRepository;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
+@Timed(value = "observer.service", histogram = true, percentiles = {0.5, 0.95, 0.99})
 public class HabitService {
     private final HabitRepository habitRepository;
-    private final HabitCheckRepository habitCheckRepository;
+    private final HabitCheckStore habitCheckStore;
+    private final ReadCache readCache;
+    private final TombstoneRepository tombstoneRepository;
+
+    private static final int MAX_CHECK_BATCH_SIZE = 1000;
+
+    // Ключ кэша для отметок за период
+    private record Period(LocalDate start, LocalDate end) {
+        boolean contains(LocalDate date) {
+            return !date.isBefore(start) && !date.isAfter(end);
+        }
+    }
 
     public List<Habit> getHabits(String username) {
-        return habitRepository.findByUsernameOrderByOrderAsc(username);
+        return readCache.get(username, Region.HABIT_LIST, null,
+            () -> List.copyOf(habitRepository.findByUsernameOrderByOrderAsc(username)));
     }
 
     public Habit createHabit(Habit habit, String username) {
@@ -29,14 +49,14 @@ public class HabitService {
         habit.setUpdatedAt(LocalDateTime.now());
         
         // Устанавливаем порядок как последний
-        List<Habit> habits = habitRepository.findByUsernameOrderByOrderAsc(username);
-        int maxOrder = habits.stream()
-            .mapToInt(Habit::getOrder)
-            .max()
+        int maxOrder = habitRepository.findFirstByUsernameOrderByOrderDesc(username)
+            .map(Habit::getOrder)
             .orElse(0);
         habit.setOrder(maxOrder + 1);
         
-        return habitRepository.save(habit);
+        Habit saved = habitRepository.upsert(habit);
+        readCache.invalidate(username, Region.HABIT_LIST);
+        return saved;
     }
 
     public Habit updateHabit(String id, Habit habit, String username) {
@@ -52,7 +72,9 @@ public class HabitService {
         existingHabit.setPurpose(habit.getPurpose());
         existingHabit.setUpdatedAt(LocalDateTime.now());
 
-        return habitRepository.save(existingHabit);
+        Habit saved = habitRepository.upsert(existingHabit);
+        readCache.invalidate(username, Region.HABIT_LIST);
+        return saved;
     }
 
     public void deleteHabit(String id, String username) {
@@ -64,33 +86,35 @@ public class HabitService {
         }
 
         // Удаляем все отметки о выполнении
-        List<HabitCheck> checks = habitCheckRepository.findByUsernameAndHabitIdAndDateBetweenOrderByDateAsc(
-            username, id, LocalDate.MIN, LocalDate.MAX);
-        habitCheckRepository.deleteAll(checks);
+        habitCheckStore.deleteByHabit(username, id);
 
         habitRepository.delete(habit);
+        // След удаления привычки означает для синхронизации и удаление её отметок
+        tombstoneRepository.insertAll(List.of(Tombstone.of(username, "habits", id)));
+        readCache.invalidate(username, Region.HABIT_LIST);
+        readCache.invalidate(username, Region.HABIT_CHECKS_DAY);
+        readCache.invalidate(username, Region.HABIT_CHECKS_PERIOD);
     }
 
-    @Transactional
+    // Одна проверка владельца и одна пачка updateOne вместо findById и save на каждую привычку
     public void updateHabitsOrder(List<Map<String, Object>> habits, String username) {
-        for (int i = 0; i < habits.size(); i++) {
-            String id = (String) habits.get(i).get("id");
-            Habit habit = habitRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Привычка не найдена"));
-                
-            if (!habit.getUsername().equals(username)) {
-                throw new RuntimeException("Нет доступа к привычке");
-            }
-
-            habit.setOrder(i + 1);
-            habit.setUpdatedAt(LocalDateTime.now());
-            habitRepository.save(habit);
+        List<String> ids = habits.stream()
+            .map(habit -> (String) habit.get("id"))
+            .toList();
+        if (ids.contains(null) || ids.stream().distinct().count() != ids.size()) {
+            throw new IllegalArgumentException("Список должен содержать уникальные id привычек");
+        }
+        if (habitRepository.countByIdInAndUsername(ids, username) != ids.size()) {
+            throw new RuntimeException("Нет доступа к привычке");
         }
+
+        habitRepository.updateOrder(username, ids);
+        readCache.invalidate(username, Region.HABIT_LIST);
     }
 
     public List<HabitCheck> getHabitChecks(String username, LocalDate date) {
-        return habitCheckRepository.findByUsernameAndDateBetweenOrderByDateAsc(
-            username, date, date);
+        return readCache.get(username, Region.HABIT_CHECKS_DAY, date,
+            () -> List.copyOf(habitCheckStore.findByDate(username, date)));
     }
 
     public List<HabitCheck> getHabitChecksForPeriod(
@@ -98,7 +122,8 @@ public class HabitService {
         LocalDate startDate, 
         LocalDate endDate
     ) {
-        return habitCheckRepository.findChecksForPeriod(username, startDate, endDate);
+        return readCache.get(username, Region.HABIT_CHECKS_PERIOD, new Period(startDate, endDate),
+            () -> List.copyOf(habitCheckStore.findForPeriod(username, startDate, endDate)));
     }
 
     public HabitCheck createOrUpdateHabitCheck(
@@ -108,28 +133,52 @@ public class HabitService {
         String comment, 
         String username
     ) {
-        Habit habit = habitRepository.findById(habitId)
-            .orElseThrow(() -> new RuntimeException("Привычка не найдена"));
-            
-        if (!habit.getUsername().equals(username)) {
+        // Как в saveHabitChecks: одна проверка владельца и один upsert
+        if (habitRepository.countByIdInAndUsername(Set.of(habitId), username) != 1) {
             throw new RuntimeException("Нет доступа к привычке");
         }
 
-        HabitCheck check = habitCheckRepository.findByUsernameAndHabitIdAndDate(
-            username, habitId, date);
+        HabitCheck check = habitCheckStore.save(username, habitId, date, completed, comment);
+        invalidateChecks(username, Set.of(date));
+        return check;
+    }
+
+    /**
+     * Пакетное сохранение отметок: одна проверка владельца для всех привычек
+     * и одна неупорядоченная пачка upsert-ов. Для повторяющейся пары (привычка, дата)
+     * применяется последняя отметка.
+     */
+    public int saveHabitChecks(List<HabitCheckUpdate> updates, String username) {
+        if (updates == null || updates.isEmpty() || updates.size() > MAX_CHECK_BATCH_SIZE) {
+            throw new IllegalArgumentException("Пачка должна содержать от 1 до " + MAX_CHECK_BATCH_SIZE + " отметок");
+        }
+
+        Map<String, HabitCheckUpdate> latest = new LinkedHashMap<>();
+        for (HabitCheckUpdate update : updates) {
+            if (update == null || update.getHabitId() == null || update.getDate() == null) {
+                throw new IllegalArgumentException("У отметки должны быть указаны habitId и date");
+            }
+            latest.put(update.getHabitId() + "|" + update.getDate(), update);
+        }
 
-        if (check == null) {
-            check = new HabitCheck();
-            check.setHabitId(habitId);
-            check.setUsername(username);
-            check.setDate(date);
-            check.setCreatedAt(LocalDateTime.now());
+        Set<String> habitIds = latest.values().stream()
+            .map(HabitCheckUpdate::getHabitId)
+            .collect(Collectors.toSet());
+        if (habitRepository.countByIdInAndUsername(habitIds, username) != habitIds.size()) {
+            throw new RuntimeException("Нет доступа к привычке");
         }
 
-        check.setCompleted(completed);
-        check.setComment(comment);
-        check.setUpdatedAt(LocalDateTime.now());
+        int applied = habitCheckStore.saveAll(username, List.copyOf(latest.values()));
+        invalidateChecks(username, latest.values().stream()
+            .map(HabitCheckUpdate::getDate)
+            .collect(Collectors.toSet()));
+        return applied;
+    }
 
-        return habitCheckRepository.save(check);
+    // Сбрасывает только дни и периоды, в которые попала хотя бы одна изменённая дата
+    private void invalidateChecks(String username, Set<LocalDate> dates) {
+        readCache.invalidateIf(username, Region.HABIT_CHECKS_DAY, date -> dates.contains((LocalDate) date));
+        readCache.invalidateIf(username, Region.HABIT_CHECKS_PERIOD,
+            period -> dates.stream().anyMatch(((Period) period)::contains));
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,163 @@
+package com.externalobserver.service;
+
+import com.externalobserver.diff.RevisionCodec;
+import com.externalobserver.dto.NoteRevisionContent;
+import com.externalobserver.dto.NoteRevisionSummary;
+import com.externalobserver.model.Note;
+import com.externalobserver.model.NoteRevision;
+import com.externalobserver.repository.NoteRevisionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.CRC32;
+
+/**
+ * История версий заметок. Текущая версия живёт в самой заметке, каждая предыдущая —
+ * обратной дельтой к следующей. Каждая SNAPSHOT_INTERVAL-я версия хранится полным снимком,
+ * поэтому любая версия восстанавливается не больше чем за SNAPSHOT_INTERVAL - 1 дельту.
+ *
+ * Ревизия пишется после условного обновления из прежнего состояния заметки, которое возвращает
+ * findAndModify, поэтому путь записи ничего не читает. Запись ревизии не обязательна: при сбое
+ * в истории остаётся пропуск, и getRevision не восстанавливает версии за ним (цепочка проверяется
+ * по номерам и контрольным суммам).
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class NoteRevisionService {
+    static final int SNAPSHOT_INTERVAL = 20;
+    static final int MAX_PAGE_SIZE = 200;
+
+    private final NoteRevisionRepository revisionRepository;
+
+    /**
+     * Сохраняет версию previous, которую обновление заменило содержимым nextContent.
+     * Ошибка записи только попадает в лог: обновление заметки уже выполнено.
+     */
+    public void recordRevision(Note previous, String nextContent) {
+        // У заметок без версии (созданных до её появления) номер ревизии не определён
+        if (previous.getVersion() == null) {
+            return;
+        }
+        int version = previous.getVersion();
+        boolean snapshot = version % SNAPSHOT_INTERVAL == 0;
+
+        NoteRevision revision = new NoteRevision();
+        revision.setNoteId(previous.getId());
+        revision.setUsername(previous.getUsername());
+        revision.setVersion(version);
+        revision.setTitle(previous.getTitle());
+        revision.setUpdated(previous.getUpdated());
+        revision.setSnapshot(snapshot);
+        revision.setContentLength(previous.getContent() != null ? previous.getContent().length() : 0);
+        revision.setNextChecksum(checksum(nextContent));
+        revision.setData(snapshot
+            ? RevisionCodec.encodeSnapshot(previous.getContent())
+            : RevisionCodec.encodeDelta(RevisionCodec.diff(nextContent, previous.getContent())));
+
+        try {
+            insertOrReplace(revision);
+        } catch (DataAccessException e) {
+            log.warn("Ревизия {} заметки {} не записана", version, previous.getId(), e);
+        }
+    }
+
+    /**
+     * Страница истории от новых версий к старым. Без before первой идёт текущая версия;
+     * следующая страница запрашивается с before, равным версии последнего элемента.
+     */
+    public List<NoteRevisionSummary> listRevisions(Note current, Integer before, int limit) {
+        if (before != null && before < 1) {
+            throw new IllegalArgumentException("Номер версии должен быть положительным");
+        }
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        int version = current.getVersion() != null ? current.getVersion() : 1;
+        List<NoteRevisionSummary> result = new ArrayList<>();
+        if (before == null) {
+            result.add(new NoteRevisionSummary(version, current.getTitle(), current.getUpdated(),
+                current.getContent() != null ? current.getContent().length() : 0, true));
+        }
+        // Ревизии не ниже текущей версии оставлены проигравшими обновлениями
+        int upper = before != null ? Math.min(before, version) : version;
+        if (result.size() < pageSize) {
+            List<NoteRevision> revisions = revisionRepository.findSummaries(
+                current.getUsername(), current.getId(), upper, Limit.of(pageSize - result.size()));
+            for (NoteRevision revision : revisions) {
+                result.add(new NoteRevisionSummary(revision.getVersion(), revision.getTitle(), revision.getUpdated(),
+                    revision.getContentLength(), false));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Восстанавливает версию одним запросом: ревизии от нужной до ближайшего снимка сверху
+     * (или до текущей версии) применяются от новых к старым.
+     */
+    public Optional<NoteRevisionContent> getRevision(Note current, int version) {
+        int currentVersion = current.getVersion() != null ? current.getVersion() : 1;
+        if (version == currentVersion) {
+            return Optional.of(new NoteRevisionContent(
+                version, current.getTitle(), current.getUpdated(), current.getContent()));
+        }
+        if (version < 1 || version > currentVersion) {
+            return Optional.empty();
+        }
+
+        int nextSnapshot = (version + SNAPSHOT_INTERVAL - 1) / SNAPSHOT_INTERVAL * SNAPSHOT_INTERVAL;
+        int upper = Math.min(nextSnapshot, currentVersion - 1);
+        List<NoteRevision> chain = revisionRepository.findChain(current.getUsername(), current.getId(), version, upper);
+
+        String content = current.getContent();
+        int expected = upper;
+        for (NoteRevision revision : chain) {
+            if (revision.getVersion() != expected) {
+                log.warn("Пропущена ревизия {} заметки {}", expected, current.getId());
+                return Optional.empty();
+            }
+            // Дельта записи, проигравшей параллельное обновление, отсчитана не от этого содержимого
+            if (!revision.isSnapshot() && revision.getNextChecksum() != null
+                    && revision.getNextChecksum() != checksum(content)) {
+                log.warn("Ревизия {} заметки {} не соответствует следующей версии", expected, current.getId());
+                return Optional.empty();
+            }
+            content = RevisionCodec.decode(revision.getData(), content);
+            if (revision.getVersion() == version) {
+                return Optional.of(new NoteRevisionContent(
+                    version, revision.getTitle(), revision.getUpdated(), content));
+            }
+            expected--;
+        }
+        return Optional.empty();
+    }
+
+    public void deleteRevisions(String username, String noteId) {
+        revisionRepository.deleteByUsernameAndNoteId(username, noteId);
+    }
+
+    // Ревизию с тем же номером могла оставить запись, проигравшая обновление этой версии
+    private void insertOrReplace(NoteRevision revision) {
+        try {
+            revisionRepository.insert(revision);
+        } catch (DuplicateKeyException e) {
+            log.info("Ревизия {} заметки {} заменена", revision.getVersion(), revision.getNoteId());
+            revisionRepository.replace(revision);
+        }
+    }
+
+    private static long checksum(String content) {
+        CRC32 crc = new CRC32();
+        if (content != null) {
+            crc.update(content.getBytes(StandardCharsets.UTF_8));
+        }
+        return crc.getValue();
+    }
+}
@@ -1,77 +1,571 @@
 package com.externalobserver.service;
 
+import com.externalobserver.cache.ReadCache;
+import com.externalobserver.cache.ReadCache.Region;
 import com.externalobserver.model.Note;
+import com.externalobserver.model.NoteHeading;
+import com.externalobserver.model.Tombstone;
 import com.externalobserver.repository.NoteRepository;
+import com.externalobserver.repository.TombstoneRepository;
+import com.externalobserver.diff.TextPatch;
+import com.externalobserver.dto.NotePatchRequest;
+import com.externalobserver.dto.NoteRevisionContent;
+import com.externalobserver.dto.NoteRevisionSummary;
+import com.externalobserver.dto.NoteSearchHit;
+import com.externalobserver.dto.NoteSuggestion;
+import com.externalobserver.dto.NoteSortOrder;
+import com.externalobserver.dto.NoteSummaryPage;
 import com.externalobserver.dto.ZettelSearchRequest;
+import com.externalobserver.index.FullTextIndex;
+import com.externalobserver.index.LinkGraphIndex;
+import com.externalobserver.index.NoteTitleIndex;
+import com.externalobserver.index.NoteIndex;
+import com.externalobserver.index.NoteSuggestIndex;
+import com.externalobserver.index.SnippetBuilder;
+import com.externalobserver.index.TagExpression;
+import com.externalobserver.index.TagIndex;
+import com.externalobserver.markdown.NoteContentParser;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
+@Timed(value = "observer.service", histogram = true, percentiles = {0.5, 0.95, 0.99})
 public class NoteService {
+    private static final int MAX_PAGE_SIZE = 200;
+    private static final int MAX_GRAPH_DEPTH = 5;
+    private static final int MAX_GRAPH_NODES = 1000;
+    private static final int MAX_PATCH_EDITS = 10_000;
+    private static final int MAX_SUGGESTIONS = 50;
+    private static final int MAX_SUGGEST_QUERY_LENGTH = 200;
+
     private final NoteRepository noteRepository;
+    private final FullTextIndex fullTextIndex;
+    private final LinkGraphIndex linkGraphIndex;
+    private final TagIndex tagIndex;
+    private final NoteTitleIndex noteTitleIndex;
+    private final NoteSuggestIndex noteSuggestIndex;
+    private final List<NoteIndex> noteIndexes;
+    private final NoteRevisionService noteRevisionService;
+    private final ReadCache readCache;
+    private final TombstoneRepository tombstoneRepository;
 
     private String getCurrentUsername() {
         return SecurityContextHolder.getContext().getAuthentication().getName();
     }
 
     public List<Note> getAllNotes() {
-        return noteRepository.findByUsername(getCurrentUsername());
+        String username = getCurrentUsername();
+        return readCache.get(username, Region.NOTE_LIST, null,
+            () -> List.copyOf(noteRepository.findByUsername(username)));
+    }
+
+    public NoteSummaryPage getNoteSummaries(NoteSortOrder order, String cursor, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        return noteRepository.findSummaries(getCurrentUsername(), order, cursor, pageSize);
     }
 
     @Transactional
     public Note createNote(Note note) {
+        note.setId(new ObjectId().toHexString());
         note.setCreated(LocalDateTime.now());
         note.setUpdated(LocalDateTime.now());
         note.setVersion(1);
         note.setUsername(getCurrentUsername());
-        return noteRepository.save(note);
+        analyze(note, note.getLinks());
+        Map<Integer, String> errors = noteRepository.insertUnordered(List.of(note));
+        if (!errors.isEmpty()) {
+            throw new IllegalStateException("Заметка не сохранена: " + errors.get(0));
+        }
+        Note saved = indexed(note);
+        readCache.invalidate(saved.getUsername(), Region.NOTE_LIST);
+        relinkReferrers(saved);
+        return saved;
     }
 
-    @Transactional
+    /**
+     * Массовое создание заметок для импорта: одна неупорядоченная вставка вместо запроса на каждую заметку.
+     * Возвращает ошибки по позиции в списке.
+     */
+    public Map<Integer, String> createNotes(List<Note> notes, String username) {
+        LocalDateTime now = LocalDateTime.now();
+        for (Note note : notes) {
+            note.setId(new ObjectId().toHexString());
+            note.setCreated(now);
+            note.setUpdated(now);
+            note.setVersion(1);
+            note.setUsername(username);
+            // Названия всей пачки известны заранее: ссылки между импортируемыми заметками разрешаются
+            noteTitleIndex.index(note);
+        }
+        notes.forEach(note -> analyze(note, note.getLinks()));
+
+        Map<Integer, String> errors = noteRepository.insertUnordered(notes);
+        readCache.invalidate(username, Region.NOTE_LIST);
+        for (int i = 0; i < notes.size(); i++) {
+            if (!errors.containsKey(i)) {
+                indexed(notes.get(i));
+            } else {
+                noteTitleIndex.remove(username, notes.get(i).getId());
+            }
+        }
+        for (int i = 0; i < notes.size(); i++) {
+            if (!errors.containsKey(i)) {
+                relinkReferrers(notes.get(i));
+            }
+        }
+        return errors;
+    }
+
+    /**
+     * Обновление с оптимистической блокировкой: один findAndModify по id, владельцу и версии из запроса.
+     * Если версия устарела, бросает {@link NoteVersionConflictException} с текущей заметкой.
+     * Версия обязательна; у заметок, созданных до появления версий, она равна 0.
+     * Предыдущая версия попадает в историю из состояния, которое вернул findAndModify (см. NoteRevisionService).
+     */
     public Optional<Note> updateNote(String id, Note note) {
-        return noteRepository.findByIdAndUsername(id, getCurrentUsername()).map(existingNote -> {
-            note.setId(id);
-            note.setCreated(existingNote.getCreated());
-            note.setUpdated(LocalDateTime.now());
-            note.setVersion(existingNote.getVersion() + 1);
-            note.setUsername(getCurrentUsername());
-            return noteRepository.save(note);
-        });
+        if (note.getVersion() == null) {
+            throw new IllegalArgumentException("Не указана версия заметки");
+        }
+        String username = getCurrentUsername();
+        LocalDateTime now = LocalDateTime.now();
+        note.setId(id);
+        note.setUsername(username);
+        analyze(note, note.getLinks());
+        Optional<Note> previous = noteRepository.replaceIfVersion(id, username, note.getVersion(), note);
+        if (previous.isPresent()) {
+            noteRevisionService.recordRevision(previous.get(), note.getContent());
+            // Новое состояние известно целиком: поля из запроса и неизменяемые поля из прежней заметки
+            note.setCreated(previous.get().getCreated());
+            note.setUpdated(now);
+            note.setVersion(nextVersion(previous.get()));
+            invalidate(username, id);
+            indexed(note);
+            relinkReferrers(note);
+            return Optional.of(note);
+        }
+
+        // Условие не выполнено: заметки нет или версия устарела
+        Optional<Note> current = noteRepository.findByIdAndUsername(id, username);
+        if (current.isPresent()) {
+            throw new NoteVersionConflictException(current.get());
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Применяет правки к содержимому на сервере и меняет только затронутые поля.
+     * Правки проверяются против baseVersion; при расхождении бросается {@link NoteVersionConflictException}.
+     * Заметка читается до записи, только если есть правки текста: они отсчитаны от её содержимого.
+     */
+    public Optional<Note> patchNote(String id, NotePatchRequest patch) {
+        if (patch.getBaseVersion() == null) {
+            throw new IllegalArgumentException("Не указана базовая версия заметки");
+        }
+        if (patch.getEdits() != null && patch.getEdits().size() > MAX_PATCH_EDITS) {
+            throw new IllegalArgumentException("Слишком много правок: не больше " + MAX_PATCH_EDITS);
+        }
+        String username = getCurrentUsername();
+
+        Map<String, Object> fields = new HashMap<>();
+        if (patch.getEdits() != null && !patch.getEdits().isEmpty()) {
+            Optional<Note> base = noteRepository.findContentAndVersion(id, username);
+            if (base.isEmpty()) {
+                return Optional.empty();
+            }
+            if (patch.getBaseVersion() != versionOf(base.get())) {
+                throw conflict(id, username);
+            }
+            Note analyzed = new Note();
+            analyzed.setId(id);
+            analyzed.setUsername(username);
+            analyzed.setContent(TextPatch.apply(base.get().getContent(), patch.getEdits()));
+            // Без links в запросе сохраняются ссылки, заданные вручную; выведенные из [[...]] пересчитываются
+            analyze(analyzed, patch.getLinks() != null ? patch.getLinks() : explicitLinks(base.get(), username));
+            fields.put("content", analyzed.getContent());
+            fields.put("links", analyzed.getLinks());
+            fields.put("danglingLinks", analyzed.getDanglingLinks());
+            fields.put("headings", analyzed.getHeadings());
+            fields.put("wordCount", analyzed.getWordCount());
+        } else {
+            putIfPresent(fields, "links", patch.getLinks());
+        }
+        putIfPresent(fields, "title", patch.getTitle());
+        putIfPresent(fields, "type", patch.getType());
+        putIfPresent(fields, "path", patch.getPath());
+        putIfPresent(fields, "status", patch.getStatus());
+        putIfPresent(fields, "tags", patch.getTags());
+
+        Optional<Note> previous = noteRepository.updateFieldsIfVersion(id, username, patch.getBaseVersion(), fields);
+        if (previous.isPresent()) {
+            Note note = patched(previous.get(), fields, LocalDateTime.now());
+            noteRevisionService.recordRevision(previous.get(), note.getContent());
+            invalidate(username, id);
+            indexed(note);
+            relinkReferrers(note);
+            return Optional.of(note);
+        }
+
+        // Условие не выполнено: заметки нет или версия устарела
+        Optional<Note> current = noteRepository.findByIdAndUsername(id, username);
+        if (current.isPresent()) {
+            throw new NoteVersionConflictException(current.get());
+        }
+        return Optional.empty();
+    }
+
+    public Optional<List<NoteRevisionSummary>> getRevisions(String id, Integer before, int limit) {
+        return getNoteById(id).map(note -> noteRevisionService.listRevisions(note, before, limit));
+    }
+
+    public Optional<NoteRevisionContent> getRevision(String id, int version) {
+        return getNoteById(id).flatMap(note -> noteRevisionService.getRevision(note, version));
+    }
+
+    // Состояние заметки после updateFieldsIfVersion, собранное из прежней версии без повторного чтения
+    @SuppressWarnings("unchecked")
+    private static Note patched(Note previous, Map<String, Object> fields, LocalDateTime updated) {
+        Note note = new Note();
+        note.setId(previous.getId());
+        note.setUsername(previous.getUsername());
+        note.setCreated(previous.getCreated());
+        note.setCreatedAt(previous.getCreatedAt());
+        note.setUpdatedAt(previous.getUpdatedAt());
+        note.setMetadata(previous.getMetadata());
+        note.setContent((String) fields.getOrDefault("content", previous.getContent()));
+        note.setTitle((String) fields.getOrDefault("title", previous.getTitle()));
+        note.setType((String) fields.getOrDefault("type", previous.getType()));
+        note.setPath((String) fields.getOrDefault("path", previous.getPath()));
+        note.setStatus((String) fields.getOrDefault("status", previous.getStatus()));
+        note.setTags((List<String>) fields.getOrDefault("tags", previous.getTags()));
+        note.setLinks((List<String>) fields.getOrDefault("links", previous.getLinks()));
+        note.setDanglingLinks((List<String>) fields.getOrDefault("danglingLinks", previous.getDanglingLinks()));
+        note.setHeadings((List<NoteHeading>) fields.getOrDefault("headings", previous.getHeadings()));
+        note.setWordCount((Integer) fields.getOrDefault("wordCount", previous.getWordCount()));
+        note.setUpdated(updated);
+        note.setVersion(nextVersion(previous));
+        return note;
+    }
+
+    // $inc по отсутствующему полю version даёт 1
+    private static int nextVersion(Note previous) {
+        return versionOf(previous) + 1;
+    }
+
+    // Заметки, созданные до появления версий, хранятся без поля version и считаются версией 0
+    private static int versionOf(Note note) {
+        return note.getVersion() != null ? note.getVersion() : 0;
+    }
+
+    private NoteVersionConflictException conflict(String id, String username) {
+        return noteRepository.findByIdAndUsername(id, username)
+            .map(NoteVersionConflictException::new)
+            .orElseThrow(() -> new IllegalStateException("Заметка удалена во время обновления"));
+    }
+
+    private static void putIfPresent(Map<String, Object> fields, String field, Object value) {
+        if (value != null) {
+            fields.put(field, value);
+        }
     }
 
     @Transactional
     public void deleteNote(String id) {
-        noteRepository.deleteByIdAndUsername(id, getCurrentUsername());
+        String username = getCurrentUsername();
+        if (noteRepository.deleteByIdAndUsername(id, username) > 0) {
+            tombstoneRepository.insertAll(List.of(Tombstone.of(username, "notes", id)));
+            unlinkReferrers(username, id);
+        }
+        invalidate(username, id);
+        noteRevisionService.deleteRevisions(username, id);
+        noteIndexes.forEach(index -> index.remove(username, id));
     }
 
+    // Отсутствующие заметки не кэшируются
     public Optional<Note> getNoteById(String id) {
-        return noteRepository.findByIdAndUsername(id, getCurrentUsername());
+        String username = getCurrentUsername();
+        return Optional.ofNullable(readCache.get(username, Region.NOTE, id,
+            () -> noteRepository.findByIdAndUsername(id, username).orElse(null)));
+    }
+
+    private void invalidate(String username, String id) {
+        readCache.invalidate(username, Region.NOTE, id);
+        readCache.invalidate(username, Region.NOTE_LIST);
     }
 
     public List<Note> findByTags(List<String> tags, boolean matchAll) {
-        if (matchAll) {
-            return noteRepository.findByTagsInAndUsername(tags, getCurrentUsername());
-        }
-        return noteRepository.findByTagsInAndUsername(tags, getCurrentUsername());
+        return findByTagExpression(matchAll ? TagExpression.allOf(tags) : TagExpression.anyOf(tags));
+    }
+
+    public List<Note> findByTagExpression(String expression) {
+        return findByTagExpression(TagExpression.parse(expression));
+    }
+
+    public int countByTagExpression(String expression) {
+        return tagIndex.count(getCurrentUsername(), TagExpression.parse(expression));
+    }
+
+    public Map<String, Integer> getTagCounts() {
+        return tagIndex.tagCounts(getCurrentUsername());
+    }
+
+    private List<Note> findByTagExpression(TagExpression expression) {
+        String username = getCurrentUsername();
+        return loadInOrder(tagIndex.find(username, expression), username);
     }
 
     public List<Note> findByKeyword(String keyword) {
-        return noteRepository.findByContentContainingIgnoreCaseAndUsername(keyword, getCurrentUsername());
+        String username = getCurrentUsername();
+        List<FullTextIndex.Hit> hits = fullTextIndex.search(username, keyword, Integer.MAX_VALUE);
+        return loadInOrder(hits.stream().map(FullTextIndex.Hit::noteId).toList(), username);
     }
 
+    public List<NoteSearchHit> fullTextSearch(String query, int limit) {
+        String username = getCurrentUsername();
+        List<FullTextIndex.Hit> hits = fullTextIndex.search(username, query, limit);
+        List<Note> notes = loadInOrder(hits.stream().map(FullTextIndex.Hit::noteId).toList(), username);
+        Map<String, Double> scores = hits.stream()
+            .collect(Collectors.toMap(FullTextIndex.Hit::noteId, FullTextIndex.Hit::score));
+
+        return notes.stream()
+            .map(note -> new NoteSearchHit(
+                note.getId(),
+                note.getTitle(),
+                note.getType(),
+                note.getPath(),
+                note.getTags(),
+                note.getUpdated(),
+                scores.get(note.getId()),
+                SnippetBuilder.build(note.getContent(), query)))
+            .toList();
+    }
+
+    // Только из индекса в памяти: поле поиска спрашивает на каждое нажатие
+    public List<NoteSuggestion> suggestNotes(String query, int limit) {
+        if (query == null || query.isBlank()) {
+            return List.of();
+        }
+        String prefix = query.length() > MAX_SUGGEST_QUERY_LENGTH ? query.substring(0, MAX_SUGGEST_QUERY_LENGTH) : query;
+        return noteSuggestIndex.suggest(getCurrentUsername(), prefix, Math.max(1, Math.min(limit, MAX_SUGGESTIONS)))
+            .stream()
+            .map(suggestion -> new NoteSuggestion(
+                suggestion.noteId(),
+                suggestion.title(),
+                suggestion.path(),
+                suggestion.updated(),
+                suggestion.score()))
+            .toList();
+    }
+
+    /**
+     * Поиск по тегам и ключевому слову только среди заметок текущего пользователя, через индексы в памяти.
+     * matchAll — все теги и ключевое слово; иначе любой из тегов или ключевое слово,
+     * совпадения по слову идут первыми в порядке релевантности.
+     */
     public List<Note> searchNotes(ZettelSearchRequest searchRequest) {
-        if (searchRequest.getTags() != null && !searchRequest.getTags().isEmpty()) {
-            return noteRepository.findByTagsInOrContentContainingIgnoreCase(
-                searchRequest.getTags(),
-                searchRequest.getKeyword()
-            );
+        List<String> tags = searchRequest.getTags() != null ? searchRequest.getTags() : List.of();
+        String keyword = searchRequest.getKeyword();
+        boolean hasKeyword = keyword != null && !keyword.isBlank();
+        if (Boolean.TRUE.equals(searchRequest.getMatchAll()) && !tags.isEmpty()) {
+            return searchByAllTags(tags, keyword);
+        }
+
+        String username = getCurrentUsername();
+        Set<String> ids = new LinkedHashSet<>();
+        if (hasKeyword) {
+            fullTextIndex.search(username, keyword, Integer.MAX_VALUE).forEach(hit -> ids.add(hit.noteId()));
+        }
+        if (!tags.isEmpty()) {
+            ids.addAll(tagIndex.find(username, TagExpression.anyOf(tags)));
+        }
+        return loadInOrder(List.copyOf(ids), username);
+    }
+
+    public List<LinkGraphIndex.Node> getBacklinks(String id) {
+        return linkGraphIndex.backlinks(getCurrentUsername(), id);
+    }
+
+    public LinkGraphIndex.Subgraph getNoteGraph(String id, int depth, int maxNodes) {
+        return linkGraphIndex.neighborhood(
+            getCurrentUsername(),
+            id,
+            Math.max(1, Math.min(depth, MAX_GRAPH_DEPTH)),
+            Math.max(1, Math.min(maxNodes, MAX_GRAPH_NODES)));
+    }
+
+    public List<LinkGraphIndex.Node> getShortestPath(String fromId, String toId) {
+        return linkGraphIndex.shortestPath(getCurrentUsername(), fromId, toId);
+    }
+
+    // Заметки со всеми указанными тегами, при наличии ключевого слова — только совпавшие с ним
+    private List<Note> searchByAllTags(List<String> tags, String keyword) {
+        String username = getCurrentUsername();
+        List<String> ids = tagIndex.find(username, TagExpression.allOf(tags));
+        if (keyword != null && !keyword.isBlank()) {
+            Set<String> matched = fullTextIndex.search(username, keyword, Integer.MAX_VALUE).stream()
+                .map(FullTextIndex.Hit::noteId)
+                .collect(Collectors.toSet());
+            ids = ids.stream().filter(matched::contains).toList();
+        }
+        return loadInOrder(ids, username);
+    }
+
+    /**
+     * Разбирает content один раз при записи: ссылки [[...]] разрешаются в id через индекс названий
+     * и вместе с явно переданными ссылками становятся links, неразрешённые цели попадают в danglingLinks.
+     * Заголовки и число слов сохраняются в заметке, чтобы чтение не разбирало Markdown заново.
+     */
+    private void analyze(Note note, List<String> explicitLinks) {
+        NoteContentParser.Content content = NoteContentParser.parse(note.getContent());
+        Map<String, String> resolved = noteTitleIndex.resolve(note.getUsername(), content.wikiLinks());
+
+        Set<String> links = new LinkedHashSet<>();
+        List<String> dangling = new ArrayList<>();
+        for (String target : content.wikiLinks()) {
+            String linked = resolved.get(target);
+            if (linked == null) {
+                dangling.add(target);
+            } else if (!linked.equals(note.getId())) {
+                links.add(linked);
+            }
+        }
+        if (explicitLinks != null) {
+            explicitLinks.stream().filter(Objects::nonNull).forEach(links::add);
+        }
+
+        note.setLinks(links.isEmpty() ? null : List.copyOf(links));
+        note.setDanglingLinks(dangling.isEmpty() ? null : dangling);
+        note.setHeadings(content.headings().isEmpty() ? null : content.headings());
+        note.setWordCount(content.wordCount());
+    }
+
+    // Явно заданные ссылки: links без тех, что выведены из [[...]] в прежнем содержимом
+    private List<String> explicitLinks(Note base, String username) {
+        if (base.getLinks() == null) {
+            return null;
+        }
+        Set<String> derived = new HashSet<>(
+            noteTitleIndex.resolve(username, NoteContentParser.parse(base.getContent()).wikiLinks()).values());
+        return base.getLinks().stream().filter(link -> !derived.contains(link)).toList();
+    }
+
+    /**
+     * Заметка с новым названием или путём может быть целью неразрешённых ссылок других заметок:
+     * их ссылки разрешаются сразу, без ожидания следующего сохранения. Ошибка здесь не отменяет
+     * уже выполненную запись — ссылка разрешится при сохранении ссылающейся заметки.
+     */
+    private void relinkReferrers(Note note) {
+        String username = note.getUsername();
+        for (String referrerId : noteTitleIndex.danglingReferrers(username, note.getId())) {
+            try {
+                noteRepository.findByIdAndUsername(referrerId, username).ifPresent(this::relink);
+            } catch (RuntimeException e) {
+                log.warn("Не удалось обновить ссылки заметки {}: {}", referrerId, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Обратные ссылки на удалённую заметку снова становятся неразрешёнными: её id уходит из links,
+     * а цели [[...]], которые в неё разрешались, возвращаются в danglingLinks и разрешатся, когда появится
+     * заметка с тем же названием. Вызывается до удаления заметки из индексов, пока её название разрешается.
+     */
+    private void unlinkReferrers(String username, String id) {
+        for (LinkGraphIndex.Node backlink : linkGraphIndex.backlinks(username, id)) {
+            try {
+                noteRepository.findByIdAndUsername(backlink.noteId(), username)
+                    .ifPresent(referrer -> unlink(referrer, id));
+            } catch (RuntimeException e) {
+                log.warn("Не удалось обновить ссылки заметки {}: {}", backlink.noteId(), e.getMessage());
+            }
+        }
+    }
+
+    private void unlink(Note referrer, String deletedId) {
+        if (referrer.getLinks() == null || !referrer.getLinks().contains(deletedId)) {
+            return;
+        }
+        List<String> wikiLinks = NoteContentParser.parse(referrer.getContent()).wikiLinks();
+        Map<String, String> resolved = noteTitleIndex.resolve(referrer.getUsername(), wikiLinks);
+
+        List<String> dangling = new ArrayList<>(referrer.getDanglingLinks() != null ? referrer.getDanglingLinks() : List.of());
+        for (String target : wikiLinks) {
+            if (deletedId.equals(resolved.get(target)) && !dangling.contains(target)) {
+                dangling.add(target);
+            }
+        }
+        List<String> links = referrer.getLinks().stream().filter(link -> !link.equals(deletedId)).toList();
+        writeLinks(referrer, links.isEmpty() ? null : links, dangling.isEmpty() ? null : dangling);
+    }
+
+    private void relink(Note referrer) {
+        if (referrer.getDanglingLinks() == null) {
+            return;
+        }
+        Map<String, String> resolved = noteTitleIndex.resolve(referrer.getUsername(), referrer.getDanglingLinks());
+        if (resolved.isEmpty()) {
+            return;
+        }
+
+        Set<String> links = new LinkedHashSet<>(referrer.getLinks() != null ? referrer.getLinks() : List.of());
+        List<String> dangling = new ArrayList<>();
+        for (String target : referrer.getDanglingLinks()) {
+            String linked = resolved.get(target);
+            if (linked == null) {
+                dangling.add(target);
+            } else if (!linked.equals(referrer.getId())) {
+                links.add(linked);
+            }
+        }
+        writeLinks(referrer, links.isEmpty() ? null : List.copyOf(links), dangling.isEmpty() ? null : dangling);
+    }
+
+    // Меняет только links и danglingLinks: версия прежняя, так что открытый редактор не получит конфликт
+    private void writeLinks(Note referrer, List<String> newLinks, List<String> newDangling) {
+        if (noteRepository.relinkIfVersion(referrer.getId(), referrer.getUsername(), versionOf(referrer),
+                newLinks, newDangling)) {
+            referrer.setLinks(newLinks);
+            referrer.setDanglingLinks(newDangling);
+            referrer.setUpdated(LocalDateTime.now());
+            invalidate(referrer.getUsername(), referrer.getId());
+            indexed(referrer);
+        }
+    }
+
+    private Note indexed(Note note) {
+        noteIndexes.forEach(index -> index.index(note));
+        return note;
+    }
+
+    // Загружает заметки одним запросом и сохраняет порядок, заданный индексом
+    private List<Note> loadInOrder(List<String> ids, String username) {
+        if (ids.isEmpty()) {
+            return List.of();
         }
-        return noteRepository.findByContentContainingIgnoreCase(searchRequest.getKeyword());
+        Map<String, Note> notes = noteRepository.findAllById(ids).stream()
+            .filter(note -> username.equals(note.getUsername()))
+            .collect(Collectors.toMap(Note::getId, Function.identity()));
+        return ids.stream()
+            .map(notes::get)
+            .filter(Objects::nonNull)
+            .toList();
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,17 @@
+package com.externalobserver.service;
+
+import com.externalobserver.model.Note;
+import lombok.Getter;
+
+/**
+ * Заметку успели изменить: версия в запросе не совпадает с сохранённой.
+ */
+@Getter
+public class NoteVersionConflictException extends RuntimeException {
+    private final Note current;
+
+    public NoteVersionConflictException(Note current) {
+        super("Заметка уже изменена, текущая версия: " + current.getVersion());
+        this.current = current;
+    }
+}
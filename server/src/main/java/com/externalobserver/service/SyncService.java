@@ -0,0 +1,113 @@
+package com.externalobserver.service;
+
+import com.externalobserver.dto.SyncChanges;
+import com.externalobserver.dto.SyncDeletion;
+import com.externalobserver.model.Habit;
+import com.externalobserver.model.Note;
+import com.externalobserver.model.Tombstone;
+import com.externalobserver.repository.ChangeBatch;
+import com.externalobserver.repository.ChangePosition;
+import com.externalobserver.repository.HabitCheckChanges;
+import com.externalobserver.repository.HabitCheckStore;
+import com.externalobserver.repository.HabitRepository;
+import com.externalobserver.repository.NoteRepository;
+import com.externalobserver.repository.StorageClock;
+import com.externalobserver.repository.TombstoneRepository;
+import io.micrometer.core.annotation.Timed;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Инкрементальная синхронизация: создания, изменения и удаления заметок, привычек и отметок
+ * после токена клиента. Каждая коллекция читается keyset-запросом по индексу
+ * (username, время изменения, _id), поэтому переподключение стоит пропорционально числу изменений.
+ *
+ * Страница заполняется коллекциями по очереди: заметки, привычки, отметки, удаления.
+ * Время изменения ставит хранилище при записи ($currentDate в MongoDB), и граница страницы
+ * берётся по его же часам (StorageClock). Изменения моложе settle-delay откладываются до
+ * следующего запроса (см. ChangeBatch): запись с более ранним временем могла ещё не стать видимой.
+ */
+@Service
+@Timed(value = "observer.service", histogram = true, percentiles = {0.5, 0.95, 0.99})
+public class SyncService {
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    private final NoteRepository noteRepository;
+    private final HabitRepository habitRepository;
+    private final HabitCheckStore habitCheckStore;
+    private final TombstoneRepository tombstoneRepository;
+    private final StorageClock storageClock;
+    private final Duration settleDelay;
+
+    public SyncService(
+            NoteRepository noteRepository,
+            HabitRepository habitRepository,
+            HabitCheckStore habitCheckStore,
+            TombstoneRepository tombstoneRepository,
+            StorageClock storageClock,
+            @Value("${sync.settle-delay:2s}") Duration settleDelay) {
+        this.noteRepository = noteRepository;
+        this.habitRepository = habitRepository;
+        this.habitCheckStore = habitCheckStore;
+        this.tombstoneRepository = tombstoneRepository;
+        this.storageClock = storageClock;
+        this.settleDelay = settleDelay;
+    }
+
+    public SyncChanges getChanges(String username, String token, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        LocalDateTime now = storageClock.now();
+        SyncToken requested = token != null && !token.isBlank() ? SyncToken.decode(token) : SyncToken.START;
+
+        // Следы удалений старше RETENTION уже стёрты TTL-индексом: клиент получает всё заново
+        boolean reset = requested.synced() != null && requested.synced().isBefore(now.minus(Tombstone.RETENTION));
+        SyncToken since = reset ? SyncToken.START : requested;
+        LocalDateTime until = now.minus(settleDelay);
+
+        ChangeBatch<Note> notes = ChangeBatch.of(
+            noteRepository.findChangedSince(username, since.notes(), pageSize + 1), pageSize,
+            note -> new ChangePosition(note.getUpdated(), note.getId()), until);
+        int left = pageSize - notes.items().size();
+
+        ChangeBatch<Habit> habits = next(left, () -> ChangeBatch.of(
+            habitRepository.findChangedSince(username, since.habits(), left + 1), left,
+            habit -> new ChangePosition(habit.getUpdatedAt(), habit.getId()), until));
+        int afterHabits = left - habits.items().size();
+
+        HabitCheckChanges checks = afterHabits > 0
+            ? habitCheckStore.findChangedSince(username, since.checks(), until, afterHabits)
+            : new HabitCheckChanges(List.of(), List.of(), null, true);
+        // Год битовой карты не делится между страницами и может занять больше остатка: тогда next() ничего не читает
+        int afterChecks = afterHabits - checks.size();
+
+        ChangeBatch<Tombstone> deletions = next(afterChecks, () -> ChangeBatch.of(
+            tombstoneRepository.findChangedSince(username, since.deletions(), afterChecks + 1), afterChecks,
+            tombstone -> new ChangePosition(tombstone.getDeleted(), tombstone.getId()), until));
+
+        SyncToken next = new SyncToken(until,
+            position(notes, since.notes()),
+            position(habits, since.habits()),
+            checks.last() != null ? checks.last() : since.checks(),
+            position(deletions, since.deletions()));
+        List<SyncDeletion> deleted = deletions.items().stream()
+            .map(tombstone -> new SyncDeletion(tombstone.getCollection(), tombstone.getDocumentId(), tombstone.getDeleted()))
+            .toList();
+        boolean more = notes.more() || habits.more() || checks.more() || deletions.more();
+        return new SyncChanges(notes.items(), habits.items(), checks.checks(), checks.years(), deleted, next.encode(),
+            more, reset);
+    }
+
+    // Коллекция, которой не хватило места в странице, читается в следующем запросе с той же позиции
+    private static <T> ChangeBatch<T> next(int left, Supplier<ChangeBatch<T>> read) {
+        return left > 0 ? read.get() : new ChangeBatch<>(List.of(), null, true);
+    }
+
+    private static ChangePosition position(ChangeBatch<?> batch, ChangePosition previous) {
+        return batch.last() != null ? batch.last() : previous;
+    }
+}
@@ -0,0 +1,70 @@
+package com.externalobserver.service;
+
+import com.externalobserver.repository.ChangePosition;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Токен синхронизации: позиции в каждой коллекции и время, по которое клиент получил изменения.
+ * Позиция {@code null} — коллекция читается с начала. Id пишутся как есть, поэтому в них
+ * допустимы любые символы (у годовых отметок в id есть username).
+ */
+record SyncToken(
+        LocalDateTime synced,
+        ChangePosition notes,
+        ChangePosition habits,
+        ChangePosition checks,
+        ChangePosition deletions) {
+    static final SyncToken START = new SyncToken(null, null, null, null, null);
+
+    String encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writeTime(out, synced);
+            for (ChangePosition position : new ChangePosition[] {notes, habits, checks, deletions}) {
+                out.writeBoolean(position != null);
+                if (position != null) {
+                    writeTime(out, position.time());
+                    out.writeUTF(position.id());
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+    }
+
+    static SyncToken decode(String token) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Base64.getUrlDecoder().decode(token)))) {
+            SyncToken decoded = new SyncToken(readTime(in), readPosition(in), readPosition(in), readPosition(in),
+                readPosition(in));
+            if (in.read() != -1) {
+                throw new IllegalArgumentException("Некорректный токен синхронизации");
+            }
+            return decoded;
+        } catch (IOException | IllegalArgumentException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Некорректный токен синхронизации", e);
+        }
+    }
+
+    private static void writeTime(DataOutputStream out, LocalDateTime time) throws IOException {
+        out.writeUTF(time != null ? time.toString() : "");
+    }
+
+    private static LocalDateTime readTime(DataInputStream in) throws IOException {
+        String value = in.readUTF();
+        return value.isEmpty() ? null : LocalDateTime.parse(value);
+    }
+
+    private static ChangePosition readPosition(DataInputStream in) throws IOException {
+        return in.readBoolean() ? new ChangePosition(readTime(in), in.readUTF()) : null;
+    }
+}
@@ -0,0 +1,94 @@
+package com.externalobserver.storage;
+
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.ExampleMatcher;
+import org.springframework.data.mapping.PersistentPropertyAccessor;
+import org.springframework.data.mapping.context.MappingContext;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+import org.springframework.data.support.ExampleMatcherAccessor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Совпадение документа с образцом Example по тем же правилам, что у MongoExampleMapper:
+ * сравниваются свойства образца, отличные от null (с NullHandler.INCLUDE — и равные null),
+ * строки — по StringMatcher и регистру из ExampleMatcher, вложенные объекты — по своим свойствам.
+ * MatchMode.ANY требует совпадения хотя бы одного условия, образец без условий подходит всем.
+ */
+final class ExamplePredicate<T> implements Predicate<T> {
+    private final T probe;
+    private final ExampleMatcherAccessor matcher;
+    private final boolean any;
+    private final MappingContext<? extends MongoPersistentEntity<?>, MongoPersistentProperty> context;
+    private final Map<String, Pattern> patterns = new HashMap<>();
+
+    ExamplePredicate(Example<T> example,
+                     MappingContext<? extends MongoPersistentEntity<?>, MongoPersistentProperty> context) {
+        this.probe = example.getProbe();
+        this.matcher = new ExampleMatcherAccessor(example.getMatcher());
+        this.any = example.getMatcher().isAnyMatching();
+        this.context = context;
+    }
+
+    @Override
+    public boolean test(T candidate) {
+        List<Boolean> results = new ArrayList<>();
+        collect(context.getRequiredPersistentEntity(probe.getClass()), probe, candidate, "", results);
+        return results.isEmpty() || (any ? results.contains(true) : !results.contains(false));
+    }
+
+    private void collect(MongoPersistentEntity<?> entity, Object expected, Object actual, String prefix,
+                         List<Boolean> results) {
+        PersistentPropertyAccessor<?> expectedValues = entity.getPropertyAccessor(expected);
+        PersistentPropertyAccessor<?> actualValues = actual != null ? entity.getPropertyAccessor(actual) : null;
+        for (MongoPersistentProperty property : entity) {
+            String path = prefix + property.getName();
+            if (matcher.isIgnoredPath(path)) {
+                continue;
+            }
+            Object value = matcher.getValueTransformerForPath(path)
+                .apply(Optional.ofNullable(expectedValues.getProperty(property)))
+                .orElse(null);
+            Object candidate = actualValues != null ? actualValues.getProperty(property) : null;
+
+            if (value == null) {
+                if (matcher.getNullHandler() == ExampleMatcher.NullHandler.INCLUDE) {
+                    results.add(candidate == null);
+                }
+            } else if (property.isEntity() && !property.isCollectionLike() && !property.isMap()) {
+                collect(context.getRequiredPersistentEntity(property), value, candidate, path + ".", results);
+            } else if (value instanceof String text) {
+                results.add(candidate instanceof String string && matches(path, text, string));
+            } else {
+                results.add(Objects.equals(value, candidate));
+            }
+        }
+    }
+
+    private boolean matches(String path, String expected, String actual) {
+        boolean ignoreCase = matcher.isIgnoreCaseForPath(path);
+        ExampleMatcher.StringMatcher mode = matcher.getStringMatcherForPath(path);
+        if (mode == ExampleMatcher.StringMatcher.REGEX) {
+            // Как $regex: совпадение в любом месте строки
+            return patterns.computeIfAbsent(path, p -> Pattern.compile(expected,
+                ignoreCase ? Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE : 0)).matcher(actual).find();
+        }
+        String value = ignoreCase ? actual.toLowerCase(Locale.ROOT) : actual;
+        String part = ignoreCase ? expected.toLowerCase(Locale.ROOT) : expected;
+        return switch (mode) {
+            case STARTING -> value.startsWith(part);
+            case ENDING -> value.endsWith(part);
+            case CONTAINING -> value.contains(part);
+            default -> value.equals(part);
+        };
+    }
+}
@@ -0,0 +1,126 @@
+package com.externalobserver.storage;
+
+import com.externalobserver.dto.HabitCheckUpdate;
+import com.externalobserver.model.HabitCheck;
+import com.externalobserver.repository.ChangePosition;
+import com.externalobserver.repository.HabitCheckRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Repository
+@ConditionalOnProperty(name = "storage.backend", havingValue = "local")
+public class LocalHabitCheckRepository extends LocalRepository<HabitCheck> implements HabitCheckRepository {
+    private static final Comparator<HabitCheck> BY_DATE = Comparator.comparing(HabitCheck::getDate);
+
+    private record Day(String habitId, LocalDate date) {}
+
+    public LocalHabitCheckRepository(LocalStorage storage, MappingMongoConverter converter) {
+        super(HabitCheck.class, storage, converter);
+    }
+
+    // Границы не включаются, как у производного Between в Spring Data MongoDB ($gt и $lt)
+    @Override
+    public List<HabitCheck> findByUsernameAndDateBetweenOrderByDateAsc(
+            String username, LocalDate startDate, LocalDate endDate) {
+        return find(username, check -> check.getDate().isAfter(startDate) && check.getDate().isBefore(endDate), BY_DATE);
+    }
+
+    @Override
+    public List<HabitCheck> findByUsernameAndHabitIdAndDateBetweenOrderByDateAsc(
+            String username, String habitId, LocalDate startDate, LocalDate endDate) {
+        return find(username, check -> habitId.equals(check.getHabitId())
+            && check.getDate().isAfter(startDate) && check.getDate().isBefore(endDate), BY_DATE);
+    }
+
+    @Override
+    public HabitCheck findByUsernameAndHabitIdAndDate(String username, String habitId, LocalDate date) {
+        return findFirst(username, check -> habitId.equals(check.getHabitId()) && date.equals(check.getDate()))
+            .orElse(null);
+    }
+
+    @Override
+    public void deleteByUsername(String username) {
+        deleteWhere(username, check -> true);
+    }
+
+    @Override
+    public long deleteByUsernameAndHabitId(String username, String habitId) {
+        return deleteWhere(username, check -> habitId.equals(check.getHabitId()));
+    }
+
+    // Те же поля, что в проекции @Query
+    @Override
+    public List<HabitCheck> findChecksForPeriod(String username, LocalDate startDate, LocalDate endDate) {
+        return all(username)
+            .filter(check -> !check.getDate().isBefore(startDate) && !check.getDate().isAfter(endDate))
+            .map(check -> {
+                HabitCheck projection = new HabitCheck();
+                projection.setId(check.getId());
+                projection.setHabitId(check.getHabitId());
+                projection.setDate(check.getDate());
+                projection.setCompleted(check.isCompleted());
+                projection.setComment(check.getComment());
+                return projection;
+            })
+            .toList();
+    }
+
+    @Override
+    public List<HabitCheck> findChangedSince(String username, ChangePosition after, int limit) {
+        return findChangedSince(username, HabitCheck::getUpdatedAt, after, limit);
+    }
+
+    // Отметки пользователя читаются один раз, а не на каждое обновление
+    @Override
+    public int upsertAll(String username, List<HabitCheckUpdate> updates) {
+        if (updates.isEmpty()) {
+            return 0;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        return log.locked(() -> {
+            Map<Day, HabitCheck> existing = all(username)
+                .collect(Collectors.toMap(check -> new Day(check.getHabitId(), check.getDate()), Function.identity(),
+                    (first, second) -> first));
+            for (HabitCheckUpdate update : updates) {
+                HabitCheck check = existing.computeIfAbsent(new Day(update.getHabitId(), update.getDate()),
+                    day -> created(username, update, now));
+                save(apply(check, update, now));
+            }
+            return updates.size();
+        });
+    }
+
+    @Override
+    public HabitCheck upsert(String username, HabitCheckUpdate update) {
+        LocalDateTime now = LocalDateTime.now();
+        return log.locked(() -> {
+            HabitCheck check = findByUsernameAndHabitIdAndDate(username, update.getHabitId(), update.getDate());
+            return save(apply(check != null ? check : created(username, update, now), update, now));
+        });
+    }
+
+    private static HabitCheck created(String username, HabitCheckUpdate update, LocalDateTime now) {
+        HabitCheck created = new HabitCheck();
+        created.setUsername(username);
+        created.setHabitId(update.getHabitId());
+        created.setDate(update.getDate());
+        created.setCreatedAt(now);
+        return created;
+    }
+
+    private static HabitCheck apply(HabitCheck check, HabitCheckUpdate update, LocalDateTime now) {
+        check.setCompleted(update.isCompleted());
+        check.setComment(update.getComment());
+        check.setUpdatedAt(now);
+        return check;
+    }
+}
@@ -0,0 +1,83 @@
+package com.externalobserver.storage;
+
+import com.externalobserver.model.Habit;
+import com.externalobserver.repository.ChangePosition;
+import com.externalobserver.repository.HabitRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+@ConditionalOnProperty(name = "storage.backend", havingValue = "local")
+public class LocalHabitRepository extends LocalRepository<Habit> implements HabitRepository {
+    private static final Comparator<Habit> BY_ORDER =
+        Comparator.comparing(Habit::getOrder, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    public LocalHabitRepository(LocalStorage storage, MappingMongoConverter converter) {
+        super(Habit.class, storage, converter);
+    }
+
+    @Override
+    public List<Habit> findByUsernameOrderByOrderAsc(String username) {
+        return find(username, habit -> true, BY_ORDER);
+    }
+
+    @Override
+    public List<Habit> findAllByUsernameOrderByOrder(String username) {
+        return findByUsernameOrderByOrderAsc(username);
+    }
+
+    @Override
+    public Optional<Habit> findFirstByUsernameOrderByOrderDesc(String username) {
+        return all(username).max(BY_ORDER);
+    }
+
+    @Override
+    public long countByIdInAndUsername(Collection<String> ids, String username) {
+        return new HashSet<>(ids).stream()
+            .map(this::findById)
+            .filter(habit -> habit.isPresent() && username.equals(habit.get().getUsername()))
+            .count();
+    }
+
+    @Override
+    public void deleteByUsername(String username) {
+        deleteWhere(username, habit -> true);
+    }
+
+    @Override
+    public List<Habit> findChangedSince(String username, ChangePosition after, int limit) {
+        return findChangedSince(username, Habit::getUpdatedAt, after, limit);
+    }
+
+    @Override
+    public Habit upsert(Habit habit) {
+        habit.setUpdatedAt(LocalDateTime.now());
+        return save(habit);
+    }
+
+    @Override
+    public int updateOrder(String username, List<String> habitIds) {
+        LocalDateTime now = LocalDateTime.now();
+        return log.locked(() -> {
+            int matched = 0;
+            for (int i = 0; i < habitIds.size(); i++) {
+                Optional<Habit> habit = findById(habitIds.get(i)).filter(found -> username.equals(found.getUsername()));
+                if (habit.isPresent()) {
+                    habit.get().setOrder(i + 1);
+                    habit.get().setUpdatedAt(now);
+                    save(habit.get());
+                    matched++;
+                }
+            }
+            return matched;
+        });
+    }
+}
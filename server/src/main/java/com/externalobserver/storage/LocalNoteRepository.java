@@ -0,0 +1,223 @@
+package com.externalobserver.storage;
+
+import com.externalobserver.dto.NoteSortOrder;
+import com.externalobserver.dto.NoteSummary;
+import com.externalobserver.dto.NoteSummaryPage;
+import com.externalobserver.model.Note;
+import com.externalobserver.repository.ChangePosition;
+import com.externalobserver.repository.NoteCompression;
+import com.externalobserver.repository.NoteCursor;
+import com.externalobserver.repository.NoteRepository;
+import org.bson.Document;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * NoteRepository локального режима. Заметки хранятся без сжатия (см. NoteCompression):
+ * регулярные выражения в поиске видят всё содержимое.
+ */
+@Repository
+@ConditionalOnProperty(name = "storage.backend", havingValue = "local")
+public class LocalNoteRepository extends LocalRepository<Note> implements NoteRepository {
+    private static final Comparator<Note> UPDATED_ASC = Comparator
+        .comparing(Note::getUpdated, Comparator.nullsFirst(Comparator.naturalOrder()))
+        .thenComparing(Note::getId);
+
+    public LocalNoteRepository(LocalStorage storage, MappingMongoConverter converter) {
+        super(Note.class, storage, converter);
+    }
+
+    @Override
+    public List<Note> findByUsername(String username) {
+        return find(username, note -> true);
+    }
+
+    @Override
+    public List<Note> findByTagsInAndUsername(List<String> tags, String username) {
+        return find(username, note -> containsAny(note.getTags(), tags));
+    }
+
+    @Override
+    public Optional<Note> findByIdAndUsername(String id, String username) {
+        return findById(id).filter(owned(username));
+    }
+
+    @Override
+    public long deleteByIdAndUsername(String id, String username) {
+        return log.locked(() -> findByIdAndUsername(id, username).isPresent() && remove(id) ? 1L : 0L);
+    }
+
+    @Override
+    public Stream<Note> streamAllBy() {
+        return all();
+    }
+
+    @Override
+    public Stream<Note> streamByUsername(String username) {
+        return all(username);
+    }
+
+    @Override
+    public List<Note> findChangedSince(String username, ChangePosition after, int limit) {
+        return findChangedSince(username, Note::getUpdated, after, limit);
+    }
+
+    // Тот же порядок и курсор, что у NoteRepositoryCustomImpl: по возрастанию null в начале
+    @Override
+    public NoteSummaryPage findSummaries(String username, NoteSortOrder order, String cursor, int limit) {
+        Comparator<Note> comparator = order == NoteSortOrder.UPDATED_DESC ? UPDATED_ASC.reversed() : UPDATED_ASC;
+        Predicate<Note> filter = note -> true;
+        if (cursor != null && !cursor.isBlank()) {
+            NoteCursor after = NoteCursor.decode(cursor);
+            Note last = new Note();
+            last.setUpdated(after.updated());
+            last.setId(after.id());
+            filter = filter.and(note -> comparator.compare(note, last) > 0);
+        }
+
+        List<NoteSummary> items = all(username)
+            .filter(filter)
+            .sorted(comparator)
+            .limit(limit + 1L)
+            .map(LocalNoteRepository::summary)
+            .collect(Collectors.toCollection(ArrayList::new));
+
+        String nextCursor = null;
+        if (items.size() > limit) {
+            items.remove(limit);
+            NoteSummary last = items.get(limit - 1);
+            nextCursor = new NoteCursor(last.getUpdated(), last.getId()).encode();
+        }
+        return new NoteSummaryPage(items, nextCursor);
+    }
+
+    @Override
+    public Map<Integer, String> insertUnordered(List<Note> notes) {
+        Map<Integer, String> errors = new HashMap<>();
+        for (int i = 0; i < notes.size(); i++) {
+            try {
+                insert(notes.get(i));
+            } catch (DuplicateKeyException e) {
+                errors.put(i, e.getMessage());
+            }
+        }
+        return errors;
+    }
+
+    @Override
+    public Optional<Note> replaceIfVersion(String id, String username, int expectedVersion, Note changes) {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        fields.put("title", changes.getTitle());
+        fields.put("content", changes.getContent());
+        fields.put("createdAt", changes.getCreatedAt());
+        fields.put("updatedAt", changes.getUpdatedAt());
+        fields.put("type", changes.getType());
+        fields.put("path", changes.getPath());
+        fields.put("tags", changes.getTags());
+        fields.put("links", changes.getLinks());
+        fields.put("danglingLinks", changes.getDanglingLinks());
+        fields.put("headings", changes.getHeadings());
+        fields.put("wordCount", changes.getWordCount());
+        fields.put("metadata", changes.getMetadata());
+        fields.put("status", changes.getStatus());
+        return updateIfVersion(id, username, expectedVersion, fields, true);
+    }
+
+    @Override
+    public Optional<Note> updateFieldsIfVersion(
+            String id, String username, int expectedVersion, Map<String, Object> fields) {
+        return updateIfVersion(id, username, expectedVersion, fields, true);
+    }
+
+    @Override
+    public boolean relinkIfVersion(String id, String username, int expectedVersion,
+                                   List<String> links, List<String> danglingLinks) {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        fields.put("links", links);
+        fields.put("danglingLinks", danglingLinks);
+        return updateIfVersion(id, username, expectedVersion, fields, false).isPresent();
+    }
+
+    @Override
+    public Optional<Note> findContentAndVersion(String id, String username) {
+        return findByIdAndUsername(id, username).map(note -> {
+            Note projection = new Note();
+            projection.setId(note.getId());
+            projection.setContent(note.getContent());
+            projection.setLinks(note.getLinks());
+            projection.setVersion(note.getVersion());
+            projection.setTitle(note.getTitle());
+            projection.setUpdated(note.getUpdated());
+            projection.setUsername(note.getUsername());
+            return projection;
+        });
+    }
+
+    // Как findAndModify с $set/$unset, $currentDate и $inc версии (если bumpVersion): возвращает заметку
+    // до изменения. Время ставится под блокировкой журнала, в порядке записей
+    private Optional<Note> updateIfVersion(String id, String username, int expectedVersion,
+                                           Map<String, Object> fields, boolean bumpVersion) {
+        return log.locked(() -> {
+            Document document = load(id);
+            if (document == null) {
+                return Optional.empty();
+            }
+            Note previous = read(document);
+            if (!username.equals(previous.getUsername())
+                    || expectedVersion != (previous.getVersion() != null ? previous.getVersion() : 0)) {
+                return Optional.empty();
+            }
+
+            fields.forEach((field, value) -> {
+                if (value != null) {
+                    document.put(field, toStoredValue(value));
+                } else {
+                    document.remove(field);
+                }
+            });
+            document.put("updated", toStoredValue(LocalDateTime.now()));
+            if (bumpVersion) {
+                document.put("version", previous.getVersion() != null ? previous.getVersion() + 1 : 1);
+            }
+            store(id, document);
+            return Optional.of(previous);
+        });
+    }
+
+    private static Predicate<Note> owned(String username) {
+        return note -> username.equals(note.getUsername());
+    }
+
+    private static boolean containsAny(Collection<String> values, Collection<String> candidates) {
+        return values != null && candidates.stream().anyMatch(values::contains);
+    }
+
+    // Как $substrCP в NoteRepositoryCustomImpl: первые PREVIEW_LENGTH символов
+    private static NoteSummary summary(Note note) {
+        NoteSummary summary = new NoteSummary();
+        summary.setId(note.getId());
+        summary.setTitle(note.getTitle());
+        summary.setType(note.getType());
+        summary.setTags(note.getTags());
+        summary.setUpdated(note.getUpdated());
+        String content = note.getContent() != null ? note.getContent() : "";
+        int length = content.codePointCount(0, content.length());
+        summary.setPreview(content.substring(0, content.offsetByCodePoints(0, Math.min(length, NoteCompression.PREVIEW_LENGTH))));
+        return summary;
+    }
+}
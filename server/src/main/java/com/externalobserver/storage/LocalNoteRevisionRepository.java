@@ -0,0 +1,92 @@
+package com.externalobserver.storage;
+
+import com.externalobserver.model.NoteRevision;
+import com.externalobserver.repository.NoteRevisionRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Id ревизии — username:noteId:версия с версией в десять цифр. Ключи ревизий одной заметки
+ * идут в индексе журнала подряд и по возрастанию версии, поэтому запросы читают только их,
+ * а повторная ревизия отклоняется как дубликат id — так же, как уникальным индексом в MongoDB.
+ */
+@Repository
+@ConditionalOnProperty(name = "storage.backend", havingValue = "local")
+public class LocalNoteRevisionRepository extends LocalRepository<NoteRevision> implements NoteRevisionRepository {
+
+    public LocalNoteRevisionRepository(LocalStorage storage, MappingMongoConverter converter) {
+        super(NoteRevision.class, storage, converter);
+    }
+
+    // Ключи читаются в обратном порядке, и декодируются только ревизии страницы
+    @Override
+    public List<NoteRevision> findSummaries(String username, String noteId, int before, Limit limit) {
+        if (before <= 0) {
+            return List.of();
+        }
+        return log.keys().subSet(id(username, noteId, 0), true, id(username, noteId, before), false).descendingSet().stream()
+            .limit(limit.isLimited() ? limit.max() : Long.MAX_VALUE)
+            .map(log::get)
+            .filter(Objects::nonNull)
+            .map(this::decode)
+            .map(revision -> {
+                revision.setData(null);
+                return revision;
+            })
+            .toList();
+    }
+
+    // Как upsert по уникальному индексу: id ревизии определяется её ключом
+    @Override
+    public void replace(NoteRevision revision) {
+        revision.setId(null);
+        save(revision);
+    }
+
+    @Override
+    public List<NoteRevision> findChain(String username, String noteId, int from, int to) {
+        return chain(username, noteId, from, to);
+    }
+
+    @Override
+    public long deleteByUsernameAndNoteId(String username, String noteId) {
+        return log.locked(() -> {
+            String prefix = prefix(username, noteId);
+            List<String> ids = List.copyOf(log.keys().subSet(prefix, prefix + Character.MAX_VALUE));
+            ids.forEach(this::remove);
+            return (long) ids.size();
+        });
+    }
+
+    @Override
+    protected String newId(NoteRevision revision) {
+        return id(revision.getUsername(), revision.getNoteId(), revision.getVersion());
+    }
+
+    // От новых к старым, как sort {'version': -1}
+    private List<NoteRevision> chain(String username, String noteId, int from, int to) {
+        if (from > to || to < 0) {
+            return List.of();
+        }
+        List<NoteRevision> revisions = log.values(
+                id(username, noteId, Math.max(from, 0)), to == Integer.MAX_VALUE
+                    ? prefix(username, noteId) + Character.MAX_VALUE
+                    : id(username, noteId, to + 1))
+            .map(this::decode)
+            .toList();
+        return revisions.reversed();
+    }
+
+    private static String prefix(String username, String noteId) {
+        return username + ":" + noteId + ":";
+    }
+
+    private static String id(String username, String noteId, int version) {
+        return prefix(username, noteId) + String.format("%010d", version);
+    }
+}
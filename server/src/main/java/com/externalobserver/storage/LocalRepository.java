@@ -0,0 +1,490 @@
+package com.externalobserver.storage;
+
+import com.externalobserver.repository.ChangePosition;
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinaryWriter;
+import org.bson.Document;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.DocumentCodec;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+import org.bson.types.ObjectId;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.OffsetScrollPosition;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.projection.ProjectionFactory;
+import org.springframework.data.projection.SpelAwareProxyProjectionFactory;
+import org.springframework.data.repository.query.FluentQuery;
+import org.springframework.util.Assert;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Репозиторий поверх журнала коллекции. Документы хранятся в BSON в том же виде, что и в MongoDB:
+ * их пишет и читает MappingMongoConverter. Поиск по id идёт через индекс журнала, запросы
+ * одного пользователя — через индекс username → id в памяти, остальные читают коллекцию
+ * целиком в порядке id. Поиск по образцу сравнивает образец с каждым документом (см. ExamplePredicate).
+ */
+public abstract class LocalRepository<T> implements MongoRepository<T, String> {
+    private static final DocumentCodec CODEC = new DocumentCodec();
+    private static final String OWNER = "username";
+    private static final ProjectionFactory PROJECTIONS = new SpelAwareProxyProjectionFactory();
+
+    private final Class<T> type;
+    private final MappingMongoConverter converter;
+    private final MongoPersistentEntity<?> entity;
+    protected final SegmentLog log;
+    // Строится при открытии и меняется под блокировкой журнала вместе с записью документа
+    private final Map<String, NavigableSet<String>> idsByOwner = new ConcurrentHashMap<>();
+    private final Map<String, String> ownerById = new ConcurrentHashMap<>();
+
+    protected LocalRepository(Class<T> type, LocalStorage storage, MappingMongoConverter converter) {
+        this.type = type;
+        this.converter = converter;
+        this.entity = converter.getMappingContext().getRequiredPersistentEntity(type);
+        this.log = storage.collectionLog(entity.getCollection());
+        log.locked(() -> {
+            log.keys().forEach(id -> index(id, load(id)));
+            return null;
+        });
+    }
+
+    @Override
+    public <S extends T> S save(S item) {
+        Assert.notNull(item, "Entity must not be null");
+        store(idOf(item), toDocument(item));
+        return item;
+    }
+
+    @Override
+    public <S extends T> List<S> saveAll(Iterable<S> items) {
+        List<S> saved = new ArrayList<>();
+        items.forEach(item -> saved.add(save(item)));
+        return saved;
+    }
+
+    @Override
+    public <S extends T> S insert(S item) {
+        Assert.notNull(item, "Entity must not be null");
+        String id = idOf(item);
+        Document document = toDocument(item);
+        return log.locked(() -> {
+            if (log.contains(id)) {
+                throw new DuplicateKeyException("Документ " + id + " уже есть в " + entity.getCollection());
+            }
+            store(id, document);
+            return item;
+        });
+    }
+
+    @Override
+    public <S extends T> List<S> insert(Iterable<S> items) {
+        List<S> inserted = new ArrayList<>();
+        items.forEach(item -> inserted.add(insert(item)));
+        return inserted;
+    }
+
+    @Override
+    public Optional<T> findById(String id) {
+        Assert.notNull(id, "The given id must not be null");
+        return Optional.ofNullable(log.get(id)).map(this::decode);
+    }
+
+    @Override
+    public boolean existsById(String id) {
+        Assert.notNull(id, "The given id must not be null");
+        return log.contains(id);
+    }
+
+    @Override
+    public List<T> findAll() {
+        return all().toList();
+    }
+
+    @Override
+    public List<T> findAllById(Iterable<String> ids) {
+        return StreamSupport.stream(ids.spliterator(), false)
+            .distinct()
+            .map(log::get)
+            .filter(Objects::nonNull)
+            .map(this::decode)
+            .toList();
+    }
+
+    @Override
+    public long count() {
+        return log.size();
+    }
+
+    @Override
+    public void deleteById(String id) {
+        Assert.notNull(id, "The given id must not be null");
+        remove(id);
+    }
+
+    @Override
+    public void delete(T item) {
+        Assert.notNull(item, "Entity must not be null");
+        Object id = entity.getIdentifierAccessor(item).getIdentifier();
+        if (id != null) {
+            remove(id.toString());
+        }
+    }
+
+    @Override
+    public void deleteAllById(Iterable<? extends String> ids) {
+        ids.forEach(this::deleteById);
+    }
+
+    @Override
+    public void deleteAll(Iterable<? extends T> items) {
+        items.forEach(this::delete);
+    }
+
+    @Override
+    public void deleteAll() {
+        log.locked(() -> {
+            List.copyOf(log.keys()).forEach(this::remove);
+            return null;
+        });
+    }
+
+    @Override
+    public List<T> findAll(Sort sort) {
+        return all().sorted(comparator(sort)).toList();
+    }
+
+    @Override
+    public Page<T> findAll(Pageable pageable) {
+        return page(findAll(pageable.getSort()), pageable);
+    }
+
+    @Override
+    public <S extends T> Optional<S> findOne(Example<S> example) {
+        return matching(example).findFirst();
+    }
+
+    @Override
+    public <S extends T> List<S> findAll(Example<S> example) {
+        return matching(example).toList();
+    }
+
+    @Override
+    public <S extends T> List<S> findAll(Example<S> example, Sort sort) {
+        return matching(example).sorted(comparator(sort)).toList();
+    }
+
+    @Override
+    public <S extends T> Page<S> findAll(Example<S> example, Pageable pageable) {
+        return page(findAll(example, pageable.getSort()), pageable);
+    }
+
+    @Override
+    public <S extends T> long count(Example<S> example) {
+        return matching(example).count();
+    }
+
+    @Override
+    public <S extends T> boolean exists(Example<S> example) {
+        return matching(example).findAny().isPresent();
+    }
+
+    @Override
+    public <S extends T, R> R findBy(Example<S> example, Function<FluentQuery.FetchableFluentQuery<S>, R> queryFunction) {
+        return queryFunction.apply(new ExampleQuery<>(example, Sort.unsorted(), 0, Function.identity()));
+    }
+
+    // Id для нового документа; MongoTemplate так же создаёт ObjectId
+    protected String newId(T item) {
+        return new ObjectId().toHexString();
+    }
+
+    protected Stream<T> all() {
+        return log.values().map(this::decode);
+    }
+
+    // Документы пользователя в порядке id: декодируются только его записи журнала
+    protected Stream<T> all(String username) {
+        return idsByOwner.getOrDefault(username, Collections.emptyNavigableSet()).stream()
+            .map(log::get)
+            .filter(Objects::nonNull)
+            .map(this::decode);
+    }
+
+    protected List<T> find(String username, Predicate<T> filter) {
+        return all(username).filter(filter).toList();
+    }
+
+    protected List<T> find(String username, Predicate<T> filter, Comparator<T> order) {
+        return all(username).filter(filter).sorted(order).toList();
+    }
+
+    protected Optional<T> findFirst(String username, Predicate<T> filter) {
+        return all(username).filter(filter).findFirst();
+    }
+
+    // Как ChangeQueries.since: строго после позиции в порядке (время, id), время null — в начале
+    protected List<T> findChangedSince(
+            String username, Function<T, LocalDateTime> time, ChangePosition after, int limit) {
+        Function<T, ChangePosition> position = item -> new ChangePosition(time.apply(item), idOf(item));
+        return all(username)
+            .filter(item -> after == null || ChangePosition.ORDER.compare(position.apply(item), after) > 0)
+            .sorted(Comparator.comparing(position, ChangePosition.ORDER))
+            .limit(limit)
+            .toList();
+    }
+
+    protected long deleteWhere(String username, Predicate<T> filter) {
+        return log.locked(() -> {
+            List<String> ids = all(username).filter(filter)
+                .map(this::idOf)
+                .toList();
+            ids.forEach(this::remove);
+            return (long) ids.size();
+        });
+    }
+
+    protected Document load(String id) {
+        byte[] bytes = log.get(id);
+        return bytes != null ? document(bytes) : null;
+    }
+
+    protected T read(Document document) {
+        return converter.read(type, document);
+    }
+
+    protected void store(String id, Document document) {
+        BasicOutputBuffer buffer = new BasicOutputBuffer();
+        CODEC.encode(new BsonBinaryWriter(buffer), document, EncoderContext.builder().build());
+        byte[] bytes = buffer.toByteArray();
+        log.locked(() -> {
+            log.put(id, bytes);
+            index(id, document);
+            return null;
+        });
+    }
+
+    // Удаление документа; через log.delete напрямую индекс username → id устарел бы
+    protected boolean remove(String id) {
+        return log.locked(() -> {
+            index(id, null);
+            return log.delete(id);
+        });
+    }
+
+    // Значение в том виде, в каком его записал бы $set
+    protected Object toStoredValue(Object value) {
+        return converter.convertToMongoType(value);
+    }
+
+    // Сортировка как в MongoDB: null и отсутствующие поля меньше любых значений
+    @SuppressWarnings("unchecked")
+    protected Comparator<T> comparator(Sort sort) {
+        Comparator<T> result = (left, right) -> 0;
+        for (Sort.Order order : sort) {
+            MongoPersistentProperty property = entity.getRequiredPersistentProperty(order.getProperty());
+            Comparator<T> byProperty = Comparator.comparing(
+                item -> (Comparable<Object>) entity.getPropertyAccessor(item).getProperty(property),
+                Comparator.nullsFirst(Comparator.naturalOrder()));
+            result = result.thenComparing(order.isAscending() ? byProperty : byProperty.reversed());
+        }
+        return result;
+    }
+
+    protected T decode(byte[] bytes) {
+        return read(document(bytes));
+    }
+
+    // Вызывается под блокировкой журнала; document == null — документ удалён
+    private void index(String id, Document document) {
+        String owner = document != null && document.get(OWNER) instanceof String username ? username : null;
+        String previous = owner != null ? ownerById.put(id, owner) : ownerById.remove(id);
+        if (previous != null && !previous.equals(owner)) {
+            NavigableSet<String> ids = idsByOwner.get(previous);
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                idsByOwner.remove(previous);
+            }
+        }
+        if (owner != null) {
+            idsByOwner.computeIfAbsent(owner, username -> new ConcurrentSkipListSet<>()).add(id);
+        }
+    }
+
+    private <S extends T> Stream<S> matching(Example<S> example) {
+        Class<S> probeType = example.getProbeType();
+        ExamplePredicate<S> predicate = new ExamplePredicate<>(example, converter.getMappingContext());
+        return all()
+            .filter(probeType::isInstance)
+            .map(probeType::cast)
+            .filter(predicate);
+    }
+
+    private static <X> Page<X> page(List<X> items, Pageable pageable) {
+        if (pageable.isUnpaged()) {
+            return new PageImpl<>(items);
+        }
+        int from = (int) Math.min(pageable.getOffset(), items.size());
+        int to = Math.min(from + pageable.getPageSize(), items.size());
+        return new PageImpl<>(items.subList(from, to), pageable, items.size());
+    }
+
+    // Интерфейс — проекция поверх документа, класс — документ, прочитанный как этот класс
+    private <S extends T, R> Function<S, R> projection(Class<R> resultType) {
+        return item -> {
+            if (resultType.isInstance(item)) {
+                return resultType.cast(item);
+            }
+            return resultType.isInterface()
+                ? PROJECTIONS.createProjection(resultType, item)
+                : converter.read(resultType, toDocument(item));
+        };
+    }
+
+    private static Document document(byte[] bytes) {
+        return CODEC.decode(new BsonBinaryReader(ByteBuffer.wrap(bytes)), DecoderContext.builder().build());
+    }
+
+    private Document toDocument(T item) {
+        Document document = new Document();
+        converter.write(item, document);
+        return document;
+    }
+
+    private String idOf(T item) {
+        Object id = entity.getIdentifierAccessor(item).getIdentifier();
+        if (id == null) {
+            id = newId(item);
+            entity.getPropertyAccessor(item).setProperty(entity.getRequiredIdProperty(), id);
+        }
+        return id.toString();
+    }
+
+    /**
+     * findBy по образцу. Документы читаются целиком, поэтому project только сужает контракт,
+     * а scroll поддерживает смещение, но не keyset.
+     */
+    private final class ExampleQuery<S extends T, R> implements FluentQuery.FetchableFluentQuery<R> {
+        private final Example<S> example;
+        private final Sort sort;
+        private final int limit;
+        private final Function<S, R> mapping;
+
+        private ExampleQuery(Example<S> example, Sort sort, int limit, Function<S, R> mapping) {
+            this.example = example;
+            this.sort = sort;
+            this.limit = limit;
+            this.mapping = mapping;
+        }
+
+        @Override
+        public FluentQuery.FetchableFluentQuery<R> sortBy(Sort sort) {
+            Assert.notNull(sort, "Sort must not be null");
+            return new ExampleQuery<>(example, this.sort.and(sort), limit, mapping);
+        }
+
+        @Override
+        public FluentQuery.FetchableFluentQuery<R> limit(int limit) {
+            Assert.isTrue(limit >= 0, "Limit must not be negative");
+            return new ExampleQuery<>(example, sort, limit, mapping);
+        }
+
+        @Override
+        public <P> FluentQuery.FetchableFluentQuery<P> as(Class<P> resultType) {
+            Assert.notNull(resultType, "Projection target type must not be null");
+            return new ExampleQuery<>(example, sort, limit, projection(resultType));
+        }
+
+        @Override
+        public FluentQuery.FetchableFluentQuery<R> project(Collection<String> properties) {
+            return this;
+        }
+
+        @Override
+        public R oneValue() {
+            List<R> found = stream().limit(2).toList();
+            if (found.size() > 1) {
+                throw new IncorrectResultSizeDataAccessException(1, found.size());
+            }
+            return found.isEmpty() ? null : found.get(0);
+        }
+
+        @Override
+        public R firstValue() {
+            return stream().findFirst().orElse(null);
+        }
+
+        @Override
+        public List<R> all() {
+            return stream().toList();
+        }
+
+        @Override
+        public Window<R> scroll(ScrollPosition position) {
+            if (!(position instanceof OffsetScrollPosition offset)) {
+                return FluentQuery.FetchableFluentQuery.super.scroll(position);
+            }
+            long skip = offset.isInitial() ? 0 : offset.getOffset();
+            List<R> items = sorted(sort).skip(skip)
+                .limit(limit > 0 ? limit + 1L : Long.MAX_VALUE)
+                .map(mapping)
+                .toList();
+            boolean hasNext = limit > 0 && items.size() > limit;
+            return Window.from(hasNext ? items.subList(0, limit) : items,
+                OffsetScrollPosition.positionFunction(skip), hasNext);
+        }
+
+        @Override
+        public Page<R> page(Pageable pageable) {
+            List<R> items = sorted(sort.and(pageable.getSort())).map(mapping).toList();
+            return LocalRepository.page(items, pageable);
+        }
+
+        @Override
+        public Stream<R> stream() {
+            return sorted(sort).limit(limit > 0 ? limit : Long.MAX_VALUE).map(mapping);
+        }
+
+        @Override
+        public long count() {
+            return matching(example).count();
+        }
+
+        @Override
+        public boolean exists() {
+            return matching(example).findAny().isPresent();
+        }
+
+        private Stream<S> sorted(Sort order) {
+            Stream<S> items = matching(example);
+            return order.isSorted() ? items.sorted(comparator(order)) : items;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.externalobserver.storage;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Встроенное хранилище локального режима: по журналу {@link SegmentLog} на коллекцию
+ * в подкаталогах {@code directory}. Фоновый поток периодически сжимает журналы,
+ * в которых накопилось достаточно мусора. Размеры журналов публикуются как storage.local.bytes.
+ */
+@Slf4j
+public class LocalStorage implements Closeable {
+    private final Path directory;
+    private final int segmentSize;
+    private final boolean fsync;
+    private final double garbageRatio;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, SegmentLog> logs = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService compactor = Executors.newSingleThreadScheduledExecutor(
+        Thread.ofPlatform().name("storage-compaction").daemon().factory());
+
+    public LocalStorage(
+            Path directory,
+            int segmentSize,
+            boolean fsync,
+            Duration compactionInterval,
+            double garbageRatio,
+            MeterRegistry meterRegistry) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.fsync = fsync;
+        this.garbageRatio = garbageRatio;
+        this.meterRegistry = meterRegistry;
+        long interval = compactionInterval.toMillis();
+        compactor.scheduleWithFixedDelay(this::compact, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public SegmentLog collectionLog(String collection) {
+        return logs.computeIfAbsent(collection, this::open);
+    }
+
+    // Сбой сжатия одного журнала не мешает остальным и следующим попыткам
+    void compact() {
+        logs.forEach((collection, segmentLog) -> {
+            try {
+                long before = segmentLog.totalBytes();
+                if (segmentLog.compact(garbageRatio)) {
+                    log.info("Журнал {} сжат: {} → {} байт", collection, before, segmentLog.totalBytes());
+                }
+            } catch (RuntimeException e) {
+                log.error("Не удалось сжать журнал {}", collection, e);
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        logs.values().forEach(SegmentLog::close);
+    }
+
+    private SegmentLog open(String collection) {
+        SegmentLog segmentLog = new SegmentLog(directory.resolve(collection), segmentSize, fsync);
+        Gauge.builder("storage.local.bytes", segmentLog, SegmentLog::totalBytes)
+            .tag("collection", collection).tag("kind", "total")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+        Gauge.builder("storage.local.bytes", segmentLog, SegmentLog::liveBytes)
+            .tag("collection", collection).tag("kind", "live")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+        return segmentLog;
+    }
+}
@@ -0,0 +1,20 @@
+package com.externalobserver.storage;
+
+import com.externalobserver.repository.StorageClock;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+
+/**
+ * Встроенное хранилище работает в процессе приложения, поэтому его часы — часы приложения.
+ */
+@Component
+@ConditionalOnProperty(name = "storage.backend", havingValue = "local")
+public class LocalStorageClock implements StorageClock {
+
+    @Override
+    public LocalDateTime now() {
+        return LocalDateTime.now();
+    }
+}
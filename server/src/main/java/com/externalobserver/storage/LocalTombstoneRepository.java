@@ -0,0 +1,36 @@
+package com.externalobserver.storage;
+
+import com.externalobserver.model.Tombstone;
+import com.externalobserver.repository.ChangePosition;
+import com.externalobserver.repository.TombstoneRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Следы удалений локального режима. TTL-индекса здесь нет: устаревшие следы остаются,
+ * но клиент со старым токеном всё равно получает данные заново (см. SyncService).
+ */
+@Repository
+@ConditionalOnProperty(name = "storage.backend", havingValue = "local")
+public class LocalTombstoneRepository extends LocalRepository<Tombstone> implements TombstoneRepository {
+
+    public LocalTombstoneRepository(LocalStorage storage, MappingMongoConverter converter) {
+        super(Tombstone.class, storage, converter);
+    }
+
+    @Override
+    public void insertAll(List<Tombstone> tombstones) {
+        LocalDateTime now = LocalDateTime.now();
+        tombstones.forEach(tombstone -> tombstone.setDeleted(now));
+        insert(tombstones);
+    }
+
+    @Override
+    public List<Tombstone> findChangedSince(String username, ChangePosition after, int limit) {
+        return findChangedSince(username, Tombstone::getDeleted, after, limit);
+    }
+}
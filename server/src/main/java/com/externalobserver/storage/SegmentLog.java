@@ -0,0 +1,513 @@
+package com.externalobserver.storage;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Журнал одной коллекции: значения по ключу дописываются в конец сегментных файлов,
+ * отображённых в память, а в памяти хранится только индекс ключ → место последней записи.
+ *
+ * Запись: crc32c (4 байта), номер (8), длина ключа (4), длина значения (4, -1 — удаление),
+ * ключ в UTF-8 и значение. Активный сегмент создаётся сразу на segmentSize байт, нулевая длина
+ * ключа означает конец данных. При открытии сегменты читаются заново, хвост с неверной
+ * контрольной суммой (запись, оборванная сбоем) отбрасывается. Из нескольких записей ключа
+ * действует запись с большим номером, поэтому порядок файлов после сжатия не важен.
+ *
+ * Сжатие переписывает живые записи закрытых сегментов в новые файлы и удаляет старые.
+ * Чтение не блокируется: отображение старого сегмента действует, пока на него есть ссылки.
+ */
+@Slf4j
+public class SegmentLog implements Closeable {
+    static final int HEADER = 20;
+    private static final int TOMBSTONE = -1;
+    private static final String SUFFIX = ".seg";
+    private static final String TEMPORARY = ".tmp";
+    // Сегменты, заменённые сжатием, но ещё не удалённые: Windows не удаляет отображённые файлы
+    private static final String OBSOLETE = "obsolete";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final boolean fsync;
+    private final ConcurrentSkipListMap<String, Location> index = new ConcurrentSkipListMap<>();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final ReentrantLock compactionLock = new ReentrantLock();
+
+    // Изменяются под writeLock
+    private final List<Segment> segments = new ArrayList<>();
+    private Segment active;
+    private long sequence;
+    private int nextId;
+    private boolean closed;
+
+    public SegmentLog(Path directory, int segmentSize, boolean fsync) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.fsync = fsync;
+        try {
+            Files.createDirectories(directory);
+            deleteObsolete();
+            recover();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось открыть журнал " + directory, e);
+        }
+    }
+
+    public byte[] get(String key) {
+        Location location = index.get(key);
+        return location != null ? location.value() : null;
+    }
+
+    public boolean contains(String key) {
+        return index.containsKey(key);
+    }
+
+    public void put(String key, byte[] value) {
+        append(key, value);
+    }
+
+    public boolean delete(String key) {
+        return locked(() -> {
+            if (!index.containsKey(key)) {
+                return false;
+            }
+            append(key, null);
+            return true;
+        });
+    }
+
+    // Ключи по возрастанию; изменения во время обхода могут быть видны или нет
+    public NavigableSet<String> keys() {
+        return Collections.unmodifiableNavigableSet(index.keySet());
+    }
+
+    public Stream<byte[]> values() {
+        return index.values().stream().map(Location::value);
+    }
+
+    // Значения ключей из [fromKey, toKey) по возрастанию ключа
+    public Stream<byte[]> values(String fromKey, String toKey) {
+        return index.subMap(fromKey, true, toKey, false).values().stream().map(Location::value);
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * Выполняет действие под блокировкой записи: чтение, проверка и запись внутри него
+     * не пересекаются с другими записями журнала.
+     */
+    public <T> T locked(Supplier<T> action) {
+        writeLock.lock();
+        try {
+            return action.get();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public long totalBytes() {
+        return locked(() -> segments.stream().mapToLong(segment -> segment.size).sum());
+    }
+
+    public long liveBytes() {
+        return locked(() -> segments.stream().mapToLong(segment -> segment.liveBytes).sum());
+    }
+
+    int segmentCount() {
+        return locked(segments::size);
+    }
+
+    private void append(String key, byte[] value) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        if (keyBytes.length == 0) {
+            throw new IllegalArgumentException("Ключ записи не может быть пустым");
+        }
+        int length = HEADER + keyBytes.length + (value != null ? value.length : 0);
+
+        writeLock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Журнал " + directory + " закрыт");
+            }
+            if (active.size + length > active.buffer.capacity()) {
+                roll(length);
+            }
+
+            ByteBuffer record = ByteBuffer.allocate(length)
+                .putInt(0)
+                .putLong(sequence++)
+                .putInt(keyBytes.length)
+                .putInt(value != null ? value.length : TOMBSTONE)
+                .put(keyBytes);
+            if (value != null) {
+                record.put(value);
+            }
+            record.putInt(0, checksum(record, 0, length));
+
+            int offset = active.size;
+            active.buffer.put(offset, record.array());
+            if (fsync) {
+                active.buffer.force(offset, length);
+            }
+            active.size += length;
+
+            Location previous;
+            if (value != null) {
+                previous = index.put(key, new Location(active, offset, length));
+                active.liveBytes += length;
+            } else {
+                previous = index.remove(key);
+            }
+            if (previous != null) {
+                previous.segment().liveBytes -= previous.length();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void roll(int length) {
+        active.buffer.force();
+        try {
+            active = createSegment(Math.max(segmentSize, length));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось создать сегмент в " + directory, e);
+        }
+        segments.add(active);
+    }
+
+    /**
+     * Сжимает закрытые сегменты, если мусор (перезаписанные и удалённые значения) занимает
+     * в них не меньше minGarbageRatio. Возвращает true, если сжатие выполнено.
+     *
+     * Записи копируются без блокировки записи; под ней индекс переключается на копии,
+     * если ключ не изменился за время копирования. Удаления не переносятся: все более старые
+     * значения ключа лежат в тех же закрытых сегментах и удаляются вместе с ними.
+     */
+    public boolean compact(double minGarbageRatio) {
+        compactionLock.lock();
+        try {
+            Set<Segment> inputs = Collections.newSetFromMap(new IdentityHashMap<>());
+            writeLock.lock();
+            try {
+                if (closed) {
+                    return false;
+                }
+                long size = 0;
+                long live = 0;
+                for (Segment segment : segments) {
+                    if (segment != active) {
+                        inputs.add(segment);
+                        size += segment.size;
+                        live += segment.liveBytes;
+                    }
+                }
+                if (inputs.isEmpty() || size - live < minGarbageRatio * size) {
+                    return false;
+                }
+            } finally {
+                writeLock.unlock();
+            }
+
+            List<Copy> copies = new ArrayList<>();
+            List<Segment> outputs = copyLive(inputs, copies);
+
+            List<Path> obsolete = new ArrayList<>();
+            writeLock.lock();
+            try {
+                for (Copy copy : copies) {
+                    Location target = new Location(copy.output().segment, copy.offset(), copy.source().length());
+                    if (index.replace(copy.key(), copy.source(), target)) {
+                        target.segment().liveBytes += target.length();
+                    }
+                }
+                segments.removeIf(inputs::contains);
+                segments.addAll(outputs);
+                for (Segment input : inputs) {
+                    obsolete.add(input.path);
+                }
+                Files.write(directory.resolve(OBSOLETE), obsolete.stream().map(path -> path.getFileName().toString()).toList(),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.SYNC);
+            } finally {
+                writeLock.unlock();
+            }
+
+            boolean deleted = true;
+            for (Path path : obsolete) {
+                try {
+                    Files.deleteIfExists(path);
+                } catch (IOException e) {
+                    deleted = false;
+                }
+            }
+            if (deleted) {
+                Files.deleteIfExists(directory.resolve(OBSOLETE));
+            }
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось сжать журнал " + directory, e);
+        } finally {
+            compactionLock.unlock();
+        }
+    }
+
+    // Копирует записи индекса, лежащие во входных сегментах, в новые сегменты размером до segmentSize
+    private List<Segment> copyLive(Set<Segment> inputs, List<Copy> copies) throws IOException {
+        List<Segment> outputs = new ArrayList<>();
+        Output output = null;
+        try {
+            for (Map.Entry<String, Location> entry : index.entrySet()) {
+                Location source = entry.getValue();
+                if (!inputs.contains(source.segment())) {
+                    continue;
+                }
+                if (output != null && output.size + source.length() > segmentSize) {
+                    outputs.add(output.finish());
+                    output = null;
+                }
+                if (output == null) {
+                    output = new Output(locked(() -> nextId++));
+                }
+                ByteBuffer record = source.segment().buffer.slice(source.offset(), source.length());
+                copies.add(new Copy(entry.getKey(), source, output, output.size));
+                output.write(record);
+            }
+            if (output != null) {
+                outputs.add(output.finish());
+            }
+            return outputs;
+        } catch (IOException e) {
+            // Без недописанных копий журнал остаётся прежним
+            if (output != null) {
+                output.channel.close();
+                Files.deleteIfExists(output.temporary);
+            }
+            for (Segment segment : outputs) {
+                Files.deleteIfExists(segment.path);
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() {
+        writeLock.lock();
+        try {
+            if (!closed) {
+                closed = true;
+                active.buffer.force();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void recover() throws IOException {
+        List<Path> files;
+        try (Stream<Path> list = Files.list(directory)) {
+            files = list
+                .filter(path -> path.getFileName().toString().endsWith(SUFFIX))
+                .sorted(Comparator.comparingInt(SegmentLog::idOf))
+                .toList();
+        }
+
+        Map<String, Recovered> latest = new HashMap<>();
+        for (int i = 0; i < files.size(); i++) {
+            Path path = files.get(i);
+            // Последний сегмент полного размера продолжает принимать записи
+            boolean writable = i == files.size() - 1 && Files.size(path) >= segmentSize;
+            Segment segment = mapSegment(idOf(path), path, writable);
+            segment.size = scan(segment, latest);
+            segments.add(segment);
+            if (writable) {
+                active = segment;
+            }
+            nextId = Math.max(nextId, segment.id + 1);
+        }
+
+        latest.forEach((key, recovered) -> {
+            if (recovered.location() != null) {
+                index.put(key, recovered.location());
+                recovered.location().segment().liveBytes += recovered.location().length();
+            }
+        });
+        if (active == null) {
+            active = createSegment(segmentSize);
+            segments.add(active);
+        }
+        if (!files.isEmpty()) {
+            log.info("Журнал {} открыт: {} ключей в {} сегментах", directory, index.size(), segments.size());
+        }
+    }
+
+    private int scan(Segment segment, Map<String, Recovered> latest) {
+        ByteBuffer buffer = segment.buffer;
+        int position = 0;
+        while (position + HEADER <= buffer.capacity()) {
+            int keyLength = buffer.getInt(position + 12);
+            if (keyLength == 0) {
+                break;
+            }
+            int valueLength = buffer.getInt(position + 16);
+            long length = (long) HEADER + keyLength + Math.max(valueLength, 0);
+            if (keyLength < 0 || valueLength < TOMBSTONE || length > buffer.capacity() - position
+                    || buffer.getInt(position) != checksum(buffer, position, (int) length)) {
+                log.warn("Сегмент {} повреждён с позиции {}, остаток отброшен", segment.path, position);
+                break;
+            }
+
+            long recordSequence = buffer.getLong(position + 4);
+            byte[] key = new byte[keyLength];
+            buffer.get(position + HEADER, key);
+            String name = new String(key, StandardCharsets.UTF_8);
+            Recovered previous = latest.get(name);
+            if (previous == null || previous.sequence() < recordSequence) {
+                Location location = valueLength == TOMBSTONE ? null : new Location(segment, position, (int) length);
+                latest.put(name, new Recovered(location, recordSequence));
+            }
+            sequence = Math.max(sequence, recordSequence + 1);
+            position += (int) length;
+        }
+        return position;
+    }
+
+    private void deleteObsolete() throws IOException {
+        Path obsolete = directory.resolve(OBSOLETE);
+        if (Files.exists(obsolete)) {
+            for (String name : Files.readAllLines(obsolete)) {
+                if (!name.isBlank()) {
+                    Files.deleteIfExists(directory.resolve(name.strip()));
+                }
+            }
+            Files.delete(obsolete);
+        }
+        // Недописанные результаты прерванного сжатия
+        try (Stream<Path> list = Files.list(directory)) {
+            for (Path path : list.filter(path -> path.getFileName().toString().endsWith(TEMPORARY)).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    private Segment createSegment(int capacity) throws IOException {
+        int id = nextId++;
+        Path path = directory.resolve(name(id));
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return new Segment(id, path, channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity));
+        }
+    }
+
+    private static Segment mapSegment(int id, Path path, boolean writable) throws IOException {
+        if (writable) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                return new Segment(id, path, channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size()));
+            }
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new Segment(id, path, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    private static int checksum(ByteBuffer buffer, int offset, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(offset + 4, length - 4));
+        return (int) crc.getValue();
+    }
+
+    private static String name(int id) {
+        return String.format("%08d%s", id, SUFFIX);
+    }
+
+    private static int idOf(Path path) {
+        String name = path.getFileName().toString();
+        return Integer.parseInt(name.substring(0, name.length() - SUFFIX.length()));
+    }
+
+    private static final class Segment {
+        private final int id;
+        private final Path path;
+        private final MappedByteBuffer buffer;
+        // Конец данных и размер записей, на которые указывает индекс; под writeLock
+        private int size;
+        private long liveBytes;
+
+        Segment(int id, Path path, MappedByteBuffer buffer) {
+            this.id = id;
+            this.path = path;
+            this.buffer = buffer;
+        }
+    }
+
+    private record Location(Segment segment, int offset, int length) {
+        byte[] value() {
+            ByteBuffer buffer = segment.buffer;
+            int keyLength = buffer.getInt(offset + 12);
+            byte[] value = new byte[length - HEADER - keyLength];
+            buffer.get(offset + HEADER + keyLength, value);
+            return value;
+        }
+    }
+
+    private record Recovered(Location location, long sequence) {}
+
+    private record Copy(String key, Location source, Output output, int offset) {}
+
+    // Сегмент, который пишет сжатие: сначала временный файл, после записи — сегмент только для чтения
+    private final class Output {
+        private final int id;
+        private final Path temporary;
+        private final FileChannel channel;
+        private int size;
+        private Segment segment;
+
+        Output(int id) throws IOException {
+            this.id = id;
+            this.temporary = directory.resolve(name(id) + TEMPORARY);
+            this.channel = FileChannel.open(temporary, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        }
+
+        void write(ByteBuffer record) throws IOException {
+            size += record.remaining();
+            while (record.hasRemaining()) {
+                channel.write(record);
+            }
+        }
+
+        Segment finish() throws IOException {
+            channel.force(true);
+            channel.close();
+            Path path = directory.resolve(name(id));
+            Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE);
+            segment = mapSegment(id, path, false);
+            segment.size = size;
+            return segment;
+        }
+    }
+}
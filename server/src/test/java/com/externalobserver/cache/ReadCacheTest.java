@@ -0,0 +1,113 @@
+package com.externalobserver.cache;
+
+import com.externalobserver.cache.ReadCache.Region;
+import com.externalobserver.model.Note;
+import com.externalobserver.model.NoteHeading;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReadCacheTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ReadCache cache = new ReadCache(registry, 1_000_000, Duration.ofMinutes(1));
+
+    @Test
+    void get_ShouldServeRepeatedReadsFromMemoryAndRecordHits() {
+        AtomicInteger loads = new AtomicInteger();
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(List.of("a"), cache.get("alice", Region.NOTE_LIST, null, () -> {
+                loads.incrementAndGet();
+                return List.of("a");
+            }));
+        }
+
+        assertEquals(1, loads.get());
+        assertEquals(2.0, registry.get("cache.gets").tag("cache", "observer.read").tag("result", "hit")
+            .functionCounter().count());
+    }
+
+    @Test
+    void invalidateIf_ShouldDropOnlyMatchingEntriesOfUser() {
+        LocalDate day = LocalDate.of(2024, 3, 1);
+        cache.get("alice", Region.HABIT_CHECKS_DAY, day, () -> "alice-1");
+        cache.get("alice", Region.HABIT_CHECKS_DAY, day.plusDays(1), () -> "alice-2");
+        cache.get("bob", Region.HABIT_CHECKS_DAY, day, () -> "bob-1");
+
+        cache.invalidateIf("alice", Region.HABIT_CHECKS_DAY, day::equals);
+
+        assertEquals("reloaded", cache.get("alice", Region.HABIT_CHECKS_DAY, day, () -> "reloaded"));
+        assertEquals("alice-2", cache.get("alice", Region.HABIT_CHECKS_DAY, day.plusDays(1), () -> "reloaded"));
+        assertEquals("bob-1", cache.get("bob", Region.HABIT_CHECKS_DAY, day, () -> "reloaded"));
+    }
+
+    @Test
+    void get_WhenWriteHappensDuringLoad_ShouldNotCacheStaleValue() {
+        String stale = cache.get("alice", Region.NOTE, "n1", () -> {
+            cache.invalidate("alice", Region.NOTE, "n1");
+            return "stale";
+        });
+
+        assertEquals("stale", stale);
+        assertEquals("fresh", cache.get("alice", Region.NOTE, "n1", () -> "fresh"));
+    }
+
+    @Test
+    void get_ShouldEvictBySize() {
+        ReadCache small = new ReadCache(new SimpleMeterRegistry(), 10_000, Duration.ofMinutes(1));
+        for (int i = 0; i < 100; i++) {
+            int id = i;
+            small.get("alice", Region.NOTE, id, () -> "x".repeat(1000) + id);
+        }
+
+        assertTrue(small.estimatedSize() < 10);
+    }
+
+    @Test
+    void invalidateIf_ShouldForgetKeysOfRemovedEntries() {
+        LocalDate day = LocalDate.of(2024, 3, 1);
+        for (int i = 0; i < 10; i++) {
+            cache.get("alice", Region.HABIT_CHECKS_DAY, day.plusDays(i), () -> "alice");
+        }
+        cache.get("bob", Region.HABIT_CHECKS_DAY, day, () -> "bob");
+
+        cache.invalidateIf("alice", Region.HABIT_CHECKS_DAY, argument -> ((LocalDate) argument).isAfter(day));
+        assertEquals(1, cache.trackedKeys("alice"));
+        assertEquals(1, cache.trackedKeys("bob"));
+
+        cache.invalidate("alice", Region.HABIT_CHECKS_DAY);
+        assertEquals(0, cache.trackedKeys("alice"));
+        assertEquals("bob", cache.get("bob", Region.HABIT_CHECKS_DAY, day, () -> "reloaded"));
+    }
+
+    @Test
+    void get_WhenEntryIsEvicted_ShouldForgetItsKey() {
+        ReadCache small = new ReadCache(new SimpleMeterRegistry(), 10_000, Duration.ofMinutes(1));
+        for (int i = 0; i < 100; i++) {
+            int id = i;
+            small.get("alice", Region.NOTE, id, () -> "x".repeat(1000) + id);
+        }
+
+        assertEquals(small.estimatedSize(), small.trackedKeys("alice"));
+    }
+
+    @Test
+    void weigh_ShouldCountEveryNoteField() {
+        Note note = new Note();
+        note.setContent("текст");
+        long base = ReadCache.weigh(note);
+
+        note.setHeadings(List.of(new NoteHeading(1, "x".repeat(500))));
+        long withHeadings = ReadCache.weigh(note);
+        note.setDanglingLinks(List.of("y".repeat(500)));
+
+        assertTrue(withHeadings >= base + 500);
+        assertTrue(ReadCache.weigh(note) >= withHeadings + 500);
+    }
+}
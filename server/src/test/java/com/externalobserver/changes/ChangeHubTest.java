@@ -0,0 +1,117 @@
+package com.externalobserver.changes;
+
+import com.externalobserver.dto.ChangeEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChangeHubTest {
+    private final ChangeHub hub = new ChangeHub();
+
+    @AfterEach
+    void tearDown() {
+        hub.closeAll();
+    }
+
+    @Test
+    void publish_ShouldDeliverOnlyToOwnerInOrder() throws InterruptedException {
+        BlockingQueue<ChangeEvent> alice = new LinkedBlockingQueue<>();
+        BlockingQueue<ChangeEvent> bob = new LinkedBlockingQueue<>();
+        hub.subscribe("alice", alice::add);
+        hub.subscribe("bob", bob::add);
+
+        for (int i = 0; i < 100; i++) {
+            hub.publish("alice", event(String.valueOf(i)));
+        }
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(String.valueOf(i), alice.poll(5, TimeUnit.SECONDS).getId());
+        }
+        assertTrue(bob.isEmpty());
+    }
+
+    @Test
+    void unsubscribe_ShouldStopDelivery() throws InterruptedException {
+        BlockingQueue<ChangeEvent> events = new LinkedBlockingQueue<>();
+        Runnable unsubscribe = hub.subscribe("alice", events::add);
+
+        unsubscribe.run();
+        hub.publish("alice", event("1"));
+
+        assertEquals(0, hub.subscriberCount());
+        assertNull(events.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void subscribe_ShouldRejectSubscriptionsOverPerUserLimitUntilOneCloses() {
+        Runnable first = hub.subscribe("alice", event -> {}, 2);
+        assertNotNull(hub.subscribe("alice", event -> {}, 2));
+        assertNull(hub.subscribe("alice", event -> {}, 2));
+        assertNotNull(hub.subscribe("bob", event -> {}, 2));
+
+        first.run();
+
+        assertNotNull(hub.subscribe("alice", event -> {}, 2));
+        assertEquals(3, hub.subscriberCount());
+        assertTrue(hub.hasSubscribers());
+    }
+
+    @Test
+    void failingListener_ShouldBeClosedWithoutAffectingOthers() throws InterruptedException {
+        CountDownLatch closed = new CountDownLatch(1);
+        hub.subscribe("alice", new ChangeHub.Listener() {
+            @Override
+            public void onChange(ChangeEvent event) throws Exception {
+                throw new java.io.IOException("Соединение закрыто");
+            }
+
+            @Override
+            public void onClose() {
+                closed.countDown();
+            }
+        });
+        BlockingQueue<ChangeEvent> healthy = new LinkedBlockingQueue<>();
+        hub.subscribe("alice", healthy::add);
+
+        hub.publish("alice", event("1"));
+
+        assertTrue(closed.await(5, TimeUnit.SECONDS));
+        assertNotNull(healthy.poll(5, TimeUnit.SECONDS));
+        assertEquals(1, hub.subscriberCount());
+    }
+
+    @Test
+    void slowListener_ShouldBeDroppedAfterMaxPending() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch closed = new CountDownLatch(1);
+        hub.subscribe("alice", new ChangeHub.Listener() {
+            @Override
+            public void onChange(ChangeEvent event) throws Exception {
+                release.await();
+            }
+
+            @Override
+            public void onClose() {
+                closed.countDown();
+            }
+        });
+
+        for (int i = 0; i <= ChangeHub.MAX_PENDING + 1; i++) {
+            hub.publish("alice", event(String.valueOf(i)));
+        }
+        release.countDown();
+
+        assertTrue(closed.await(5, TimeUnit.SECONDS));
+        assertEquals(0, hub.subscriberCount());
+    }
+
+    private static ChangeEvent event(String id) {
+        return new ChangeEvent("notes", "update", id, null, null);
+    }
+}
@@ -0,0 +1,237 @@
+package com.externalobserver.changes;
+
+import com.externalobserver.dto.ChangeEvent;
+import com.externalobserver.model.Habit;
+import com.externalobserver.model.HabitCheck;
+import com.externalobserver.model.Note;
+import com.externalobserver.model.Tombstone;
+import com.externalobserver.repository.BitmapHabitCheckStore;
+import com.externalobserver.repository.NoteCompression;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Поток изменений против одноузлового replica set: MongoDBContainer запускает mongod с --replSet.
+ */
+@DataMongoTest(properties = {"changes.stream.enabled=true", "notes.compression.content-threshold=100"})
+@Testcontainers(disabledWithoutDocker = true)
+@Import({ChangeHub.class, ChangeStreamWatcher.class, NoteCompression.class})
+class ChangeStreamWatcherTest {
+
+    @Container
+    static MongoDBContainer mongo = new MongoDBContainer("mongo:7.0");
+
+    @DynamicPropertySource
+    static void mongoProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.mongodb.uri", mongo::getReplicaSetUrl);
+    }
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private ChangeHub changeHub;
+
+    @Autowired
+    private ChangeStreamWatcher watcher;
+
+    @Autowired
+    private NoteCompression noteCompression;
+
+    private final BlockingQueue<ChangeEvent> aliceEvents = new LinkedBlockingQueue<>();
+    private Runnable unsubscribe;
+
+    @BeforeEach
+    void setUp() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (!watcher.isWatching() && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+        assertTrue(watcher.isWatching(), "Поток изменений не открылся");
+        unsubscribe = changeHub.subscribe("alice", aliceEvents::add);
+    }
+
+    @AfterEach
+    void tearDown() {
+        unsubscribe.run();
+    }
+
+    @Test
+    void noteChanges_ShouldReachOnlyOwnerAsDeltas() throws InterruptedException {
+        Note bobNote = new Note();
+        bobNote.setUsername("bob");
+        bobNote.setTitle("Чужая");
+        mongoTemplate.insert(bobNote);
+
+        Note note = new Note();
+        note.setUsername("alice");
+        note.setTitle("Дневник");
+        note.setContent("длинная запись ".repeat(20));
+        mongoTemplate.insert(note);
+
+        ChangeEvent inserted = next();
+        assertEquals("notes", inserted.getCollection());
+        assertEquals("insert", inserted.getOperation());
+        assertEquals(note.getId(), inserted.getId());
+        assertEquals(note.getContent(), ((Note) inserted.getDocument()).getContent());
+
+        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(note.getId())),
+            new Update().set("title", "Новый заголовок").unset("tags"), Note.class);
+
+        ChangeEvent updated = next();
+        assertEquals("update", updated.getOperation());
+        assertEquals(List.of("title", "tags"), updated.getChangedFields());
+        assertEquals("Новый заголовок", ((Note) updated.getDocument()).getTitle());
+        assertNull(((Note) updated.getDocument()).getContent());
+
+        mongoTemplate.remove(note);
+        mongoTemplate.insert(Tombstone.of("alice", "notes", note.getId()));
+
+        ChangeEvent deleted = next();
+        assertEquals("delete", deleted.getOperation());
+        assertEquals(note.getId(), deleted.getId());
+        assertNull(deleted.getDocument());
+        assertNull(aliceEvents.poll(500, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void updateOfNoteInsertedBeforeStart_ShouldFindOwnerById() throws InterruptedException {
+        Note note = new Note();
+        note.setUsername("alice");
+        note.setTitle("Старая");
+        mongoTemplate.insert(note);
+        next();
+        // Новый наблюдатель не видел вставку и ищет владельца запросом
+        watcher.stop();
+        ChangeStreamWatcher restarted = new ChangeStreamWatcher(
+            mongoTemplate, changeHub, noteCompression, true, Duration.ofSeconds(15));
+        restarted.start();
+        try {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            while (!restarted.isWatching() && System.nanoTime() < deadline) {
+                Thread.sleep(50);
+            }
+            mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(note.getId())),
+                new Update().set("status", "done"), Note.class);
+
+            ChangeEvent updated = next();
+            assertEquals(note.getId(), updated.getId());
+            assertEquals("done", ((Note) updated.getDocument()).getStatus());
+        } finally {
+            restarted.stop();
+            watcher.start();
+        }
+    }
+
+    @Test
+    void habitChanges_ShouldBePublished() throws InterruptedException {
+        Habit habit = new Habit();
+        habit.setUsername("alice");
+        habit.setName("Бег");
+        mongoTemplate.insert(habit);
+
+        ChangeEvent inserted = next();
+        assertEquals("habits", inserted.getCollection());
+        assertEquals("Бег", ((Habit) inserted.getDocument()).getName());
+    }
+
+    @Test
+    void bitmapYearChanges_ShouldReachOwnerAsDailyCheckDeltas() throws InterruptedException {
+        BitmapHabitCheckStore store = new BitmapHabitCheckStore(mongoTemplate);
+        LocalDate morning = LocalDate.of(2024, 3, 5);
+        LocalDate evening = LocalDate.of(2024, 3, 7);
+        store.save("bob", "run", morning, true, null);
+        store.save("alice", "run", morning, true, "утро");
+
+        ChangeEvent inserted = next();
+        assertEquals("habit_checks", inserted.getCollection());
+        assertEquals("insert", inserted.getOperation());
+        assertEquals("run:" + morning, inserted.getId());
+        assertTrue(((HabitCheck) inserted.getDocument()).isCompleted());
+        assertEquals("утро", ((HabitCheck) inserted.getDocument()).getComment());
+
+        // Соседний день в том же слове bits.1: приходит только он
+        store.save("alice", "run", evening, true, null);
+
+        ChangeEvent checked = next();
+        assertEquals("update", checked.getOperation());
+        assertEquals("run:" + evening, checked.getId());
+        assertEquals(List.of("completed", "updatedAt"), checked.getChangedFields());
+        HabitCheck eveningCheck = (HabitCheck) checked.getDocument();
+        assertEquals(evening, eveningCheck.getDate());
+        assertTrue(eveningCheck.isCompleted());
+        assertNotNull(eveningCheck.getUpdatedAt());
+
+        store.save("alice", "run", morning, false, null);
+
+        ChangeEvent unchecked = next();
+        assertEquals("run:" + morning, unchecked.getId());
+        assertEquals(List.of("completed", "comment", "updatedAt"), unchecked.getChangedFields());
+        assertFalse(((HabitCheck) unchecked.getDocument()).isCompleted());
+        assertNull(((HabitCheck) unchecked.getDocument()).getComment());
+        assertNull(aliceEvents.poll(500, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void updateOfYearInsertedBeforeStart_ShouldSendStateOfWholeWord() throws InterruptedException {
+        BitmapHabitCheckStore store = new BitmapHabitCheckStore(mongoTemplate);
+        LocalDate day = LocalDate.of(2023, 1, 10);
+        store.save("alice", "read", day, true, null);
+        next();
+        // Новый наблюдатель не знает прежнего слова bits.0 и передаёт все его 64 дня
+        watcher.stop();
+        ChangeStreamWatcher restarted = new ChangeStreamWatcher(
+            mongoTemplate, changeHub, noteCompression, true, Duration.ofSeconds(15));
+        restarted.start();
+        try {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            while (!restarted.isWatching() && System.nanoTime() < deadline) {
+                Thread.sleep(50);
+            }
+            store.save("alice", "read", day.plusDays(1), true, null);
+
+            for (int dayOfYear = 1; dayOfYear <= 64; dayOfYear++) {
+                ChangeEvent event = next();
+                HabitCheck check = (HabitCheck) event.getDocument();
+                assertEquals(LocalDate.ofYearDay(2023, dayOfYear), check.getDate());
+                assertEquals(dayOfYear == 10 || dayOfYear == 11, check.isCompleted());
+            }
+
+            // Слово стало известно: следующее изменение приходит одним днём
+            store.save("alice", "read", day, false, null);
+            assertEquals("read:" + day, next().getId());
+            assertNull(aliceEvents.poll(500, TimeUnit.MILLISECONDS));
+        } finally {
+            restarted.stop();
+            watcher.start();
+        }
+    }
+
+    private ChangeEvent next() throws InterruptedException {
+        ChangeEvent event = aliceEvents.poll(10, TimeUnit.SECONDS);
+        assertNotNull(event, "Событие не пришло");
+        return event;
+    }
+}
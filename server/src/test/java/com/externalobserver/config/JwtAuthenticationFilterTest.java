@@ -0,0 +1,143 @@
+package com.externalobserver.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class JwtAuthenticationFilterTest {
+    private static final String SECRET = "5367566B59703373367639792F423F4528482B4D6251655468576D5A71347437";
+    private static final Duration TOKEN_LIFETIME = Duration.ofHours(1);
+    private static final Duration CACHE_TTL = Duration.ofMinutes(5);
+
+    private MutableClock clock;
+    private UserDetailsService userDetailsService;
+    private JwtTokenProvider tokenProvider;
+    private JwtAuthenticationFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(Instant.parse("2024-03-01T12:00:00Z"));
+        userDetailsService = Mockito.mock(UserDetailsService.class);
+        when(userDetailsService.loadUserByUsername("alice")).thenReturn(user(true));
+        tokenProvider = new JwtTokenProvider(SECRET, TOKEN_LIFETIME.toMillis(), clock);
+        filter = new JwtAuthenticationFilter(userDetailsService, tokenProvider, 100, CACHE_TTL, clock,
+            () -> TimeUnit.MILLISECONDS.toNanos(clock.millis()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void doFilter_WithCachedToken_ShouldNotLoadUserAgain() throws Exception {
+        String token = tokenProvider.generateToken("alice");
+
+        assertEquals("alice", authenticate(token).getName());
+        clock.advance(Duration.ofMinutes(1));
+        assertEquals("alice", authenticate(token).getName());
+
+        verify(userDetailsService, times(1)).loadUserByUsername("alice");
+    }
+
+    @Test
+    void doFilter_WithExpiredToken_ShouldNotAuthenticateFromCache() throws Exception {
+        JwtTokenProvider shortLived = new JwtTokenProvider(SECRET, Duration.ofMinutes(2).toMillis(), clock);
+        String token = shortLived.generateToken("alice");
+        assertNotNull(authenticate(token));
+
+        // Токен истекает раньше jwt.cache.ttl: запись кэша не переживает сам токен
+        clock.advance(Duration.ofMinutes(2).plusSeconds(1));
+
+        assertNull(authenticate(token));
+        assertNull(authenticate(tokenProvider.generateToken("alice").replace('.', '!')));
+    }
+
+    @Test
+    void doFilter_WhenUserDisabledWithinTtl_ShouldRejectAfterTtl() throws Exception {
+        String token = tokenProvider.generateToken("alice");
+        assertNotNull(authenticate(token));
+        when(userDetailsService.loadUserByUsername("alice")).thenReturn(user(false));
+
+        // До истечения записи кэша отключение ещё не видно
+        clock.advance(CACHE_TTL.minusSeconds(1));
+        assertNotNull(authenticate(token));
+
+        clock.advance(Duration.ofSeconds(2));
+        assertNull(authenticate(token));
+        assertNull(authenticate(token));
+        verify(userDetailsService, times(3)).loadUserByUsername("alice");
+    }
+
+    @Test
+    void doFilter_WhenUserRemovedWithinTtl_ShouldRejectAfterTtl() throws Exception {
+        String token = tokenProvider.generateToken("alice");
+        assertNotNull(authenticate(token));
+        when(userDetailsService.loadUserByUsername("alice")).thenThrow(new UsernameNotFoundException("alice"));
+
+        clock.advance(CACHE_TTL.plusSeconds(1));
+
+        assertNull(authenticate(token));
+    }
+
+    private Authentication authenticate(String token) throws Exception {
+        SecurityContextHolder.clearContext();
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/notes");
+        request.addHeader("Authorization", "Bearer " + token);
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+        assertNotNull(chain.getRequest());
+        return SecurityContextHolder.getContext().getAuthentication();
+    }
+
+    private static UserDetails user(boolean enabled) {
+        return User.withUsername("alice").password("{noop}alice").roles("USER").disabled(!enabled).build();
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.externalobserver.controller;
+
+import com.externalobserver.service.ExcelExportService;
+import com.externalobserver.service.HabitService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayOutputStream;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class HabitControllerTest {
+    private static final UserDetails ALICE = User.withUsername("alice").password("secret").build();
+
+    private ExcelExportService excelExportService;
+    private HabitController habitController;
+
+    @BeforeEach
+    void setUp() {
+        excelExportService = Mockito.mock(ExcelExportService.class);
+        habitController = new HabitController(Mockito.mock(HabitService.class), excelExportService);
+    }
+
+    @Test
+    void exportToExcel_ShouldStreamWorkbookForValidPeriod() throws Exception {
+        LocalDate start = LocalDate.of(2024, 1, 1);
+        LocalDate end = LocalDate.of(2024, 12, 31);
+
+        ResponseEntity<StreamingResponseBody> response = habitController.exportToExcel(start, end, ALICE);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("attachment; filename=\"habits_2024-01-01_2024-12-31.xlsx\"",
+            response.getHeaders().getFirst("Content-Disposition"));
+        response.getBody().writeTo(new ByteArrayOutputStream());
+        verify(excelExportService).exportHabitChecksToExcel(eq("alice"), eq(start), eq(end), any());
+    }
+
+    @Test
+    void exportToExcel_WhenPeriodDoesNotFitSheet_ShouldReturnBadRequestBeforeStreaming() {
+        ResponseEntity<StreamingResponseBody> oversized = habitController.exportToExcel(
+            LocalDate.of(2000, 1, 1), LocalDate.of(2050, 12, 31), ALICE);
+        ResponseEntity<StreamingResponseBody> reversed = habitController.exportToExcel(
+            LocalDate.of(2024, 2, 1), LocalDate.of(2024, 1, 1), ALICE);
+
+        assertEquals(HttpStatus.BAD_REQUEST, oversized.getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, reversed.getStatusCode());
+        assertNull(oversized.getBody());
+        verifyNoInteractions(excelExportService);
+    }
+}
@@ -0,0 +1,36 @@
+package com.externalobserver.diff;
+
+import com.externalobserver.dto.TextEdit;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RevisionCodecTest {
+
+    @Test
+    void diff_ShouldProduceSingleEditBetweenCommonPrefixAndSuffix() {
+        TextEdit edit = RevisionCodec.diff("# Привет, мир", "# Привет, Observer");
+
+        assertEquals(10, edit.getOffset());
+        assertEquals(3, edit.getDelete());
+        assertEquals("Observer", edit.getInsert());
+    }
+
+    @Test
+    void decode_ShouldRestorePreviousVersionFromDelta() {
+        String previous = "Первая строка\nВторая 😀 строка\n";
+        String next = "Первая строка\nВторая 😃 строка\nТретья\n";
+
+        byte[] data = RevisionCodec.encodeDelta(RevisionCodec.diff(next, previous));
+
+        assertEquals(previous, RevisionCodec.decode(data, next));
+    }
+
+    @Test
+    void decode_ShouldReturnSnapshotRegardlessOfNextContent() {
+        byte[] data = RevisionCodec.encodeSnapshot("снимок");
+
+        assertEquals("снимок", RevisionCodec.decode(data, "другой текст"));
+        assertEquals("", RevisionCodec.decode(RevisionCodec.encodeSnapshot(null), null));
+    }
+}
@@ -0,0 +1,42 @@
+package com.externalobserver.diff;
+
+import com.externalobserver.dto.TextEdit;
+import org.junit.jupiter.api.Test;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TextPatchTest {
+
+    @Test
+    void apply_ShouldApplyEditsSequentially() {
+        String result = TextPatch.apply("Привет, мир", List.of(
+            new TextEdit(8, 3, "Observer"),
+            new TextEdit(0, 0, "# "),
+            new TextEdit(18, 0, "!")));
+
+        assertEquals("# Привет, Observer!", result);
+    }
+
+    @Test
+    void apply_ShouldTreatMissingContentAsEmpty() {
+        assertEquals("text", TextPatch.apply(null, List.of(new TextEdit(0, 0, "text"))));
+        assertEquals("", TextPatch.apply("text", List.of(new TextEdit(0, 4, null))));
+    }
+
+    @Test
+    void apply_ShouldRejectEditsOutsideText() {
+        assertThrows(IllegalArgumentException.class, () -> TextPatch.apply("abc", List.of(new TextEdit(2, 2, ""))));
+        assertThrows(IllegalArgumentException.class, () -> TextPatch.apply("abc", List.of(new TextEdit(-1, 0, "x"))));
+        assertThrows(IllegalArgumentException.class, () -> TextPatch.apply("abc", List.of(new TextEdit(0, -1, "x"))));
+        assertThrows(IllegalArgumentException.class, () -> TextPatch.apply("abc", List.of(new TextEdit(4, 0, "x"))));
+    }
+
+    @Test
+    void apply_ShouldRejectEditsWhoseEndOverflows() {
+        assertThrows(IllegalArgumentException.class,
+            () -> TextPatch.apply("abc", List.of(new TextEdit(2, Integer.MAX_VALUE, ""))));
+        assertThrows(IllegalArgumentException.class,
+            () -> TextPatch.apply("abc", List.of(new TextEdit(Integer.MAX_VALUE, Integer.MAX_VALUE, ""))));
+    }
+}
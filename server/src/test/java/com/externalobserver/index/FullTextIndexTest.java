@@ -0,0 +1,102 @@
+package com.externalobserver.index;
+
+import com.externalobserver.model.Note;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FullTextIndexTest {
+
+    private FullTextIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new FullTextIndex();
+        index.index(note("1", "alice", "Утренние привычки", "Список привычек на каждый день"));
+        index.index(note("2", "alice", "Running log", "I ran five miles. Running every morning keeps me calm."));
+        index.index(note("3", "alice", "Books", "Reading about habits and running shoes"));
+        index.index(note("4", "bob", "Привычка", "Чужая заметка про привычку"));
+    }
+
+    @Test
+    void search_ShouldMatchRussianWordForms() {
+        List<FullTextIndex.Hit> hits = index.search("alice", "привычка", 10);
+
+        assertEquals(1, hits.size());
+        assertEquals("1", hits.get(0).noteId());
+    }
+
+    @Test
+    void search_ShouldRankByBm25() {
+        List<FullTextIndex.Hit> hits = index.search("alice", "runs", 10);
+
+        assertEquals(2, hits.size());
+        assertEquals("2", hits.get(0).noteId());
+        assertEquals("3", hits.get(1).noteId());
+        assertTrue(hits.get(0).score() > hits.get(1).score());
+    }
+
+    @Test
+    void search_ShouldNotReturnOtherUsersNotes() {
+        assertTrue(index.search("bob", "running", 10).isEmpty());
+        assertEquals(1, index.search("bob", "привычки", 10).size());
+    }
+
+    @Test
+    void index_ShouldReplacePreviousVersionOfNote() {
+        index.index(note("2", "alice", "Swimming log", "Pool every morning"));
+
+        assertEquals(List.of("3"), index.search("alice", "running", 10).stream().map(FullTextIndex.Hit::noteId).toList());
+        assertEquals(1, index.search("alice", "swimming", 10).size());
+        assertEquals(3, index.size("alice"));
+    }
+
+    @Test
+    void remove_ShouldDropNoteFromResults() {
+        for (int i = 0; i < 3000; i++) {
+            index.index(note("tmp-" + i, "alice", "Temporary", "running " + i));
+            index.remove("alice", "tmp-" + i);
+        }
+        index.remove("alice", "3");
+
+        List<FullTextIndex.Hit> hits = index.search("alice", "running", 10);
+
+        assertEquals(1, hits.size());
+        assertEquals("2", hits.get(0).noteId());
+        assertEquals(2, index.size("alice"));
+    }
+
+    @Test
+    void snippet_ShouldHighlightMatchedWords() {
+        String snippet = SnippetBuilder.build("I ran five miles. Running every morning keeps me calm.", "run");
+
+        assertTrue(snippet.contains("**Running**"));
+    }
+
+    @Test
+    void put_WhenNoteIsEditedManyTimes_ShouldKeepPostingsBounded() {
+        UserTextIndex text = new UserTextIndex();
+        text.put("other", "Другая", "заметка про бег");
+        for (int i = 0; i < 10_000; i++) {
+            text.put("edited", "Черновик", "правка номер " + i + " про бег");
+        }
+
+        // Мёртвых документов не больше живых плюс порог компактификации
+        assertTrue(text.ordinalCount() <= 1026, "ординалов: " + text.ordinalCount());
+        assertTrue(text.postingCount() <= 1026L * 5, "вхождений: " + text.postingCount());
+        assertEquals(2, text.size());
+        assertEquals(List.of("edited"), text.search(List.of("9999"), 10).stream().map(FullTextIndex.Hit::noteId).toList());
+        assertTrue(text.search(List.of("42"), 10).isEmpty());
+    }
+
+    private Note note(String id, String username, String title, String content) {
+        Note note = new Note();
+        note.setId(id);
+        note.setUsername(username);
+        note.setTitle(title);
+        note.setContent(content);
+        return note;
+    }
+}
@@ -0,0 +1,115 @@
+package com.externalobserver.index;
+
+import com.externalobserver.model.Note;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LinkGraphIndexTest {
+
+    private LinkGraphIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new LinkGraphIndex();
+        // a -> b -> c -> d, e -> b
+        index.index(note("a", "A", List.of("b")));
+        index.index(note("b", "B", List.of("c")));
+        index.index(note("c", "C", List.of("d")));
+        index.index(note("d", "D", List.of()));
+        index.index(note("e", "E", List.of("b", "missing")));
+    }
+
+    @Test
+    void backlinks_ShouldReturnReferencingNotes() {
+        List<String> backlinks = ids(index.backlinks("alice", "b"));
+
+        assertEquals(2, backlinks.size());
+        assertTrue(backlinks.containsAll(List.of("a", "e")));
+        assertTrue(index.backlinks("alice", "missing").stream().anyMatch(node -> node.noteId().equals("e")));
+    }
+
+    @Test
+    void index_ShouldUpdateReverseEdgesIncrementally() {
+        index.index(note("a", "A", List.of("c")));
+
+        assertEquals(List.of("e"), ids(index.backlinks("alice", "b")));
+        assertTrue(ids(index.backlinks("alice", "c")).contains("a"));
+    }
+
+    @Test
+    void remove_ShouldHideNoteFromGraph() {
+        index.remove("alice", "e");
+
+        assertEquals(List.of("a"), ids(index.backlinks("alice", "b")));
+        assertTrue(index.neighborhood("alice", "e", 2, 100).nodes().isEmpty());
+    }
+
+    @Test
+    void neighborhood_ShouldRespectDepth() {
+        LinkGraphIndex.Subgraph graph = index.neighborhood("alice", "a", 2, 100);
+
+        assertEquals(List.of("a", "b", "c", "e"), ids(graph.nodes()).stream().sorted().toList());
+        assertEquals(3, graph.edges().size());
+    }
+
+    @Test
+    void shortestPath_ShouldIgnoreLinkDirection() {
+        assertEquals(List.of("e", "b", "c", "d"), ids(index.shortestPath("alice", "e", "d")));
+        assertEquals(List.of("d", "c", "b", "a"), ids(index.shortestPath("alice", "d", "a")));
+        assertTrue(index.shortestPath("alice", "a", "missing").isEmpty());
+    }
+
+    @Test
+    void remove_ShouldReuseOrdinalsOfUnreferencedNodes() {
+        UserLinkGraph graph = new UserLinkGraph();
+        graph.put("keep", "Keep", List.of("shared"));
+        for (int i = 0; i < 1000; i++) {
+            graph.put("note" + i, "Note " + i, List.of("missing" + i, "shared"));
+            graph.remove("note" + i);
+        }
+
+        // keep, shared и один переиспользуемый слот на заметку и её висячую ссылку
+        assertTrue(graph.ordinalCount() <= 4, "ординалов: " + graph.ordinalCount());
+        assertEquals(List.of("keep"), ids(graph.backlinks("shared")));
+        assertTrue(graph.backlinks("missing999").isEmpty());
+    }
+
+    @Test
+    void index_ShouldNotLeakEdgesThroughReusedOrdinals() {
+        // Цель "x" перестаёт быть нужной и освобождает ординал, его получает новая заметка
+        index.index(note("f", "F", List.of("x")));
+        index.index(note("f", "F", List.of("a")));
+        index.index(note("g", "G", List.of()));
+
+        assertTrue(index.backlinks("alice", "g").isEmpty());
+        assertTrue(index.backlinks("alice", "x").isEmpty());
+        assertEquals(List.of("g"), ids(index.neighborhood("alice", "g", 2, 100).nodes()));
+        assertEquals(List.of("f"), ids(index.backlinks("alice", "a")));
+    }
+
+    @Test
+    void remove_ShouldKeepDeletedNoteReferencedByOthers() {
+        index.remove("alice", "b");
+        index.remove("alice", "missing");
+        index.index(note("b", "B", List.of("c")));
+
+        assertEquals(List.of("a", "e"), ids(index.backlinks("alice", "b")).stream().sorted().toList());
+        assertEquals(List.of("e", "b", "c", "d"), ids(index.shortestPath("alice", "e", "d")));
+    }
+
+    private List<String> ids(List<LinkGraphIndex.Node> nodes) {
+        return nodes.stream().map(LinkGraphIndex.Node::noteId).toList();
+    }
+
+    private Note note(String id, String title, List<String> links) {
+        Note note = new Note();
+        note.setId(id);
+        note.setUsername("alice");
+        note.setTitle(title);
+        note.setLinks(links);
+        return note;
+    }
+}
@@ -0,0 +1,68 @@
+package com.externalobserver.index;
+
+import com.externalobserver.model.Note;
+import org.junit.jupiter.api.Test;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NoteSuggestIndexTest {
+    private static final LocalDateTime NOW = LocalDateTime.now();
+
+    @Test
+    void suggest_ShouldRankByMatchQualityThenRecency() {
+        NoteSuggestIndex index = new NoteSuggestIndex();
+        index.index(note("exact", "Проект", null, NOW.minusDays(300)));
+        index.index(note("prefix-old", "Проекты 2023", null, NOW.minusDays(200)));
+        index.index(note("prefix-new", "Проектирование", null, NOW));
+        index.index(note("word", "Новый проект", null, NOW));
+        index.index(note("path", "Без названия", "work/проект/plan.md", NOW));
+        index.index(note("other", "Рецепты", null, NOW));
+
+        List<String> ids = ids(index.suggest("alice", "проект", 10));
+
+        assertEquals(List.of("exact", "prefix-new", "prefix-old", "word", "path"), ids);
+        assertEquals(List.of("exact", "prefix-new"), ids(index.suggest("alice", "Проект", 2)));
+    }
+
+    @Test
+    void suggest_ShouldMatchShortPrefixesTyposAndFileNames() {
+        NoteSuggestIndex index = new NoteSuggestIndex();
+        index.index(note("n1", "Zettelkasten", "methods/zettel.md", NOW));
+        index.index(note("n2", "Kanban board", null, NOW));
+        index.index(note("n3", "Чужая", null, NOW));
+
+        assertEquals(List.of("n2"), ids(index.suggest("alice", "b", 10)));
+        assertEquals(List.of("n1"), ids(index.suggest("alice", "zetelkasten", 10)));
+        assertEquals(List.of("n1"), ids(index.suggest("alice", "methods/zet", 10)));
+        assertTrue(index.suggest("bob", "zettel", 10).isEmpty());
+        assertTrue(index.suggest("alice", "  ", 10).isEmpty());
+    }
+
+    @Test
+    void suggest_ShouldForgetRenamedAndRemovedNotes() {
+        NoteSuggestIndex index = new NoteSuggestIndex();
+        index.index(note("n1", "Черновик", null, NOW));
+        index.index(note("n1", "Статья", null, NOW));
+        index.index(note("n2", "Черновик письма", null, NOW));
+        index.remove("alice", "n2");
+
+        assertTrue(index.suggest("alice", "черн", 10).isEmpty());
+        assertEquals(List.of("n1"), ids(index.suggest("alice", "ст", 10)));
+    }
+
+    private static List<String> ids(List<NoteSuggestIndex.Suggestion> suggestions) {
+        return suggestions.stream().map(NoteSuggestIndex.Suggestion::noteId).toList();
+    }
+
+    private static Note note(String id, String title, String path, LocalDateTime updated) {
+        Note note = new Note();
+        note.setId(id);
+        note.setUsername("alice");
+        note.setTitle(title);
+        note.setPath(path);
+        note.setUpdated(updated);
+        return note;
+    }
+}
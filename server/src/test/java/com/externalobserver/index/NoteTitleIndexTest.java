@@ -0,0 +1,66 @@
+package com.externalobserver.index;
+
+import com.externalobserver.model.Note;
+import org.junit.jupiter.api.Test;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NoteTitleIndexTest {
+
+    @Test
+    void resolve_ShouldMatchTitlePathAndFileNameIgnoringCase() {
+        NoteTitleIndex index = new NoteTitleIndex();
+        index.index(note("n1", "alice", "Зеттелькастен", "methods/zettel.md"));
+        index.index(note("n2", "bob", "Чужая", null));
+
+        Map<String, String> resolved = index.resolve("alice",
+            List.of("зеттелькастен ", "methods/zettel", "Zettel.md", "Чужая"));
+
+        assertEquals(Map.of("зеттелькастен ", "n1", "methods/zettel", "n1", "Zettel.md", "n1"), resolved);
+    }
+
+    @Test
+    void resolve_ShouldPreferEarliestIdAndForgetRenamedNotes() {
+        NoteTitleIndex index = new NoteTitleIndex();
+        index.index(note("b", "alice", "Идеи", null));
+        index.index(note("a", "alice", "Идеи", null));
+        assertEquals("a", index.resolve("alice", List.of("Идеи")).get("Идеи"));
+
+        index.index(note("a", "alice", "Старые идеи", null));
+        assertEquals("b", index.resolve("alice", List.of("Идеи")).get("Идеи"));
+
+        index.remove("alice", "b");
+        assertTrue(index.resolve("alice", List.of("Идеи")).isEmpty());
+    }
+
+    @Test
+    void danglingReferrers_ShouldFindNotesLinkingToNewTitleOrPath() {
+        NoteTitleIndex index = new NoteTitleIndex();
+        Note referrer = note("r1", "alice", "Черновик", null);
+        referrer.setDanglingLinks(List.of("Будущая заметка", "ideas/later"));
+        index.index(referrer);
+        index.index(note("n1", "alice", "будущая  заметка", null));
+        index.index(note("n2", "alice", "Позже", "ideas/later.md"));
+        index.index(note("n3", "bob", "Будущая заметка", null));
+
+        assertEquals(Set.of("r1"), index.danglingReferrers("alice", "n1"));
+        assertEquals(Set.of("r1"), index.danglingReferrers("alice", "n2"));
+        assertTrue(index.danglingReferrers("bob", "n3").isEmpty());
+
+        referrer.setDanglingLinks(null);
+        index.index(referrer);
+        assertTrue(index.danglingReferrers("alice", "n1").isEmpty());
+    }
+
+    private static Note note(String id, String username, String title, String path) {
+        Note note = new Note();
+        note.setId(id);
+        note.setUsername(username);
+        note.setTitle(title);
+        note.setPath(path);
+        return note;
+    }
+}
@@ -0,0 +1,86 @@
+package com.externalobserver.index;
+
+import com.externalobserver.model.Note;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TagIndexTest {
+
+    private TagIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new TagIndex();
+        index.index(note("1", List.of("work", "urgent")));
+        index.index(note("2", List.of("work")));
+        index.index(note("3", List.of("home", "urgent")));
+        index.index(note("4", List.of("work", "next week", "archive")));
+    }
+
+    @Test
+    void find_ShouldIntersectTagsForMatchAll() {
+        assertEquals(List.of("1"), index.find("alice", TagExpression.allOf(List.of("work", "urgent"))));
+        assertEquals(List.of("1", "2", "3", "4"), index.find("alice", TagExpression.anyOf(List.of("work", "home"))));
+    }
+
+    @Test
+    void find_ShouldEvaluateExpressions() {
+        assertEquals(List.of("1", "4"),
+            index.find("alice", TagExpression.parse("work and (urgent OR \"next week\")")));
+        assertEquals(List.of("1", "2"), index.find("alice", TagExpression.parse("work NOT archive")));
+        assertEquals(List.of("3"), index.find("alice", TagExpression.parse("NOT work")));
+        assertEquals(2, index.count("alice", TagExpression.parse("urgent")));
+    }
+
+    @Test
+    void index_ShouldReplaceTagsOfUpdatedNote() {
+        index.index(note("1", List.of("home")));
+
+        assertEquals(List.of("3"), index.find("alice", TagExpression.parse("urgent")));
+        assertEquals(2, index.tagCounts("alice").get("home"));
+    }
+
+    @Test
+    void remove_ShouldDropNoteAndEmptyTags() {
+        index.remove("alice", "4");
+
+        assertFalse(index.tagCounts("alice").containsKey("archive"));
+        assertEquals(List.of("3"), index.find("alice", TagExpression.parse("NOT work")));
+    }
+
+    @Test
+    void parse_ShouldRejectMalformedExpressions() {
+        assertThrows(IllegalArgumentException.class, () -> TagExpression.parse("work AND"));
+        assertThrows(IllegalArgumentException.class, () -> TagExpression.parse("(work"));
+        assertThrows(IllegalArgumentException.class, () -> TagExpression.parse(""));
+    }
+
+    @Test
+    void parse_ShouldRejectTooDeepLongOrWideExpressions() {
+        String nested = "(".repeat(TagExpressionParser.MAX_DEPTH) + "work" + ")".repeat(TagExpressionParser.MAX_DEPTH);
+        assertEquals(List.of("1", "2", "4"), index.find("alice", TagExpression.parse(nested)));
+        assertEquals(List.of("3"), index.find("alice", TagExpression.parse("NOT NOT ".repeat(15) + "NOT work")));
+
+        assertThrows(IllegalArgumentException.class, () -> TagExpression.parse("(" + nested + ")"));
+        assertThrows(IllegalArgumentException.class, () -> TagExpression.parse("NOT ".repeat(33) + "work"));
+        assertThrows(IllegalArgumentException.class, () -> TagExpression.parse("(".repeat(100_000)));
+        assertThrows(IllegalArgumentException.class, () -> TagExpression.parse("a ".repeat(TagExpressionParser.MAX_TAGS + 1)));
+        assertThrows(IllegalArgumentException.class, () -> TagExpression.parse("work".repeat(300)));
+        assertThrows(IllegalArgumentException.class,
+            () -> TagExpression.anyOf(Collections.nCopies(TagExpressionParser.MAX_TAGS + 1, "work")));
+        assertEquals(List.of("1", "2", "4"),
+            index.find("alice", TagExpression.anyOf(Collections.nCopies(TagExpressionParser.MAX_TAGS, "work"))));
+    }
+
+    private Note note(String id, List<String> tags) {
+        Note note = new Note();
+        note.setId(id);
+        note.setUsername("alice");
+        note.setTags(tags);
+        return note;
+    }
+}
@@ -0,0 +1,54 @@
+package com.externalobserver.markdown;
+
+import org.junit.jupiter.api.Test;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FrontMatterParserTest {
+
+    @Test
+    void parse_ShouldSplitFrontMatterAndBody() {
+        FrontMatterParser.Document document = FrontMatterParser.parse(
+            "---\ntitle: Заметка\ntags: [a, b]\n---\n# Заголовок\nТекст");
+
+        assertEquals(Map.of("title", "Заметка", "tags", List.of("a", "b")), document.frontMatter());
+        assertEquals("# Заголовок\nТекст", document.body());
+    }
+
+    @Test
+    void parse_WithBomAndCrlf_ShouldReadFrontMatter() {
+        FrontMatterParser.Document document = FrontMatterParser.parse(
+            "\uFEFF---\r\ntitle: Заметка\r\nstatus: draft\r\n---\r\nТекст\r\n");
+
+        assertEquals(Map.of("title", "Заметка", "status", "draft"), document.frontMatter());
+        assertEquals("Текст\r\n", document.body());
+    }
+
+    @Test
+    void parse_WithoutClosingOrOpeningDelimiter_ShouldKeepWholeText() {
+        String unclosed = "---\ntitle: Заметка\nТекст";
+        String rule = "----\ntitle: Заметка\n---\nТекст";
+        String inline = "--- title: Заметка\n---\nТекст";
+
+        assertEquals(new FrontMatterParser.Document(Map.of(), unclosed), FrontMatterParser.parse(unclosed));
+        assertEquals(new FrontMatterParser.Document(Map.of(), rule), FrontMatterParser.parse(rule));
+        assertEquals(new FrontMatterParser.Document(Map.of(), inline), FrontMatterParser.parse(inline));
+        assertEquals(new FrontMatterParser.Document(Map.of(), "---"), FrontMatterParser.parse("---"));
+    }
+
+    @Test
+    void parse_WithEmptyOrScalarFrontMatter_ShouldReturnBodyOnly() {
+        assertEquals(new FrontMatterParser.Document(Map.of(), "Текст"), FrontMatterParser.parse("---\n---\nТекст"));
+        assertEquals(new FrontMatterParser.Document(Map.of(), ""), FrontMatterParser.parse("---\nпросто строка\n---"));
+    }
+
+    @Test
+    void parse_WithMalformedYaml_ShouldThrowIllegalArgument() {
+        assertThrows(IllegalArgumentException.class,
+            () -> FrontMatterParser.parse("---\ntitle: [не закрыт\n---\nТекст"));
+        assertThrows(IllegalArgumentException.class,
+            () -> FrontMatterParser.parse("---\ntitle: a\n  tags: b\n---\nТекст"));
+    }
+}
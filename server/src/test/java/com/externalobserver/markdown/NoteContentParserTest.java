@@ -0,0 +1,53 @@
+package com.externalobserver.markdown;
+
+import com.externalobserver.model.NoteHeading;
+import org.junit.jupiter.api.Test;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NoteContentParserTest {
+
+    @Test
+    void parse_ShouldExtractLinkTargetsWithoutAliasesAnchorsAndRepeats() {
+        NoteContentParser.Content content = NoteContentParser.parse(
+            "См. [[Зеттелькастен|метод]] и [[Чтение#Заметки]], снова [[Зеттелькастен]], блок [[Идеи^a1]].\n"
+                + "Картинка ![[схема.png]] и пустая [[#Раздел]].");
+
+        assertEquals(List.of("Зеттелькастен", "Чтение", "Идеи"), content.wikiLinks());
+    }
+
+    @Test
+    void parse_ShouldSkipCodeBlocksAndInlineCode() {
+        NoteContentParser.Content content = NoteContentParser.parse(String.join("\n",
+            "# Заголовок",
+            "```java",
+            "# не заголовок [[Не ссылка]]",
+            "```",
+            "Текст `[[тоже не ссылка]]` и [[Ссылка]]"));
+
+        assertEquals(List.of("Ссылка"), content.wikiLinks());
+        assertEquals(List.of(new NoteHeading(1, "Заголовок")), content.headings());
+    }
+
+    @Test
+    void parse_ShouldCollectAtxHeadingsAndCountWords() {
+        NoteContentParser.Content content = NoteContentParser.parse(String.join("\n",
+            "## Раздел 2 ##",
+            "#тег не заголовок",
+            "    ### Отступ больше трёх пробелов",
+            "Три слова здесь"));
+
+        assertEquals(List.of(new NoteHeading(2, "Раздел 2")), content.headings());
+        assertEquals(12, content.wordCount());
+    }
+
+    @Test
+    void parse_ShouldHandleEmptyContent() {
+        NoteContentParser.Content content = NoteContentParser.parse(null);
+
+        assertTrue(content.wikiLinks().isEmpty());
+        assertTrue(content.headings().isEmpty());
+        assertEquals(0, content.wordCount());
+    }
+}
@@ -0,0 +1,68 @@
+package com.externalobserver.model;
+
+import org.junit.jupiter.api.Test;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HabitCheckYearTest {
+
+    @Test
+    void wordField_ShouldCoverLeapYear() {
+        LocalDate lastDay = LocalDate.of(2024, 12, 31);
+
+        assertEquals("bits.0", HabitCheckYear.wordField(LocalDate.of(2024, 1, 1)));
+        assertEquals("bits.5", HabitCheckYear.wordField(lastDay));
+        assertEquals(1L << 45, HabitCheckYear.mask(lastDay));
+        assertEquals("comments.366", HabitCheckYear.commentField(lastDay));
+    }
+
+    @Test
+    void toChecks_ShouldExpandBitsAndCommentsWithinPeriod() {
+        LocalDate checked = LocalDate.of(2024, 3, 1);
+        LocalDate commented = LocalDate.of(2024, 3, 5);
+        LocalDate outside = LocalDate.of(2024, 4, 1);
+
+        Map<String, Long> bits = new HashMap<>();
+        bits.merge(HabitCheckYear.wordField(checked).substring(5), HabitCheckYear.mask(checked), (a, b) -> a | b);
+        bits.merge(HabitCheckYear.wordField(outside).substring(5), HabitCheckYear.mask(outside), (a, b) -> a | b);
+
+        HabitCheckYear year = new HabitCheckYear();
+        year.setUsername("alice");
+        year.setHabitId("h1");
+        year.setYear(2024);
+        year.setBits(bits);
+        year.setComments(Map.of(String.valueOf(commented.getDayOfYear()), "пропустил"));
+
+        List<HabitCheck> checks = year.toChecks(LocalDate.of(2024, 2, 20), LocalDate.of(2024, 3, 31));
+
+        assertEquals(2, checks.size());
+        assertEquals(checked, checks.get(0).getDate());
+        assertTrue(checks.get(0).isCompleted());
+        assertEquals(commented, checks.get(1).getDate());
+        assertFalse(checks.get(1).isCompleted());
+        assertEquals("пропустил", checks.get(1).getComment());
+        assertTrue(year.isCompleted(outside));
+    }
+
+    @Test
+    void checkCount_ShouldCountCompletedAndCommentedDaysOnce() {
+        LocalDate checked = LocalDate.of(2024, 12, 31);
+        LocalDate both = LocalDate.of(2024, 1, 1);
+
+        HabitCheckYear year = new HabitCheckYear();
+        year.setHabitId("h1");
+        year.setYear(2024);
+        assertEquals(0, year.checkCount());
+
+        year.setBits(Map.of(
+            HabitCheckYear.wordField(checked).substring(5), HabitCheckYear.mask(checked),
+            HabitCheckYear.wordField(both).substring(5), HabitCheckYear.mask(both)));
+        year.setComments(Map.of(String.valueOf(both.getDayOfYear()), "утром", "100", "пропустил"));
+
+        assertEquals(3, year.checkCount());
+    }
+}
@@ -0,0 +1,83 @@
+package com.externalobserver.repository;
+
+import com.externalobserver.model.HabitCheckYear;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class BitmapHabitCheckStoreTest {
+    private static final LocalDateTime BASE = LocalDateTime.of(2024, 3, 1, 12, 0);
+
+    private MongoTemplate mongoTemplate;
+    private BitmapHabitCheckStore store;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = Mockito.mock(MongoTemplate.class);
+        store = new BitmapHabitCheckStore(mongoTemplate);
+    }
+
+    @Test
+    void findChangedSince_ShouldLimitPageByChecksNotYears() {
+        // 64 + 64 + 1 отметка; пустой год (все отметки сняты) весит одну
+        HabitCheckYear full = year("h1", -1L, BASE);
+        HabitCheckYear second = year("h2", -1L, BASE.plusMinutes(1));
+        HabitCheckYear single = year("h3", 1L, BASE.plusMinutes(2));
+        HabitCheckYear cleared = year("h4", 0L, BASE.plusMinutes(3));
+        when(mongoTemplate.find(any(Query.class), eq(HabitCheckYear.class)))
+            .thenReturn(List.of(full, second, single, cleared));
+
+        HabitCheckChanges page = store.findChangedSince("alice", null, BASE.plusHours(1), 129);
+
+        assertEquals(List.of(full, second, single), page.years());
+        assertTrue(page.checks().isEmpty());
+        assertEquals(129, page.size());
+        assertEquals(new ChangePosition(single.getUpdatedAt(), single.getId()), page.last());
+        assertTrue(page.more());
+    }
+
+    @Test
+    void findChangedSince_WhenFirstYearExceedsLimit_ShouldStillReturnIt() {
+        HabitCheckYear full = year("h1", -1L, BASE);
+        when(mongoTemplate.find(any(Query.class), eq(HabitCheckYear.class)))
+            .thenReturn(List.of(full, year("h2", 1L, BASE.plusMinutes(1))));
+
+        HabitCheckChanges page = store.findChangedSince("alice", null, BASE.plusHours(1), 10);
+
+        assertEquals(List.of(full), page.years());
+        assertEquals(64, page.size());
+        assertTrue(page.more());
+    }
+
+    @Test
+    void findChangedSince_WhenAllYearsFit_ShouldReportNoMore() {
+        HabitCheckYear single = year("h1", 1L, BASE);
+        when(mongoTemplate.find(any(Query.class), eq(HabitCheckYear.class))).thenReturn(List.of(single));
+
+        HabitCheckChanges page = store.findChangedSince("alice", null, BASE.plusHours(1), 10);
+
+        assertEquals(List.of(single), page.years());
+        assertFalse(page.more());
+    }
+
+    private static HabitCheckYear year(String habitId, long firstWord, LocalDateTime updatedAt) {
+        HabitCheckYear year = new HabitCheckYear();
+        year.setId(HabitCheckYear.id("alice", habitId, 2024));
+        year.setUsername("alice");
+        year.setHabitId(habitId);
+        year.setYear(2024);
+        year.setBits(Map.of("0", firstWord));
+        year.setUpdatedAt(updatedAt);
+        return year;
+    }
+}
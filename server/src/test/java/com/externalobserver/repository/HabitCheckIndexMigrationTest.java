@@ -0,0 +1,102 @@
+package com.externalobserver.repository;
+
+import com.externalobserver.model.HabitCheck;
+import com.externalobserver.model.Tombstone;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataMongoTest
+@Testcontainers(disabledWithoutDocker = true)
+@Import(HabitCheckIndexMigration.class)
+class HabitCheckIndexMigrationTest {
+
+    @Container
+    static MongoDBContainer mongo = new MongoDBContainer("mongo:7.0");
+
+    @DynamicPropertySource
+    static void mongoProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.mongodb.uri", mongo::getReplicaSetUrl);
+    }
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private HabitCheckIndexMigration migration;
+
+    private static final LocalDate DAY = LocalDate.of(2024, 3, 1);
+    private static final LocalDateTime BASE = LocalDateTime.of(2024, 3, 1, 12, 0);
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate.remove(new Query(), HabitCheck.class);
+        mongoTemplate.remove(new Query(), Tombstone.class);
+        IndexOperations indexes = mongoTemplate.indexOps(HabitCheck.class);
+        if (indexes.getIndexInfo().stream().anyMatch(index -> index.getName().equals(HabitCheckIndexMigration.INDEX_NAME))) {
+            indexes.dropIndex(HabitCheckIndexMigration.INDEX_NAME);
+        }
+    }
+
+    @Test
+    void afterPropertiesSet_ShouldKeepLatestDuplicateAndCreateUniqueIndex() {
+        HabitCheck stale = mongoTemplate.insert(check("alice", "h1", DAY, false, BASE));
+        HabitCheck latest = mongoTemplate.insert(check("alice", "h1", DAY, true, BASE.plusMinutes(5)));
+        HabitCheck older = mongoTemplate.insert(check("alice", "h1", DAY, false, BASE.minusMinutes(5)));
+        HabitCheck otherDay = mongoTemplate.insert(check("alice", "h1", DAY.plusDays(1), true, BASE));
+        HabitCheck otherUser = mongoTemplate.insert(check("bob", "h1", DAY, true, BASE));
+
+        migration.afterPropertiesSet();
+
+        assertEquals(List.of(latest.getId(), otherDay.getId(), otherUser.getId()).stream().sorted().toList(),
+            mongoTemplate.findAll(HabitCheck.class).stream().map(HabitCheck::getId).sorted().toList());
+        List<Tombstone> tombstones = mongoTemplate.findAll(Tombstone.class);
+        assertEquals(List.of(older.getId(), stale.getId()).stream().sorted().toList(),
+            tombstones.stream().map(Tombstone::getDocumentId).sorted().toList());
+        assertTrue(tombstones.stream().allMatch(tombstone ->
+            tombstone.getUsername().equals("alice") && tombstone.getCollection().equals("habit_checks")));
+
+        assertThrows(DuplicateKeyException.class,
+            () -> mongoTemplate.insert(check("alice", "h1", DAY, false, BASE)));
+    }
+
+    @Test
+    void afterPropertiesSet_WhenIndexExists_ShouldKeepData() {
+        migration.afterPropertiesSet();
+        mongoTemplate.insert(check("alice", "h1", DAY, true, BASE));
+
+        migration.afterPropertiesSet();
+
+        assertEquals(1, mongoTemplate.count(new Query(), HabitCheck.class));
+        assertEquals(0, mongoTemplate.count(new Query(), Tombstone.class));
+    }
+
+    private static HabitCheck check(String username, String habitId, LocalDate date, boolean completed,
+                                    LocalDateTime updatedAt) {
+        HabitCheck check = new HabitCheck();
+        check.setUsername(username);
+        check.setHabitId(habitId);
+        check.setDate(date);
+        check.setCompleted(completed);
+        check.setCreatedAt(updatedAt);
+        check.setUpdatedAt(updatedAt);
+        return check;
+    }
+}
@@ -0,0 +1,62 @@
+package com.externalobserver.repository;
+
+import com.externalobserver.model.Note;
+import org.bson.Document;
+import org.bson.types.Binary;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.mapping.event.AfterLoadEvent;
+import org.springframework.data.mongodb.core.mapping.event.BeforeSaveEvent;
+import org.springframework.data.mongodb.core.query.Update;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NoteCompressionTest {
+
+    private final NoteCompression compression = new NoteCompression(100, 100);
+
+    @Test
+    void saveAndLoad_ShouldRoundTripCompressedContentAndMetadata() {
+        String content = "Дневник 😀 ".repeat(50);
+        Document metadata = new Document("source", "import").append("lines", "строка ".repeat(40));
+        Document document = new Document("_id", "n1").append("content", content).append("metadata", metadata);
+
+        compression.onBeforeSave(new BeforeSaveEvent<>(new Note(), document, "notes"));
+
+        Binary stored = assertInstanceOf(Binary.class, document.get("content"));
+        assertTrue(stored.length() < content.length());
+        assertInstanceOf(Binary.class, document.get("metadata"));
+        String preview = document.getString("preview");
+        assertEquals(160, preview.codePointCount(0, preview.length()));
+        assertTrue(content.startsWith(preview));
+
+        compression.onAfterLoad(new AfterLoadEvent<>(document, Note.class, "notes"));
+
+        assertEquals(content, document.get("content"));
+        assertEquals(metadata, document.get("metadata"));
+    }
+
+    @Test
+    void saveAndLoad_ShouldKeepSmallValuesAndLegacyDocumentsAsIs() {
+        Document document = new Document("content", "коротко").append("metadata", new Document("a", 1));
+
+        compression.onBeforeSave(new BeforeSaveEvent<>(new Note(), document, "notes"));
+        compression.onAfterLoad(new AfterLoadEvent<>(document, Note.class, "notes"));
+
+        assertEquals("коротко", document.get("content"));
+        assertEquals(new Document("a", 1), document.get("metadata"));
+        assertFalse(document.containsKey("preview"));
+    }
+
+    @Test
+    void setContent_ShouldKeepPreviewInSyncWithStoredForm() {
+        Update compressed = new Update();
+        compression.setContent(compressed, "x".repeat(500));
+        assertInstanceOf(Binary.class, compressed.getUpdateObject().get("$set", Document.class).get("content"));
+        assertEquals("x".repeat(160), compressed.getUpdateObject().get("$set", Document.class).get("preview"));
+
+        Update plain = new Update();
+        compression.setContent(plain, "коротко");
+        assertEquals("коротко", plain.getUpdateObject().get("$set", Document.class).get("content"));
+        assertTrue(plain.getUpdateObject().get("$unset", Document.class).containsKey("preview"));
+    }
+}
@@ -0,0 +1,34 @@
+package com.externalobserver.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NoteCursorTest {
+
+    @Test
+    void decode_ShouldRestoreEncodedCursor() {
+        NoteCursor dated = new NoteCursor(LocalDateTime.of(2024, 3, 1, 12, 30, 15, 123_000_000), "65f1c0de");
+        NoteCursor undated = new NoteCursor(null, "id|с разделителем");
+
+        assertEquals(dated, NoteCursor.decode(dated.encode()));
+        assertEquals(undated, NoteCursor.decode(undated.encode()));
+    }
+
+    @Test
+    void decode_WithMalformedCursor_ShouldThrowIllegalArgument() {
+        assertThrows(IllegalArgumentException.class, () -> NoteCursor.decode("не base64!"));
+        assertThrows(IllegalArgumentException.class, () -> NoteCursor.decode(encode("без разделителя")));
+        assertThrows(IllegalArgumentException.class, () -> NoteCursor.decode(encode("2024-03-01T12:00|")));
+        assertThrows(IllegalArgumentException.class, () -> NoteCursor.decode(encode("вчера|65f1c0de")));
+        assertThrows(IllegalArgumentException.class, () -> NoteCursor.decode(""));
+    }
+
+    private static String encode(String value) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,284 @@
+package com.externalobserver.repository;
+
+import com.externalobserver.dto.HabitCheckUpdate;
+import com.externalobserver.dto.NoteSortOrder;
+import com.externalobserver.model.Habit;
+import com.externalobserver.model.HabitCheck;
+import com.externalobserver.model.HabitCheckYear;
+import com.externalobserver.model.Note;
+import com.externalobserver.model.NoteRevision;
+import com.externalobserver.model.Tombstone;
+import com.mongodb.client.MongoClient;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Проверяет планы запросов репозиториев: каждая команда, которую отправляет метод,
+ * прогоняется через explain, и тест падает, если в выигравшем плане есть COLLSCAN.
+ *
+ * Не проверяется только NoteRepository.streamAllBy: он читает всю коллекцию
+ * при построении индексов и по определению сканирует её целиком.
+ */
+@DataMongoTest
+@Testcontainers(disabledWithoutDocker = true)
+@Import({RepositoryQueryPlanTest.CommandCapture.class, NoteCompression.class, HabitCheckIndexMigration.class})
+class RepositoryQueryPlanTest {
+
+    @Container
+    static MongoDBContainer mongo = new MongoDBContainer("mongo:7.0");
+
+    @DynamicPropertySource
+    static void mongoProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.mongodb.uri", mongo::getReplicaSetUrl);
+    }
+
+    @Autowired
+    private NoteRepository noteRepository;
+
+    @Autowired
+    private HabitRepository habitRepository;
+
+    @Autowired
+    private NoteRevisionRepository noteRevisionRepository;
+
+    @Autowired
+    private HabitCheckRepository habitCheckRepository;
+
+    @Autowired
+    private TombstoneRepository tombstoneRepository;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private MongoClient mongoClient;
+
+    @Autowired
+    private CommandCapture capture;
+
+    private static final LocalDate DAY = LocalDate.of(2024, 3, 1);
+
+    @BeforeEach
+    void setUp() {
+        // Коллекции не удаляются целиком, чтобы сохранить созданные при старте индексы
+        for (Class<?> type : List.of(Note.class, NoteRevision.class, Habit.class, HabitCheck.class, HabitCheckYear.class, Tombstone.class)) {
+            mongoTemplate.remove(new Query(), type);
+        }
+        for (String username : List.of("alice", "bob")) {
+            for (int i = 0; i < 5; i++) {
+                Note note = new Note();
+                note.setUsername(username);
+                note.setTitle("Note " + i);
+                note.setTags(List.of("tag" + i));
+                note.setUpdated(LocalDateTime.of(2024, 1, 1, 0, 0).plusDays(i));
+                mongoTemplate.insert(note);
+
+                Habit habit = new Habit();
+                habit.setId(username + "-habit-" + i);
+                habit.setUsername(username);
+                habit.setOrder(i + 1);
+                mongoTemplate.insert(habit);
+
+                HabitCheck check = new HabitCheck();
+                check.setUsername(username);
+                check.setHabitId(habit.getId());
+                check.setDate(DAY.plusDays(i));
+                check.setCompleted(true);
+                mongoTemplate.insert(check);
+            }
+        }
+        new BitmapHabitCheckStore(mongoTemplate).save("alice", "alice-habit-0", DAY, true, null);
+    }
+
+    @Test
+    void noteQueries_ShouldUseIndexes() {
+        assertUsesIndex(() -> noteRepository.findByUsername("alice"));
+        assertUsesIndex(() -> {
+            try (var notes = noteRepository.streamByUsername("alice")) {
+                notes.forEach(note -> {});
+            }
+        });
+        assertUsesIndex(() -> noteRepository.findByTagsInAndUsername(List.of("tag1", "tag2"), "alice"));
+        assertUsesIndex(() -> noteRepository.findByIdAndUsername("000000000000000000000000", "alice"));
+        assertUsesIndex(() -> noteRepository.deleteByIdAndUsername("000000000000000000000000", "alice"));
+        assertUsesIndex(() -> noteRepository.findAllById(List.of("000000000000000000000000")));
+        assertUsesIndex(() -> noteRepository.findContentAndVersion("000000000000000000000000", "alice"));
+        assertUsesIndex(() -> noteRepository.updateFieldsIfVersion(
+            "000000000000000000000000", "alice", 1, Map.of("title", "New")));
+        assertUsesIndex(() -> noteRepository.replaceIfVersion("000000000000000000000000", "alice", 1, new Note()));
+        assertUsesIndex(() -> noteRepository.relinkIfVersion(
+            "000000000000000000000000", "alice", 1, List.of(), List.of()));
+    }
+
+    @Test
+    void noteRevisionQueries_ShouldUseIndexes() {
+        assertUsesIndex(() -> noteRevisionRepository.findSummaries("alice", "000000000000000000000000", 10, Limit.of(5)));
+        assertUsesIndex(() -> noteRevisionRepository.findChain("alice", "000000000000000000000000", 3, 20));
+        NoteRevision revision = new NoteRevision();
+        revision.setUsername("alice");
+        revision.setNoteId("000000000000000000000000");
+        revision.setVersion(3);
+        assertUsesIndex(() -> noteRevisionRepository.replace(revision));
+        assertUsesIndex(() -> noteRevisionRepository.deleteByUsernameAndNoteId("alice", "000000000000000000000000"));
+    }
+
+    @Test
+    void noteSummaries_ShouldUseIndexInBothDirections() {
+        for (NoteSortOrder order : NoteSortOrder.values()) {
+            String cursor = noteRepository.findSummaries("alice", order, null, 2).getNextCursor();
+            assertNotNull(cursor);
+            assertUsesIndex(() -> noteRepository.findSummaries("alice", order, null, 2));
+            assertUsesIndex(() -> noteRepository.findSummaries("alice", order, cursor, 2));
+        }
+    }
+
+    @Test
+    void habitQueries_ShouldUseIndexes() {
+        assertUsesIndex(() -> habitRepository.findByUsernameOrderByOrderAsc("alice"));
+        assertUsesIndex(() -> habitRepository.findAllByUsernameOrderByOrder("alice"));
+        assertUsesIndex(() -> habitRepository.findFirstByUsernameOrderByOrderDesc("alice"));
+        assertUsesIndex(() -> habitRepository.updateOrder("alice", List.of("alice-habit-2")));
+        assertUsesIndex(() -> habitRepository.countByIdInAndUsername(Set.of("alice-habit-1", "bob-habit-1"), "alice"));
+        assertUsesIndex(() -> habitRepository.deleteByUsername("nobody"));
+    }
+
+    @Test
+    void habitCheckQueries_ShouldUseIndexes() {
+        assertUsesIndex(() -> habitCheckRepository.findByUsernameAndDateBetweenOrderByDateAsc("alice", DAY, DAY));
+        assertUsesIndex(() -> habitCheckRepository.findChecksForPeriod("alice", DAY, DAY.plusDays(7)));
+        assertUsesIndex(() -> habitCheckRepository.findByUsernameAndHabitIdAndDate("alice", "alice-habit-1", DAY));
+        assertUsesIndex(() -> habitCheckRepository.findByUsernameAndHabitIdAndDateBetweenOrderByDateAsc(
+            "alice", "alice-habit-1", LocalDate.MIN, LocalDate.MAX));
+        assertUsesIndex(() -> habitCheckRepository.deleteByUsername("nobody"));
+        assertUsesIndex(() -> habitCheckRepository.deleteByUsernameAndHabitId("alice", "alice-habit-3"));
+    }
+
+    @Test
+    void habitCheckStores_ShouldUseIndexes() {
+        HabitCheckUpdate update = new HabitCheckUpdate();
+        update.setHabitId("alice-habit-1");
+        update.setDate(DAY);
+        update.setCompleted(true);
+
+        DocumentHabitCheckStore documents = new DocumentHabitCheckStore(habitCheckRepository);
+        assertUsesIndex(() -> documents.saveAll("alice", List.of(update)));
+        assertUsesIndex(() -> documents.save("alice", "alice-habit-1", DAY, false, "комментарий"));
+        assertUsesIndex(() -> documents.deleteByHabit("alice", "alice-habit-4"));
+
+        BitmapHabitCheckStore bitmap = new BitmapHabitCheckStore(mongoTemplate);
+        assertUsesIndex(() -> bitmap.findForPeriod("alice", DAY.minusYears(1), DAY));
+        assertUsesIndex(() -> bitmap.saveAll("alice", List.of(update)));
+        assertUsesIndex(() -> bitmap.deleteByHabit("alice", "alice-habit-4"));
+    }
+
+    @Test
+    void syncQueries_ShouldUseIndexes() {
+        ChangePosition after = new ChangePosition(LocalDateTime.of(2024, 1, 2, 0, 0), "000000000000000000000000");
+        ChangePosition undated = new ChangePosition(null, "000000000000000000000000");
+        LocalDateTime until = LocalDateTime.now();
+        mongoTemplate.insert(Tombstone.of("alice", "notes", "000000000000000000000000"));
+
+        for (ChangePosition position : Arrays.asList(null, after, undated)) {
+            assertUsesIndex(() -> noteRepository.findChangedSince("alice", position, 10));
+            assertUsesIndex(() -> habitRepository.findChangedSince("alice", position, 10));
+            assertUsesIndex(() -> habitCheckRepository.findChangedSince("alice", position, 10));
+            assertUsesIndex(() -> tombstoneRepository.findChangedSince("alice", position, 10));
+            assertUsesIndex(() -> new BitmapHabitCheckStore(mongoTemplate).findChangedSince("alice", position, until, 10));
+        }
+    }
+
+    private void assertUsesIndex(Runnable call) {
+        capture.commands.clear();
+        call.run();
+        List<CapturedCommand> commands = List.copyOf(capture.commands);
+        assertFalse(commands.isEmpty(), "Метод не отправил ни одного запроса");
+
+        for (CapturedCommand command : commands) {
+            Document explain = mongoClient.getDatabase(command.database())
+                .runCommand(new Document("explain", command.command()).append("verbosity", "queryPlanner"));
+            assertFalse(hasCollectionScan(explain, false),
+                () -> "COLLSCAN в плане запроса " + command.command().toJson());
+        }
+    }
+
+    // Ищет COLLSCAN только внутри winningPlan: отвергнутые планы не выполняются
+    private static boolean hasCollectionScan(Object node, boolean inWinningPlan) {
+        if (node instanceof Map<?, ?> document) {
+            for (Map.Entry<?, ?> entry : document.entrySet()) {
+                if ("rejectedPlans".equals(entry.getKey())) {
+                    continue;
+                }
+                boolean plan = inWinningPlan || "winningPlan".equals(entry.getKey());
+                if (plan && "stage".equals(entry.getKey()) && "COLLSCAN".equals(entry.getValue())) {
+                    return true;
+                }
+                if (hasCollectionScan(entry.getValue(), plan)) {
+                    return true;
+                }
+            }
+        } else if (node instanceof List<?> list) {
+            for (Object item : list) {
+                if (hasCollectionScan(item, inWinningPlan)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    record CapturedCommand(String database, BsonDocument command) {}
+
+    @TestConfiguration
+    static class CommandCapture {
+        private static final Set<String> QUERY_COMMANDS =
+            Set.of("find", "aggregate", "count", "distinct", "delete", "update", "findAndModify");
+        // Служебные поля сессии и кластера explain не принимает
+        private static final Set<String> SESSION_FIELDS =
+            Set.of("lsid", "$db", "$clusterTime", "txnNumber", "$readPreference", "apiVersion");
+
+        final List<CapturedCommand> commands = new CopyOnWriteArrayList<>();
+
+        @Bean
+        MongoClientSettingsBuilderCustomizer commandCaptureCustomizer() {
+            CommandListener listener = new CommandListener() {
+                @Override
+                public void commandStarted(CommandStartedEvent event) {
+                    if (QUERY_COMMANDS.contains(event.getCommandName())) {
+                        BsonDocument command = event.getCommand().clone();
+                        SESSION_FIELDS.forEach(command::remove);
+                        commands.add(new CapturedCommand(event.getDatabaseName(), command));
+                    }
+                }
+            };
+            return settings -> settings.addCommandListener(listener);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.externalobserver.service;
+
+import com.externalobserver.metrics.TransferMetrics;
+import com.externalobserver.model.Habit;
+import com.externalobserver.model.HabitCheck;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ExcelExportServiceTest {
+    private static final LocalDate START = LocalDate.of(2024, 3, 1);
+
+    private HabitService habitService;
+    private ExcelExportService excelExportService;
+
+    @BeforeEach
+    void setUp() {
+        habitService = Mockito.mock(HabitService.class);
+        excelExportService = new ExcelExportService(habitService, new TransferMetrics(new SimpleMeterRegistry()));
+    }
+
+    @Test
+    void exportHabitChecksToExcel_ShouldWriteDaysAsColumnsAndCommentsBelowHabit() throws Exception {
+        Habit habit = new Habit();
+        habit.setId("h1");
+        habit.setName("Зарядка");
+        when(habitService.getHabits("alice")).thenReturn(List.of(habit));
+        when(habitService.getHabitChecksForPeriod("alice", START, START.plusDays(2))).thenReturn(List.of(
+            check("h1", START, true, null),
+            check("h1", START.plusDays(2), false, "Болел")));
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        excelExportService.exportHabitChecksToExcel("alice", START, START.plusDays(2), output);
+
+        try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(output.toByteArray()))) {
+            Sheet sheet = workbook.getSheetAt(0);
+            Row header = sheet.getRow(0);
+            assertEquals(4, header.getLastCellNum());
+            assertEquals("01.03.2024", header.getCell(1).getStringCellValue());
+            assertEquals("03.03.2024", header.getCell(3).getStringCellValue());
+
+            Row row = sheet.getRow(1);
+            assertEquals("Зарядка", row.getCell(0).getStringCellValue());
+            assertEquals("✓", row.getCell(1).getStringCellValue());
+            assertNull(row.getCell(2));
+            assertEquals("✗", row.getCell(3).getStringCellValue());
+            assertEquals("Комментарий: Болел", sheet.getRow(2).getCell(0).getStringCellValue());
+        }
+    }
+
+    @Test
+    void exportHabitChecksToExcel_WhenPeriodExceedsSheetColumns_ShouldFailBeforeWriting() {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        assertThrows(IllegalArgumentException.class, () -> excelExportService.exportHabitChecksToExcel(
+            "alice", LocalDate.of(2000, 1, 1), LocalDate.of(2050, 12, 31), output));
+
+        assertEquals(0, output.size());
+        verifyNoInteractions(habitService);
+    }
+
+    @Test
+    void validatePeriod_ShouldAcceptFullSheetAndRejectReversedOrLongerPeriod() {
+        LocalDate lastFitting = START.plusDays(ExcelExportService.MAX_DAYS - 1);
+
+        assertDoesNotThrow(() -> ExcelExportService.validatePeriod(START, START));
+        assertDoesNotThrow(() -> ExcelExportService.validatePeriod(START, lastFitting));
+        assertThrows(IllegalArgumentException.class,
+            () -> ExcelExportService.validatePeriod(START, lastFitting.plusDays(1)));
+        assertThrows(IllegalArgumentException.class,
+            () -> ExcelExportService.validatePeriod(START, START.minusDays(1)));
+    }
+
+    private static HabitCheck check(String habitId, LocalDate date, boolean completed, String comment) {
+        HabitCheck check = new HabitCheck();
+        check.setHabitId(habitId);
+        check.setDate(date);
+        check.setCompleted(completed);
+        check.setComment(comment);
+        return check;
+    }
+}
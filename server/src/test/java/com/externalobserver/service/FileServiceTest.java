@@ -0,0 +1,196 @@
+package com.externalobserver.service;
+
+import com.externalobserver.dto.ImportFileResult;
+import com.externalobserver.dto.ImportResult;
+import com.externalobserver.metrics.TransferMetrics;
+import com.externalobserver.model.Note;
+import com.externalobserver.repository.NoteRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class FileServiceTest {
+    private NoteRepository noteRepository;
+    private NoteService noteService;
+    private FileService fileService;
+
+    @BeforeEach
+    void setUp() {
+        ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+        noteRepository = Mockito.mock(NoteRepository.class);
+        noteService = Mockito.mock(NoteService.class);
+        fileService = new FileService(objectMapper, noteService, noteRepository,
+            new TransferMetrics(new SimpleMeterRegistry()));
+    }
+
+    @Test
+    void exportNotesAsZip_WithSameTitles_ShouldNumberEntriesIgnoringCase() throws Exception {
+        when(noteRepository.streamByUsername("alice")).thenAnswer(invocation -> Stream.of(
+            note("1", "Заметка", null, "первая"),
+            note("2", "заметка", null, "вторая"),
+            note("3", "Заметка (2)", null, "с номером в заголовке"),
+            note("4", "Заметка", null, "третья"),
+            note("5", "Заметка", "Папка", "в папке")));
+
+        List<String> names = entryNames(export());
+
+        assertEquals(List.of("Заметка.md", "заметка (2).md", "Заметка (2) (2).md", "Заметка (3).md",
+            "Папка/Заметка.md", "metadata.ndjson"), names);
+    }
+
+    @Test
+    void exportNotesAsZip_WithUnsafeCharacters_ShouldKeepEntriesInsideArchive() throws Exception {
+        when(noteRepository.streamByUsername("alice")).thenAnswer(invocation -> Stream.of(
+            note("1", "a/b:c*d?\"e<f>g|h", null, null),
+            note("2", "Выход", "../../etc", null),
+            note("3", "Абсолютный", "/root\\.ssh", null),
+            note("4", "Табуляция\tи\nперенос", " ./пробелы / ", null),
+            note("5", "  ", null, null),
+            note("6", "Заголовок", "docs/Файл из пути.md", null),
+            note("7", "Пустое имя", "docs/.md", null)));
+
+        List<String> names = entryNames(export());
+
+        assertEquals(List.of(
+            "a_b_c_d__e_f_g_h.md",
+            "etc/Выход.md",
+            "root/.ssh/Абсолютный.md",
+            "пробелы/Табуляция_и_перенос.md",
+            "5.md",
+            "docs/Файл из пути.md",
+            "docs/7.md",
+            "metadata.ndjson"), names);
+        assertTrue(names.stream().noneMatch(name -> name.startsWith("/") || name.contains("..")
+            || name.contains("\\") || name.chars().anyMatch(c -> c < 0x20)));
+    }
+
+    @Test
+    void exportNotesAsZip_ShouldReferenceEntriesFromMetadata() throws Exception {
+        when(noteRepository.streamByUsername("alice")).thenAnswer(invocation -> Stream.of(
+            note("1", "Заметка", null, "текст"),
+            note("2", "Заметка", null, null)));
+
+        byte[] archive = export();
+
+        List<String> metadata = new ArrayList<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(archive))) {
+            for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                String text = new String(zip.readAllBytes(), StandardCharsets.UTF_8);
+                if (entry.getName().equals("metadata.ndjson")) {
+                    metadata.addAll(text.lines().toList());
+                } else if (entry.getName().equals("Заметка.md")) {
+                    assertEquals("текст", text);
+                }
+            }
+        }
+        assertEquals(2, metadata.size());
+        assertTrue(metadata.get(0).contains("\"file\":\"Заметка.md\""));
+        assertTrue(metadata.get(1).contains("\"file\":\"Заметка (2).md\""));
+        assertFalse(metadata.get(0).contains("\"content\""));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void importMarkdownFiles_WithBomCrlfAndCp1251_ShouldReadFrontMatter() {
+        when(noteService.createNotes(anyList(), eq("alice"))).thenReturn(Map.of());
+        byte[] bom = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+        byte[] withBom = "---\r\ntitle: С BOM\r\ntags: [a, \"#b\"]\r\n---\r\nСтрока 1\r\nСтрока 2\r\n"
+            .getBytes(StandardCharsets.UTF_8);
+        byte[] utf8Bom = new byte[bom.length + withBom.length];
+        System.arraycopy(bom, 0, utf8Bom, 0, bom.length);
+        System.arraycopy(withBom, 0, utf8Bom, bom.length, withBom.length);
+
+        ImportResult result = fileService.importMarkdownFiles(new MockMultipartFile[]{
+            file("папка/bom.md", utf8Bom),
+            file("cp1251.md", "---\ntitle: Кириллица\n---\nТекст".getBytes(Charset.forName("windows-1251")))
+        }, "alice");
+
+        ArgumentCaptor<List<Note>> created = ArgumentCaptor.forClass(List.class);
+        verify(noteService).createNotes(created.capture(), eq("alice"));
+        assertEquals(2, result.getImported());
+        Note bomNote = created.getValue().get(0);
+        assertEquals("С BOM", bomNote.getTitle());
+        assertEquals("папка", bomNote.getPath());
+        assertEquals(List.of("a", "b"), bomNote.getTags());
+        assertEquals("Строка 1\nСтрока 2\n", bomNote.getContent());
+        Note cp1251Note = created.getValue().get(1);
+        assertEquals("Кириллица", cp1251Note.getTitle());
+        assertEquals("Текст", cp1251Note.getContent());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void importMarkdownFiles_WithMalformedFrontMatter_ShouldReportFileAndImportOthers() {
+        when(noteService.createNotes(anyList(), eq("alice"))).thenReturn(Map.of());
+
+        ImportResult result = fileService.importMarkdownFiles(new MockMultipartFile[]{
+            file("плохой.md", "---\ntitle: [не закрыт\n---\nТекст".getBytes(StandardCharsets.UTF_8)),
+            file("без конца.md", "---\ntitle: Заметка\nТекст".getBytes(StandardCharsets.UTF_8)),
+            file("картинка.png", new byte[]{1, 2, 3})
+        }, "alice");
+
+        assertEquals(1, result.getImported());
+        assertEquals(2, result.getFailed());
+        Map<String, ImportFileResult> byName = new HashMap<>();
+        result.getFiles().forEach(file -> byName.put(file.getFileName(), file));
+        assertTrue(byName.get("плохой.md").getError().contains("Некорректный YAML"));
+        assertNotNull(byName.get("картинка.png").getError());
+
+        // Без закрывающего разделителя весь текст остаётся телом заметки
+        ArgumentCaptor<List<Note>> created = ArgumentCaptor.forClass(List.class);
+        verify(noteService).createNotes(created.capture(), eq("alice"));
+        assertEquals("без конца", created.getValue().get(0).getTitle());
+        assertEquals("---\ntitle: Заметка\nТекст", created.getValue().get(0).getContent());
+    }
+
+    private byte[] export() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        fileService.exportNotesAsZip("alice", output);
+        return output.toByteArray();
+    }
+
+    private static List<String> entryNames(byte[] archive) throws Exception {
+        List<String> names = new ArrayList<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(archive))) {
+            for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                names.add(entry.getName());
+            }
+        }
+        return names;
+    }
+
+    private static MockMultipartFile file(String name, byte[] content) {
+        return new MockMultipartFile("files", name, "text/markdown", content);
+    }
+
+    private static Note note(String id, String title, String path, String content) {
+        Note note = new Note();
+        note.setId(id);
+        note.setUsername("alice");
+        note.setTitle(title);
+        note.setPath(path);
+        note.setContent(content);
+        return note;
+    }
+}
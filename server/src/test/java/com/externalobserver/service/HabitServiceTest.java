@@ -0,0 +1,150 @@
+package com.externalobserver.service;
+
+import com.externalobserver.cache.ReadCache;
+import com.externalobserver.dto.HabitCheckUpdate;
+import com.externalobserver.model.HabitCheck;
+import com.externalobserver.repository.HabitCheckStore;
+import com.externalobserver.repository.HabitRepository;
+import com.externalobserver.repository.TombstoneRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class HabitServiceTest {
+    private static final LocalDate DAY = LocalDate.of(2024, 3, 1);
+
+    private HabitRepository habitRepository;
+    private HabitCheckStore habitCheckStore;
+    private HabitService habitService;
+
+    @BeforeEach
+    void setUp() {
+        habitRepository = Mockito.mock(HabitRepository.class);
+        habitCheckStore = Mockito.mock(HabitCheckStore.class);
+        habitService = new HabitService(habitRepository, habitCheckStore,
+            new ReadCache(new SimpleMeterRegistry(), 1_000_000, Duration.ofMinutes(1)),
+            Mockito.mock(TombstoneRepository.class));
+
+        // Привычки alice — с префиксом "alice-"
+        when(habitRepository.countByIdInAndUsername(anyCollection(), anyString())).thenAnswer(invocation -> {
+            Collection<String> ids = invocation.getArgument(0);
+            String username = invocation.getArgument(1);
+            return ids.stream().filter(id -> id.startsWith(username + "-")).count();
+        });
+        when(habitCheckStore.saveAll(anyString(), anyList()))
+            .thenAnswer(invocation -> ((List<?>) invocation.getArgument(1)).size());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void saveHabitChecks_WithRepeatedHabitAndDate_ShouldApplyLastUpdate() {
+        int applied = habitService.saveHabitChecks(List.of(
+            update("alice-1", DAY, false, "первая"),
+            update("alice-2", DAY, true, null),
+            update("alice-1", DAY, true, "последняя"),
+            update("alice-1", DAY.plusDays(1), true, null)), "alice");
+
+        ArgumentCaptor<List<HabitCheckUpdate>> saved = ArgumentCaptor.forClass(List.class);
+        verify(habitCheckStore).saveAll(eq("alice"), saved.capture());
+        assertEquals(3, applied);
+        assertEquals(3, saved.getValue().size());
+        HabitCheckUpdate first = saved.getValue().get(0);
+        assertEquals("alice-1", first.getHabitId());
+        assertEquals(DAY, first.getDate());
+        assertTrue(first.isCompleted());
+        assertEquals("последняя", first.getComment());
+        // Владелец проверяется одним запросом по различным привычкам
+        verify(habitRepository).countByIdInAndUsername(Set.of("alice-1", "alice-2"), "alice");
+    }
+
+    @Test
+    void saveHabitChecks_WithForeignHabit_ShouldRejectWholeBatch() {
+        List<HabitCheckUpdate> updates = List.of(update("alice-1", DAY, true, null), update("bob-1", DAY, true, null));
+
+        assertThrows(RuntimeException.class, () -> habitService.saveHabitChecks(updates, "alice"));
+        verify(habitCheckStore, never()).saveAll(anyString(), anyList());
+    }
+
+    @Test
+    void saveHabitChecks_ShouldRejectEmptyOversizedAndIncompleteBatches() {
+        List<HabitCheckUpdate> oversized = new ArrayList<>();
+        for (int i = 0; i <= 1000; i++) {
+            oversized.add(update("alice-1", DAY.plusDays(i), true, null));
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> habitService.saveHabitChecks(null, "alice"));
+        assertThrows(IllegalArgumentException.class, () -> habitService.saveHabitChecks(List.of(), "alice"));
+        assertThrows(IllegalArgumentException.class, () -> habitService.saveHabitChecks(oversized, "alice"));
+        assertThrows(IllegalArgumentException.class,
+            () -> habitService.saveHabitChecks(List.of(update("alice-1", null, true, null)), "alice"));
+        assertThrows(IllegalArgumentException.class,
+            () -> habitService.saveHabitChecks(Collections.singletonList(null), "alice"));
+        verify(habitCheckStore, never()).saveAll(anyString(), anyList());
+
+        assertEquals(1000, habitService.saveHabitChecks(oversized.subList(0, 1000), "alice"));
+    }
+
+    @Test
+    void createOrUpdateHabitCheck_ShouldCheckOwnerAndSaveWithoutReadingHabit() {
+        HabitCheck saved = new HabitCheck();
+        when(habitCheckStore.save("alice", "alice-1", DAY, true, "готово")).thenReturn(saved);
+
+        assertSame(saved, habitService.createOrUpdateHabitCheck("alice-1", DAY, true, "готово", "alice"));
+        verify(habitRepository).countByIdInAndUsername(Set.of("alice-1"), "alice");
+        verify(habitRepository, never()).findById(anyString());
+    }
+
+    @Test
+    void createOrUpdateHabitCheck_WithForeignHabit_ShouldNotWrite() {
+        assertThrows(RuntimeException.class,
+            () -> habitService.createOrUpdateHabitCheck("bob-1", DAY, true, null, "alice"));
+        verify(habitCheckStore, never()).save(anyString(), anyString(), any(), anyBoolean(), any());
+    }
+
+    @Test
+    void updateHabitsOrder_ShouldWriteOrderInOneBatch() {
+        habitService.updateHabitsOrder(List.of(Map.of("id", "alice-2"), Map.of("id", "alice-1")), "alice");
+
+        verify(habitRepository).updateOrder("alice", List.of("alice-2", "alice-1"));
+    }
+
+    @Test
+    void updateHabitsOrder_WithForeignHabit_ShouldNotWrite() {
+        List<Map<String, Object>> habits = List.of(Map.of("id", "alice-1"), Map.of("id", "bob-1"));
+
+        assertThrows(RuntimeException.class, () -> habitService.updateHabitsOrder(habits, "alice"));
+        verify(habitRepository, never()).updateOrder(anyString(), anyList());
+    }
+
+    @Test
+    void updateHabitsOrder_WithMissingOrRepeatedIds_ShouldThrow() {
+        assertThrows(IllegalArgumentException.class, () -> habitService.updateHabitsOrder(
+            List.of(Map.of("id", "alice-1"), Map.of("id", "alice-1")), "alice"));
+        assertThrows(IllegalArgumentException.class, () -> habitService.updateHabitsOrder(
+            List.of(Map.of("id", "alice-1"), Map.of()), "alice"));
+        verify(habitRepository, never()).updateOrder(anyString(), anyList());
+    }
+
+    private static HabitCheckUpdate update(String habitId, LocalDate date, boolean completed, String comment) {
+        HabitCheckUpdate update = new HabitCheckUpdate();
+        update.setHabitId(habitId);
+        update.setDate(date);
+        update.setCompleted(completed);
+        update.setComment(comment);
+        return update;
+    }
+}
@@ -0,0 +1,165 @@
+package com.externalobserver.service;
+
+import com.externalobserver.dto.NoteRevisionContent;
+import com.externalobserver.dto.NoteRevisionSummary;
+import com.externalobserver.model.Note;
+import com.externalobserver.model.NoteRevision;
+import com.externalobserver.repository.NoteRevisionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Limit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class NoteRevisionServiceTest {
+
+    private final List<NoteRevision> stored = new ArrayList<>();
+    private NoteRevisionRepository repository;
+    private NoteRevisionService revisionService;
+
+    @BeforeEach
+    void setUp() {
+        repository = Mockito.mock(NoteRevisionRepository.class);
+        when(repository.insert(any(NoteRevision.class))).thenAnswer(invocation -> {
+            NoteRevision revision = invocation.getArgument(0);
+            if (stored.stream().anyMatch(existing -> existing.getVersion() == revision.getVersion())) {
+                throw new DuplicateKeyException("Ревизия " + revision.getVersion());
+            }
+            stored.add(revision);
+            return revision;
+        });
+        doAnswer(invocation -> {
+            NoteRevision revision = invocation.getArgument(0);
+            stored.removeIf(existing -> existing.getVersion() == revision.getVersion());
+            stored.add(revision);
+            return null;
+        }).when(repository).replace(any(NoteRevision.class));
+        when(repository.findSummaries(eq("alice"), eq("n1"), anyInt(), any(Limit.class))).thenAnswer(invocation -> {
+            int before = invocation.getArgument(2);
+            Limit limit = invocation.getArgument(3);
+            return stored.stream()
+                .filter(revision -> revision.getVersion() < before)
+                .sorted(Comparator.comparingInt(NoteRevision::getVersion).reversed())
+                .limit(limit.max())
+                .toList();
+        });
+        when(repository.findChain(eq("alice"), eq("n1"), anyInt(), anyInt())).thenAnswer(invocation -> {
+            int from = invocation.getArgument(2);
+            int to = invocation.getArgument(3);
+            return stored.stream()
+                .filter(revision -> revision.getVersion() >= from && revision.getVersion() <= to)
+                .sorted(Comparator.comparingInt(NoteRevision::getVersion).reversed())
+                .toList();
+        });
+        revisionService = new NoteRevisionService(repository);
+    }
+
+    @Test
+    void getRevision_ShouldRestoreEveryVersionAcrossSnapshots() {
+        Note note = note(1, "v1");
+        for (int version = 2; version <= 45; version++) {
+            String content = note.getContent() + "\nстрока " + version;
+            if (version % 7 == 0) {
+                content = content.substring(3);
+            }
+            revisionService.recordRevision(note, content);
+            note = note(version, content);
+        }
+
+        assertTrue(stored.stream().anyMatch(NoteRevision::isSnapshot));
+        Note current = note;
+        for (int version = 1; version <= 45; version++) {
+            Optional<NoteRevisionContent> revision = revisionService.getRevision(current, version);
+            assertTrue(revision.isPresent(), "Версия " + version);
+            assertEquals(expectedContent(version), revision.get().getContent(), "Версия " + version);
+        }
+        assertTrue(revisionService.getRevision(current, 46).isEmpty());
+        assertTrue(revisionService.getRevision(current, 0).isEmpty());
+    }
+
+    @Test
+    void getRevision_WhenChainHasGap_ShouldReturnEmpty() {
+        Note note = note(1, "a");
+        revisionService.recordRevision(note, "ab");
+        note = note(2, "ab");
+        revisionService.recordRevision(note, "abc");
+        stored.removeIf(revision -> revision.getVersion() == 2);
+
+        assertTrue(revisionService.getRevision(note(3, "abc"), 1).isEmpty());
+    }
+
+    @Test
+    void listRevisions_ShouldPageFromCurrentVersionByBeforeCursor() {
+        Note note = note(1, "v1");
+        for (int version = 2; version <= 6; version++) {
+            revisionService.recordRevision(note, "v" + version);
+            note = note(version, "v" + version);
+        }
+        // Ревизия с номером текущей версии (её оставила запись, не выполнившая обновление) не показывается
+        revisionService.recordRevision(note, "проигравшая запись");
+
+        List<NoteRevisionSummary> first = revisionService.listRevisions(note, null, 3);
+        assertEquals(List.of(6, 5, 4), first.stream().map(NoteRevisionSummary::getVersion).toList());
+        assertTrue(first.get(0).isCurrent());
+
+        List<NoteRevisionSummary> second = revisionService.listRevisions(note, 4, 3);
+        assertEquals(List.of(3, 2, 1), second.stream().map(NoteRevisionSummary::getVersion).toList());
+        assertTrue(revisionService.listRevisions(note, 1, 3).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> revisionService.listRevisions(note(6, "v6"), 0, 3));
+    }
+
+    @Test
+    void recordRevision_WhenRevisionAlreadyExists_ShouldReplaceIt() {
+        Note base = note(1, "общее начало");
+        revisionService.recordRevision(base, "общее начало и чужой хвост");
+        Note current = note(2, "общее начало и свой хвост");
+        // Дельта чужой записи не применяется к содержимому текущей версии
+        assertTrue(revisionService.getRevision(current, 1).isEmpty());
+
+        revisionService.recordRevision(base, "общее начало и свой хвост");
+
+        assertEquals("общее начало", revisionService.getRevision(current, 1).orElseThrow().getContent());
+        verify(repository, times(1)).replace(any(NoteRevision.class));
+    }
+
+    @Test
+    void recordRevision_WhenWriteFails_ShouldLeaveGapWithoutThrowing() {
+        Note base = note(1, "a");
+        revisionService.recordRevision(base, "ab");
+        when(repository.insert(any(NoteRevision.class))).thenThrow(new DataAccessResourceFailureException("Нет связи"));
+
+        assertDoesNotThrow(() -> revisionService.recordRevision(note(2, "ab"), "abc"));
+        assertTrue(revisionService.getRevision(note(3, "abc"), 1).isEmpty());
+        assertEquals("a", revisionService.getRevision(note(2, "ab"), 1).orElseThrow().getContent());
+    }
+
+    private static String expectedContent(int version) {
+        String content = "v1";
+        for (int v = 2; v <= version; v++) {
+            content = content + "\nстрока " + v;
+            if (v % 7 == 0) {
+                content = content.substring(3);
+            }
+        }
+        return content;
+    }
+
+    private static Note note(int version, String content) {
+        Note note = new Note();
+        note.setId("n1");
+        note.setUsername("alice");
+        note.setTitle("Заметка");
+        note.setVersion(version);
+        note.setContent(content);
+        return note;
+    }
+}
@@ -0,0 +1,180 @@
+package com.externalobserver.service;
+
+import com.externalobserver.dto.SyncChanges;
+import com.externalobserver.model.Habit;
+import com.externalobserver.model.HabitCheckYear;
+import com.externalobserver.model.Note;
+import com.externalobserver.model.Tombstone;
+import com.externalobserver.repository.ChangePosition;
+import com.externalobserver.repository.HabitCheckChanges;
+import com.externalobserver.repository.HabitCheckStore;
+import com.externalobserver.repository.HabitRepository;
+import com.externalobserver.repository.NoteRepository;
+import com.externalobserver.repository.TombstoneRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SyncServiceTest {
+    private static final LocalDateTime BASE = LocalDateTime.now().minusHours(1);
+
+    private final List<Note> notes = new ArrayList<>();
+    private final List<Habit> habits = new ArrayList<>();
+    private final List<Tombstone> tombstones = new ArrayList<>();
+    private HabitCheckStore habitCheckStore;
+    private SyncService syncService;
+
+    @BeforeEach
+    void setUp() {
+        NoteRepository noteRepository = Mockito.mock(NoteRepository.class);
+        when(noteRepository.findChangedSince(eq("alice"), any(), anyInt())).thenAnswer(invocation ->
+            after(notes, note -> new ChangePosition(note.getUpdated(), note.getId()),
+                invocation.getArgument(1), invocation.getArgument(2)));
+
+        HabitRepository habitRepository = Mockito.mock(HabitRepository.class);
+        when(habitRepository.findChangedSince(eq("alice"), any(), anyInt())).thenAnswer(invocation ->
+            after(habits, habit -> new ChangePosition(habit.getUpdatedAt(), habit.getId()),
+                invocation.getArgument(1), invocation.getArgument(2)));
+
+        habitCheckStore = Mockito.mock(HabitCheckStore.class);
+        when(habitCheckStore.findChangedSince(eq("alice"), any(), any(), anyInt()))
+            .thenReturn(new HabitCheckChanges(List.of(), List.of(), null, false));
+
+        TombstoneRepository tombstoneRepository = Mockito.mock(TombstoneRepository.class);
+        when(tombstoneRepository.findChangedSince(eq("alice"), any(), anyInt())).thenAnswer(invocation ->
+            after(tombstones, tombstone -> new ChangePosition(tombstone.getDeleted(), tombstone.getId()),
+                invocation.getArgument(1), invocation.getArgument(2)));
+
+        syncService = new SyncService(noteRepository, habitRepository, habitCheckStore, tombstoneRepository,
+            LocalDateTime::now, Duration.ofSeconds(2));
+    }
+
+    @Test
+    void getChanges_ShouldPageAcrossCollectionsAndResumeFromToken() {
+        for (int i = 0; i < 3; i++) {
+            notes.add(note("n" + i, BASE.plusMinutes(i)));
+        }
+        habits.add(habit("h1", BASE));
+        tombstones.add(tombstone("t1", "n9", BASE.plusMinutes(5)));
+
+        SyncChanges first = syncService.getChanges("alice", null, 2);
+        assertEquals(List.of("n0", "n1"), first.getNotes().stream().map(Note::getId).toList());
+        assertTrue(first.getHabits().isEmpty());
+        assertTrue(first.isMore());
+
+        SyncChanges second = syncService.getChanges("alice", first.getToken(), 2);
+        assertEquals(List.of("n2"), second.getNotes().stream().map(Note::getId).toList());
+        assertEquals(List.of("h1"), second.getHabits().stream().map(Habit::getId).toList());
+        assertTrue(second.isMore());
+
+        SyncChanges third = syncService.getChanges("alice", second.getToken(), 2);
+        assertTrue(third.getNotes().isEmpty());
+        assertEquals("n9", third.getDeleted().get(0).getId());
+        assertFalse(third.isMore());
+
+        notes.add(note("n3", BASE.plusMinutes(10)));
+        SyncChanges fourth = syncService.getChanges("alice", third.getToken(), 2);
+        assertEquals(List.of("n3"), fourth.getNotes().stream().map(Note::getId).toList());
+        assertTrue(fourth.getDeleted().isEmpty());
+        assertFalse(fourth.isReset());
+    }
+
+    @Test
+    void getChanges_ShouldHoldBackChangesYoungerThanSettleDelay() {
+        notes.add(note("old", BASE));
+        notes.add(note("fresh", LocalDateTime.now().plusSeconds(5)));
+
+        SyncChanges changes = syncService.getChanges("alice", null, 10);
+        assertEquals(List.of("old"), changes.getNotes().stream().map(Note::getId).toList());
+        assertFalse(changes.isMore());
+
+        SyncChanges again = syncService.getChanges("alice", changes.getToken(), 10);
+        assertTrue(again.getNotes().isEmpty());
+    }
+
+    @Test
+    void getChanges_ShouldCountBitmapYearsInChecks() {
+        HabitCheckYear year = new HabitCheckYear();
+        year.setId("alice:h1:2024");
+        year.setHabitId("h1");
+        year.setYear(2024);
+        year.setBits(Map.of("0", 0b11111L));
+        year.setUpdatedAt(BASE);
+        ChangePosition yearPosition = new ChangePosition(BASE, year.getId());
+        when(habitCheckStore.findChangedSince(eq("alice"), isNull(), any(), anyInt()))
+            .thenReturn(new HabitCheckChanges(List.of(), List.of(year), yearPosition, false));
+        tombstones.add(tombstone("t1", "n9", BASE.plusMinutes(5)));
+
+        // Пять отметок года занимают страницу из трёх целиком: удаления читаются следующим запросом
+        SyncChanges first = syncService.getChanges("alice", null, 3);
+        assertEquals(List.of(year), first.getCheckYears());
+        assertTrue(first.getDeleted().isEmpty());
+        assertTrue(first.isMore());
+        verify(habitCheckStore).findChangedSince(eq("alice"), isNull(), any(), eq(3));
+
+        SyncChanges second = syncService.getChanges("alice", first.getToken(), 3);
+        assertTrue(second.getCheckYears().isEmpty());
+        assertEquals("n9", second.getDeleted().get(0).getId());
+        verify(habitCheckStore).findChangedSince(eq("alice"), eq(yearPosition), any(), eq(3));
+    }
+
+    @Test
+    void getChanges_ShouldResetWhenTokenIsOlderThanTombstoneRetention() {
+        notes.add(note("n0", BASE));
+        String stale = new SyncToken(LocalDateTime.now().minus(Tombstone.RETENTION).minusDays(1),
+            new ChangePosition(BASE, "n0"), null, null, null).encode();
+
+        SyncChanges changes = syncService.getChanges("alice", stale, 10);
+        assertTrue(changes.isReset());
+        assertEquals(List.of("n0"), changes.getNotes().stream().map(Note::getId).toList());
+    }
+
+    @Test
+    void getChanges_ShouldRejectMalformedToken() {
+        assertThrows(IllegalArgumentException.class, () -> syncService.getChanges("alice", "не токен", 10));
+        assertThrows(IllegalArgumentException.class, () -> syncService.getChanges("alice", "AAAA", 10));
+    }
+
+    private static <T> List<T> after(List<T> items, Function<T, ChangePosition> position, ChangePosition after, int limit) {
+        return items.stream()
+            .filter(item -> after == null || ChangePosition.ORDER.compare(position.apply(item), after) > 0)
+            .sorted(Comparator.comparing(position, ChangePosition.ORDER))
+            .limit(limit)
+            .toList();
+    }
+
+    private static Note note(String id, LocalDateTime updated) {
+        Note note = new Note();
+        note.setId(id);
+        note.setUsername("alice");
+        note.setUpdated(updated);
+        return note;
+    }
+
+    private static Habit habit(String id, LocalDateTime updatedAt) {
+        Habit habit = new Habit();
+        habit.setId(id);
+        habit.setUsername("alice");
+        habit.setUpdatedAt(updatedAt);
+        return habit;
+    }
+
+    private static Tombstone tombstone(String id, String noteId, LocalDateTime deleted) {
+        Tombstone tombstone = Tombstone.of("alice", "notes", noteId);
+        tombstone.setId(id);
+        tombstone.setDeleted(deleted);
+        return tombstone;
+    }
+}
@@ -1,21 +1,39 @@
 package com.externalobserver.service;
 
+import com.externalobserver.cache.ReadCache;
 import com.externalobserver.model.Note;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import com.externalobserver.repository.NoteRepository;
+import com.externalobserver.repository.TombstoneRepository;
+import com.externalobserver.index.FullTextIndex;
+import com.externalobserver.index.LinkGraphIndex;
+import com.externalobserver.index.NoteSuggestIndex;
+import com.externalobserver.index.NoteTitleIndex;
+import com.externalobserver.index.TagIndex;
+import com.externalobserver.dto.NotePatchRequest;
+import com.externalobserver.dto.TextEdit;
 import com.externalobserver.dto.ZettelRequest;
 import com.externalobserver.dto.ZettelSearchRequest;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
 import static org.mockito.Mockito.*;
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -25,7 +43,17 @@ class NoteServiceTest {
     @Mock
     private NoteRepository noteRepository;
 
+    @Mock
+    private NoteRevisionService noteRevisionService;
+
+    @Mock
+    private TombstoneRepository tombstoneRepository;
+
     private NoteService noteService;
+    private FullTextIndex fullTextIndex;
+    private LinkGraphIndex linkGraphIndex;
+    private TagIndex tagIndex;
+    private NoteTitleIndex noteTitleIndex;
 
     private Note testNote;
     private ZettelRequest testRequest;
@@ -33,7 +61,15 @@ class NoteServiceTest {
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
-        noteService = new NoteService(noteRepository);
+        fullTextIndex = new FullTextIndex();
+        linkGraphIndex = new LinkGraphIndex();
+        tagIndex = new TagIndex();
+        noteTitleIndex = new NoteTitleIndex();
+        NoteSuggestIndex noteSuggestIndex = new NoteSuggestIndex();
+        noteService = new NoteService(noteRepository, fullTextIndex, linkGraphIndex, tagIndex, noteTitleIndex,
+            noteSuggestIndex, List.of(fullTextIndex, linkGraphIndex, tagIndex, noteTitleIndex, noteSuggestIndex),
+            noteRevisionService,
+            new ReadCache(new SimpleMeterRegistry(), 1_000_000, Duration.ofMinutes(1)), tombstoneRepository);
 
         testNote = new Note();
         testNote.setId("test-id");
@@ -63,39 +99,47 @@ class NoteServiceTest {
 
     @Test
     void createNote_ShouldSaveAndReturnNote() {
-        when(noteRepository.save(any(Note.class))).thenReturn(testNote);
+        when(noteRepository.insertUnordered(List.of(testNote))).thenReturn(Map.of());
         
         Note result = noteService.createNote(testNote);
         
         assertNotNull(result);
-        assertEquals(testNote.getId(), result.getId());
+        assertNotNull(result.getId());
         assertEquals(testNote.getTitle(), result.getTitle());
         assertEquals(testNote.getContent(), result.getContent());
-        verify(noteRepository).save(any(Note.class));
+        verify(noteRepository).insertUnordered(List.of(testNote));
     }
 
     @Test
     void updateNote_WhenNoteExists_ShouldUpdateAndReturnNote() {
-        when(noteRepository.findById(testNote.getId())).thenReturn(Optional.of(testNote));
-        when(noteRepository.save(any(Note.class))).thenReturn(testNote);
-        
-        Optional<Note> result = noteService.updateNote(testNote.getId(), testNote);
-        
-        assertTrue(result.isPresent());
-        assertEquals(testNote.getId(), result.get().getId());
-        verify(noteRepository).findById(testNote.getId());
-        verify(noteRepository).save(any(Note.class));
+        asUser("alice", () -> {
+            Note previous = note(testNote.getId(), "Старое название", null);
+            previous.setVersion(1);
+            when(noteRepository.replaceIfVersion(eq(testNote.getId()), eq("alice"), eq(1), same(testNote)))
+                .thenReturn(Optional.of(previous));
+
+            Optional<Note> result = noteService.updateNote(testNote.getId(), testNote);
+
+            assertTrue(result.isPresent());
+            assertEquals(testNote.getId(), result.get().getId());
+            assertEquals("alice", result.get().getUsername());
+            assertEquals(2, result.get().getVersion());
+            verify(noteRepository, never()).findByIdAndUsername(any(), any());
+        });
     }
 
     @Test
     void updateNote_WhenNoteDoesNotExist_ShouldReturnEmpty() {
-        when(noteRepository.findById("non-existent")).thenReturn(Optional.empty());
-        
-        Optional<Note> result = noteService.updateNote("non-existent", testNote);
-        
-        assertTrue(result.isEmpty());
-        verify(noteRepository).findById("non-existent");
-        verify(noteRepository, never()).save(any(Note.class));
+        asUser("alice", () -> {
+            when(noteRepository.replaceIfVersion(eq("non-existent"), eq("alice"), eq(1), same(testNote)))
+                .thenReturn(Optional.empty());
+            when(noteRepository.findByIdAndUsername("non-existent", "alice")).thenReturn(Optional.empty());
+
+            Optional<Note> result = noteService.updateNote("non-existent", testNote);
+
+            assertTrue(result.isEmpty());
+            verify(noteRevisionService, never()).recordRevision(any(), any());
+        });
     }
 
     @Test
@@ -129,20 +173,313 @@ class NoteServiceTest {
     }
 
     @Test
-    void searchNotes_WithTagsAndKeyword_ShouldReturnMatchingNotes() {
-        ZettelSearchRequest searchRequest = new ZettelSearchRequest();
-        searchRequest.setTags(Arrays.asList("test"));
-        searchRequest.setKeyword("content");
-        
-        when(noteRepository.findByTagsInOrContentContainingIgnoreCase(
-            anyList(), anyString())).thenReturn(Arrays.asList(testNote));
-        
-        List<Note> result = noteService.searchNotes(searchRequest);
-        
-        assertNotNull(result);
-        assertEquals(1, result.size());
-        assertEquals(testNote.getId(), result.get(0).getId());
-        verify(noteRepository).findByTagsInOrContentContainingIgnoreCase(
-            searchRequest.getTags(), searchRequest.getKeyword());
+    void searchNotes_WithTagsAndKeyword_ShouldReturnOwnNotesMatchingEither() {
+        asUser("alice", () -> {
+            Note byKeyword = note("keyword", "Про индексы", null);
+            byKeyword.setContent("Полнотекстовый поиск по content");
+            Note byTag = note("tagged", "С тегом", null);
+            byTag.setTags(List.of("test"));
+            Note foreign = note("foreign", "Чужая", null);
+            foreign.setUsername("bob");
+            foreign.setContent("content");
+            foreign.setTags(List.of("test"));
+            for (Note note : List.of(byKeyword, byTag, foreign, note("other", "Без совпадений", null))) {
+                fullTextIndex.index(note);
+                tagIndex.index(note);
+            }
+            when(noteRepository.findAllById(anyIterable())).thenReturn(List.of(byKeyword, byTag));
+
+            ZettelSearchRequest searchRequest = new ZettelSearchRequest();
+            searchRequest.setTags(List.of("test"));
+            searchRequest.setKeyword("content");
+            List<Note> result = noteService.searchNotes(searchRequest);
+
+            assertEquals(List.of("keyword", "tagged"), result.stream().map(Note::getId).toList());
+            verify(noteRepository).findAllById(List.of("keyword", "tagged"));
+        });
+    }
+
+    @Test
+    void updateNote_WhenVersionIsStale_ShouldThrowConflictWithCurrentNote() {
+        asUser("alice", () -> {
+            Note current = new Note();
+            current.setId(testNote.getId());
+            current.setVersion(3);
+            when(noteRepository.replaceIfVersion(eq(testNote.getId()), eq("alice"), eq(1), same(testNote)))
+                .thenReturn(Optional.empty());
+            when(noteRepository.findByIdAndUsername(testNote.getId(), "alice")).thenReturn(Optional.of(current));
+
+            NoteVersionConflictException conflict = assertThrows(NoteVersionConflictException.class,
+                () -> noteService.updateNote(testNote.getId(), testNote));
+
+            assertEquals(3, conflict.getCurrent().getVersion());
+            verify(noteRepository, never()).save(any(Note.class));
+        });
+    }
+
+    @Test
+    void updateNote_WithoutVersion_ShouldRejectWithoutWriting() {
+        asUser("alice", () -> {
+            testNote.setVersion(null);
+
+            assertThrows(IllegalArgumentException.class, () -> noteService.updateNote(testNote.getId(), testNote));
+            verify(noteRepository, never()).replaceIfVersion(any(), any(), anyInt(), any());
+        });
+    }
+
+    @Test
+    void updateNote_WithCurrentVersion_ShouldRecordRevisionFromPreviousAfterReplacing() {
+        asUser("alice", () -> {
+            Note previous = note(testNote.getId(), "Старое название", null);
+            previous.setContent("Старое содержимое");
+            previous.setCreated(LocalDateTime.now().minusDays(1));
+            previous.setVersion(1);
+            when(noteRepository.replaceIfVersion(eq(testNote.getId()), eq("alice"), eq(1), same(testNote)))
+                .thenReturn(Optional.of(previous));
+
+            Note result = noteService.updateNote(testNote.getId(), testNote).orElseThrow();
+
+            assertEquals("Test Note", result.getTitle());
+            assertEquals(2, result.getVersion());
+            assertEquals(previous.getCreated(), result.getCreated());
+            InOrder order = inOrder(noteRevisionService, noteRepository);
+            order.verify(noteRepository).replaceIfVersion(any(), any(), anyInt(), any());
+            order.verify(noteRevisionService).recordRevision(previous, "Test content");
+            verify(noteRepository, never()).findContentAndVersion(any(), any());
+        });
+    }
+
+    @Test
+    void updateNote_WhenVersionIsStale_ShouldNotRecordRevision() {
+        asUser("alice", () -> {
+            Note current = note(testNote.getId(), "Старое название", null);
+            current.setVersion(2);
+            when(noteRepository.findByIdAndUsername(testNote.getId(), "alice")).thenReturn(Optional.of(current));
+
+            assertThrows(NoteVersionConflictException.class, () -> noteService.updateNote(testNote.getId(), testNote));
+            verify(noteRevisionService, never()).recordRevision(any(), any());
+        });
+    }
+
+    @Test
+    void patchNote_ShouldApplyEditsAndChangeOnlyGivenFields() {
+        asUser("alice", () -> {
+            Note base = new Note();
+            base.setId("n1");
+            base.setContent("Привет");
+            base.setVersion(2);
+            Note previous = new Note();
+            previous.setId("n1");
+            previous.setUsername("alice");
+            previous.setTitle("Заметка");
+            previous.setContent("Привет");
+            previous.setTags(List.of("old"));
+            previous.setVersion(2);
+            when(noteRepository.findContentAndVersion("n1", "alice")).thenReturn(Optional.of(base));
+            when(noteRepository.updateFieldsIfVersion(eq("n1"), eq("alice"), eq(2), anyMap()))
+                .thenReturn(Optional.of(previous));
+
+            NotePatchRequest patch = new NotePatchRequest();
+            patch.setBaseVersion(2);
+            patch.setEdits(List.of(new TextEdit(6, 0, ", мир")));
+            patch.setTags(List.of("new"));
+            patch.setLinks(List.of("n2"));
+            Note result = noteService.patchNote("n1", patch).orElseThrow();
+
+            ArgumentCaptor<Map<String, Object>> fields = ArgumentCaptor.forClass(Map.class);
+            verify(noteRepository).updateFieldsIfVersion(eq("n1"), eq("alice"), eq(2), fields.capture());
+            assertEquals("Привет, мир", fields.getValue().get("content"));
+            assertEquals(List.of("new"), fields.getValue().get("tags"));
+            assertFalse(fields.getValue().containsKey("title"));
+            assertEquals("Привет, мир", result.getContent());
+            assertEquals("Заметка", result.getTitle());
+            assertEquals(List.of("new"), result.getTags());
+            assertEquals(List.of("n2"), result.getLinks());
+            assertEquals(3, result.getVersion());
+            InOrder order = inOrder(noteRevisionService, noteRepository);
+            order.verify(noteRepository).updateFieldsIfVersion(any(), any(), anyInt(), any());
+            order.verify(noteRevisionService).recordRevision(previous, "Привет, мир");
+        });
+    }
+
+    @Test
+    void patchNote_WhenBaseVersionIsStale_ShouldThrowConflictWithoutWriting() {
+        asUser("alice", () -> {
+            Note base = new Note();
+            base.setId("n1");
+            base.setContent("Привет");
+            base.setVersion(3);
+            when(noteRepository.findContentAndVersion("n1", "alice")).thenReturn(Optional.of(base));
+            when(noteRepository.findByIdAndUsername("n1", "alice")).thenReturn(Optional.of(base));
+
+            NotePatchRequest patch = new NotePatchRequest();
+            patch.setBaseVersion(2);
+            patch.setEdits(List.of(new TextEdit(0, 0, "!")));
+
+            NoteVersionConflictException conflict = assertThrows(NoteVersionConflictException.class,
+                () -> noteService.patchNote("n1", patch));
+            assertEquals(3, conflict.getCurrent().getVersion());
+            verify(noteRepository, never()).updateFieldsIfVersion(any(), any(), anyInt(), any());
+        });
+    }
+
+    @Test
+    void patchNote_WhenConcurrentWriteWins_ShouldThrowConflict() {
+        asUser("alice", () -> {
+            Note base = new Note();
+            base.setId("n1");
+            base.setVersion(4);
+            Note current = new Note();
+            current.setId("n1");
+            current.setVersion(5);
+            when(noteRepository.updateFieldsIfVersion(eq("n1"), eq("alice"), eq(4), anyMap()))
+                .thenReturn(Optional.empty());
+            // Параллельная запись успевает между чтением базовой версии и обновлением
+            when(noteRepository.findContentAndVersion("n1", "alice")).thenReturn(Optional.of(base));
+            when(noteRepository.findByIdAndUsername("n1", "alice")).thenReturn(Optional.of(current));
+
+            NotePatchRequest patch = new NotePatchRequest();
+            patch.setBaseVersion(4);
+            patch.setEdits(List.of(new TextEdit(0, 0, "!")));
+
+            NoteVersionConflictException conflict = assertThrows(NoteVersionConflictException.class,
+                () -> noteService.patchNote("n1", patch));
+            assertEquals(5, conflict.getCurrent().getVersion());
+            verify(noteRevisionService, never()).recordRevision(any(), any());
+        });
+    }
+
+    @Test
+    void patchNote_WithoutEdits_ShouldWriteWithoutReadingAndRecordRevisionFromPrevious() {
+        asUser("alice", () -> {
+            Note previous = note("n1", "Старое название", null);
+            previous.setContent("Текст");
+            previous.setVersion(4);
+            when(noteRepository.updateFieldsIfVersion(eq("n1"), eq("alice"), eq(4), anyMap()))
+                .thenReturn(Optional.of(previous));
+
+            NotePatchRequest patch = new NotePatchRequest();
+            patch.setBaseVersion(4);
+            patch.setTitle("Новое название");
+            Note result = noteService.patchNote("n1", patch).orElseThrow();
+
+            assertEquals("Новое название", result.getTitle());
+            assertEquals(5, result.getVersion());
+            verify(noteRevisionService).recordRevision(previous, "Текст");
+            verify(noteRepository, never()).findContentAndVersion(any(), any());
+        });
+    }
+
+    @Test
+    void patchNote_WithBadEditsOrWithoutBaseVersion_ShouldRejectWithoutWriting() {
+        asUser("alice", () -> {
+            Note base = new Note();
+            base.setId("n1");
+            base.setContent("abc");
+            base.setVersion(1);
+            when(noteRepository.findContentAndVersion("n1", "alice")).thenReturn(Optional.of(base));
+
+            NotePatchRequest outOfRange = new NotePatchRequest();
+            outOfRange.setBaseVersion(1);
+            outOfRange.setEdits(List.of(new TextEdit(Integer.MAX_VALUE, Integer.MAX_VALUE, "")));
+            assertThrows(IllegalArgumentException.class, () -> noteService.patchNote("n1", outOfRange));
+
+            NotePatchRequest withoutVersion = new NotePatchRequest();
+            withoutVersion.setTitle("Название");
+            assertThrows(IllegalArgumentException.class, () -> noteService.patchNote("n1", withoutVersion));
+
+            verify(noteRepository, never()).updateFieldsIfVersion(any(), any(), anyInt(), any());
+        });
+    }
+
+    private static void asUser(String username, Runnable test) {
+        SecurityContextHolder.getContext().setAuthentication(
+            new UsernamePasswordAuthenticationToken(username, null, List.of()));
+        try {
+            test.run();
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+
+    @Test
+    void patchNote_WithoutLinks_ShouldKeepManualLinksAndRederiveWikiLinks() {
+        asUser("alice", () -> {
+            noteTitleIndex.index(note("target", "Цель", null));
+            Note base = note("n1", null, null);
+            base.setContent("См. [[Цель]]");
+            base.setLinks(List.of("manual", "target"));
+            base.setVersion(1);
+            when(noteRepository.findContentAndVersion("n1", "alice")).thenReturn(Optional.of(base));
+            when(noteRepository.updateFieldsIfVersion(eq("n1"), eq("alice"), eq(1), anyMap()))
+                .thenReturn(Optional.of(base));
+
+            NotePatchRequest patch = new NotePatchRequest();
+            patch.setBaseVersion(1);
+            patch.setEdits(List.of(new TextEdit(0, 12, "Без ссылок")));
+            Note result = noteService.patchNote("n1", patch).orElseThrow();
+
+            assertEquals(List.of("manual"), result.getLinks());
+        });
+    }
+
+    @Test
+    void createNote_ShouldResolveDanglingLinksOfOtherNotes() {
+        asUser("alice", () -> {
+            Note referrer = note("referrer", "Черновик", null);
+            referrer.setDanglingLinks(List.of("Будущая заметка", "Другая"));
+            referrer.setLinks(List.of("manual"));
+            referrer.setVersion(4);
+            noteTitleIndex.index(referrer);
+            when(noteRepository.findByIdAndUsername("referrer", "alice")).thenReturn(Optional.of(referrer));
+            when(noteRepository.relinkIfVersion(any(), any(), anyInt(), any(), any())).thenReturn(true);
+            when(noteRepository.insertUnordered(anyList())).thenReturn(Map.of());
+
+            Note created = new Note();
+            created.setTitle("Будущая заметка");
+            noteService.createNote(created);
+
+            verify(noteRepository).relinkIfVersion(eq("referrer"), eq("alice"), eq(4),
+                eq(List.of("manual", created.getId())), eq(List.of("Другая")));
+            assertEquals(List.of("Другая"), referrer.getDanglingLinks());
+            assertTrue(noteTitleIndex.danglingReferrers("alice", created.getId()).isEmpty());
+        });
+    }
+
+    @Test
+    void deleteNote_ShouldReturnWikiLinksOfReferrersToDangling() {
+        asUser("alice", () -> {
+            Note target = note("target", "Цель", null);
+            Note referrer = note("referrer", "Черновик", null);
+            referrer.setContent("См. [[Цель]] и [[Другая]]");
+            referrer.setLinks(List.of("manual", "target"));
+            referrer.setDanglingLinks(List.of("Другая"));
+            referrer.setVersion(4);
+            List.of(linkGraphIndex, noteTitleIndex).forEach(index -> {
+                index.index(target);
+                index.index(referrer);
+            });
+            when(noteRepository.deleteByIdAndUsername("target", "alice")).thenReturn(1L);
+            when(noteRepository.findByIdAndUsername("referrer", "alice")).thenReturn(Optional.of(referrer));
+            when(noteRepository.relinkIfVersion(any(), any(), anyInt(), any(), any())).thenReturn(true);
+
+            noteService.deleteNote("target");
+
+            verify(noteRepository).relinkIfVersion(eq("referrer"), eq("alice"), eq(4),
+                eq(List.of("manual")), eq(List.of("Другая", "Цель")));
+            assertTrue(linkGraphIndex.backlinks("alice", "target").isEmpty());
+            // Новая заметка с тем же названием снова разрешит ссылку
+            noteTitleIndex.index(note("recreated", "Цель", null));
+            assertEquals(Set.of("referrer"), noteTitleIndex.danglingReferrers("alice", "recreated"));
+        });
+    }
+
+    private static Note note(String id, String title, String path) {
+        Note note = new Note();
+        note.setId(id);
+        note.setUsername("alice");
+        note.setTitle(title);
+        note.setPath(path);
+        return note;
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,362 @@
+package com.externalobserver.storage;
+
+import com.externalobserver.dto.NoteSortOrder;
+import com.externalobserver.dto.NoteSummary;
+import com.externalobserver.dto.NoteSummaryPage;
+import com.externalobserver.model.Note;
+import com.externalobserver.model.NoteRevision;
+import com.externalobserver.repository.ChangePosition;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ExampleMatcher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalRepositoryTest {
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 5, 1, 12, 0);
+
+    @TempDir
+    Path directory;
+
+    private MappingMongoConverter converter;
+    private LocalStorage storage;
+    private LocalNoteRepository notes;
+
+    @BeforeEach
+    void setUp() {
+        MongoCustomConversions conversions = new MongoCustomConversions(List.of());
+        MongoMappingContext context = new MongoMappingContext();
+        context.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, context);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+        open();
+    }
+
+    @AfterEach
+    void tearDown() {
+        storage.close();
+    }
+
+    @Test
+    void save_ShouldAssignIdAndSurviveReopen() {
+        Note note = note("alice", "Заметка", NOW);
+        note.setMetadata(Map.of("mood", "ok", "score", 7));
+        notes.save(note);
+        assertNotNull(note.getId());
+
+        storage.close();
+        open();
+
+        Note loaded = notes.findByIdAndUsername(note.getId(), "alice").orElseThrow();
+        assertEquals(note, loaded);
+        assertTrue(notes.findByIdAndUsername(note.getId(), "bob").isEmpty());
+    }
+
+    @Test
+    void findSummaries_ShouldPageWithCursorInBothOrders() {
+        List<Note> saved = new ArrayList<>();
+        saved.add(notes.save(note("alice", "Без даты", null)));
+        for (int i = 0; i < 4; i++) {
+            saved.add(notes.save(note("alice", "Заметка " + i, NOW.plusHours(i % 2))));
+        }
+        notes.save(note("bob", "Чужая", NOW));
+
+        for (NoteSortOrder order : NoteSortOrder.values()) {
+            List<String> ids = new ArrayList<>();
+            String cursor = null;
+            do {
+                NoteSummaryPage page = notes.findSummaries("alice", order, cursor, 2);
+                page.getItems().stream().map(NoteSummary::getId).forEach(ids::add);
+                cursor = page.getNextCursor();
+            } while (cursor != null);
+
+            List<String> expected = new ArrayList<>(List.of(
+                saved.get(0).getId(), saved.get(1).getId(), saved.get(3).getId(), saved.get(2).getId(), saved.get(4).getId()));
+            if (order == NoteSortOrder.UPDATED_DESC) {
+                expected = expected.reversed();
+            }
+            assertEquals(expected, ids, order.name());
+        }
+    }
+
+    @Test
+    void findSummaries_WithEqualUpdated_ShouldNotSkipOrRepeatWhenNotesChangeBetweenPages() {
+        for (NoteSortOrder order : NoteSortOrder.values()) {
+            String username = "user-" + order.name();
+            List<String> saved = new ArrayList<>();
+            for (int i = 0; i < 7; i++) {
+                saved.add(notes.save(note(username, "Заметка " + i, NOW)).getId());
+            }
+
+            List<String> ids = new ArrayList<>();
+            NoteSummaryPage page = notes.findSummaries(username, order, null, 3);
+            page.getItems().stream().map(NoteSummary::getId).forEach(ids::add);
+            // Между страницами выданная заметка удаляется, а новая с тем же updated добавляется
+            notes.deleteById(ids.get(0));
+            String added = notes.save(note(username, "Новая", NOW)).getId();
+            String cursor = page.getNextCursor();
+            while (cursor != null) {
+                page = notes.findSummaries(username, order, cursor, 3);
+                page.getItems().stream().map(NoteSummary::getId).forEach(ids::add);
+                cursor = page.getNextCursor();
+            }
+
+            // При равном updated порядок — по id; новая заметка с большим id попадает только в конец ASC
+            List<String> expected = new ArrayList<>(saved);
+            if (order == NoteSortOrder.UPDATED_ASC) {
+                expected.add(added);
+            } else {
+                expected = expected.reversed();
+            }
+            assertEquals(expected, ids, order.name());
+        }
+    }
+
+    @Test
+    void findSummaries_WithMalformedCursor_ShouldThrowIllegalArgument() {
+        notes.save(note("alice", "Заметка", NOW));
+
+        assertThrows(IllegalArgumentException.class,
+            () -> notes.findSummaries("alice", NoteSortOrder.UPDATED_DESC, "%%%", 2));
+        assertThrows(IllegalArgumentException.class,
+            () -> notes.findSummaries("alice", NoteSortOrder.UPDATED_ASC, "YWJj", 2));
+    }
+
+    @Test
+    void findChangedSince_ShouldContinueAfterPositionWithNullsFirst() {
+        Note undated = notes.save(note("alice", "Без даты", null));
+        Note first = notes.save(note("alice", "Первая", NOW));
+        Note second = notes.save(note("alice", "Вторая", NOW));
+        Note later = notes.save(note("alice", "Поздняя", NOW.plusHours(1)));
+        notes.save(note("bob", "Чужая", NOW));
+
+        List<Note> all = notes.findChangedSince("alice", null, 10);
+        assertEquals(undated.getId(), all.get(0).getId());
+        assertEquals(later.getId(), all.get(3).getId());
+
+        List<Note> afterUndated = notes.findChangedSince("alice", new ChangePosition(null, undated.getId()), 2);
+        assertEquals(List.of(first.getId(), second.getId()).stream().sorted().toList(),
+            afterUndated.stream().map(Note::getId).toList());
+
+        Note lastOfPage = afterUndated.get(1);
+        List<Note> rest = notes.findChangedSince("alice", new ChangePosition(NOW, lastOfPage.getId()), 2);
+        assertEquals(List.of(later.getId()), rest.stream().map(Note::getId).toList());
+    }
+
+    @Test
+    void replaceIfVersion_ShouldReturnPreviousAndRejectStaleVersion() {
+        Note note = note("alice", "Первая", NOW);
+        note.setVersion(1);
+        note.setTags(List.of("a"));
+        notes.save(note);
+
+        Note changes = note("alice", "Вторая", null);
+        LocalDateTime before = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+        Optional<Note> previous = notes.replaceIfVersion(note.getId(), "alice", 1, changes);
+
+        assertEquals("Первая", previous.orElseThrow().getTitle());
+        Note current = notes.findById(note.getId()).orElseThrow();
+        assertEquals("Вторая", current.getTitle());
+        assertNull(current.getTags());
+        assertEquals(2, current.getVersion());
+        // Время изменения ставит хранилище при записи
+        assertFalse(current.getUpdated().isBefore(before));
+        assertTrue(notes.replaceIfVersion(note.getId(), "alice", 1, changes).isEmpty());
+        assertTrue(notes.replaceIfVersion(note.getId(), "bob", 2, changes).isEmpty());
+    }
+
+    @Test
+    void replaceIfVersion_ShouldTreatNoteWithoutVersionAsVersionZero() {
+        Note legacy = note("alice", "Старая", NOW);
+        notes.save(legacy);
+
+        Note changes = note("alice", "Новая", null);
+        assertTrue(notes.replaceIfVersion(legacy.getId(), "alice", 1, changes).isEmpty());
+        assertTrue(notes.replaceIfVersion(legacy.getId(), "alice", 0, changes).isPresent());
+        assertEquals(1, notes.findById(legacy.getId()).orElseThrow().getVersion());
+    }
+
+    @Test
+    void updateFieldsIfVersion_ShouldSetAndUnsetOnlyGivenFields() {
+        Note note = note("alice", "Заголовок", NOW);
+        note.setVersion(3);
+        note.setStatus("draft");
+        notes.save(note);
+
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("content", "Новое содержимое");
+        fields.put("status", null);
+        notes.updateFieldsIfVersion(note.getId(), "alice", 3, fields);
+
+        Note current = notes.findContentAndVersion(note.getId(), "alice").orElseThrow();
+        assertEquals("Новое содержимое", current.getContent());
+        assertEquals(4, current.getVersion());
+        Note full = notes.findById(note.getId()).orElseThrow();
+        assertEquals("Заголовок", full.getTitle());
+        assertNull(full.getStatus());
+    }
+
+    @Test
+    void insertUnordered_ShouldReportDuplicatesByPosition() {
+        Note existing = notes.save(note("alice", "Есть", NOW));
+        Note duplicate = note("alice", "Дубликат", NOW);
+        duplicate.setId(existing.getId());
+
+        Map<Integer, String> errors = notes.insertUnordered(List.of(note("alice", "Новая", NOW), duplicate));
+
+        assertEquals(List.of(1), List.copyOf(errors.keySet()));
+        assertEquals(2, notes.findByUsername("alice").size());
+        assertEquals("Есть", notes.findById(existing.getId()).orElseThrow().getTitle());
+    }
+
+    @Test
+    void findAllByExample_ShouldMatchNonNullPropertiesLikeMongo() {
+        Note first = note("alice", "Дневник за май", NOW);
+        first.setTags(List.of("daily"));
+        notes.save(first);
+        notes.save(note("alice", "Список покупок", NOW));
+        notes.save(note("bob", "Дневник Боба", NOW));
+
+        Note probe = new Note();
+        probe.setUsername("alice");
+        probe.setTitle("дневник");
+        ExampleMatcher containing = ExampleMatcher.matching()
+            .withMatcher("title", matcher -> matcher.contains().ignoreCase());
+
+        assertEquals(List.of(first.getId()), notes.findAll(Example.of(probe, containing)).stream()
+            .map(Note::getId).toList());
+        assertTrue(notes.findOne(Example.of(probe)).isEmpty());
+        assertEquals(3, notes.count(Example.of(probe, ExampleMatcher.matchingAny()
+            .withMatcher("title", matcher -> matcher.startsWith().ignoreCase()))));
+
+        Note byTags = new Note();
+        byTags.setTags(List.of("daily"));
+        assertTrue(notes.exists(Example.of(byTags)));
+        assertEquals(3, notes.count(Example.of(new Note())));
+        assertEquals(0, notes.count(Example.of(new Note(), ExampleMatcher.matching().withIncludeNullValues())));
+    }
+
+    @Test
+    void findByExample_ShouldSortLimitPageAndScroll() {
+        for (int i = 0; i < 5; i++) {
+            notes.save(note("alice", "Заметка " + i, NOW.plusHours(i)));
+        }
+        notes.save(note("bob", "Чужая", NOW));
+        Note probe = new Note();
+        probe.setUsername("alice");
+        Example<Note> example = Example.of(probe);
+        Sort newest = Sort.by(Sort.Direction.DESC, "updated");
+
+        assertEquals(List.of("Заметка 4", "Заметка 3"), notes.findBy(example,
+            query -> query.sortBy(newest).limit(2).all()).stream().map(Note::getTitle).toList());
+        assertEquals("Заметка 0", notes.findBy(example,
+            query -> query.sortBy(newest).page(PageRequest.of(2, 2))).getContent().get(0).getTitle());
+        assertThrows(IncorrectResultSizeDataAccessException.class, () -> notes.findBy(example, query -> query.oneValue()));
+
+        Window<Note> window = notes.findBy(example, query -> query.sortBy(newest).limit(3).scroll(ScrollPosition.offset()));
+        assertTrue(window.hasNext());
+        Window<Note> rest = notes.findBy(example,
+            query -> query.sortBy(newest).limit(3).scroll(window.positionAt(window.size() - 1)));
+        assertEquals(List.of("Заметка 1", "Заметка 0"), rest.stream().map(Note::getTitle).toList());
+        assertFalse(rest.hasNext());
+    }
+
+    @Test
+    void ownerIndex_ShouldFollowWritesDeletesAndReopen() {
+        Note kept = notes.save(note("alice", "Остаётся", NOW));
+        Note deleted = notes.save(note("alice", "Удалена", NOW));
+        Note moved = notes.save(note("alice", "Передана", NOW));
+        notes.deleteById(deleted.getId());
+        moved.setUsername("bob");
+        notes.save(moved);
+
+        assertEquals(List.of(kept.getId()), notes.findByUsername("alice").stream().map(Note::getId).toList());
+        assertEquals(List.of(moved.getId()), notes.findByUsername("bob").stream().map(Note::getId).toList());
+
+        storage.close();
+        open();
+
+        assertEquals(List.of(kept.getId()), notes.findByUsername("alice").stream().map(Note::getId).toList());
+        assertEquals(1, notes.deleteByIdAndUsername(moved.getId(), "bob"));
+        assertTrue(notes.findByUsername("bob").isEmpty());
+        assertTrue(notes.findByUsername("carol").isEmpty());
+    }
+
+    @Test
+    void noteRevisions_ShouldBeReadByVersionRangeAndRejectDuplicates() {
+        LocalNoteRevisionRepository revisions = new LocalNoteRevisionRepository(storage, converter);
+        for (int version = 1; version <= 12; version++) {
+            revisions.insert(revision("note1", version));
+        }
+        revisions.insert(revision("note2", 1));
+
+        assertEquals(List.of(10, 9, 8), revisions.findChain("alice", "note1", 8, 10).stream()
+            .map(NoteRevision::getVersion).toList());
+        List<NoteRevision> summaries = revisions.findSummaries("alice", "note1", Integer.MAX_VALUE, Limit.unlimited());
+        assertEquals(12, summaries.size());
+        assertEquals(12, summaries.get(0).getVersion());
+        assertNull(summaries.get(0).getData());
+        assertEquals(List.of(9, 8, 7), revisions.findSummaries("alice", "note1", 10, Limit.of(3)).stream()
+            .map(NoteRevision::getVersion).toList());
+        assertEquals(List.of(1), revisions.findSummaries("alice", "note1", 2, Limit.of(3)).stream()
+            .map(NoteRevision::getVersion).toList());
+        assertTrue(revisions.findSummaries("alice", "note1", 1, Limit.of(3)).isEmpty());
+        assertThrows(DuplicateKeyException.class, () -> revisions.insert(revision("note1", 5)));
+
+        NoteRevision replacement = revision("note1", 5);
+        replacement.setTitle("Замена");
+        revisions.replace(replacement);
+        assertEquals("Замена", revisions.findChain("alice", "note1", 5, 5).get(0).getTitle());
+
+        assertEquals(12, revisions.deleteByUsernameAndNoteId("alice", "note1"));
+        assertEquals(1, revisions.count());
+    }
+
+    private void open() {
+        storage = new LocalStorage(directory, 4096, false, Duration.ofHours(1), 0.5, new SimpleMeterRegistry());
+        notes = new LocalNoteRepository(storage, converter);
+    }
+
+    private static Note note(String username, String title, LocalDateTime updated) {
+        Note note = new Note();
+        note.setUsername(username);
+        note.setTitle(title);
+        note.setUpdated(updated);
+        return note;
+    }
+
+    private static NoteRevision revision(String noteId, int version) {
+        NoteRevision revision = new NoteRevision();
+        revision.setUsername("alice");
+        revision.setNoteId(noteId);
+        revision.setVersion(version);
+        revision.setData(new byte[] {1, 2, (byte) version});
+        return revision;
+    }
+}
@@ -0,0 +1,136 @@
+package com.externalobserver.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SegmentLogTest {
+    private static final int SEGMENT_SIZE = 1024;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void putAndDelete_ShouldKeepLatestValue() {
+        SegmentLog log = new SegmentLog(directory, SEGMENT_SIZE, false);
+
+        log.put("a", bytes("1"));
+        log.put("a", bytes("2"));
+        log.put("b", bytes("3"));
+        assertTrue(log.delete("b"));
+        assertFalse(log.delete("missing"));
+
+        assertEquals("2", string(log.get("a")));
+        assertNull(log.get("b"));
+        assertEquals(List.of("a"), List.copyOf(log.keys()));
+    }
+
+    @Test
+    void reopen_ShouldRecoverIndexAcrossSegments() {
+        SegmentLog log = new SegmentLog(directory, SEGMENT_SIZE, false);
+        for (int i = 0; i < 100; i++) {
+            log.put("key" + i, bytes("value" + i));
+        }
+        log.put("key5", bytes("changed"));
+        log.delete("key7");
+        log.close();
+        assertTrue(log.segmentCount() > 1);
+
+        SegmentLog reopened = new SegmentLog(directory, SEGMENT_SIZE, false);
+
+        assertEquals(99, reopened.size());
+        assertEquals("changed", string(reopened.get("key5")));
+        assertNull(reopened.get("key7"));
+        assertEquals("value99", string(reopened.get("key99")));
+        reopened.put("key100", bytes("after reopen"));
+        assertEquals("after reopen", string(reopened.get("key100")));
+    }
+
+    @Test
+    void reopen_ShouldDropTornRecordAtTail() throws IOException {
+        SegmentLog log = new SegmentLog(directory, SEGMENT_SIZE, false);
+        log.put("kept", bytes("ok"));
+        log.put("torn", bytes("lost"));
+        log.close();
+
+        // Портим последний байт значения второй записи, как при обрыве записи
+        Path segment = segments().get(0);
+        int tornEnd = 2 * SegmentLog.HEADER + "kept".length() + "ok".length() + "torn".length() + "lost".length();
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {0}), tornEnd - 1);
+        }
+
+        SegmentLog reopened = new SegmentLog(directory, SEGMENT_SIZE, false);
+        assertEquals("ok", string(reopened.get("kept")));
+        assertNull(reopened.get("torn"));
+
+        reopened.put("next", bytes("written over"));
+        reopened.close();
+        assertEquals("written over", string(new SegmentLog(directory, SEGMENT_SIZE, false).get("next")));
+    }
+
+    @Test
+    void compact_ShouldRewriteLiveRecordsAndDropGarbage() throws IOException {
+        SegmentLog log = new SegmentLog(directory, SEGMENT_SIZE, false);
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 20; i++) {
+                log.put("key" + i, bytes("round" + round + "-" + i));
+            }
+        }
+        log.delete("key3");
+        long before = log.totalBytes();
+
+        assertTrue(log.compact(0.5));
+
+        assertTrue(log.totalBytes() < before / 2);
+        assertEquals(19, log.size());
+        for (int i = 0; i < 20; i++) {
+            assertEquals(i == 3 ? null : "round9-" + i, string(log.get("key" + i)));
+        }
+        assertFalse(log.compact(0.5));
+
+        log.close();
+        SegmentLog reopened = new SegmentLog(directory, SEGMENT_SIZE, false);
+        assertEquals(19, reopened.size());
+        assertNull(reopened.get("key3"));
+        assertEquals("round9-19", string(reopened.get("key19")));
+        assertFalse(Files.exists(directory.resolve("obsolete")));
+    }
+
+    @Test
+    void values_ShouldReturnRangeInKeyOrder() {
+        SegmentLog log = new SegmentLog(directory, SEGMENT_SIZE, false);
+        for (String key : List.of("b:2", "a:1", "b:1", "c:1", "b:3")) {
+            log.put(key, bytes(key));
+        }
+
+        List<String> range = log.values("b:", "b:\uffff").map(SegmentLogTest::string).toList();
+
+        assertEquals(List.of("b:1", "b:2", "b:3"), range);
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.toString().endsWith(".seg")).sorted().toList();
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(byte[] value) {
+        return value != null ? new String(value, StandardCharsets.UTF_8) : null;
+    }
+}